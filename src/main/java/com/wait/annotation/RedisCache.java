@@ -57,4 +57,10 @@ public @interface RedisCache {
     /** 写策略（用于UPDATE/DELETE操作） */
     WriteStrategyType writeStrategy() default WriteStrategyType.CACHE_ASIDE;
 
+    /** 写策略中的数据库操作是否异步执行，失败进入补偿流程 */
+    boolean async() default false;
+
+    /** 异步写是否允许合并：只适用于整体覆盖写，按 key 分通道执行（async-sql.executor-mode=keyed）时生效 */
+    boolean coalesceWrites() default false;
+
 }
@@ -0,0 +1,36 @@
+package com.wait.config;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.wait.service.MQService;
+import com.wait.util.message.BatchingMQProducer;
+
+/**
+ * MQ 生产端配置
+ */
+@Configuration
+public class MQConfig {
+
+    /**
+     * MQ 写回策略使用的批量生产者：按 topic 攒批后一次发送，减少每次缓存写入一次 MQ 往返
+     * 发送目标由 mq.producer.target 指定（MQService 的 bean 名称），需要注册了 WriteBehindBatchConsumer 的实现，
+     * 否则消息没有消费者；目标不存在时启动失败，而不是静默丢弃写回消息
+     */
+    @Bean(name = "writeBehindProducer", destroyMethod = "close")
+    public BatchingMQProducer writeBehindProducer(Map<String, MQService> mqServices,
+            @Value("${mq.producer.target:memoryMQService}") String target,
+            @Value("${mq.producer.batch-size:100}") int batchSize,
+            @Value("${mq.producer.linger-ms:5}") long lingerMs,
+            @Value("${mq.producer.max-pending:10000}") int maxPending) {
+        MQService mqService = mqServices.get(target);
+        if (mqService == null) {
+            throw new IllegalStateException("mq.producer.target " + target + " not found, available: "
+                    + mqServices.keySet());
+        }
+        return new BatchingMQProducer("mq-producer", mqService, batchSize, lingerMs, maxPending);
+    }
+}
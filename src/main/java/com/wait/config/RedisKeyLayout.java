@@ -0,0 +1,90 @@
+package com.wait.config;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Redis key 布局
+ * 单机/哨兵模式沿用原有 key（如 user:follow:1）；集群模式（配置了 spring.redis.cluster.nodes）给 id 加 hash tag（如 user:follow:{1}），
+ * 同一个 id 的 key（user:follow:{1}、user:follower:{1}、user:post:rel:{1}、post:like:{1}、post:counter:{1}）落在同一个 slot，
+ * 只涉及一个 id 的多 key 脚本可以直接在集群上执行；跨 id 的操作需要拆成单 slot 的步骤
+ * 切换布局后 key 名称不同，需要重新预热
+ */
+@Slf4j
+@Component
+public class RedisKeyLayout {
+
+    private final boolean cluster;
+
+    public RedisKeyLayout(RedisConnectionFactory connectionFactory) {
+        this.cluster = isCluster(connectionFactory);
+        log.info("Redis key layout: {}", cluster ? "cluster (hash tagged)" : "standalone");
+    }
+
+    /**
+     * 连接工厂是否连接 Redis Cluster
+     */
+    public static boolean isCluster(RedisConnectionFactory connectionFactory) {
+        return connectionFactory instanceof LettuceConnectionFactory
+                && ((LettuceConnectionFactory) connectionFactory).isClusterAware();
+    }
+
+    public boolean isCluster() {
+        return cluster;
+    }
+
+    /**
+     * 生成 id 维度的 key，集群模式下 id 作为 hash tag
+     */
+    public String key(String prefix, Object id) {
+        return cluster ? prefix + "{" + id + "}" : prefix + id;
+    }
+
+    /**
+     * 从 {@link #key(String, Object)} 生成的 key 中取出 id，前缀不匹配时返回 null
+     */
+    public String idOf(String prefix, String key) {
+        if (key == null || !key.startsWith(prefix)) {
+            return null;
+        }
+        String id = key.substring(prefix.length());
+        if (cluster) {
+            if (id.length() < 2 || id.charAt(0) != '{' || id.charAt(id.length() - 1) != '}') {
+                return null;
+            }
+            id = id.substring(1, id.length() - 1);
+        }
+        return id;
+    }
+
+    /**
+     * key 所在的 slot（按 hash tag 计算）
+     */
+    public static int slot(String key) {
+        return ClusterSlotHashUtil.calculateSlot(key);
+    }
+
+    /**
+     * 所有 key 是否在同一个 slot
+     */
+    public static boolean sameSlot(Collection<String> keys) {
+        Iterator<String> it = keys.iterator();
+        if (!it.hasNext()) {
+            return true;
+        }
+        int slot = slot(it.next());
+        while (it.hasNext()) {
+            if (slot(it.next()) != slot) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PreDestroy;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -14,6 +15,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wait.util.KeyedLaneExecutor;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -63,6 +65,39 @@ public class TaskExecutorConfig {
         return executor;
     }
 
+    /**
+     * 首页动态推送（fan-out）专用的线程池
+     * 发布帖子后把帖子 id 分批写入粉丝收件箱，队列满时由发布线程执行，对发帖形成背压而不是丢弃推送
+     */
+    @Bean("feedFanoutExecutor")
+    public ThreadPoolTaskExecutor feedFanoutExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("feed-fanout-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 关系缓存预热专用的单线程池，预热可能持续数小时，不占用共享的定时调度线程
+     * 同时只有一个预热任务，不设队列；关闭时不等待，中断的预热从检查点继续
+     */
+    @Bean("relationWarmExecutor")
+    public ThreadPoolTaskExecutor relationWarmExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("relation-warm-");
+        executor.initialize();
+        return executor;
+    }
+
     /**
      * AsyncSQLWrapper 专用的线程池
      * 用于执行数据库操作的异步任务
@@ -79,6 +114,29 @@ public class TaskExecutorConfig {
         return executor;
     }
 
+    /**
+     * 批量维护任务专用的线程池（BulkSQLExecutor）
+     * 与请求链路的 asyncSqlExecutor 隔离，批量任务自身限制在途分块数，队列满时拒绝而不是在调用线程执行
+     */
+    @Bean(name = "bulkSqlExecutor", destroyMethod = "shutdown")
+    public ExecutorService bulkSqlExecutor() {
+        return new ThreadPoolExecutor(
+                4, 8, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(64),
+                new ThreadFactoryBuilder().setNameFormat("bulk-sql-%d").build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * AsyncSQLWrapper 按 key 分通道的执行器，只在 async-sql.executor-mode=keyed 时创建
+     * 同一缓存 key 的异步写按提交顺序执行，每个通道队列有界，满时抛出背压异常
+     */
+    @Bean(name = "asyncSqlLaneExecutor", destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "async-sql.executor-mode", havingValue = "keyed")
+    public KeyedLaneExecutor asyncSqlLaneExecutor() {
+        return new KeyedLaneExecutor("async-sql-lane", 8, 256);
+    }
+
     /**
      * 任务调度器 - 用于定时重试、延迟重试、定时刷新等调度任务
      * 用于写回策略（IncrementalWriteStrategy、SnapshotWriteStrategy）和定时刷新策略（ScheduledRefreshStrategy）
@@ -0,0 +1,49 @@
+package com.wait.config.script;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 补偿引擎脚本管理类
+ * 管理补偿条目的合并写入、认领、成功/失败提交、人工重放和清理等操作的 Lua 脚本
+ */
+@Component
+@Slf4j
+public class CompensationScripts extends LuaScriptConfig {
+
+    public static final String COMPENSATION_ADD = "compensation_add";
+    public static final String COMPENSATION_CLAIM = "compensation_claim";
+    public static final String COMPENSATION_COMPLETE = "compensation_complete";
+    public static final String COMPENSATION_FAIL = "compensation_fail";
+    public static final String COMPENSATION_REPLAY = "compensation_replay";
+    public static final String COMPENSATION_PURGE = "compensation_purge";
+
+    public CompensationScripts(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate);
+    }
+
+    @Override
+    protected Map<String, Class<?>> buildReturnTypeMap() {
+        Map<String, Class<?>> returnTypeMap = new HashMap<>();
+        returnTypeMap.put(COMPENSATION_ADD, Long.class);
+        returnTypeMap.put(COMPENSATION_CLAIM, List.class);
+        returnTypeMap.put(COMPENSATION_COMPLETE, Long.class);
+        returnTypeMap.put(COMPENSATION_FAIL, Long.class);
+        returnTypeMap.put(COMPENSATION_REPLAY, Long.class);
+        returnTypeMap.put(COMPENSATION_PURGE, Long.class);
+        return Collections.unmodifiableMap(returnTypeMap);
+    }
+
+    @Override
+    protected String getScriptDirectory() {
+        return "classpath:lua/compensation/*.lua";
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.wait.config.script;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +17,8 @@ import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 
+import com.wait.config.RedisKeyLayout;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -25,6 +30,8 @@ import lombok.extern.slf4j.Slf4j;
  *      可以约定文件名命名规范，比如以类型结尾，如slide_window.long.lua，建立全局map，统一管理
  *      也可以配置到 yaml 中，包括路径和返回类型
  *  这里采用第一种方式
+ * 连接 Redis Cluster 时，脚本的所有 key 必须在同一个 slot（用 hash tag 保证，见 {@link RedisKeyLayout}），
+ * 执行前在本地校验，跨 slot 的批量操作用 {@link #executeBySlot} 按 slot 分组执行
  */
 @Slf4j
 public abstract class LuaScriptConfig {
@@ -32,6 +39,7 @@ public abstract class LuaScriptConfig {
     protected final StringRedisTemplate stringRedisTemplate;
 
     private volatile boolean initialized = false;
+    private volatile boolean cluster = false;
     private final Object initializationMonitor = new Object();
     private Map<String, DefaultRedisScript<?>> cachedScripts = Collections.emptyMap();
     private Map<String, Class<?>> cachedReturnTypes = Collections.emptyMap();
@@ -62,6 +70,11 @@ public abstract class LuaScriptConfig {
         if (targetType == null) {
             throw new IllegalArgumentException("return type not found for script: " + scriptName);
         }
+        // 集群不允许一个脚本访问多个 slot，提前失败比服务端返回 CROSSSLOT 更容易定位
+        if (cluster && keys != null && keys.size() > 1 && !RedisKeyLayout.sameSlot(keys)) {
+            throw new IllegalArgumentException(
+                    "keys of script " + scriptName + " span multiple hash slots in cluster mode: " + keys);
+        }
 
         // 将参数转换为字符串数组，避免 RedisTemplate 对 String 类型再次序列化
         // 业界常见做法：对于 Lua 脚本，如果参数已经序列化为字符串，使用 StringRedisTemplate 执行
@@ -93,6 +106,57 @@ public abstract class LuaScriptConfig {
         return result;
     }
 
+    /**
+     * 按 slot 分组执行批量脚本，结果按条目原顺序合并
+     * 每个条目依次占 keysPerItem 个 key 和 argsPerItem 个参数（排在 headArgs 之后），同一条目的 key 必须在同一 slot，
+     * 脚本返回每个条目一个结果的数组
+     * 非集群模式一次调用；集群模式按条目第一个 key 的 slot 分组，每个 slot 一次调用，组与组之间不是原子的，
+     * 中途失败时已执行的组不会回滚，调用方的脚本需要幂等
+     */
+    public List<Object> executeBySlot(String scriptName, List<String> keys, int keysPerItem,
+            List<Object> headArgs, List<Object> itemArgs, int argsPerItem) {
+        ensureInitialized();
+        int items = keys.size() / keysPerItem;
+        if (keys.size() % keysPerItem != 0 || itemArgs.size() != items * argsPerItem) {
+            throw new IllegalArgumentException("keys or args do not match item count of script: " + scriptName);
+        }
+        if (items == 0) {
+            return Collections.emptyList();
+        }
+        if (!cluster) {
+            List<Object> args = new ArrayList<>(headArgs);
+            args.addAll(itemArgs);
+            return executeScript(scriptName, keys, args.toArray());
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items; i++) {
+            groups.computeIfAbsent(RedisKeyLayout.slot(keys.get(i * keysPerItem)), s -> new ArrayList<>()).add(i);
+        }
+        Object[] results = new Object[items];
+        for (List<Integer> group : groups.values()) {
+            List<String> groupKeys = new ArrayList<>(group.size() * keysPerItem);
+            List<Object> groupArgs = new ArrayList<>(headArgs);
+            for (int i : group) {
+                groupKeys.addAll(keys.subList(i * keysPerItem, (i + 1) * keysPerItem));
+                groupArgs.addAll(itemArgs.subList(i * argsPerItem, (i + 1) * argsPerItem));
+            }
+            List<Object> groupResults = executeScript(scriptName, groupKeys, groupArgs.toArray());
+            for (int j = 0; j < group.size() && groupResults != null && j < groupResults.size(); j++) {
+                results[group.get(j)] = groupResults.get(j);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 是否连接 Redis Cluster
+     */
+    public boolean isCluster() {
+        ensureInitialized();
+        return cluster;
+    }
+
     /**
      * 确保脚本已初始化（双重检查锁定）
      */
@@ -107,6 +171,7 @@ public abstract class LuaScriptConfig {
             Map<String, Class<?>> returnTypeMap = buildReturnTypeMap();
             this.cachedReturnTypes = returnTypeMap;
             this.cachedScripts = loadScripts(returnTypeMap);
+            this.cluster = RedisKeyLayout.isCluster(stringRedisTemplate.getConnectionFactory());
             this.initialized = true;
         }
     }
@@ -0,0 +1,47 @@
+package com.wait.config.script;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 压缩位图关系存储脚本管理类
+ * 管理分块位图集合的增删、批量检查、按 id 分页读取、求交集和迁移批量添加等操作的 Lua 脚本
+ */
+@Component
+@Slf4j
+public class RelationBitmapScripts extends LuaScriptConfig {
+
+    public static final String RBM_UPDATE = "rbm_update";
+    public static final String RBM_ADD_ALL = "rbm_add_all";
+    public static final String RBM_CHECK = "rbm_check";
+    public static final String RBM_RANGE = "rbm_range";
+    public static final String RBM_INTERSECT = "rbm_intersect";
+
+    public RelationBitmapScripts(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate);
+    }
+
+    @Override
+    protected Map<String, Class<?>> buildReturnTypeMap() {
+        Map<String, Class<?>> returnTypeMap = new HashMap<>();
+        returnTypeMap.put(RBM_UPDATE, List.class);
+        returnTypeMap.put(RBM_ADD_ALL, Long.class);
+        returnTypeMap.put(RBM_CHECK, List.class);
+        returnTypeMap.put(RBM_RANGE, List.class);
+        returnTypeMap.put(RBM_INTERSECT, List.class);
+        return Collections.unmodifiableMap(returnTypeMap);
+    }
+
+    @Override
+    protected String getScriptDirectory() {
+        return "classpath:lua/relation_bitmap/*.lua";
+    }
+
+}
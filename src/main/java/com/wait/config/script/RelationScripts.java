@@ -2,6 +2,7 @@ package com.wait.config.script;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -11,20 +12,18 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 关系操作脚本管理类
- * 管理关注、点赞、收藏、黑名单等操作的 Lua 脚本
+ * 管理关注、点赞、收藏、黑名单等操作的 Lua 脚本：单条和批量关系操作共用 bulk_relation（集群模式为 relation_step），
+ * 大集合分片的成员检查和迁移
  */
 @Component
 @Slf4j
 public class RelationScripts extends LuaScriptConfig {
 
-    public static final String FOLLOW = "follow";
-    public static final String UNFOLLOW = "unfollow";
-    public static final String LIKE_POST = "like_post";
-    public static final String UNLIKE_POST = "unlike_post";
-    public static final String FAVORITE_POST = "favorite_post";
-    public static final String UNFAVORITE_POST = "unfavorite_post";
-    public static final String BLOCK_USER = "block_user";
-    public static final String UNBLOCK_USER = "unblock_user";
+    public static final String SCAN_PAGE = "scan_page";
+    public static final String BULK_RELATION = "bulk_relation";
+    public static final String RELATION_STEP = "relation_step";
+    public static final String SHARD_CHECK = "shard_check";
+    public static final String SHARD_MOVE = "shard_move";
 
     public RelationScripts(StringRedisTemplate stringRedisTemplate) {
         super(stringRedisTemplate);
@@ -33,14 +32,11 @@ public class RelationScripts extends LuaScriptConfig {
     @Override
     protected Map<String, Class<?>> buildReturnTypeMap() {
         Map<String, Class<?>> returnTypeMap = new HashMap<>();
-        returnTypeMap.put(FOLLOW, Long.class);
-        returnTypeMap.put(UNFOLLOW, Long.class);
-        returnTypeMap.put(LIKE_POST, Long.class);
-        returnTypeMap.put(UNLIKE_POST, Long.class);
-        returnTypeMap.put(FAVORITE_POST, Long.class);
-        returnTypeMap.put(UNFAVORITE_POST, Long.class);
-        returnTypeMap.put(BLOCK_USER, Long.class);
-        returnTypeMap.put(UNBLOCK_USER, Long.class);
+        returnTypeMap.put(SCAN_PAGE, List.class);
+        returnTypeMap.put(BULK_RELATION, List.class);
+        returnTypeMap.put(RELATION_STEP, List.class);
+        returnTypeMap.put(SHARD_CHECK, List.class);
+        returnTypeMap.put(SHARD_MOVE, Long.class);
         return Collections.unmodifiableMap(returnTypeMap);
     }
 
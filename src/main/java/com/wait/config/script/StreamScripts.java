@@ -0,0 +1,45 @@
+package com.wait.config.script;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Redis Streams 消息队列脚本管理类
+ * 管理消息追加（单条/批量，近似裁剪）、消费组创建、卡住消息认领等操作的 Lua 脚本
+ */
+@Component
+@Slf4j
+public class StreamScripts extends LuaScriptConfig {
+
+    public static final String STREAM_ADD = "stream_add";
+    public static final String STREAM_ADD_BATCH = "stream_add_batch";
+    public static final String STREAM_GROUP_CREATE = "stream_group_create";
+    public static final String STREAM_AUTOCLAIM = "stream_autoclaim";
+
+    public StreamScripts(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate);
+    }
+
+    @Override
+    protected Map<String, Class<?>> buildReturnTypeMap() {
+        Map<String, Class<?>> returnTypeMap = new HashMap<>();
+        returnTypeMap.put(STREAM_ADD, String.class);
+        returnTypeMap.put(STREAM_ADD_BATCH, Long.class);
+        returnTypeMap.put(STREAM_GROUP_CREATE, Long.class);
+        returnTypeMap.put(STREAM_AUTOCLAIM, List.class);
+        return Collections.unmodifiableMap(returnTypeMap);
+    }
+
+    @Override
+    protected String getScriptDirectory() {
+        return "classpath:lua/stream/*.lua";
+    }
+
+}
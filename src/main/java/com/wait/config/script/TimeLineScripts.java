@@ -19,6 +19,9 @@ public class TimeLineScripts extends LuaScriptConfig {
 
     public static final String PUBLISH_POST = "publish_post";
     public static final String DELETE_POST = "delete_post";
+    /** 集群模式下拆分出的用户侧单 slot 步骤 */
+    public static final String TIMELINE_PUSH = "timeline_push";
+    public static final String TIMELINE_REMOVE = "timeline_remove";
 
     public TimeLineScripts(StringRedisTemplate stringRedisTemplate) {
         super(stringRedisTemplate);
@@ -29,6 +32,8 @@ public class TimeLineScripts extends LuaScriptConfig {
         Map<String, Class<?>> returnTypeMap = new HashMap<>();
         returnTypeMap.put(PUBLISH_POST, Long.class);
         returnTypeMap.put(DELETE_POST, Long.class);
+        returnTypeMap.put(TIMELINE_PUSH, Long.class);
+        returnTypeMap.put(TIMELINE_REMOVE, Long.class);
         return Collections.unmodifiableMap(returnTypeMap);
     }
 
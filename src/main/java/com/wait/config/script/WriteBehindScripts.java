@@ -0,0 +1,43 @@
+package com.wait.config.script;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 写回缓冲脚本管理类
+ * 管理 Redis 端写回缓冲的写入、认领、完成等操作的 Lua 脚本
+ */
+@Component
+@Slf4j
+public class WriteBehindScripts extends LuaScriptConfig {
+
+    public static final String BUFFER_WRITE = "buffer_write";
+    public static final String BUFFER_CLAIM = "buffer_claim";
+    public static final String BUFFER_COMPLETE = "buffer_complete";
+
+    public WriteBehindScripts(StringRedisTemplate stringRedisTemplate) {
+        super(stringRedisTemplate);
+    }
+
+    @Override
+    protected Map<String, Class<?>> buildReturnTypeMap() {
+        Map<String, Class<?>> returnTypeMap = new HashMap<>();
+        returnTypeMap.put(BUFFER_WRITE, Long.class);
+        returnTypeMap.put(BUFFER_CLAIM, List.class);
+        returnTypeMap.put(BUFFER_COMPLETE, Long.class);
+        return Collections.unmodifiableMap(returnTypeMap);
+    }
+
+    @Override
+    protected String getScriptDirectory() {
+        return "classpath:lua/write_behind/*.lua";
+    }
+
+}
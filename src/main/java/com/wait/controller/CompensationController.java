@@ -0,0 +1,80 @@
+package com.wait.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wait.sync.compensation.CompensationEngine;
+import com.wait.util.ResponseUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 补偿管理控制器 - 查看、按条件重放或清除失败同步的补偿条目
+ * 过滤条件：keyPrefix（缓存 key 前缀）、reason（失败原因包含的文本）、status（PENDING / DEAD），均可省略
+ */
+@Slf4j
+@RestController
+@RequestMapping("/compensation")
+@RequiredArgsConstructor
+public class CompensationController {
+
+    private final CompensationEngine compensationEngine;
+
+    /**
+     * 待重试 / 死亡条目数
+     * GET /compensation/metrics
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseUtil.success(compensationEngine.getMetrics());
+    }
+
+    /**
+     * 查询条目
+     * GET /compensation/entries?keyPrefix=post:&status=DEAD&limit=100
+     */
+    @GetMapping("/entries")
+    public ResponseEntity<Map<String, Object>> list(@RequestParam(required = false) String keyPrefix,
+            @RequestParam(required = false) String reason,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseUtil.success(compensationEngine.list(keyPrefix, reason, status, Math.max(1, limit)));
+    }
+
+    /**
+     * 按条件重放（如数据库恢复后批量重放死亡条目），条目立即到期并重置重试次数
+     * POST /compensation/replay?status=DEAD
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> replay(@RequestParam(required = false) String keyPrefix,
+            @RequestParam(required = false) String reason,
+            @RequestParam(required = false) String status) {
+        log.info("Replaying compensation entries, prefix: {}, reason: {}, status: {}", keyPrefix, reason, status);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("replayed", compensationEngine.replay(keyPrefix, reason, status));
+        return ResponseUtil.success("compensation replay scheduled", data);
+    }
+
+    /**
+     * 按条件清除条目（放弃补偿）
+     * DELETE /compensation/entries?keyPrefix=post:&status=DEAD
+     */
+    @DeleteMapping("/entries")
+    public ResponseEntity<Map<String, Object>> purge(@RequestParam(required = false) String keyPrefix,
+            @RequestParam(required = false) String reason,
+            @RequestParam(required = false) String status) {
+        log.warn("Purging compensation entries, prefix: {}, reason: {}, status: {}", keyPrefix, reason, status);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("purged", compensationEngine.purge(keyPrefix, reason, status));
+        return ResponseUtil.success("compensation entries purged", data);
+    }
+}
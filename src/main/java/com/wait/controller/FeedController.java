@@ -0,0 +1,52 @@
+package com.wait.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wait.entity.CursorPage;
+import com.wait.entity.domain.Post;
+import com.wait.service.impl.FeedServiceImpl;
+import com.wait.util.ResponseUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 首页动态：关注的人发布的帖子按时间倒序混合（推拉结合）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/feed")
+@RequiredArgsConstructor
+public class FeedController {
+
+    private final FeedServiceImpl feedService;
+
+    /**
+     * 分页获取首页动态
+     * GET /feed/{userId}?cursor=0&size=20
+     * 返回 nextCursor 作为下一页的 cursor 参数，finished 为 true 表示没有更多动态
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<Map<String, Object>> getFeed(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = CursorPage.START) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPage<Post> page = feedService.getFeed(userId, cursor, size);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("posts", page.getItems());
+        data.put("nextCursor", page.getNextCursor());
+        data.put("finished", page.isFinished());
+
+        return ResponseUtil.success(data);
+    }
+}
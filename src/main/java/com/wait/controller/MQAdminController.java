@@ -0,0 +1,81 @@
+package com.wait.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wait.service.impl.MemoryMQServiceImpl;
+import com.wait.util.ResponseUtil;
+import com.wait.util.message.BatchingMQProducer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 内存MQ管理控制器 - 查看 topic 分区积压、消费线程伸缩和持久化日志状态，暂停/恢复 topic 消费
+ */
+@Slf4j
+@RestController
+@RequestMapping("/mq")
+@RequiredArgsConstructor
+public class MQAdminController {
+
+    private final MemoryMQServiceImpl memoryMQService;
+
+    @Qualifier("writeBehindProducer")
+    private final BatchingMQProducer writeBehindProducer;
+
+    /**
+     * 各 topic 的分区积压、消费进度、最早消息等待时间，消费线程数和准入拒绝数
+     * GET /mq/topics
+     */
+    @GetMapping("/topics")
+    public ResponseEntity<Map<String, Object>> topics() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("queueSize", memoryMQService.getQueueSize());
+        data.put("healthy", memoryMQService.isHealthy());
+        data.put("coalescedTotal", memoryMQService.getCoalescedTotal());
+        data.put("consumers", memoryMQService.getConsumerMetrics());
+        data.put("topics", memoryMQService.getTopicMetrics());
+        data.put("persistence", memoryMQService.getPersistenceMetrics());
+        return ResponseUtil.success(data);
+    }
+
+    /**
+     * 写回策略批量生产者的发送量、平均批大小、积压和拒绝数
+     * GET /mq/producer
+     */
+    @GetMapping("/producer")
+    public ResponseEntity<Map<String, Object>> producer() {
+        return ResponseUtil.success(writeBehindProducer.getMetrics());
+    }
+
+    /**
+     * 暂停 topic 消费（如下游数据库维护），消息继续在分区中积压；topic 不存在时返回 404
+     * POST /mq/topics/{topic}/pause
+     */
+    @PostMapping("/topics/{topic}/pause")
+    public ResponseEntity<Map<String, Object>> pause(@PathVariable String topic) {
+        log.info("Pausing MQ topic: {}", topic);
+        memoryMQService.pause(topic);
+        return ResponseUtil.success("topic paused", topic);
+    }
+
+    /**
+     * 恢复 topic 消费，topic 不存在时返回 404
+     * POST /mq/topics/{topic}/resume
+     */
+    @PostMapping("/topics/{topic}/resume")
+    public ResponseEntity<Map<String, Object>> resume(@PathVariable String topic) {
+        log.info("Resuming MQ topic: {}", topic);
+        memoryMQService.resume(topic);
+        return ResponseUtil.success("topic resumed", topic);
+    }
+}
@@ -0,0 +1,112 @@
+package com.wait.controller;
+
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wait.service.impl.RelationBitmapMigrator;
+import com.wait.service.impl.RelationReconciler;
+import com.wait.service.impl.RelationWarmLoader;
+import com.wait.service.impl.ShardedRelationSets;
+import com.wait.util.ResponseUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 关系存储管理控制器 - Set 布局迁移到压缩位图布局，Redis 与数据库关系数据对账，大集合分片，从数据库预热关系缓存
+ */
+@Slf4j
+@RestController
+@RequestMapping("/relation/admin")
+@RequiredArgsConstructor
+public class RelationAdminController {
+
+    private final RelationBitmapMigrator bitmapMigrator;
+    private final RelationReconciler relationReconciler;
+    private final ShardedRelationSets shardedSets;
+    private final RelationWarmLoader warmLoader;
+
+    /**
+     * 把所有关系 Set 迁移到压缩位图布局，可重复执行
+     * POST /relation/admin/bitmap/migrate?deleteSource=false
+     */
+    @PostMapping("/bitmap/migrate")
+    public ResponseEntity<Map<String, Object>> migrateToBitmap(
+            @RequestParam(defaultValue = "false") boolean deleteSource) {
+        log.info("Migrating relation sets to bitmap layout, deleteSource: {}", deleteSource);
+        Map<String, Object> report = bitmapMigrator.migrateAll(deleteSource);
+        return ResponseUtil.success("迁移完成", report);
+    }
+
+    /**
+     * 以 Redis 为准对账数据库中的关注/点赞/收藏记录，type 为 all、follow、like、favorite
+     * POST /relation/admin/reconcile?type=all&deleteStale=true&trustEmptyRedis=false&concurrency=4
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcile(
+            @RequestParam(defaultValue = "all") String type,
+            @RequestParam(defaultValue = "true") boolean deleteStale,
+            @RequestParam(defaultValue = "false") boolean trustEmptyRedis,
+            @RequestParam(defaultValue = "0") int concurrency) {
+        log.info("Reconciling relations, type: {}, deleteStale: {}, trustEmptyRedis: {}, concurrency: {}",
+                type, deleteStale, trustEmptyRedis, concurrency);
+        RelationReconciler.Options options = RelationReconciler.Options.builder()
+                .deleteStale(deleteStale)
+                .trustEmptyRedis(trustEmptyRedis)
+                .concurrency(concurrency)
+                .build();
+        Object report = "all".equalsIgnoreCase(type)
+                ? relationReconciler.reconcileAll(options)
+                : relationReconciler.reconcile(RelationReconciler.RelationType.of(type), options);
+        return ResponseUtil.success("对账完成", report);
+    }
+
+    /**
+     * 手动拆分关系集合（未达到阈值的集合也可以拆分），key 为完整的 Set key，可重复执行
+     * POST /relation/admin/shard/split?key=user:follower:1
+     */
+    @PostMapping("/shard/split")
+    public ResponseEntity<Map<String, Object>> splitSet(@RequestParam String key) {
+        log.info("Splitting relation set {}", key);
+        long moved = shardedSets.split(ShardedRelationSets.baseKeyOf(key));
+        return ResponseUtil.success("拆分完成", moved);
+    }
+
+    /**
+     * 后台从数据库重建关系 Set，type 为 all、follow、like、favorite；中断后再次调用从检查点继续
+     * POST /relation/admin/warm?type=all&workers=4&pageSize=2000&maxRowsPerSecond=0&restart=false
+     */
+    @PostMapping("/warm")
+    public ResponseEntity<Map<String, Object>> warm(
+            @RequestParam(defaultValue = "all") String type,
+            @RequestParam(defaultValue = "0") int workers,
+            @RequestParam(defaultValue = "0") int pageSize,
+            @RequestParam(defaultValue = "0") long maxRowsPerSecond,
+            @RequestParam(defaultValue = "false") boolean restart) {
+        log.info("Starting relation warm load, type: {}, workers: {}, pageSize: {}, maxRowsPerSecond: {}, restart: {}",
+                type, workers, pageSize, maxRowsPerSecond, restart);
+        RelationWarmLoader.Options options = RelationWarmLoader.Options.builder()
+                .workers(workers)
+                .pageSize(pageSize)
+                .maxRowsPerSecond(maxRowsPerSecond)
+                .restart(restart)
+                .build();
+        Map<String, Object> status = warmLoader.start(RelationWarmLoader.typesOf(type), options);
+        return ResponseUtil.success("预热已启动", status);
+    }
+
+    /**
+     * 预热进度
+     * GET /relation/admin/warm/status
+     */
+    @GetMapping("/warm/status")
+    public ResponseEntity<Map<String, Object>> warmStatus() {
+        return ResponseUtil.success(warmLoader.status());
+    }
+}
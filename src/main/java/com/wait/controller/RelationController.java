@@ -15,12 +15,16 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.wait.entity.CursorPage;
+import com.wait.entity.PostCounts;
 import com.wait.entity.param.BatchCheckRequest;
 import com.wait.entity.param.BlockRequest;
 import com.wait.entity.param.FavoriteRequest;
 import com.wait.entity.param.FilterRequest;
 import com.wait.entity.param.FollowRequest;
 import com.wait.entity.param.LikeRequest;
+import com.wait.entity.param.RelationBatchRequest;
+import com.wait.entity.param.UserBatchCheckRequest;
 import com.wait.service.RelationService;
 import com.wait.util.ResponseUtil;
 
@@ -95,6 +99,23 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 批量检查关注状态
+     * POST /relation/follow/batch-check
+     */
+    @PostMapping("/follow/batch-check")
+    public ResponseEntity<Map<String, Object>> batchCheckFollowing(@RequestBody UserBatchCheckRequest request) {
+        log.info("批量检查用户{}对{}个用户的关注状态", request.getUserId(), request.getTargetUserIds().size());
+        Map<Long, Boolean> result = relationService.batchCheckFollowing(request.getUserId(),
+                request.getTargetUserIds());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", request.getUserId());
+        data.put("followingStatus", result);
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取关注列表
      * GET /relation/follow/{userId}/following
@@ -112,6 +133,27 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 分页获取关注列表
+     * GET /relation/follow/{userId}/following/page?cursor=0&count=100
+     * 返回 nextCursor 作为下一页的 cursor 参数，finished 为 true 表示已遍历结束；不同页之间可能有重复，由调用方去重
+     */
+    @GetMapping("/follow/{userId}/following/page")
+    public ResponseEntity<Map<String, Object>> getFollowingPage(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = CursorPage.START) String cursor,
+            @RequestParam(defaultValue = "100") int count) {
+        CursorPage<Long> page = relationService.getFollowingPage(userId, cursor, count);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("following", page.getItems());
+        data.put("nextCursor", page.getNextCursor());
+        data.put("finished", page.isFinished());
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取粉丝列表
      * GET /relation/follow/{userId}/followers
@@ -129,6 +171,26 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 分页获取粉丝列表
+     * GET /relation/follow/{userId}/followers/page?cursor=0&count=100
+     */
+    @GetMapping("/follow/{userId}/followers/page")
+    public ResponseEntity<Map<String, Object>> getFollowersPage(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = CursorPage.START) String cursor,
+            @RequestParam(defaultValue = "100") int count) {
+        CursorPage<Long> page = relationService.getFollowersPage(userId, cursor, count);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("followers", page.getItems());
+        data.put("nextCursor", page.getNextCursor());
+        data.put("finished", page.isFinished());
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取关注数和粉丝数
      * GET /relation/follow/{userId}/count
@@ -282,6 +344,26 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 分页获取点赞用户列表
+     * GET /relation/like/{postId}/likers/page?cursor=0&count=100
+     */
+    @GetMapping("/like/{postId}/likers/page")
+    public ResponseEntity<Map<String, Object>> getLikersPage(
+            @PathVariable Long postId,
+            @RequestParam(defaultValue = CursorPage.START) String cursor,
+            @RequestParam(defaultValue = "100") int count) {
+        CursorPage<Long> page = relationService.getLikersPage(postId, cursor, count);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("postId", postId);
+        data.put("likers", page.getItems());
+        data.put("nextCursor", page.getNextCursor());
+        data.put("finished", page.isFinished());
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取点赞数
      * GET /relation/like/{postId}/count
@@ -374,6 +456,22 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 批量检查收藏状态
+     * POST /relation/favorite/batch-check
+     */
+    @PostMapping("/favorite/batch-check")
+    public ResponseEntity<Map<String, Object>> batchCheckFavorited(@RequestBody BatchCheckRequest request) {
+        log.info("批量检查用户{}对{}个帖子的收藏状态", request.getUserId(), request.getPostIds().size());
+        Map<Long, Boolean> result = relationService.batchCheckFavorited(request.getUserId(), request.getPostIds());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", request.getUserId());
+        data.put("favoritedStatus", result);
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取用户收藏列表
      * GET /relation/favorite/user/{userId}
@@ -406,6 +504,20 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 批量获取帖子点赞数、收藏数
+     * GET /relation/post/counts?postIds=1,2,3
+     */
+    @GetMapping("/post/counts")
+    public ResponseEntity<Map<String, Object>> getPostCounts(@RequestParam List<Long> postIds) {
+        Map<Long, PostCounts> counts = relationService.getPostCounts(postIds);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("counts", counts);
+
+        return ResponseUtil.success(data);
+    }
+
     // ==================== 黑名单相关 ====================
 
     /**
@@ -462,6 +574,23 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 批量检查拉黑状态
+     * POST /relation/block/batch-check
+     */
+    @PostMapping("/block/batch-check")
+    public ResponseEntity<Map<String, Object>> batchCheckBlocked(@RequestBody UserBatchCheckRequest request) {
+        log.info("批量检查用户{}对{}个用户的拉黑状态", request.getUserId(), request.getTargetUserIds().size());
+        Map<Long, Boolean> result = relationService.batchCheckBlocked(request.getUserId(),
+                request.getTargetUserIds());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", request.getUserId());
+        data.put("blockedStatus", result);
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 获取黑名单列表
      * GET /relation/block/user/{userId}
@@ -479,6 +608,26 @@ public class RelationController {
         return ResponseUtil.success(data);
     }
 
+    /**
+     * 分页获取黑名单列表
+     * GET /relation/block/user/{userId}/page?cursor=0&count=100
+     */
+    @GetMapping("/block/user/{userId}/page")
+    public ResponseEntity<Map<String, Object>> getBlacklistPage(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = CursorPage.START) String cursor,
+            @RequestParam(defaultValue = "100") int count) {
+        CursorPage<Long> page = relationService.getBlacklistPage(userId, cursor, count);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("blacklist", page.getItems());
+        data.put("nextCursor", page.getNextCursor());
+        data.put("finished", page.isFinished());
+
+        return ResponseUtil.success(data);
+    }
+
     /**
      * 过滤黑名单用户
      * POST /relation/block/filter
@@ -496,4 +645,26 @@ public class RelationController {
 
         return ResponseUtil.success(data);
     }
+
+    // ==================== 批量操作 ====================
+
+    /**
+     * 批量执行同一类关系操作（如批量关注、批量点赞），一次 Redis 调用原子完成
+     * POST /relation/batch
+     * 请求体：{"action": "FOLLOW", "pairs": [{"actorId": 1, "targetId": 2}, ...]}
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batch(@RequestBody RelationBatchRequest request) {
+        int size = request.getPairs() == null ? 0 : request.getPairs().size();
+        log.info("批量执行关系操作{}，数量：{}", request.getAction(), size);
+        List<Boolean> results = relationService.batchApply(request.getAction(), request.getPairs());
+
+        long changed = results.stream().filter(Boolean::booleanValue).count();
+        Map<String, Object> data = new HashMap<>();
+        data.put("action", request.getAction());
+        data.put("results", results);
+        data.put("changedCount", changed);
+
+        return ResponseUtil.success(data);
+    }
 }
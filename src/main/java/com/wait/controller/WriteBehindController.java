@@ -0,0 +1,52 @@
+package com.wait.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wait.sync.write.IncrementalWriteStrategy;
+import com.wait.sync.write.SnapshotWriteStrategy;
+import com.wait.util.AsyncSQLWrapper;
+import com.wait.util.ResponseUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 写回缓冲控制器 - 查看写回缓冲的运行指标
+ */
+@Slf4j
+@RestController
+@RequestMapping("/writeBehind")
+@RequiredArgsConstructor
+public class WriteBehindController {
+
+    private final IncrementalWriteStrategy incrementalWriteStrategy;
+    private final SnapshotWriteStrategy snapshotWriteStrategy;
+    private final AsyncSQLWrapper asyncSQLWrapper;
+
+    /**
+     * 缓冲深度、最早条目等待时间、刷库吞吐量、数据库延迟等指标
+     * GET /writeBehind/metrics
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("incremental", incrementalWriteStrategy.getBufferMetrics());
+        data.put("snapshot", snapshotWriteStrategy.getBufferMetrics());
+        return ResponseUtil.success(data);
+    }
+
+    /**
+     * 异步写分通道执行器的积压、合并、拒绝等指标
+     * GET /writeBehind/lanes
+     */
+    @GetMapping("/lanes")
+    public ResponseEntity<Map<String, Object>> lanes() {
+        return ResponseUtil.success(asyncSQLWrapper.getLaneMetrics());
+    }
+}
@@ -0,0 +1,31 @@
+package com.wait.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 批量执行中单个条目的结果
+ *
+ * @param <T> 条目返回值类型
+ */
+@Data
+@AllArgsConstructor
+public class BulkItemResult<T> {
+    /** 条目在输入列表中的下标 */
+    private final int index;
+    private final T value;
+    /** 失败原因，成功时为 null */
+    private final Throwable error;
+
+    public static <T> BulkItemResult<T> success(int index, T value) {
+        return new BulkItemResult<>(index, value, null);
+    }
+
+    public static <T> BulkItemResult<T> failure(int index, Throwable error) {
+        return new BulkItemResult<>(index, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
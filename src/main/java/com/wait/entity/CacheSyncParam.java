@@ -26,6 +26,7 @@ public class CacheSyncParam<T> {
     // 可选字段
     private String messageTopic;
     private Integer refreshInterval; // 刷新间隔（用于定时刷新策略，单位：毫秒）
+    private Boolean coalesceWrites; // 异步写是否允许合并（仅适用于整体覆盖写，按 key 分通道执行时生效）
 
     /** 默认刷新间隔：10秒 */
     private static final int DEFAULT_REFRESH_INTERVAL_MS = 10000;
@@ -39,6 +40,8 @@ public class CacheSyncParam<T> {
                 .cacheNull(cache.isCacheNull())
                 .cacheType(cache.cacheType())
                 .clazz((Class<Object>) cache.returnType())
+                .isExecuteASync(cache.async())
+                .coalesceWrites(cache.coalesceWrites())
                 // 使用常量而非硬编码，便于后续扩展（如从注解中读取）
                 .refreshInterval(DEFAULT_REFRESH_INTERVAL_MS)
                 .build();
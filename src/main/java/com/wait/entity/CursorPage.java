@@ -0,0 +1,26 @@
+package com.wait.entity;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 游标分页结果
+ *
+ * @param <T> 条目类型
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    /** 第一页的游标 */
+    public static final String START = "0";
+
+    private final List<T> items;
+    /** 下一页的游标，等于 START 表示已遍历结束 */
+    private final String nextCursor;
+
+    public boolean isFinished() {
+        return START.equals(nextCursor);
+    }
+}
@@ -0,0 +1,16 @@
+package com.wait.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 帖子的点赞、收藏计数，Redis 中还没有计数时对应字段为 null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostCounts {
+    private Long likeCount;
+    private Long favoriteCount;
+}
@@ -0,0 +1,16 @@
+package com.wait.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一条关系：actor 对 target 的关注、点赞、收藏或拉黑
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelationPair {
+    private Long actorId;
+    private Long targetId;
+}
@@ -0,0 +1,17 @@
+package com.wait.entity.param;
+
+import java.util.List;
+
+import com.wait.entity.RelationPair;
+import com.wait.entity.type.RelationAction;
+
+import lombok.Data;
+
+/**
+ * 批量关系操作请求：同一种操作作用于多条 (actor, target) 关系
+ */
+@Data
+public class RelationBatchRequest {
+    private RelationAction action;
+    private List<RelationPair> pairs;
+}
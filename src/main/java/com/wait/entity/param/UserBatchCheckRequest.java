@@ -0,0 +1,14 @@
+package com.wait.entity.param;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量检查用户关系请求（关注、拉黑）
+ */
+@Data
+public class UserBatchCheckRequest {
+    private Long userId;
+    private List<Long> targetUserIds;
+}
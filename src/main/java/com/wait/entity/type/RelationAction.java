@@ -0,0 +1,27 @@
+package com.wait.entity.type;
+
+/**
+ * 关系操作类型（批量关系操作使用）
+ * actor / target 含义：关注、拉黑为 用户 -> 用户，点赞、收藏为 用户 -> 帖子
+ */
+public enum RelationAction {
+    FOLLOW(true),
+    UNFOLLOW(false),
+    LIKE(true),
+    UNLIKE(false),
+    FAVORITE(true),
+    UNFAVORITE(false),
+    BLOCK(true),
+    UNBLOCK(false);
+
+    /** 建立关系为 true，解除关系为 false */
+    private final boolean add;
+
+    RelationAction(boolean add) {
+        this.add = add;
+    }
+
+    public boolean isAdd() {
+        return add;
+    }
+}
@@ -0,0 +1,13 @@
+package com.wait.exception;
+
+/**
+ * 背压异常
+ * 下游处理能力不足（队列已满、积压超过阈值）时明确拒绝提交，由调用方决定降级方式，
+ * 而不是静默地让调用线程执行或丢弃任务
+ */
+public class BackpressureException extends RuntimeException {
+
+    public BackpressureException(String message) {
+        super(message);
+    }
+}
@@ -48,6 +48,26 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
     }
 
+    /**
+     * 处理资源不存在异常
+     */
+    @ExceptionHandler(ResourceNotFoundException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleResourceNotFoundException(ResourceNotFoundException e) {
+        log.warn("Resource not found: {}", e.getMessage());
+        return buildErrorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+
+    /**
+     * 处理背压异常：下游积压，提示客户端稍后重试
+     */
+    @ExceptionHandler(BackpressureException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleBackpressureException(BackpressureException e) {
+        log.warn("Backpressure: {}", e.getMessage());
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
     /**
      * 处理运行时异常
      */
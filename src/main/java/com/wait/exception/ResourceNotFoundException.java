@@ -0,0 +1,12 @@
+package com.wait.exception;
+
+/**
+ * 资源不存在异常
+ * 管理接口按名称操作的对象（如 MQ topic）不存在时抛出，不隐式创建
+ */
+public class ResourceNotFoundException extends RuntimeException {
+
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
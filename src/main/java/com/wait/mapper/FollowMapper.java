@@ -20,4 +20,37 @@ public interface FollowMapper {
     int countFollowers(Long followedId);
 
     int countFollowing(Long followerId);
+
+    /**
+     * 键集分页：followerId 大于 afterId 的关注者，升序、去重
+     */
+    List<Long> selectFollowerIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 键集分页：某用户关注的、id 大于 afterId 的用户，升序
+     */
+    List<Long> selectFollowedIdsAfter(@Param("followerId") Long followerId, @Param("afterId") Long afterId,
+            @Param("limit") int limit);
+
+    /**
+     * 最大的关注者 id，没有记录时返回 null
+     */
+    Long selectMaxFollowerId();
+
+    /**
+     * 键集分页：按 (followerId, followedId) 升序读取 (afterFollowerId, afterFollowedId) 之后、followerId 小于 endFollowerId 的关注记录
+     */
+    List<UserFollow> selectFollowsAfter(@Param("afterFollowerId") Long afterFollowerId,
+            @Param("afterFollowedId") Long afterFollowedId, @Param("endFollowerId") Long endFollowerId,
+            @Param("limit") int limit);
+
+    /**
+     * 批量插入，忽略已存在的关注关系
+     */
+    int batchInsertIgnoreDuplicates(@Param("follows") List<UserFollow> follows);
+
+    /**
+     * 批量删除：一条 DELETE ... WHERE (follower_id, followed_id) IN (...)
+     */
+    int batchDelete(@Param("follows") List<UserFollow> follows);
 }
@@ -43,10 +43,46 @@ public interface PostFavoriteMapper {
      */
     List<Long> selectPostIdsByUserId(Long userId);
 
+    /**
+     * 键集分页：userId 大于 afterId 的、有收藏记录的用户，升序、去重
+     */
+    List<Long> selectUserIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 键集分页：某用户收藏的、id 大于 afterId 的帖子，升序
+     */
+    List<Long> selectPostIdsAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+            @Param("limit") int limit);
+
+    /**
+     * 最大的收藏者 id，没有记录时返回 null
+     */
+    Long selectMaxUserId();
+
+    /**
+     * 键集分页：按 (userId, postId) 升序读取 (afterUserId, afterPostId) 之后、userId 小于 endUserId 的收藏记录
+     */
+    List<PostFavorite> selectFavoritesAfter(@Param("afterUserId") Long afterUserId,
+            @Param("afterPostId") Long afterPostId, @Param("endUserId") Long endUserId, @Param("limit") int limit);
+
     /**
      * 批量插入（用于数据恢复/同步）
      */
     int batchInsert(List<PostFavorite> favorites);
+
+    /**
+     * 批量插入，忽略已存在的 (userId, postId)，不需要事先查询存在性
+     *
+     * @return 影响行数（是否计入重复行取决于驱动的 useAffectedRows 设置，仅用于日志）
+     */
+    int batchInsertIgnoreDuplicates(@Param("favorites") List<PostFavorite> favorites);
+
+    /**
+     * 批量删除：一条 DELETE ... WHERE (user_id, post_id) IN (...)
+     *
+     * @return 删除的行数
+     */
+    int batchDelete(@Param("favorites") List<PostFavorite> favorites);
 }
 
 
@@ -30,5 +30,41 @@ public interface PostLikeMapper {
      */
     List<PostLike> batchExists(@Param("likes") List<PostLike> likes);
 
+    /**
+     * 批量插入，忽略已存在的 (postId, userId)，不需要事先查询存在性
+     *
+     * @return 影响行数（是否计入重复行取决于驱动的 useAffectedRows 设置，仅用于日志）
+     */
+    int batchInsertIgnoreDuplicates(@Param("likes") List<PostLike> likes);
+
+    /**
+     * 批量删除：一条 DELETE ... WHERE (post_id, user_id) IN (...)
+     *
+     * @return 删除的行数
+     */
+    int batchDelete(@Param("likes") List<PostLike> likes);
+
     int countByPostId(Long postId);
+
+    /**
+     * 键集分页：postId 大于 afterId 的、有点赞记录的帖子，升序、去重
+     */
+    List<Long> selectPostIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 键集分页：某帖子的、id 大于 afterId 的点赞用户，升序
+     */
+    List<Long> selectUserIdsAfter(@Param("postId") Long postId, @Param("afterId") Long afterId,
+            @Param("limit") int limit);
+
+    /**
+     * 最大的帖子 id，没有记录时返回 null
+     */
+    Long selectMaxPostId();
+
+    /**
+     * 键集分页：按 (postId, userId) 升序读取 (afterPostId, afterUserId) 之后、postId 小于 endPostId 的点赞记录
+     */
+    List<PostLike> selectLikesAfter(@Param("afterPostId") Long afterPostId, @Param("afterUserId") Long afterUserId,
+            @Param("endPostId") Long endPostId, @Param("limit") int limit);
 }
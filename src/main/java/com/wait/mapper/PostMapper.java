@@ -39,4 +39,9 @@ public interface PostMapper {
     int countByUserId(Long userId);
 
     List<Post> selectByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 批量更新点赞数：一条 UPDATE ... SET like_count = CASE id ... END WHERE id IN (...)
+     */
+    int batchUpdateLikeCount(@Param("posts") List<Post> posts);
 }
@@ -60,7 +60,12 @@ public interface UserSessionMapper {
 
     /**
      * 更新当前页面（中频字段）
+     * 整体覆盖写，异步执行；keyed 模式下同一 Session 按提交顺序写库，尚未执行的旧页面被新页面合并掉
      */
+    @RedisCache(prefix = "user:session", key = "#sessionId", expire = 300,
+                cacheType = CacheType.HASH, returnType = UserSession.class,
+                operation = DataOperationType.UPDATE, writeStrategy = WriteStrategyType.CACHE_ASIDE,
+                async = true, coalesceWrites = true)
     int updateCurrentPage(@Param("sessionId") String sessionId, @Param("currentPage") String currentPage);
 
     /**
@@ -0,0 +1,31 @@
+package com.wait.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * Redis 写回缓冲已写库的批次号，与批次的数据库写入在同一事务中登记，租约丢失后重复刷写的批次据此跳过
+ *
+ * <pre>
+ * CREATE TABLE write_behind_applied (
+ *     batch_id   VARCHAR(64) NOT NULL PRIMARY KEY,
+ *     applied_at BIGINT      NOT NULL,
+ *     KEY idx_applied_at (applied_at)
+ * );
+ * </pre>
+ */
+@Mapper
+public interface WriteBehindBatchMapper {
+
+    /**
+     * 登记批次号
+     *
+     * @return 1 表示首次登记，0 表示该批次已经写过库
+     */
+    int insertIgnore(@Param("batchId") String batchId, @Param("appliedAt") long appliedAt);
+
+    /**
+     * 清理早于指定时间登记的批次号
+     */
+    int deleteAppliedBefore(@Param("before") long before);
+}
@@ -1,5 +1,9 @@
 package com.wait.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import com.wait.util.message.AsyncDataMsg;
 import com.wait.util.message.CompensationMsg;
 
@@ -12,6 +16,28 @@ public interface MQService {
 
     void sendMessage(String topic, String key, AsyncDataMsg message);
 
+    /**
+     * 批量发送同一 topic 的消息，key 取自消息本身；默认逐条发送，网络 MQ 实现应覆盖为一次往返
+     * 单条发送失败（背压拒绝、序列化失败等）不影响其余消息，失败的消息在返回值中逐条报告：
+     * 已发送的消息不能再被当作失败，否则调用方补偿时会重复写入
+     *
+     * @return 被拒绝、未发送的消息，全部发送时为空列表
+     */
+    default List<AsyncDataMsg<?>> sendBatch(String topic, List<AsyncDataMsg<?>> messages) {
+        List<AsyncDataMsg<?>> rejected = null;
+        for (AsyncDataMsg<?> message : messages) {
+            try {
+                sendMessage(topic, message.getKey(), message);
+            } catch (RuntimeException e) {
+                if (rejected == null) {
+                    rejected = new ArrayList<>();
+                }
+                rejected.add(message);
+            }
+        }
+        return rejected == null ? Collections.emptyList() : rejected;
+    }
+
     void sendDLMessage(String key, CompensationMsg message);
 
     void start();
@@ -1,7 +1,10 @@
 package com.wait.service;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import com.wait.entity.RelationPair;
+
 /**
  * 关系数据持久化服务接口
  * 提供将 Redis Set 中的数据持久化到数据库的能力
@@ -13,6 +16,13 @@ public interface RelationPersistenceService {
      */
     void persistFollow(Long followerId, Long followedId, boolean isFollow);
 
+    /**
+     * 批量持久化关注关系（Write-Through：多行语句立即写入数据库）
+     *
+     * @param follows actor 为关注者、target 为被关注者
+     */
+    void persistFollows(List<RelationPair> follows, boolean isFollow);
+
     /**
      * 持久化点赞关系（Write-Behind：异步批量写入数据库）
      * 
@@ -34,7 +44,7 @@ public interface RelationPersistenceService {
 
     /**
      * 批量同步关注关系到数据库（用于数据恢复/迁移）
-     * 从 Redis Set 读取所有关注关系，批量写入数据库
+     * 分页读取 Redis 集合与数据库归并比较，只补齐数据库缺失的记录（RelationReconciler）
      */
     void batchSyncFollows(Long userId);
 
@@ -4,6 +4,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.wait.entity.CursorPage;
+import com.wait.entity.PostCounts;
+import com.wait.entity.RelationPair;
+import com.wait.entity.type.RelationAction;
+
 /**
  * 关系服务接口 - 用于处理关注、点赞、收藏等社交媒体关系
  */
@@ -27,15 +32,33 @@ public interface RelationService {
     boolean isFollowing(Long followerId, Long followedId);
 
     /**
-     * 获取关注列表
+     * 批量检查关注状态（一次 Redis 往返）
+     */
+    Map<Long, Boolean> batchCheckFollowing(Long followerId, List<Long> followedIds);
+
+    /**
+     * 获取关注列表（一次返回全部成员，大集合请使用分页）
      */
     Set<Long> getFollowing(Long userId);
 
     /**
-     * 获取粉丝列表
+     * 游标分页获取关注列表
+     *
+     * @param cursor 上一页返回的游标，第一页传 {@link CursorPage#START}
+     * @param count  每页期望数量，实际数量可能略有出入，不同页之间可能有重复
+     */
+    CursorPage<Long> getFollowingPage(Long userId, String cursor, int count);
+
+    /**
+     * 获取粉丝列表（一次返回全部成员，大集合请使用分页）
      */
     Set<Long> getFollowers(Long userId);
 
+    /**
+     * 游标分页获取粉丝列表
+     */
+    CursorPage<Long> getFollowersPage(Long userId, String cursor, int count);
+
     /**
      * 获取关注数
      */
@@ -78,13 +101,18 @@ public interface RelationService {
      */
     Set<Long> getLikers(Long postId);
 
+    /**
+     * 游标分页获取点赞用户列表
+     */
+    CursorPage<Long> getLikersPage(Long postId, String cursor, int count);
+
     /**
      * 获取点赞数
      */
     Long getLikeCount(Long postId);
 
     /**
-     * 批量检查点赞状态
+     * 批量检查点赞状态（一次 Redis 往返）
      */
     Map<Long, Boolean> batchCheckLiked(Long userId, List<Long> postIds);
 
@@ -110,6 +138,11 @@ public interface RelationService {
      */
     boolean isFavorited(Long userId, Long postId);
 
+    /**
+     * 批量检查收藏状态（一次 Redis 往返）
+     */
+    Map<Long, Boolean> batchCheckFavorited(Long userId, List<Long> postIds);
+
     /**
      * 获取用户收藏列表
      */
@@ -120,6 +153,11 @@ public interface RelationService {
      */
     Long getFavoriteCount(Long postId);
 
+    /**
+     * 批量获取帖子的点赞数、收藏数，一次往返；结果按请求顺序，去掉空值和重复 id
+     */
+    Map<Long, PostCounts> getPostCounts(List<Long> postIds);
+
     // ==================== 黑名单相关 ====================
 
     /**
@@ -137,13 +175,37 @@ public interface RelationService {
      */
     boolean isBlocked(Long userId, Long blockedUserId);
 
+    /**
+     * 批量检查拉黑状态（一次 Redis 往返）
+     */
+    Map<Long, Boolean> batchCheckBlocked(Long userId, List<Long> blockedUserIds);
+
     /**
      * 获取黑名单列表
      */
     Set<Long> getBlacklist(Long userId);
 
+    /**
+     * 游标分页获取黑名单列表
+     */
+    CursorPage<Long> getBlacklistPage(Long userId, String cursor, int count);
+
     /**
      * 过滤黑名单用户
      */
     List<Long> filterBlacklisted(Long userId, List<Long> userIds);
+
+    // ==================== 批量操作 ====================
+
+    /** 单次批量操作的最大关系数，限制单个脚本占用 Redis 的时间 */
+    int MAX_BATCH_PAIRS = 1000;
+
+    /**
+     * 批量执行同一种关系操作（导入、一键关注推荐用户等），一次 Redis 往返原子地处理全部关系
+     *
+     * @param action 关系操作
+     * @param pairs  (actor, target) 列表，最多 {@link #MAX_BATCH_PAIRS} 条
+     * @return 与 pairs 顺序一致的结果，true 表示关系状态发生变化（与单条操作的返回值含义相同）
+     */
+    List<Boolean> batchApply(RelationAction action, List<RelationPair> pairs);
 }
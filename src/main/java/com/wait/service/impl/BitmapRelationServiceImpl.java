@@ -0,0 +1,614 @@
+package com.wait.service.impl;
+
+import static com.wait.service.impl.RelationServiceImpl.POST_FAVORITED_BY_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.POST_LIKE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_BLACKLIST_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_BLOCKED_BY_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FAVORITE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FOLLOWER_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FOLLOW_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_LIKE_PREFIX;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.config.script.RelationBitmapScripts;
+import com.wait.entity.CursorPage;
+import com.wait.entity.PostCounts;
+import com.wait.entity.RelationPair;
+import com.wait.entity.type.RelationAction;
+import com.wait.service.RelationPersistenceService;
+import com.wait.service.RelationService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 关系服务实现 - 分块压缩位图存储，适用于连续分配的数字 id（数据库自增 id）
+ * 每个关系集合按 id 高位分成覆盖 65536 个 id 的 chunk：成员少的 chunk 用 intset 存储（每个成员 2 字节），
+ * 成员多的 chunk 转换为位图（固定 8KB，每个成员 1 bit），代替 Set 布局每个成员 50 字节以上的开销；
+ * 基数单独计数，计数为 O(1)，求交集只访问两边都非空的 chunk
+ * 通过 relation.storage=bitmap 启用，启用前用 {@link RelationBitmapMigrator} 从 Set 布局迁移
+ * 分页游标为下一页的起始 id，成员按 id 升序返回且不会重复
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "relation.storage", havingValue = "bitmap")
+@RequiredArgsConstructor
+public class BitmapRelationServiceImpl implements RelationService {
+
+    /** 压缩位图集合的 key 前缀，后接 Set 布局的 key */
+    public static final String KEY_PREFIX = "rbm:";
+
+    /** Lua 数字为双精度浮点，id 必须小于 2^53 */
+    public static final long MAX_ID = (1L << 53) - 1;
+
+    private static final String OP_ADD = "add";
+    private static final String OP_REMOVE = "rem";
+    /** 每个关系更新两侧两个集合 */
+    private static final int KEYS_PER_RELATION = 2;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationBitmapScripts bitmapScripts;
+    private final RelationPersistenceService persistenceService;
+    private final RedisKeyLayout keyLayout;
+
+    // 单个 chunk 的数组容器最多成员数，超过后转换为位图容器
+    @Value("${relation.bitmap.array-max:512}")
+    private final int arrayMax;
+
+    public static String bitmapKey(String setKey) {
+        return KEY_PREFIX + setKey;
+    }
+
+    /**
+     * 位图脚本同时修改关系两侧的集合、求交集时访问两个用户的集合，这些 key 不在同一 slot，不支持 Redis Cluster
+     */
+    @PostConstruct
+    public void checkLayout() {
+        if (keyLayout.isCluster()) {
+            throw new IllegalStateException("relation.storage=bitmap does not support Redis Cluster, use relation.storage=set");
+        }
+    }
+
+    // ==================== 关注相关 ====================
+
+    @Override
+    public boolean follow(Long followerId, Long followedId) {
+        if (followerId == null || followedId == null) {
+            throw new IllegalArgumentException("user id is null");
+        }
+        if (followerId.equals(followedId)) {
+            log.warn("user {} cannot follow itself", followerId);
+            return false;
+        }
+        boolean added = update(OP_ADD,
+                USER_FOLLOW_PREFIX + followerId, followedId,
+                USER_FOLLOWER_PREFIX + followedId, followerId);
+        if (added) {
+            log.info("user {} follows user {}", followerId, followedId);
+            // Write-Through: 立即持久化到数据库
+            try {
+                persistenceService.persistFollow(followerId, followedId, true);
+            } catch (Exception e) {
+                log.error("Failed to persist follow to DB, but Redis operation succeeded", e);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean unfollow(Long followerId, Long followedId) {
+        if (followerId == null || followedId == null) {
+            throw new IllegalArgumentException("user id is null");
+        }
+        boolean removed = update(OP_REMOVE,
+                USER_FOLLOW_PREFIX + followerId, followedId,
+                USER_FOLLOWER_PREFIX + followedId, followerId);
+        if (removed) {
+            log.info("user {} unfollows user {}", followerId, followedId);
+            try {
+                persistenceService.persistFollow(followerId, followedId, false);
+            } catch (Exception e) {
+                log.error("Failed to persist unfollow to DB, but Redis operation succeeded", e);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isFollowing(Long followerId, Long followedId) {
+        return followerId != null && isMember(USER_FOLLOW_PREFIX + followerId, followedId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckFollowing(Long followerId, List<Long> followedIds) {
+        if (followerId == null || followedIds == null || followedIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(USER_FOLLOW_PREFIX + followerId, followedIds);
+    }
+
+    @Override
+    public Set<Long> getFollowing(Long userId) {
+        return userId == null ? Collections.emptySet() : members(USER_FOLLOW_PREFIX + userId);
+    }
+
+    @Override
+    public CursorPage<Long> getFollowingPage(Long userId, String cursor, int count) {
+        return userId == null ? emptyPage() : range(USER_FOLLOW_PREFIX + userId, cursor, count);
+    }
+
+    @Override
+    public Set<Long> getFollowers(Long userId) {
+        return userId == null ? Collections.emptySet() : members(USER_FOLLOWER_PREFIX + userId);
+    }
+
+    @Override
+    public CursorPage<Long> getFollowersPage(Long userId, String cursor, int count) {
+        return userId == null ? emptyPage() : range(USER_FOLLOWER_PREFIX + userId, cursor, count);
+    }
+
+    @Override
+    public Long getFollowingCount(Long userId) {
+        return userId == null ? 0L : cardinality(USER_FOLLOW_PREFIX + userId);
+    }
+
+    @Override
+    public Long getFollowerCount(Long userId) {
+        return userId == null ? 0L : cardinality(USER_FOLLOWER_PREFIX + userId);
+    }
+
+    @Override
+    public Set<Long> getMutualFollowing(Long userId1, Long userId2) {
+        if (userId1 == null || userId2 == null) {
+            return Collections.emptySet();
+        }
+        List<Object> common = bitmapScripts.executeScript(RelationBitmapScripts.RBM_INTERSECT,
+                Arrays.asList(bitmapKey(USER_FOLLOW_PREFIX + userId1), bitmapKey(USER_FOLLOW_PREFIX + userId2)));
+        Set<Long> result = new HashSet<>();
+        if (common != null) {
+            for (Object id : common) {
+                result.add(toLong(id));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isMutualFollowing(Long userId1, Long userId2) {
+        return isFollowing(userId1, userId2) && isFollowing(userId2, userId1);
+    }
+
+    // ==================== 点赞相关 ====================
+
+    @Override
+    public boolean likePost(Long userId, Long postId) {
+        if (userId == null || postId == null) {
+            throw new IllegalArgumentException("user id or post id is null");
+        }
+        boolean added = update(OP_ADD,
+                POST_LIKE_PREFIX + postId, userId,
+                USER_LIKE_PREFIX + userId, postId);
+        if (added) {
+            log.info("user {} likes post {}", userId, postId);
+            // Write-Behind: 异步持久化到数据库（不阻塞主流程）
+            persistenceService.persistLike(userId, postId, true)
+                    .exceptionally(ex -> {
+                        log.error("Failed to persist like to DB (async), user {} likes post {}", userId, postId, ex);
+                        return null;
+                    });
+        }
+        return added;
+    }
+
+    @Override
+    public boolean unlikePost(Long userId, Long postId) {
+        if (userId == null || postId == null) {
+            throw new IllegalArgumentException("user id or post id is null");
+        }
+        boolean removed = update(OP_REMOVE,
+                POST_LIKE_PREFIX + postId, userId,
+                USER_LIKE_PREFIX + userId, postId);
+        if (removed) {
+            log.info("user {} unlikes post {}", userId, postId);
+            persistenceService.persistLike(userId, postId, false)
+                    .exceptionally(ex -> {
+                        log.error("Failed to persist unlike to DB (async), user {} unlikes post {}", userId, postId,
+                                ex);
+                        return null;
+                    });
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isLiked(Long userId, Long postId) {
+        return postId != null && isMember(POST_LIKE_PREFIX + postId, userId);
+    }
+
+    @Override
+    public Set<Long> getLikers(Long postId) {
+        return postId == null ? Collections.emptySet() : members(POST_LIKE_PREFIX + postId);
+    }
+
+    @Override
+    public CursorPage<Long> getLikersPage(Long postId, String cursor, int count) {
+        return postId == null ? emptyPage() : range(POST_LIKE_PREFIX + postId, cursor, count);
+    }
+
+    @Override
+    public Long getLikeCount(Long postId) {
+        return postId == null ? 0L : cardinality(POST_LIKE_PREFIX + postId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckLiked(Long userId, List<Long> postIds) {
+        if (userId == null || postIds == null || postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(USER_LIKE_PREFIX + userId, postIds);
+    }
+
+    @Override
+    public Set<Long> getUserLikedPosts(Long userId) {
+        return userId == null ? Collections.emptySet() : members(USER_LIKE_PREFIX + userId);
+    }
+
+    // ==================== 收藏相关 ====================
+
+    @Override
+    public boolean favoritePost(Long userId, Long postId) {
+        if (userId == null || postId == null) {
+            throw new IllegalArgumentException("user id or post id is null");
+        }
+        boolean added = update(OP_ADD,
+                USER_FAVORITE_PREFIX + userId, postId,
+                POST_FAVORITED_BY_PREFIX + postId, userId);
+        if (added) {
+            log.info("user {} favorites post {}", userId, postId);
+            persistenceService.persistFavorite(userId, postId, true)
+                    .exceptionally(ex -> {
+                        log.error("Failed to persist favorite to DB (async), user {} favorites post {}", userId, postId,
+                                ex);
+                        return null;
+                    });
+        }
+        return added;
+    }
+
+    @Override
+    public boolean unfavoritePost(Long userId, Long postId) {
+        if (userId == null || postId == null) {
+            throw new IllegalArgumentException("user id or post id is null");
+        }
+        boolean removed = update(OP_REMOVE,
+                USER_FAVORITE_PREFIX + userId, postId,
+                POST_FAVORITED_BY_PREFIX + postId, userId);
+        if (removed) {
+            log.info("user {} unfavorites post {}", userId, postId);
+            persistenceService.persistFavorite(userId, postId, false)
+                    .exceptionally(ex -> {
+                        log.error("Failed to persist unfavorite to DB (async), user {} unfavorites post {}", userId,
+                                postId, ex);
+                        return null;
+                    });
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isFavorited(Long userId, Long postId) {
+        return userId != null && isMember(USER_FAVORITE_PREFIX + userId, postId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckFavorited(Long userId, List<Long> postIds) {
+        if (userId == null || postIds == null || postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(USER_FAVORITE_PREFIX + userId, postIds);
+    }
+
+    @Override
+    public Set<Long> getUserFavorites(Long userId) {
+        return userId == null ? Collections.emptySet() : members(USER_FAVORITE_PREFIX + userId);
+    }
+
+    @Override
+    public Long getFavoriteCount(Long postId) {
+        return postId == null ? 0L : cardinality(POST_FAVORITED_BY_PREFIX + postId);
+    }
+
+    @Override
+    public Map<Long, PostCounts> getPostCounts(List<Long> postIds) {
+        if (postIds == null || postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
+        ids.removeIf(Objects::isNull);
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        // 位图布局只有单机模式，点赞、收藏集合的成员数 key 一次 MGET
+        List<String> keys = new ArrayList<>(ids.size() * 2);
+        for (Long postId : ids) {
+            keys.add(bitmapKey(POST_LIKE_PREFIX + postId) + ":card");
+            keys.add(bitmapKey(POST_FAVORITED_BY_PREFIX + postId) + ":card");
+        }
+        List<String> cards = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<Long, PostCounts> result = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            result.put(ids.get(i), new PostCounts(parseCard(cards, i * 2), parseCard(cards, i * 2 + 1)));
+        }
+        return result;
+    }
+
+    // ==================== 黑名单相关 ====================
+
+    @Override
+    public boolean blockUser(Long userId, Long blockedUserId) {
+        if (userId == null || blockedUserId == null) {
+            throw new IllegalArgumentException("user id or blocked user id is null");
+        }
+        if (userId.equals(blockedUserId)) {
+            log.warn("user {} cannot block itself", userId);
+            return false;
+        }
+        boolean added = update(OP_ADD,
+                USER_BLACKLIST_PREFIX + userId, blockedUserId,
+                USER_BLOCKED_BY_PREFIX + blockedUserId, userId);
+        if (added) {
+            log.info("user {} blocks user {}", userId, blockedUserId);
+            try {
+                persistenceService.persistBlock(userId, blockedUserId, true);
+            } catch (Exception e) {
+                log.error("Failed to persist block to DB, but Redis operation succeeded", e);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean unblockUser(Long userId, Long blockedUserId) {
+        if (userId == null || blockedUserId == null) {
+            throw new IllegalArgumentException("user id or blocked user id is null");
+        }
+        boolean removed = update(OP_REMOVE,
+                USER_BLACKLIST_PREFIX + userId, blockedUserId,
+                USER_BLOCKED_BY_PREFIX + blockedUserId, userId);
+        if (removed) {
+            log.info("user {} unblocks user {}", userId, blockedUserId);
+            try {
+                persistenceService.persistBlock(userId, blockedUserId, false);
+            } catch (Exception e) {
+                log.error("Failed to persist unblock to DB, but Redis operation succeeded", e);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isBlocked(Long userId, Long blockedUserId) {
+        return userId != null && isMember(USER_BLACKLIST_PREFIX + userId, blockedUserId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckBlocked(Long userId, List<Long> blockedUserIds) {
+        if (userId == null || blockedUserIds == null || blockedUserIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(USER_BLACKLIST_PREFIX + userId, blockedUserIds);
+    }
+
+    @Override
+    public Set<Long> getBlacklist(Long userId) {
+        return userId == null ? Collections.emptySet() : members(USER_BLACKLIST_PREFIX + userId);
+    }
+
+    @Override
+    public CursorPage<Long> getBlacklistPage(Long userId, String cursor, int count) {
+        return userId == null ? emptyPage() : range(USER_BLACKLIST_PREFIX + userId, cursor, count);
+    }
+
+    @Override
+    public List<Long> filterBlacklisted(Long userId, List<Long> userIds) {
+        if (userId == null || userIds == null || userIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 只检查候选用户，不加载整个黑名单
+        Map<Long, Boolean> blocked = batchIsMember(USER_BLACKLIST_PREFIX + userId, userIds);
+        List<Long> result = new ArrayList<>(userIds.size());
+        for (Long id : userIds) {
+            if (!Boolean.TRUE.equals(blocked.get(id))) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    // ==================== 批量操作 ====================
+
+    /**
+     * 与 Set 布局相同的批量语义，计数由集合基数维护，每个关系只更新两侧集合
+     */
+    @Override
+    public List<Boolean> batchApply(RelationAction action, List<RelationPair> pairs) {
+        RelationServiceImpl.checkBatch(action, pairs);
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(pairs.size(), Boolean.FALSE));
+
+        List<Integer> sent = new ArrayList<>(pairs.size());
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(action.isAdd() ? OP_ADD : OP_REMOVE);
+        args.add(arrayMax);
+        args.add(KEYS_PER_RELATION);
+        for (int i = 0; i < pairs.size(); i++) {
+            RelationPair pair = pairs.get(i);
+            if (RelationServiceImpl.isSelfRelation(action, pair)) {
+                continue;
+            }
+            Long[] members = RelationServiceImpl.relationMembers(action, pair);
+            checkId(members[0]);
+            checkId(members[1]);
+            List<String> setKeys = RelationServiceImpl.relationKeys(keyLayout, action, pair);
+            keys.add(bitmapKey(setKeys.get(0)));
+            keys.add(bitmapKey(setKeys.get(1)));
+            args.add(members[0]);
+            args.add(members[1]);
+            sent.add(i);
+        }
+        if (sent.isEmpty()) {
+            return results;
+        }
+
+        List<Object> flags = bitmapScripts.executeScript(RelationBitmapScripts.RBM_UPDATE, keys, args.toArray());
+        List<RelationPair> changed = new ArrayList<>();
+        for (int i = 0; i < sent.size() && flags != null && i < flags.size(); i++) {
+            if (toLong(flags.get(i)) == 1L) {
+                results.set(sent.get(i), Boolean.TRUE);
+                changed.add(pairs.get(sent.get(i)));
+            }
+        }
+        log.info("batch {} applied, {} of {} relations changed", action, changed.size(), pairs.size());
+        RelationServiceImpl.persistBatch(persistenceService, action, changed);
+        return results;
+    }
+
+    // ==================== 位图操作 ====================
+
+    /**
+     * 原子地更新关系两侧的集合：第一个集合已是目标状态时不做任何修改
+     */
+    private boolean update(String op, String firstKey, Long firstMember, String secondKey, Long secondMember) {
+        checkId(firstMember);
+        checkId(secondMember);
+        List<Object> changed = bitmapScripts.executeScript(RelationBitmapScripts.RBM_UPDATE,
+                Arrays.asList(bitmapKey(firstKey), bitmapKey(secondKey)),
+                op, arrayMax, KEYS_PER_RELATION, firstMember, secondMember);
+        return changed != null && !changed.isEmpty() && toLong(changed.get(0)) == 1L;
+    }
+
+    private boolean isMember(String setKey, Long id) {
+        if (!inRange(id)) {
+            return false;
+        }
+        Map<Long, Boolean> result = batchIsMember(setKey, Collections.singletonList(id));
+        return Boolean.TRUE.equals(result.get(id));
+    }
+
+    /**
+     * 批量检查成员，一次往返，结果按请求顺序返回；超出 id 范围的视为不存在
+     */
+    private Map<Long, Boolean> batchIsMember(String setKey, List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.removeIf(Objects::isNull);
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        List<Object> args = new ArrayList<>(distinct.size());
+        for (Long id : distinct) {
+            result.put(id, Boolean.FALSE);
+            if (inRange(id)) {
+                args.add(id);
+            }
+        }
+        if (args.isEmpty()) {
+            return result;
+        }
+        List<Object> flags = bitmapScripts.executeScript(RelationBitmapScripts.RBM_CHECK,
+                Collections.singletonList(bitmapKey(setKey)), args.toArray());
+        for (int i = 0; i < args.size() && flags != null && i < flags.size(); i++) {
+            result.put((Long) args.get(i), toLong(flags.get(i)) == 1L);
+        }
+        return result;
+    }
+
+    /**
+     * 按 id 升序分页读取，游标为下一页的起始 id
+     */
+    private CursorPage<Long> range(String setKey, String cursor, int count) {
+        long startId;
+        try {
+            startId = cursor == null || cursor.isEmpty() ? 0L : Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+        if (startId < 0 || startId > MAX_ID) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+        int pageSize = count <= 0 ? DEFAULT_PAGE_SIZE : Math.min(count, MAX_PAGE_SIZE);
+        List<Object> result = bitmapScripts.executeScript(RelationBitmapScripts.RBM_RANGE,
+                Collections.singletonList(bitmapKey(setKey)), startId, pageSize);
+        if (result == null || result.isEmpty()) {
+            return emptyPage();
+        }
+        List<Long> items = new ArrayList<>(result.size() - 1);
+        for (int i = 1; i < result.size(); i++) {
+            items.add(toLong(result.get(i)));
+        }
+        return new CursorPage<>(items, String.valueOf(toLong(result.get(0))));
+    }
+
+    /**
+     * 读取全部成员：按页读取，每次 Redis 调用只返回一页，不会因为大集合阻塞 Redis
+     */
+    private Set<Long> members(String setKey) {
+        Set<Long> result = new LinkedHashSet<>();
+        String cursor = CursorPage.START;
+        do {
+            CursorPage<Long> page = range(setKey, cursor, MAX_PAGE_SIZE);
+            result.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (!CursorPage.START.equals(cursor));
+        return result;
+    }
+
+    private Long cardinality(String setKey) {
+        String card = stringRedisTemplate.opsForValue().get(bitmapKey(setKey) + ":card");
+        return card == null ? 0L : Long.parseLong(card);
+    }
+
+    private static Long parseCard(List<String> cards, int index) {
+        String card = cards != null && index < cards.size() ? cards.get(index) : null;
+        return card == null ? 0L : Long.parseLong(card);
+    }
+
+    private static void checkId(Long id) {
+        if (!inRange(id)) {
+            throw new IllegalArgumentException("id out of bitmap range [0, " + MAX_ID + "]: " + id);
+        }
+    }
+
+    private static boolean inRange(Long id) {
+        return id != null && id >= 0 && id <= MAX_ID;
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+
+    private static CursorPage<Long> emptyPage() {
+        return new CursorPage<>(Collections.emptyList(), CursorPage.START);
+    }
+}
@@ -0,0 +1,227 @@
+package com.wait.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.entity.CursorPage;
+import com.wait.service.RelationService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 首页动态写入侧（推拉结合）
+ * 1. 推：普通作者发布帖子后，异步按游标分页遍历粉丝，每页用一次管道把帖子 id 写入各粉丝的收件箱 feed:inbox:{userId}
+ *    （ZSET，score 为帖子 id，自增 id 与发布时间同序），写入后按长度上限裁剪最旧的帖子；作者自己的收件箱同样写入
+ * 2. 拉：粉丝数达到 feed.pull-threshold 的作者登记到 feed:pull:authors，之后发布的帖子只写入作者发件箱 feed:outbox:{authorId}，
+ *    读取首页时再合并，避免一次发布写入几十万个收件箱；登记后不自动撤销，已推送的历史帖子仍留在收件箱中
+ * 3. 拉模式作者集合在本地缓存，定时从 Redis 刷新，读取首页时不需要额外查询
+ * 推送失败只影响收件箱，帖子本身已写入数据库和作者帖子列表；收件箱可能缺少个别帖子，不做补偿
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FeedFanoutWorker {
+
+    static final String FEED_INBOX_PREFIX = "feed:inbox:";
+    static final String FEED_OUTBOX_PREFIX = "feed:outbox:";
+    static final String FEED_PULL_AUTHORS = "feed:pull:authors";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisKeyLayout keyLayout;
+    private final RelationService relationService;
+
+    @Qualifier("feedFanoutExecutor")
+    private final ThreadPoolTaskExecutor fanoutExecutor;
+
+    @Qualifier("refreshScheduler")
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    // 粉丝数达到该值的作者改为拉模式
+    @Value("${feed.pull-threshold:10000}")
+    private final long pullThreshold;
+
+    // 收件箱、发件箱保留的帖子数
+    @Value("${feed.inbox-max-size:800}")
+    private final int inboxMaxSize;
+
+    // 每次管道写入的收件箱数，同时也是遍历粉丝的分页大小
+    @Value("${feed.fanout-batch-size:1000}")
+    private final int fanoutBatchSize;
+
+    @Value("${feed.pull-refresh-ms:5000}")
+    private final long pullRefreshMs;
+
+    /** 拉模式作者的本地快照 */
+    private volatile Set<Long> pullAuthors = Collections.emptySet();
+    private volatile ScheduledFuture<?> refreshLoop;
+
+    @PostConstruct
+    public void init() {
+        refreshLoop = taskScheduler.scheduleWithFixedDelay(this::refreshPullAuthorsQuietly, pullRefreshMs);
+        log.info("Feed fan-out started, pull threshold: {}, inbox max size: {}", pullThreshold, inboxMaxSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ScheduledFuture<?> loop = refreshLoop;
+        if (loop != null) {
+            loop.cancel(false);
+            refreshLoop = null;
+        }
+    }
+
+    public String inboxKey(Long userId) {
+        return keyLayout.key(FEED_INBOX_PREFIX, userId);
+    }
+
+    public String outboxKey(Long authorId) {
+        return keyLayout.key(FEED_OUTBOX_PREFIX, authorId);
+    }
+
+    /**
+     * 拉模式作者快照，只读
+     */
+    public Set<Long> getPullAuthors() {
+        return pullAuthors;
+    }
+
+    // ==================== 发布 ====================
+
+    /**
+     * 帖子发布后调用：拉模式作者写入发件箱，否则提交异步推送；失败只记录日志，不影响发布
+     */
+    public void onPublish(Long authorId, Long postId) {
+        try {
+            if (isPullAuthor(authorId)) {
+                pushOutbox(authorId, postId);
+                return;
+            }
+            fanoutExecutor.execute(() -> {
+                try {
+                    fanout(authorId, postId);
+                } catch (Exception e) {
+                    log.error("Failed to fan out post {} of author {}", postId, authorId, e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to publish post {} of author {} to feed", postId, authorId, e);
+        }
+    }
+
+    /**
+     * 帖子删除后调用：从发件箱和作者自己的收件箱移除；粉丝收件箱中的 id 读取时按帖子不存在过滤
+     */
+    public void onDelete(Long authorId, Long postId) {
+        String member = String.valueOf(postId);
+        try {
+            stringRedisTemplate.opsForZSet().remove(outboxKey(authorId), member);
+            stringRedisTemplate.opsForZSet().remove(inboxKey(authorId), member);
+        } catch (Exception e) {
+            log.warn("Failed to remove post {} of author {} from feed", postId, authorId, e);
+        }
+    }
+
+    /**
+     * 作者是否为拉模式：已登记的直接返回，否则按粉丝数判断，达到阈值时登记
+     */
+    private boolean isPullAuthor(Long authorId) {
+        if (pullThreshold <= 0) {
+            return false;
+        }
+        if (pullAuthors.contains(authorId)) {
+            return true;
+        }
+        Long followers = relationService.getFollowerCount(authorId);
+        if (followers == null || followers < pullThreshold) {
+            return false;
+        }
+        stringRedisTemplate.opsForSet().add(FEED_PULL_AUTHORS, String.valueOf(authorId));
+        Set<Long> updated = new HashSet<>(pullAuthors);
+        updated.add(authorId);
+        pullAuthors = Collections.unmodifiableSet(updated);
+        log.info("Author {} has {} followers, switched to pull mode", authorId, followers);
+        return true;
+    }
+
+    private void pushOutbox(Long authorId, Long postId) {
+        String key = outboxKey(authorId);
+        stringRedisTemplate.opsForZSet().add(key, String.valueOf(postId), postId);
+        stringRedisTemplate.opsForZSet().removeRange(key, 0, -(inboxMaxSize + 1L));
+    }
+
+    /**
+     * 推送：按页遍历粉丝，每页一次管道写入；作者自己的收件箱随第一页写入
+     *
+     * @return 写入的收件箱数
+     */
+    long fanout(Long authorId, Long postId) {
+        long pushed = 0;
+        String cursor = CursorPage.START;
+        boolean first = true;
+        do {
+            CursorPage<Long> page = relationService.getFollowersPage(authorId, cursor, fanoutBatchSize);
+            List<Long> userIds = new ArrayList<>(page.getItems());
+            if (first) {
+                userIds.add(authorId);
+                first = false;
+            }
+            pushInboxes(userIds, postId);
+            pushed += userIds.size();
+            cursor = page.getNextCursor();
+        } while (!CursorPage.START.equals(cursor));
+        log.debug("Fanned out post {} of author {} to {} inboxes", postId, authorId, pushed);
+        return pushed;
+    }
+
+    private void pushInboxes(List<Long> userIds, Long postId) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        byte[] member = serializer.serialize(String.valueOf(postId));
+        long trimEnd = -(inboxMaxSize + 1L);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : userIds) {
+                byte[] key = serializer.serialize(inboxKey(userId));
+                connection.zSetCommands().zAdd(key, postId, member);
+                connection.zSetCommands().zRemRange(key, 0, trimEnd);
+            }
+            return null;
+        });
+    }
+
+    // ==================== 拉模式作者 ====================
+
+    private void refreshPullAuthorsQuietly() {
+        try {
+            Set<String> members = stringRedisTemplate.opsForSet().members(FEED_PULL_AUTHORS);
+            Set<Long> authors = new HashSet<>();
+            if (members != null) {
+                for (String member : members) {
+                    authors.add(Long.parseLong(member));
+                }
+            }
+            pullAuthors = Collections.unmodifiableSet(authors);
+        } catch (Exception e) {
+            log.warn("Failed to refresh feed pull authors, keeping {} cached", pullAuthors.size(), e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.wait.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import com.wait.entity.CursorPage;
+import com.wait.entity.domain.Post;
+import com.wait.service.RelationService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 首页动态读取侧（推拉结合，写入见 FeedFanoutWorker）
+ * 1. 游标为上一页最后一个帖子 id，按帖子 id 倒序（即发布时间倒序）分页
+ * 2. 找出用户关注的拉模式作者：关注数少于拉模式作者数时分页遍历关注列表、用本地快照判断，否则对快照批量检查关注关系，
+ *    两者取小，检查量不超过 min(关注数, 拉模式作者数)；与收件箱一起在一次管道中各读取一页：
+ *    ZREVRANGEBYSCORE ... LIMIT 0 {size}，读取量只与页大小和关注的拉模式作者数有关，与收件箱长度无关
+ * 3. 合并后取前 size 个 id，批量读取帖子详情；已删除的帖子、已取消关注或已拉黑作者的帖子（收件箱中推送时写入的旧 id）
+ *    在读取时过滤，此时该页可能少于 size 条
+ * 收件箱只保留最近 feed.inbox-max-size 条，更早的动态不在首页中；新关注的作者不回填历史帖子
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FeedServiceImpl {
+
+    /** 单页最多条数 */
+    private static final int MAX_PAGE_SIZE = 100;
+    /** 从用户侧遍历关注列表时的分页大小 */
+    private static final int FOLLOWING_PAGE_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationService relationService;
+    private final FeedFanoutWorker fanoutWorker;
+    private final PostServiceImpl postService;
+
+    /**
+     * 分页读取首页动态
+     *
+     * @param cursor   CursorPage.START 表示第一页，否则为上一页返回的 nextCursor
+     * @param pageSize 每页条数，超过 MAX_PAGE_SIZE 时按 MAX_PAGE_SIZE 读取
+     */
+    public CursorPage<Post> getFeed(Long userId, String cursor, int pageSize) {
+        int size = Math.min(pageSize, MAX_PAGE_SIZE);
+        if (size <= 0) {
+            return new CursorPage<>(Collections.emptyList(), CursorPage.START);
+        }
+        RedisZSetCommands.Range range = toRange(cursor);
+        List<String> keys = new ArrayList<>();
+        keys.add(fanoutWorker.inboxKey(userId));
+        for (Long authorId : followedPullAuthors(userId)) {
+            keys.add(fanoutWorker.outboxKey(authorId));
+        }
+
+        RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        RedisZSetCommands.Limit limit = RedisZSetCommands.Limit.limit().count(size);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.zSetCommands().zRevRangeByScore(serializer.serialize(key), range, limit);
+            }
+            return null;
+        });
+
+        // 各来源都已按 id 倒序，合并后取前 size 个
+        TreeSet<Long> merged = new TreeSet<>(Collections.reverseOrder());
+        for (Object result : results) {
+            if (result instanceof Collection) {
+                for (Object id : (Collection<?>) result) {
+                    merged.add(Long.parseLong(id.toString()));
+                }
+            }
+        }
+        List<Long> postIds = new ArrayList<>(Math.min(size, merged.size()));
+        for (Long postId : merged) {
+            if (postIds.size() >= size) {
+                break;
+            }
+            postIds.add(postId);
+        }
+        if (postIds.isEmpty()) {
+            return new CursorPage<>(Collections.emptyList(), CursorPage.START);
+        }
+
+        List<Post> posts = visiblePosts(userId, postService.getPostsByIds(postIds));
+        String nextCursor = postIds.size() < size ? CursorPage.START : String.valueOf(postIds.get(postIds.size() - 1));
+        return new CursorPage<>(posts, nextCursor);
+    }
+
+    /**
+     * 用户关注的拉模式作者，包括用户自己（拉模式作者自己的帖子只在发件箱中）
+     * 从关注列表和拉模式作者快照中较小的一侧求交集
+     */
+    private List<Long> followedPullAuthors(Long userId) {
+        Set<Long> pullAuthors = fanoutWorker.getPullAuthors();
+        if (pullAuthors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> authors = new ArrayList<>();
+        if (pullAuthors.contains(userId)) {
+            authors.add(userId);
+        }
+        Long followingCount = relationService.getFollowingCount(userId);
+        if (followingCount != null && followingCount < pullAuthors.size()) {
+            String cursor = CursorPage.START;
+            do {
+                CursorPage<Long> page = relationService.getFollowingPage(userId, cursor, FOLLOWING_PAGE_SIZE);
+                for (Long followedId : page.getItems()) {
+                    if (pullAuthors.contains(followedId) && !followedId.equals(userId)) {
+                        authors.add(followedId);
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (!CursorPage.START.equals(cursor));
+            return authors;
+        }
+
+        List<Long> candidates = new ArrayList<>(pullAuthors.size());
+        for (Long authorId : pullAuthors) {
+            if (!authorId.equals(userId)) {
+                candidates.add(authorId);
+            }
+        }
+        if (!candidates.isEmpty()) {
+            Map<Long, Boolean> following = relationService.batchCheckFollowing(userId, candidates);
+            for (Long authorId : candidates) {
+                if (Boolean.TRUE.equals(following.get(authorId))) {
+                    authors.add(authorId);
+                }
+            }
+        }
+        return authors;
+    }
+
+    /**
+     * 过滤掉已取消关注或已拉黑作者的帖子：推送写入收件箱的 id 不会在取消关注、拉黑时清理，读取时按当前关系过滤
+     * 一页最多 size 个作者，两次批量检查
+     */
+    private List<Post> visiblePosts(Long userId, List<Post> posts) {
+        Set<Long> authors = new LinkedHashSet<>();
+        for (Post post : posts) {
+            if (post.getUserId() != null && !post.getUserId().equals(userId)) {
+                authors.add(post.getUserId());
+            }
+        }
+        if (authors.isEmpty()) {
+            return posts;
+        }
+        Map<Long, Boolean> following = relationService.batchCheckFollowing(userId, new ArrayList<>(authors));
+        List<Long> followed = new ArrayList<>(authors.size());
+        for (Long authorId : authors) {
+            if (Boolean.TRUE.equals(following.get(authorId))) {
+                followed.add(authorId);
+            }
+        }
+        Set<Long> visible = followed.isEmpty() ? Collections.emptySet()
+                : new HashSet<>(relationService.filterBlacklisted(userId, followed));
+        List<Post> result = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            if (post.getUserId() == null || post.getUserId().equals(userId) || visible.contains(post.getUserId())) {
+                result.add(post);
+            }
+        }
+        return result;
+    }
+
+    private static RedisZSetCommands.Range toRange(String cursor) {
+        if (cursor == null || cursor.isEmpty() || CursorPage.START.equals(cursor)) {
+            return RedisZSetCommands.Range.unbounded();
+        }
+        try {
+            return RedisZSetCommands.Range.range().lt(Long.parseLong(cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+    }
+}
@@ -1,30 +1,62 @@
 package com.wait.service.impl;
 
-import com.wait.entity.CacheSyncParam;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.wait.exception.BackpressureException;
+import com.wait.exception.ResourceNotFoundException;
 import com.wait.service.MQService;
 import com.wait.util.message.AsyncDataMsg;
 import com.wait.util.message.CompensationMsg;
+import com.wait.util.message.MessageCoalescer;
+import com.wait.util.queue.PendingOffsets;
+import com.wait.util.queue.SegmentLog;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 内存MQ：按 topic 分区消费
+ * 每个 topic 首次发送时创建 P 个分区，消息按 key 的哈希选择分区；有待消费消息的分区进入就绪队列，由共享的工作线程池认领：
+ * 同一时刻一个分区只被一个工作线程占有，同一 key 的消息始终按顺序消费，不同 key、不同 topic 之间并行消费
+ * 工作线程数在 min-workers 和 max-workers 之间按积压量和单条处理耗时自动伸缩（缩容需连续多个周期低负载），
+ * 总积压超过 admission.max-lag 或分区已满时发送方收到 BackpressureException，由调用方降级，不静默丢弃消息
+ * 持久化模式（mq.memory.persistence.enabled=true）：消息入队前先追加到本地内存映射段日志，后台线程成组刷盘并定期写入
+ * 已消费检查点，重启时回放检查点之后的消息，适用于单节点部署；回放为至少一次语义，消息处理需幂等
+ */
 @Service("memoryMQService")
 @Slf4j
 public class MemoryMQServiceImpl implements MQService {
 
-    // 内存消息队列
-    private final BlockingQueue<MQMessage> messageQueue = new LinkedBlockingQueue<>(10000);
+    // topic -> 分区
+    private final Map<String, TopicPartitions> topics = new ConcurrentHashMap<>();
     private final BlockingQueue<MQMessage> dlqQueue = new LinkedBlockingQueue<>(5000);
 
-    // 消费线程池
-    private final ExecutorService consumerExecutor = Executors.newFixedThreadPool(2,
+    // 消费线程池：按积压伸缩的分区工作线程，另有一个死信队列消费线程
+    private final ExecutorService consumerExecutor = Executors.newCachedThreadPool(
             r -> new Thread(r, "MemoryMQ-Consumer"));
 
+    // 有待消费消息、且未被工作线程占有的分区
+    private final BlockingQueue<Partition> readyPartitions = new LinkedBlockingQueue<>();
+
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
             r -> new Thread(r, "MemoryMQ-Scheduler")
     );
@@ -32,21 +64,139 @@ public class MemoryMQServiceImpl implements MQService {
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicInteger queueSize = new AtomicInteger(0);
 
+    // 每个 topic 的分区数
+    @Value("${mq.memory.partitions:4}")
+    private int partitionCount = 4;
+
+    // 每个 topic 的默认容量（所有分区之和）
+    @Value("${mq.memory.topic-capacity:10000}")
+    private int topicCapacity = 10000;
+
+    // 按 topic 覆盖容量，如 {'Post_topic': 20000}
+    @Value("#{${mq.memory.topic-capacity-overrides:{:}}}")
+    private Map<String, Integer> topicCapacityOverrides = Collections.emptyMap();
+
+    // 批量消费：单批最多拉取的消息数
+    @Value("${mq.memory.batch-size:200}")
+    private int batchSize = 200;
+
+    // 批量消费：首条消息到达后最多等待凑批的时间
+    @Value("${mq.memory.batch-wait-ms:50}")
+    private long batchWaitMs = 50;
+
+    // 批量消费累计合并掉的消息数
+    private final AtomicLong coalescedTotal = new AtomicLong(0);
+
+    // 消费线程数下限
+    @Value("${mq.memory.consumer.min-workers:2}")
+    private int minWorkers = 2;
+
+    // 消费线程数上限（同时不超过分区总数）
+    @Value("${mq.memory.consumer.max-workers:16}")
+    private int maxWorkers = 16;
+
+    // 伸缩检查间隔
+    @Value("${mq.memory.consumer.scale-interval-ms:1000}")
+    private long scaleIntervalMs = 1000;
+
+    // 按当前处理速度清空积压的目标时间，据此估算需要的线程数
+    @Value("${mq.memory.consumer.target-drain-ms:1000}")
+    private long targetDrainMs = 1000;
+
+    // 连续多少个周期所需线程数不到当前一半时才缩容一个线程
+    @Value("${mq.memory.consumer.scale-down-ticks:5}")
+    private int scaleDownTicks = 5;
+
+    // 准入控制：所有 topic 的总积压达到该值时拒绝发送，0 表示只在分区满时拒绝
+    @Value("${mq.memory.admission.max-lag:30000}")
+    private int maxLag = 30000;
+
+    // 空闲工作线程检查缩容的间隔
+    private static final long WORKER_IDLE_POLL_MS = 200;
+
+    private final AtomicInteger liveWorkers = new AtomicInteger(0);
+    private final AtomicInteger busyWorkers = new AtomicInteger(0);
+    private final AtomicInteger workerSeq = new AtomicInteger(0);
+    private volatile int targetWorkers;
+
+    // 伸缩依据：累计处理消息数和处理耗时
+    private final AtomicLong processedTotal = new AtomicLong(0);
+    private final AtomicLong busyNanosTotal = new AtomicLong(0);
+    private final AtomicLong rejectedTotal = new AtomicLong(0);
+    private volatile long perMessageNanos;
+
+    // 以下状态只在调度线程中读写
+    private long lastScaleNanos;
+    private long lastProcessed;
+    private long lastBusyNanos;
+    private int lowLoadTicks;
+
+    // 持久化模式：消息先追加到本地段日志，重启后回放未消费的消息
+    @Value("${mq.memory.persistence.enabled:false}")
+    private boolean persistenceEnabled = false;
+
+    @Value("${mq.memory.persistence.dir:./data/mq}")
+    private String persistenceDir = "./data/mq";
+
+    @Value("${mq.memory.persistence.segment-size-mb:64}")
+    private int segmentSizeMb = 64;
+
+    // 成组刷盘间隔
+    @Value("${mq.memory.persistence.flush-interval-ms:10}")
+    private long flushIntervalMs = 10;
+
+    // 发送方是否等待消息落盘后再返回
+    @Value("${mq.memory.persistence.sync-commit:false}")
+    private boolean syncCommit = false;
+
+    @Value("${mq.memory.persistence.checkpoint-interval-ms:1000}")
+    private long checkpointIntervalMs = 1000;
+
+    private static final ObjectMapper LOG_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private SegmentLog segmentLog;
+    private final PendingOffsets pendingOffsets = new PendingOffsets();
+    private volatile long checkpointOffset = 0;
+
     // 消息处理器（由业务方注入）
     private MessageHandler messageHandler;
 
+    // 批量消息处理器（由业务方注入），设置后优先于单条处理器
+    private volatile BatchMessageHandler batchMessageHandler;
+
+    // 死信处理器（由补偿引擎注入），未设置时只记录日志
+    private volatile DeadLetterHandler deadLetterHandler;
+
     @PostConstruct
     @Override
     public void start() {
         if (running.compareAndSet(false, true)) {
-            // 启动普通消息消费者
-            consumerExecutor.execute(this::consumeMessages);
+            if (persistenceEnabled) {
+                openSegmentLog();
+            }
+            // 启动最少数量的分区工作线程，之后按积压自动伸缩
+            targetWorkers = Math.max(1, minWorkers);
+            lastScaleNanos = System.nanoTime();
+            ensureWorkers();
+            scheduleIdlePartitions();
             // 启动死信队列消费者
             consumerExecutor.execute(this::consumeDLQMessages);
             // 启动监控任务
             scheduler.scheduleAtFixedRate(this::monitorQueue, 1, 1, TimeUnit.MINUTES);
+            scheduler.scheduleWithFixedDelay(this::autoscale, scaleIntervalMs, scaleIntervalMs,
+                    TimeUnit.MILLISECONDS);
+            if (persistenceEnabled) {
+                scheduler.scheduleWithFixedDelay(this::flushSegmentLog, flushIntervalMs, flushIntervalMs,
+                        TimeUnit.MILLISECONDS);
+                scheduler.scheduleWithFixedDelay(this::checkpoint, checkpointIntervalMs, checkpointIntervalMs,
+                        TimeUnit.MILLISECONDS);
+            }
 
-            log.info("MemoryMQ服务启动成功");
+            log.info("MemoryMQ服务启动成功, 持久化: {}, 消费线程: {}-{}", persistenceEnabled,
+                    targetWorkers, maxWorkers);
         }
     }
 
@@ -54,6 +204,11 @@ public class MemoryMQServiceImpl implements MQService {
     @Override
     public void shutdown() {
         if (running.compareAndSet(true, false)) {
+            // 关闭时忽略暂停，把所有分区的积压消息消费完；工作线程可能已全部退出，补一个线程
+            scheduleIdlePartitions();
+            if (!readyPartitions.isEmpty()) {
+                startWorker();
+            }
             consumerExecutor.shutdown();
             scheduler.shutdown();
             try {
@@ -66,27 +221,79 @@ public class MemoryMQServiceImpl implements MQService {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            if (segmentLog != null) {
+                // 消费线程已退出，最后一次检查点之后未消费的消息下次启动时回放
+                checkpoint();
+                segmentLog.close();
+            }
             log.info("MemoryMQ服务已关闭");
         }
     }
 
+    /**
+     * @throws BackpressureException 服务未运行、总积压超过准入阈值、分区已满或写入段日志失败（含同步提交落盘超时）
+     */
     @Override
     public void sendMessage(String topic, String key, AsyncDataMsg message) {
         MQMessage mqMessage = new MQMessage(topic, key, message, System.currentTimeMillis());
+        if (!running.get()) {
+            throw reject(mqMessage, "memory mq is not running");
+        }
+        // 准入控制：积压过多时尽早拒绝，不等分区写满
+        if (maxLag > 0 && queueSize.get() >= maxLag) {
+            throw reject(mqMessage, "memory mq lag exceeds " + maxLag);
+        }
+        Partition partition = getOrCreateTopic(topic, 0).partitionOf(key);
         try {
-            boolean offered = messageQueue.offer(mqMessage, 100, TimeUnit.MILLISECONDS);
+            if (segmentLog != null && !appendToLog(mqMessage)) {
+                throw reject(mqMessage, syncCommit ? "failed to append or flush message to segment log"
+                        : "failed to append message to segment log");
+            }
+            boolean offered = partition.queue.offer(mqMessage, 100, TimeUnit.MILLISECONDS);
             if (offered) {
                 queueSize.incrementAndGet();
+                partition.enqueued.incrementAndGet();
+                schedule(partition);
                 log.debug("MemoryMQ: 消息发送成功, topic: {}, key: {}", topic, key);
             } else {
-                log.warn("MemoryMQ: 消息队列已满，消息被丢弃, topic: {}, key: {}", topic, key);
-                // 队列满时可以考虑降级策略
-                handleQueueFull(mqMessage);
+                // 已写入日志的消息同样视为未发送，不阻塞检查点推进
+                pendingOffsets.release(mqMessage.mark);
+                throw reject(mqMessage, "partition is full, capacity: " + partition.capacity);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.error("MemoryMQ: 消息发送被中断, topic: {}, key: {}", topic, key, e);
+            pendingOffsets.release(mqMessage.mark);
+            throw reject(mqMessage, "interrupted while sending");
+        }
+    }
+
+    /**
+     * 持久化模式下先追加到段日志：以当前日志末尾登记未消费位置（实际位置不会更小），再无锁追加
+     * 同步提交模式下等待落盘超时视为失败：发送方被拒绝，不能告诉它消息已持久化；
+     * 已追加的记录在检查点推进前崩溃时仍可能回放，写回消息按 key 覆盖写，重复写入无害
+     */
+    private boolean appendToLog(MQMessage message) throws InterruptedException {
+        byte[] payload;
+        try {
+            payload = encode(message);
+        } catch (IOException e) {
+            log.error("MemoryMQ: 消息序列化失败, topic: {}, key: {}", message.topic, message.key, e);
+            return false;
+        }
+        message.mark = pendingOffsets.acquire(segmentLog.endOffset());
+        try {
+            segmentLog.append(payload);
+        } catch (RuntimeException e) {
+            pendingOffsets.release(message.mark);
+            log.error("MemoryMQ: 消息写入日志失败, topic: {}, key: {}", message.topic, message.key, e);
+            return false;
+        }
+        if (syncCommit && !segmentLog.awaitFlush(SEND_TIMEOUT_MS)) {
+            pendingOffsets.release(message.mark);
+            log.error("MemoryMQ: 等待消息落盘超时, topic: {}, key: {}", message.topic, message.key);
+            return false;
         }
+        return true;
     }
 
     @Override
@@ -112,27 +319,487 @@ public class MemoryMQServiceImpl implements MQService {
 
     @Override
     public boolean isHealthy() {
-        return running.get() &&
-                messageQueue.remainingCapacity() > 1000 &&
-                dlqQueue.remainingCapacity() > 500;
+        if (!running.get() || dlqQueue.remainingCapacity() <= 500) {
+            return false;
+        }
+        if (maxLag > 0 && queueSize.get() >= maxLag) {
+            return false;
+        }
+        for (TopicPartitions topic : topics.values()) {
+            for (Partition partition : topic.partitions) {
+                // 任一分区剩余容量不足10%视为不健康
+                if (partition.queue.remainingCapacity() * 10 < partition.capacity) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
-     * 消费普通消息
+     * 暂停 topic 的消费，发送不受影响（分区满后按队列满处理）
+     *
+     * @throws ResourceNotFoundException topic 不存在（从未发送或订阅过）
      */
-    private void consumeMessages() {
-        while (running.get() || !messageQueue.isEmpty()) {
-            try {
-                MQMessage message = messageQueue.poll(1, TimeUnit.SECONDS);
-                if (message != null) {
+    public void pause(String topic) {
+        existingTopic(topic).paused = true;
+        log.info("MemoryMQ: topic 已暂停消费, topic: {}", topic);
+    }
+
+    /**
+     * 恢复 topic 的消费
+     *
+     * @throws ResourceNotFoundException topic 不存在（从未发送或订阅过）
+     */
+    public void resume(String topic) {
+        TopicPartitions partitions = existingTopic(topic);
+        partitions.paused = false;
+        for (Partition partition : partitions.partitions) {
+            schedule(partition);
+        }
+        log.info("MemoryMQ: topic 已恢复消费, topic: {}", topic);
+    }
+
+    /**
+     * 各 topic 的分区积压、消费进度和最早消息等待时间
+     */
+    public Map<String, Object> getTopicMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (TopicPartitions topic : topics.values()) {
+            Map<String, Object> topicMetrics = new LinkedHashMap<>();
+            List<Map<String, Object>> partitionMetrics = new ArrayList<>();
+            long lag = 0;
+            long oldestAgeMs = 0;
+            for (Partition partition : topic.partitions) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                int depth = partition.queue.size();
+                MQMessage head = partition.queue.peek();
+                long ageMs = head != null ? now - head.timestamp : 0;
+                lag += depth;
+                oldestAgeMs = Math.max(oldestAgeMs, ageMs);
+                m.put("lag", depth);
+                m.put("enqueued", partition.enqueued.get());
+                m.put("consumed", partition.consumed.get());
+                m.put("oldestAgeMs", ageMs);
+                partitionMetrics.add(m);
+            }
+            topicMetrics.put("paused", topic.paused);
+            topicMetrics.put("capacity", topic.capacity);
+            topicMetrics.put("lag", lag);
+            topicMetrics.put("oldestAgeMs", oldestAgeMs);
+            topicMetrics.put("partitions", partitionMetrics);
+            metrics.put(topic.name, topicMetrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * 消费线程池状态：当前/目标线程数、忙碌线程数、单条处理耗时、总积压和被拒绝的消息数
+     */
+    public Map<String, Object> getConsumerMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("workers", liveWorkers.get());
+        metrics.put("targetWorkers", targetWorkers);
+        metrics.put("busyWorkers", busyWorkers.get());
+        metrics.put("minWorkers", minWorkers);
+        metrics.put("maxWorkers", maxWorkers);
+        metrics.put("perMessageMicros", TimeUnit.NANOSECONDS.toMicros(perMessageNanos));
+        metrics.put("lag", queueSize.get());
+        metrics.put("maxLag", maxLag);
+        metrics.put("rejected", rejectedTotal.get());
+        return metrics;
+    }
+
+    /**
+     * 持久化日志状态：段数、日志末尾、检查点、未消费消息数
+     */
+    public Map<String, Object> getPersistenceMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", segmentLog != null);
+        if (segmentLog != null) {
+            metrics.put("segments", segmentLog.segmentCount());
+            metrics.put("endOffset", segmentLog.endOffset());
+            metrics.put("checkpointOffset", checkpointOffset);
+            metrics.put("pending", pendingOffsets.size());
+            metrics.put("syncCommit", syncCommit);
+        }
+        return metrics;
+    }
+
+    /**
+     * 查找已有的 topic，管理操作不创建 topic
+     */
+    private TopicPartitions existingTopic(String topic) {
+        TopicPartitions partitions = topics.get(topic);
+        if (partitions == null) {
+            throw new ResourceNotFoundException("unknown topic: " + topic);
+        }
+        return partitions;
+    }
+
+    /**
+     * 获取 topic 的分区，首次使用时创建
+     *
+     * @param minCapacity 最小容量，重启回放时保证积压消息能全部放入分区
+     */
+    private TopicPartitions getOrCreateTopic(String topic, int minCapacity) {
+        TopicPartitions existing = topics.get(topic);
+        if (existing != null) {
+            return existing;
+        }
+        return topics.computeIfAbsent(topic, name -> {
+            int capacity = Math.max(minCapacity, topicCapacityOverrides.getOrDefault(name, topicCapacity));
+            TopicPartitions created = new TopicPartitions(name, Math.max(1, partitionCount), capacity);
+            log.info("MemoryMQ: 创建 topic, topic: {}, 分区数: {}, 容量: {}", name, created.partitions.length, capacity);
+            return created;
+        });
+    }
+
+    /**
+     * 分区有待消费消息且未被占有时放入就绪队列；暂停的 topic 和持久化模式下处理器注册前不调度，由 resume 和伸缩任务补调度
+     * 发送方先入队再调度，工作线程先释放占有再检查队列，两边至少有一方能看到对方，不会漏调度
+     */
+    private void schedule(Partition partition) {
+        if (partition.queue.isEmpty() || isBlocked(partition.topic)) {
+            return;
+        }
+        if (partition.scheduled.compareAndSet(false, true)) {
+            readyPartitions.offer(partition);
+        }
+    }
+
+    private void scheduleIdlePartitions() {
+        for (TopicPartitions topic : topics.values()) {
+            for (Partition partition : topic.partitions) {
+                schedule(partition);
+            }
+        }
+    }
+
+    /**
+     * 关闭时忽略暂停，把积压消息消费完；持久化模式下处理器注册前不消费，避免回放的消息被忽略
+     */
+    private boolean isBlocked(TopicPartitions topic) {
+        return running.get() && (topic.paused || (segmentLog != null && !hasHandler()));
+    }
+
+    /**
+     * 工作线程：从就绪队列认领分区，处理一批后释放，目标线程数减少时在两次认领之间退出
+     */
+    private void runWorker() {
+        Thread.currentThread().setName("MemoryMQ-Worker-" + workerSeq.incrementAndGet());
+        List<MQMessage> batch = new ArrayList<>();
+        boolean retired = false;
+        try {
+            while (running.get() || !readyPartitions.isEmpty()) {
+                if (retireIfSurplus()) {
+                    retired = true;
+                    return;
+                }
+                Partition partition = readyPartitions.poll(WORKER_IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (partition == null) {
+                    continue;
+                }
+                try {
+                    consumePartition(partition, batch);
+                } finally {
+                    partition.scheduled.set(false);
+                    schedule(partition);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!retired) {
+                liveWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean retireIfSurplus() {
+        int live = liveWorkers.get();
+        return running.get() && live > targetWorkers && liveWorkers.compareAndSet(live, live - 1);
+    }
+
+    private void ensureWorkers() {
+        int live;
+        while ((live = liveWorkers.get()) < targetWorkers) {
+            if (liveWorkers.compareAndSet(live, live + 1)) {
+                launchWorker();
+            }
+        }
+    }
+
+    private void startWorker() {
+        liveWorkers.incrementAndGet();
+        launchWorker();
+    }
+
+    private void launchWorker() {
+        try {
+            consumerExecutor.execute(this::runWorker);
+        } catch (RejectedExecutionException e) {
+            liveWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 消费已占有的分区：批量模式处理一批，单条模式最多处理 batchSize 条后让出，避免热点分区长期占用工作线程
+     */
+    private void consumePartition(Partition partition, List<MQMessage> batch) throws InterruptedException {
+        if (isBlocked(partition.topic)) {
+            return;
+        }
+        int processed = 0;
+        long start = 0;
+        busyWorkers.incrementAndGet();
+        try {
+            if (batchMessageHandler != null) {
+                batch.clear();
+                if (drainBatch(partition.queue, batch) > 0) {
+                    start = System.nanoTime();
+                    try {
+                        processBatch(batch);
+                    } finally {
+                        releaseMarks(batch);
+                    }
+                    processed = batch.size();
+                    partition.consumed.addAndGet(processed);
+                }
+                return;
+            }
+            start = System.nanoTime();
+            MQMessage message;
+            while (processed < batchSize && (message = partition.queue.poll()) != null) {
+                try {
                     processMessage(message);
-                    queueSize.decrementAndGet();
+                } finally {
+                    pendingOffsets.release(message.mark);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                queueSize.decrementAndGet();
+                partition.consumed.incrementAndGet();
+                processed++;
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("MemoryMQ: 消息消费异常", e);
+        } finally {
+            busyWorkers.decrementAndGet();
+            if (processed > 0) {
+                processedTotal.addAndGet(processed);
+                busyNanosTotal.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * 按消费负载伸缩工作线程，所需线程数 = 周期内平均忙碌线程数 + 在 targetDrainMs 内清空当前积压需要的线程数
+     * 超过当前线程数立即扩容；连续 scaleDownTicks 个周期不到当前一半才缩容一个线程，避免突发流量下来回抖动
+     */
+    private void autoscale() {
+        try {
+            scheduleIdlePartitions();
+            long now = System.nanoTime();
+            long intervalNanos = Math.max(1, now - lastScaleNanos);
+            long processed = processedTotal.get();
+            long busyNanos = busyNanosTotal.get();
+            long processedDelta = processed - lastProcessed;
+            long busyDelta = busyNanos - lastBusyNanos;
+            lastScaleNanos = now;
+            lastProcessed = processed;
+            lastBusyNanos = busyNanos;
+            if (processedDelta > 0) {
+                perMessageNanos = busyDelta / processedDelta;
+            }
+
+            int lag = queueSize.get();
+            int current = targetWorkers;
+            double loadWorkers = (double) busyDelta / intervalNanos;
+            double backlogWorkers = (double) lag * perMessageNanos / TimeUnit.MILLISECONDS.toNanos(targetDrainMs);
+            int needed = (int) Math.ceil(loadWorkers + backlogWorkers);
+            if (lag > 0 && processedDelta == 0 && busyWorkers.get() >= current) {
+                // 所有线程都卡在处理中、还没有耗时样本时逐个扩容
+                needed = current + 1;
+            }
+            int ceiling = Math.max(1, Math.min(maxWorkers, Math.max(minWorkers, totalPartitions())));
+            int floor = Math.max(1, Math.min(minWorkers, ceiling));
+
+            if (needed > current && current < ceiling) {
+                lowLoadTicks = 0;
+                resize(current, Math.min(ceiling, needed), lag);
+            } else if (needed * 2 <= current && current > floor) {
+                if (++lowLoadTicks >= scaleDownTicks) {
+                    lowLoadTicks = 0;
+                    resize(current, current - 1, lag);
+                }
+            } else {
+                lowLoadTicks = 0;
+            }
+        } catch (Exception e) {
+            log.error("MemoryMQ: 消费线程伸缩失败", e);
+        }
+    }
+
+    private void resize(int from, int to, int lag) {
+        targetWorkers = to;
+        ensureWorkers();
+        log.info("MemoryMQ: 消费线程数调整, {} -> {}, 积压: {}, 单条耗时: {}us",
+                from, to, lag, TimeUnit.NANOSECONDS.toMicros(perMessageNanos));
+    }
+
+    private int totalPartitions() {
+        int total = 0;
+        for (TopicPartitions topic : topics.values()) {
+            total += topic.partitions.length;
+        }
+        return total;
+    }
+
+    private boolean hasHandler() {
+        return messageHandler != null || batchMessageHandler != null;
+    }
+
+    private void releaseMarks(List<MQMessage> batch) {
+        for (MQMessage message : batch) {
+            pendingOffsets.release(message.mark);
+        }
+    }
+
+    /**
+     * 打开段日志并回放检查点之后的消息：先按 topic 统计积压量，分区容量不足时按积压量扩容，保证回放不丢消息
+     */
+    private void openSegmentLog() {
+        segmentLog = new SegmentLog(Paths.get(persistenceDir), segmentSizeMb * 1024 * 1024);
+        checkpointOffset = segmentLog.readCheckpoint();
+        List<MQMessage> replayed = new ArrayList<>();
+        segmentLog.open(checkpointOffset, (offset, payload) -> {
+            try {
+                MQMessage message = decode(payload);
+                message.mark = pendingOffsets.acquire(offset);
+                replayed.add(message);
+            } catch (IOException e) {
+                log.error("MemoryMQ: 日志消息反序列化失败，已跳过, offset: {}", offset, e);
+            }
+        });
+        Map<String, Integer> backlog = new HashMap<>();
+        for (MQMessage message : replayed) {
+            backlog.merge(message.topic, 1, Integer::sum);
+        }
+        for (MQMessage message : replayed) {
+            // 按 key 哈希分区可能不均匀，按整个 topic 的积压量保底
+            int minCapacity = backlog.get(message.topic) * Math.max(1, partitionCount);
+            Partition partition = getOrCreateTopic(message.topic, minCapacity).partitionOf(message.key);
+            if (partition.queue.offer(message)) {
+                queueSize.incrementAndGet();
+                partition.enqueued.incrementAndGet();
+            } else {
+                log.error("MemoryMQ: 回放消息入队失败, topic: {}, key: {}", message.topic, message.key);
+            }
+        }
+        log.info("MemoryMQ: 段日志已打开, 目录: {}, 检查点: {}, 回放消息数: {}",
+                persistenceDir, checkpointOffset, replayed.size());
+    }
+
+    private void flushSegmentLog() {
+        try {
+            segmentLog.flush();
+        } catch (Exception e) {
+            log.error("MemoryMQ: 日志刷盘失败", e);
+        }
+    }
+
+    /**
+     * 写入检查点：必须先读取日志末尾，再计算未消费的最小位置，检查点之前的段可以删除
+     */
+    private void checkpoint() {
+        try {
+            long endOffset = segmentLog.endOffset();
+            long offset = pendingOffsets.lowWatermark(endOffset);
+            if (offset > checkpointOffset) {
+                segmentLog.writeCheckpoint(offset);
+                checkpointOffset = offset;
+                segmentLog.deleteBefore(offset);
+            }
+        } catch (Exception e) {
+            log.error("MemoryMQ: 写入检查点失败", e);
+        }
+    }
+
+    private static byte[] encode(MQMessage message) throws IOException {
+        ObjectNode node = LOG_MAPPER.createObjectNode();
+        node.put("topic", message.topic);
+        node.put("key", message.key);
+        node.put("timestamp", message.timestamp);
+        node.set("message", LOG_MAPPER.valueToTree(message.message));
+        return LOG_MAPPER.writeValueAsBytes(node);
+    }
+
+    /**
+     * 回放的消息体统一还原为 AsyncDataMsg，业务数据为 Map，由处理器按实体类型转换
+     */
+    private static MQMessage decode(byte[] payload) throws IOException {
+        JsonNode node = LOG_MAPPER.readTree(payload);
+        AsyncDataMsg<?> message = LOG_MAPPER.treeToValue(node.get("message"), AsyncDataMsg.class);
+        return new MQMessage(node.path("topic").asText(), node.path("key").asText(null), message,
+                node.path("timestamp").asLong());
+    }
+
+    /**
+     * 拉取一批消息：最多 batchSize 条，第一条到达后最多再等待 batchWaitMs 凑批
+     */
+    private int drainBatch(BlockingQueue<MQMessage> queue, List<MQMessage> batch) throws InterruptedException {
+        MQMessage first = queue.poll();
+        if (first == null) {
+            return 0;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running.get()) {
+                break;
+            }
+            MQMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
                 break;
+            }
+            batch.add(next);
+        }
+        queueSize.addAndGet(-batch.size());
+        return batch.size();
+    }
+
+    /**
+     * 批量处理：同一 topic 内同一 key 只保留最后一条，再按 topic 分组交给批量处理器
+     */
+    private void processBatch(List<MQMessage> batch) {
+        List<String> topics = new ArrayList<>(batch.size());
+        List<AsyncDataMsg<?>> messages = new ArrayList<>(batch.size());
+        for (MQMessage message : batch) {
+            if (message.message instanceof AsyncDataMsg) {
+                topics.add(message.topic);
+                messages.add((AsyncDataMsg<?>) message.message);
+            } else {
+                processMessage(message);
+            }
+        }
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(topics, messages);
+        coalescedTotal.addAndGet(result.getCoalescedCount());
+        log.debug("MemoryMQ: 批量消费, 拉取: {}, 合并: {}, topic数: {}",
+                result.getInputCount(), result.getCoalescedCount(), result.getByTopic().size());
+
+        for (Map.Entry<String, List<AsyncDataMsg<?>>> entry : result.getByTopic().entrySet()) {
+            try {
+                batchMessageHandler.handleBatch(entry.getKey(), entry.getValue());
             } catch (Exception e) {
-                log.error("MemoryMQ: 消息消费异常", e);
+                log.error("MemoryMQ: 批量消息处理失败, topic: {}, size: {}",
+                        entry.getKey(), entry.getValue().size(), e);
+                for (AsyncDataMsg<?> message : entry.getValue()) {
+                    sendDLMessage(message.getKey(), CompensationMsg.ofAsyncDataMsg(message, e.getMessage()));
+                }
             }
         }
     }
@@ -171,11 +838,12 @@ public class MemoryMQServiceImpl implements MQService {
             log.error("MemoryMQ: 消息处理失败, topic: {}, key: {}",
                     message.topic, message.key, e);
             // 处理失败的消息进入死信队列
-            CompensationMsg<?> compensationMsg = CompensationMsg.builder()
-                    .originalParam(extractParamFromMessage(message))
-                    .failReason(e.getMessage())
-                    .failTime(System.currentTimeMillis())
-                    .build();
+            CompensationMsg<?> compensationMsg = message.message instanceof AsyncDataMsg
+                    ? CompensationMsg.ofAsyncDataMsg((AsyncDataMsg<?>) message.message, e.getMessage())
+                    : CompensationMsg.builder()
+                            .failReason(e.getMessage())
+                            .failTime(System.currentTimeMillis())
+                            .build();
             sendDLMessage(message.key, compensationMsg);
         }
     }
@@ -186,21 +854,27 @@ public class MemoryMQServiceImpl implements MQService {
     private void processDLQMessage(MQMessage dlqMessage) {
         log.error("MemoryMQ: 处理死信消息, key: {}, message: {}",
                 dlqMessage.key, dlqMessage.message);
-        // 这里可以实现死信消息的持久化、告警等逻辑
-        // persistenceService.saveDeadLetter(dlqMessage);
-        // alertService.sendAlert("死信消息告警", dlqMessage.toString());
+        DeadLetterHandler handler = deadLetterHandler;
+        if (handler != null && dlqMessage.message instanceof CompensationMsg) {
+            // 交给补偿引擎持久化并按退避重试
+            handler.handleDeadLetter(dlqMessage.key, (CompensationMsg<?>) dlqMessage.message);
+        }
     }
 
     /**
      * 监控队列状态
      */
     private void monitorQueue() {
-        int size = messageQueue.size();
         int dlqSize = dlqQueue.size();
-        int remaining = messageQueue.remainingCapacity();
-
-        if (size > 8000) {
-            log.warn("MemoryMQ: 消息队列使用率过高, 当前大小: {}, 剩余容量: {}", size, remaining);
+        for (TopicPartitions topic : topics.values()) {
+            int size = 0;
+            for (Partition partition : topic.partitions) {
+                size += partition.queue.size();
+            }
+            if (size > topic.capacity * 0.8) {
+                log.warn("MemoryMQ: topic 使用率过高, topic: {}, 当前大小: {}, 容量: {}, 暂停: {}",
+                        topic.name, size, topic.capacity, topic.paused);
+            }
         }
 
         if (dlqSize > 1000) {
@@ -209,15 +883,12 @@ public class MemoryMQServiceImpl implements MQService {
     }
 
     /**
-     * 处理队列满的情况
+     * 拒绝发送：返回背压异常由发送方抛出，调用方决定降级方式（同步写库、进入补偿等）
      */
-    private void handleQueueFull(MQMessage message) {
-        // 可以实现的降级策略：
-        // 1. 记录到本地文件
-        // 2. 发送到外部存储
-        // 3. 直接拒绝并抛出异常
-        log.error("MemoryMQ: 队列已满，消息被拒绝, topic: {}, key: {}",
-                message.topic, message.key);
+    private BackpressureException reject(MQMessage message, String reason) {
+        rejectedTotal.incrementAndGet();
+        log.warn("MemoryMQ: 消息被拒绝, topic: {}, key: {}, 原因: {}", message.topic, message.key, reason);
+        return new BackpressureException(reason + ", topic: " + message.topic + ", key: " + message.key);
     }
 
     /**
@@ -227,17 +898,25 @@ public class MemoryMQServiceImpl implements MQService {
         this.messageHandler = handler;
     }
 
-    private CacheSyncParam<Object> extractParamFromMessage(MQMessage message) {
-        // 从消息中提取参数的逻辑
-        if (message.message instanceof AsyncDataMsg) {
-            AsyncDataMsg<?> asyncDataMsg = (AsyncDataMsg<?>) message.message;
-            // 这里简化处理，实际应该根据entityType创建正确的CacheSyncParam
-            return CacheSyncParam.builder()
-                    .key(asyncDataMsg.getKey())
-                    .newValue(asyncDataMsg.getData())
-                    .build();
-        }
-        return null;
+    /**
+     * 设置批量消息处理器
+     */
+    public void setBatchMessageHandler(BatchMessageHandler handler) {
+        this.batchMessageHandler = handler;
+    }
+
+    /**
+     * 设置死信处理器
+     */
+    public void setDeadLetterHandler(DeadLetterHandler handler) {
+        this.deadLetterHandler = handler;
+    }
+
+    /**
+     * 批量消费累计合并掉的消息数
+     */
+    public long getCoalescedTotal() {
+        return coalescedTotal.get();
     }
 
     // 内部消息类
@@ -245,8 +924,9 @@ public class MemoryMQServiceImpl implements MQService {
         final String topic;
         final String key;
         final Object message;
-        @SuppressWarnings("unused") // timestamp字段保留用于未来可能的消息排序或过期检查
         final long timestamp;
+        // 持久化模式下的未消费位置，消费完成后释放
+        PendingOffsets.Mark mark;
 
         MQMessage(String topic, String key, Object message, long timestamp) {
             this.topic = topic;
@@ -256,8 +936,62 @@ public class MemoryMQServiceImpl implements MQService {
         }
     }
 
+    // topic 的分区集合
+    private static class TopicPartitions {
+        final String name;
+        final int capacity;
+        final Partition[] partitions;
+        volatile boolean paused;
+
+        TopicPartitions(String name, int partitionCount, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+            this.partitions = new Partition[partitionCount];
+            // 容量平均分配到各分区
+            int partitionCapacity = Math.max(1, (capacity + partitionCount - 1) / partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new Partition(this, i, partitionCapacity);
+            }
+        }
+
+        Partition partitionOf(String key) {
+            int h = key == null ? 0 : key.hashCode();
+            h ^= (h >>> 16);
+            return partitions[Math.floorMod(h, partitions.length)];
+        }
+    }
+
+    // 分区：有界队列，同一时刻只被一个工作线程占有
+    private static class Partition {
+        final TopicPartitions topic;
+        final int index;
+        final int capacity;
+        final BlockingQueue<MQMessage> queue;
+        final AtomicLong enqueued = new AtomicLong(0);
+        final AtomicLong consumed = new AtomicLong(0);
+        // 已在就绪队列中或正被工作线程消费
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        Partition(TopicPartitions topic, int index, int capacity) {
+            this.topic = topic;
+            this.index = index;
+            this.capacity = capacity;
+            this.queue = new LinkedBlockingQueue<>(capacity);
+        }
+    }
+
     // 消息处理器接口
     public interface MessageHandler {
         void handleMessage(String topic, String key, Object message);
     }
+
+    // 批量消息处理器接口：messages 为同一 topic 合并后的消息，同一 key 只有一条；抛出异常时整批进入死信队列
+    public interface BatchMessageHandler {
+        void handleBatch(String topic, List<AsyncDataMsg<?>> messages);
+    }
+
+    // 死信处理器接口
+    public interface DeadLetterHandler {
+        void handleDeadLetter(String key, CompensationMsg<?> message);
+    }
 }
\ No newline at end of file
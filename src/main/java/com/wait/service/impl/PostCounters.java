@@ -0,0 +1,246 @@
+package com.wait.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.entity.PostCounts;
+import com.wait.entity.domain.Post;
+import com.wait.mapper.PostMapper;
+import com.wait.sync.write.DrainableBuffer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 帖子计数：点赞、收藏数存于每个帖子一个的小 hash post:counter:{postId}（字段 like、favorite，listpack 编码）
+ * 1. 计数由关系脚本（bulk_relation、relation_step）在修改帖子侧集合的同时原子维护，字段不存在时按集合成员数初始化
+ * 2. getCounts 一次管道往返读取多个帖子的计数，渲染帖子列表不需要逐个 SCARD
+ * 3. 点赞数变化的帖子登记到本地待写回集合，定时批量写回 post.like_count；应用关闭时由 WriteBehindDrainer 排空
+ * 计数以 Redis 为准，写回失败的帖子放回待写回集合；节点宕机时未写回的帖子要等下次点赞变化后才会写回
+ * 计数 hash 与帖子侧集合同 slot（集群模式下 id 为 hash tag）；收藏数 post 表没有对应字段，只保存在 Redis
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostCounters implements DrainableBuffer {
+
+    static final String POST_COUNTER_PREFIX = "post:counter:";
+    public static final String LIKE_FIELD = "like";
+    public static final String FAVORITE_FIELD = "favorite";
+
+    /** 每条写回语句更新的帖子数 */
+    private static final int FLUSH_CHUNK_SIZE = 500;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisKeyLayout keyLayout;
+    private final PostMapper postMapper;
+
+    @Qualifier("refreshScheduler")
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    @Value("${post.counter.flush-interval-ms:30000}")
+    private final long flushIntervalMs;
+
+    /** 点赞数发生变化、等待写回数据库的帖子 */
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean accepting = true;
+    private volatile ScheduledFuture<?> flushLoop;
+
+    @PostConstruct
+    public void init() {
+        flushLoop = taskScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs);
+        log.info("Post counter write-behind started, interval: {}ms", flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ScheduledFuture<?> loop = flushLoop;
+        if (loop != null) {
+            loop.cancel(false);
+            flushLoop = null;
+        }
+    }
+
+    public String key(Long postId) {
+        return keyLayout.key(POST_COUNTER_PREFIX, postId);
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 批量读取计数，一次管道往返；结果按请求顺序，去掉空值和重复 id
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, PostCounts> getCounts(Collection<Long> postIds) {
+        if (postIds == null || postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
+        ids.removeIf(Objects::isNull);
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        byte[] like = stringRedisTemplate.getStringSerializer().serialize(LIKE_FIELD);
+        byte[] favorite = stringRedisTemplate.getStringSerializer().serialize(FAVORITE_FIELD);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : ids) {
+                connection.hashCommands().hMGet(stringRedisTemplate.getStringSerializer().serialize(key(id)),
+                        like, favorite);
+            }
+            return null;
+        });
+        Map<Long, PostCounts> counts = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object values = i < results.size() ? results.get(i) : null;
+            List<String> fields = values instanceof List ? (List<String>) values : Collections.emptyList();
+            counts.put(ids.get(i), new PostCounts(parse(fields, 0), parse(fields, 1)));
+        }
+        return counts;
+    }
+
+    private static Long parse(List<String> fields, int index) {
+        String value = index < fields.size() ? fields.get(index) : null;
+        return value == null ? null : Long.parseLong(value);
+    }
+
+    // ==================== 写回 ====================
+
+    /**
+     * 登记点赞数发生变化的帖子；停止接收后直接同步写回
+     */
+    public void markDirty(Long postId) {
+        if (postId == null) {
+            return;
+        }
+        if (accepting) {
+            dirty.add(postId);
+        } else {
+            writeBack(Collections.singletonList(postId));
+        }
+    }
+
+    /**
+     * 把待写回帖子的点赞数写入数据库，失败的帖子放回待写回集合
+     *
+     * @return 写回的帖子数
+     */
+    public int flush() {
+        int chunks = chunkCount();
+        int written = 0;
+        for (int i = 0; i < chunks; i++) {
+            written += writeBackChunk();
+        }
+        log.debug("Flushed like counts of {} posts", written);
+        return written;
+    }
+
+    /**
+     * 按当前待写回的帖子数计算的分块数，之后新登记的帖子留给下一轮
+     */
+    private int chunkCount() {
+        return (dirty.size() + FLUSH_CHUNK_SIZE - 1) / FLUSH_CHUNK_SIZE;
+    }
+
+    /**
+     * 取出一块待写回的帖子写回，失败时放回；在执行时才取出，未执行的分块始终留在待写回集合中
+     */
+    private int writeBackChunk() {
+        List<Long> chunk = new ArrayList<>(FLUSH_CHUNK_SIZE);
+        Iterator<Long> it = dirty.iterator();
+        while (chunk.size() < FLUSH_CHUNK_SIZE && it.hasNext()) {
+            Long id = it.next();
+            // 并发的分块可能遍历到同一个帖子，只有移除成功的一方写回
+            if (dirty.remove(id)) {
+                chunk.add(id);
+            }
+        }
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        try {
+            return writeBack(chunk);
+        } catch (RuntimeException e) {
+            dirty.addAll(chunk);
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush post like counts, {} posts pending", dirty.size(), e);
+        }
+    }
+
+    /**
+     * 读取 Redis 计数写入 post.like_count，Redis 中没有计数的帖子跳过
+     */
+    private int writeBack(List<Long> postIds) {
+        List<Post> posts = new ArrayList<>(postIds.size());
+        for (Map.Entry<Long, PostCounts> e : getCounts(postIds).entrySet()) {
+            Long likeCount = e.getValue().getLikeCount();
+            if (likeCount != null) {
+                posts.add(Post.builder().id(e.getKey()).likeCount((int) Math.max(0L, likeCount)).build());
+            }
+        }
+        if (!posts.isEmpty()) {
+            postMapper.batchUpdateLikeCount(posts);
+        }
+        return posts.size();
+    }
+
+    // ==================== 关闭排空 ====================
+
+    @Override
+    public String getBufferName() {
+        return "post-counter";
+    }
+
+    @Override
+    public void stopAccepting() {
+        accepting = false;
+    }
+
+    @Override
+    public List<DrainTask> drainTasks() {
+        stop();
+        int chunks = chunkCount();
+        List<DrainTask> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            tasks.add(new DrainTask("post-counter-chunk-" + i, this::writeBackChunk));
+        }
+        return tasks;
+    }
+
+    @Override
+    public Collection<String> pendingKeys() {
+        List<String> keys = new ArrayList<>(dirty.size());
+        for (Long id : dirty) {
+            keys.add(key(id));
+        }
+        return keys;
+    }
+}
@@ -2,18 +2,23 @@ package com.wait.service.impl;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wait.config.RedisKeyLayout;
 import com.wait.config.script.TimeLineScripts;
+import com.wait.entity.PostCounts;
 import com.wait.entity.domain.Post;
 import com.wait.mapper.PostMapper;
+import com.wait.service.RelationService;
 import com.wait.util.BoundUtil;
 
 import lombok.RequiredArgsConstructor;
@@ -32,10 +37,20 @@ public class PostServiceImpl {
 
     private final BoundUtil boundUtil;
 
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisKeyLayout keyLayout;
+
+    private final RelationService relationService;
+
+    private final FeedFanoutWorker feedFanoutWorker;
+
     private static final String POST_PREFIX = "post:";
     private static final String USER_POST_REL_PREFIX = "user:post:rel:";
     // 使用Set存储所有空用户ID，节省空间（业界常见做法）
     private static final String USER_POST_EMPTY_SET = "user:post:empty:set";
+    // 集群模式下全局 Set 所在 slot 会成为热点，且不能和用户帖子列表在同一脚本中修改，改为与列表同 slot 的每用户标记
+    private static final String USER_POST_EMPTY_PREFIX = "user:post:empty:";
     private static final long POST_EXPIRE_TIME = 60 * 5;
     private static final long USER_POST_EMPTY_EXPIRE_TIME = 60 * 10;
     // Redis中保存用户帖子的上限（测试环境设置为5）
@@ -61,6 +76,12 @@ public class PostServiceImpl {
             throw new IllegalStateException("Failed to serialize post to JSON", e);
         }
 
+        if (keyLayout.isCluster()) {
+            publishInCluster(post, postJson);
+            feedFanoutWorker.onPublish(post.getUserId(), postId);
+            return postId;
+        }
+
         // 如果用户在空用户Set中，需要移除（用户现在有帖子了）
         Boolean isInEmptySet = boundUtil.sIsMember(USER_POST_EMPTY_SET, post.getUserId());
         if (isInEmptySet != null && isInEmptySet) {
@@ -82,6 +103,9 @@ public class PostServiceImpl {
                     removedCount, post.getUserId());
         }
 
+        // 推送到粉丝首页（异步），拉模式作者只写入发件箱
+        feedFanoutWorker.onPublish(post.getUserId(), postId);
+
         return postId;
     }
 
@@ -102,11 +126,10 @@ public class PostServiceImpl {
      * - 用户体验好（可以查看所有历史）
      */
     public List<Post> getUserPagedPosts(Long userId, int page, int pageSize) {
-        String key = USER_POST_REL_PREFIX + userId;
+        String key = keyLayout.key(USER_POST_REL_PREFIX, userId);
 
         // 先检查用户是否在空用户Set中
-        Boolean isInEmptySet = boundUtil.sIsMember(USER_POST_EMPTY_SET, userId);
-        if (isInEmptySet != null && isInEmptySet) {
+        if (isMarkedEmpty(userId)) {
             // 用户确实没有帖子
             log.debug("User {} has no posts (in empty set)", userId);
             return Collections.emptyList();
@@ -141,8 +164,7 @@ public class PostServiceImpl {
             initializeUserPostRelation(userId);
 
             // 初始化后再次检查是否在空用户Set中
-            Boolean isInEmptySet = boundUtil.sIsMember(USER_POST_EMPTY_SET, userId);
-            if (isInEmptySet != null && isInEmptySet) {
+            if (isMarkedEmpty(userId)) {
                 return Collections.emptyList();
             }
         }
@@ -202,12 +224,11 @@ public class PostServiceImpl {
      */
     private void initializeUserPostRelation(Long userId) {
         List<Post> posts = postMapper.selectByUserId(userId);
-        String key = USER_POST_REL_PREFIX + userId;
+        String key = keyLayout.key(USER_POST_REL_PREFIX, userId);
 
         if (posts == null || posts.isEmpty()) {
             // 用户没有帖子，添加到空用户Set中，避免频繁查询数据库
-            boundUtil.sAdd(USER_POST_EMPTY_SET, userId);
-            boundUtil.expire(USER_POST_EMPTY_SET, USER_POST_EMPTY_EXPIRE_TIME, TimeUnit.SECONDS);
+            markEmpty(userId);
             log.info("User {} has no posts, added to empty set", userId);
             return;
         }
@@ -284,7 +305,19 @@ public class PostServiceImpl {
             }
         }
 
-        // 5. 按postIds的顺序返回结果
+        // 5. 点赞数以 Redis 计数为准（缓存中的帖子和数据库中的 like_count 可能落后），由关系存储布局读取：
+        //    Set 布局读计数 hash，没有计数字段的帖子按集合成员数补齐；位图布局读集合成员数
+        if (!resultMap.isEmpty()) {
+            Map<Long, PostCounts> counts = relationService.getPostCounts(new ArrayList<>(resultMap.keySet()));
+            for (Map.Entry<Long, Post> e : resultMap.entrySet()) {
+                PostCounts count = counts.get(e.getKey());
+                if (count != null && count.getLikeCount() != null) {
+                    e.getValue().setLikeCount((int) Math.max(0L, count.getLikeCount()));
+                }
+            }
+        }
+
+        // 6. 按postIds的顺序返回结果
         List<Post> result = new ArrayList<>();
         for (Long postId : postIds) {
             Post post = resultMap.get(postId);
@@ -347,6 +380,12 @@ public class PostServiceImpl {
             return rowsAffected;
         }
 
+        if (keyLayout.isCluster()) {
+            deleteInCluster(userId, postId);
+            feedFanoutWorker.onDelete(userId, postId);
+            return rowsAffected;
+        }
+
         // 2. 使用Lua脚本原子性地执行Redis操作
         // 采用懒加载策略：删除后不主动补充帖子，等下次查询时从数据库加载
         List<String> keyList = new ArrayList<>();
@@ -365,6 +404,88 @@ public class PostServiceImpl {
             log.warn("Post {} not found in user {} post list cache", postId, userId);
         }
 
+        // 首页：移除发件箱中的帖子，粉丝收件箱中的 id 在读取时过滤
+        feedFanoutWorker.onDelete(userId, postId);
+
         return rowsAffected;
     }
+
+    // ==================== 集群模式 ====================
+
+    /**
+     * 集群模式发布：帖子缓存和用户帖子列表在不同 slot，拆成两个单 slot 步骤
+     * 1. 用户侧：更新帖子列表和空用户标记（同 slot，一次脚本）
+     * 2. 帖子侧：写入帖子缓存，失败时只是缓存未命中，下次从数据库加载
+     * 第 1 步失败时删除用户帖子列表作为补偿（幂等），下次查询从数据库重新加载，数据库中已有新帖子
+     */
+    private void publishInCluster(Post post, String postJson) {
+        Long userId = post.getUserId();
+        String listKey = keyLayout.key(USER_POST_REL_PREFIX, userId);
+        try {
+            Long removedCount = timeLineScripts.executeScript(TimeLineScripts.TIMELINE_PUSH,
+                    Arrays.asList(listKey, keyLayout.key(USER_POST_EMPTY_PREFIX, userId)),
+                    post.getId(), USER_POST_LIST_MAX_SIZE);
+            if (removedCount != null && removedCount > 0) {
+                log.info("Post list exceeded max size, removed {} old posts from user {} list", removedCount, userId);
+            }
+        } catch (RuntimeException e) {
+            invalidateUserPosts(userId, e);
+        }
+
+        try {
+            stringRedisTemplate.opsForValue().set(POST_PREFIX + post.getId(), postJson, POST_EXPIRE_TIME,
+                    TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Failed to cache post {}, it will be loaded from database", post.getId(), e);
+        }
+    }
+
+    /**
+     * 集群模式删除：先删除帖子缓存，再更新用户帖子列表，列表更新失败时删除列表作为补偿
+     */
+    private void deleteInCluster(Long userId, Long postId) {
+        stringRedisTemplate.delete(POST_PREFIX + postId);
+        try {
+            Long removedCount = timeLineScripts.executeScript(TimeLineScripts.TIMELINE_REMOVE,
+                    Arrays.asList(keyLayout.key(USER_POST_REL_PREFIX, userId),
+                            keyLayout.key(USER_POST_EMPTY_PREFIX, userId)),
+                    postId, USER_POST_EMPTY_EXPIRE_TIME);
+            log.debug("Deleted post {} from cache, removed count from user {} post list: {}",
+                    postId, userId, removedCount);
+        } catch (RuntimeException e) {
+            invalidateUserPosts(userId, e);
+        }
+    }
+
+    /**
+     * 补偿：删除用户帖子列表，下次查询从数据库重新加载；删除也失败时抛出原异常
+     */
+    private void invalidateUserPosts(Long userId, RuntimeException cause) {
+        String listKey = keyLayout.key(USER_POST_REL_PREFIX, userId);
+        log.warn("Failed to update post list of user {}, invalidating {}", userId, listKey, cause);
+        try {
+            stringRedisTemplate.delete(listKey);
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+            throw cause;
+        }
+    }
+
+    private boolean isMarkedEmpty(Long userId) {
+        if (keyLayout.isCluster()) {
+            return Boolean.TRUE.equals(boundUtil.exists(keyLayout.key(USER_POST_EMPTY_PREFIX, userId)));
+        }
+        Boolean isInEmptySet = boundUtil.sIsMember(USER_POST_EMPTY_SET, userId);
+        return isInEmptySet != null && isInEmptySet;
+    }
+
+    private void markEmpty(Long userId) {
+        if (keyLayout.isCluster()) {
+            boundUtil.set(keyLayout.key(USER_POST_EMPTY_PREFIX, userId), 1, USER_POST_EMPTY_EXPIRE_TIME,
+                    TimeUnit.SECONDS);
+            return;
+        }
+        boundUtil.sAdd(USER_POST_EMPTY_SET, userId);
+        boundUtil.expire(USER_POST_EMPTY_SET, USER_POST_EMPTY_EXPIRE_TIME, TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,554 @@
+package com.wait.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wait.config.script.StreamScripts;
+import com.wait.entity.CacheSyncParam;
+import com.wait.service.MQService;
+import com.wait.util.message.AsyncDataMsg;
+import com.wait.util.message.CompensationMsg;
+import com.wait.util.message.MessageCoalescer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于 Redis Streams 的 MQ 实现，复用应用已有的 Redis 连接，不需要单独部署消息中间件
+ * 1. 发送：每个 topic 一个流 mq:stream:{topic}，XADD 时 MAXLEN ~ 近似裁剪；死信单独写入 DL_TOPIC 对应的流
+ * 2. 消费：所有节点加入同一消费组，XREADGROUP 批量读取（COUNT + BLOCK），处理完成后 XACK；
+ *    处理失败或无法解析的消息写入死信流成功后才 ACK，死信写入失败的消息保持未确认，之后被重新认领处理
+ * 3. 卡住的消息：定期 XAUTOCLAIM 认领长时间未 ACK 的消息（消费者宕机或死信写入失败），
+ *    认领在消费线程上执行，与正常消费串行，处理器不会被并发调用
+ * 消息在 Redis 中持久化，节点重启不会丢失；同一消费组内多节点水平扩展，但不保证同一 key 的跨节点顺序
+ * 通过 mq.redis-stream.enabled=true 启用，业务方按 bean 名称 redisStreamMQService 选用
+ */
+@Service("redisStreamMQService")
+@ConditionalOnProperty(name = "mq.redis-stream.enabled", havingValue = "true")
+@Slf4j
+public class RedisStreamMQServiceImpl implements MQService {
+
+    public static final String STREAM_PREFIX = "mq:stream:";
+    public static final String TOPICS_KEY = "mq:stream:topics";
+
+    private static final String TYPE_ASYNC = "async";
+    private static final String TYPE_COMPENSATION = "compensation";
+    /** 批量发送时单次脚本调用的最大消息数，避免单个脚本长时间阻塞 Redis */
+    private static final int MAX_MESSAGES_PER_CALL = 500;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final StreamScripts streamScripts;
+    private final ObjectMapper objectMapper;
+
+    @Value("${mq.redis-stream.group:cache-sync}")
+    private String group;
+
+    @Value("${mq.redis-stream.max-len:100000}")
+    private long maxLen;
+
+    @Value("${mq.redis-stream.batch-size:100}")
+    private int batchSize;
+
+    @Value("${mq.redis-stream.block-ms:2000}")
+    private long blockMs;
+
+    // 超过该时间未 ACK 的消息视为卡住，由其他消费者认领
+    @Value("${mq.redis-stream.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "RedisStreamMQ-Consumer"));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "RedisStreamMQ-Claimer"));
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // 由维护任务置位，消费线程在下一轮读取前执行认领
+    private final AtomicBoolean claimRequested = new AtomicBoolean(false);
+    // 已创建消费组的 topic
+    private final Set<String> subscribedTopics = ConcurrentHashMap.newKeySet();
+
+    // 消息处理器（由业务方注入）
+    private volatile MemoryMQServiceImpl.MessageHandler messageHandler;
+
+    // 批量消息处理器（由业务方注入），设置后优先于单条处理器
+    private volatile MemoryMQServiceImpl.BatchMessageHandler batchMessageHandler;
+
+    // 死信处理器（由补偿引擎注入），未设置时只记录日志
+    private volatile MemoryMQServiceImpl.DeadLetterHandler deadLetterHandler;
+
+    public RedisStreamMQServiceImpl(StringRedisTemplate stringRedisTemplate, StreamScripts streamScripts,
+            ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.streamScripts = streamScripts;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    @Override
+    public void start() {
+        if (running.compareAndSet(false, true)) {
+            refreshTopics();
+            consumerExecutor.execute(this::consumeLoop);
+            // 定期发现新 topic、认领卡住的消息
+            scheduler.scheduleWithFixedDelay(this::maintain, claimIdleMs, claimIdleMs / 2, TimeUnit.MILLISECONDS);
+            log.info("RedisStreamMQ服务启动成功, group: {}, consumer: {}, topics: {}",
+                    group, consumerName, subscribedTopics);
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        if (running.compareAndSet(true, false)) {
+            scheduler.shutdown();
+            consumerExecutor.shutdown();
+            try {
+                // 等待当前阻塞读取返回，未 ACK 的消息由其他节点认领
+                if (!consumerExecutor.awaitTermination(blockMs + 5000, TimeUnit.MILLISECONDS)) {
+                    consumerExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.info("RedisStreamMQ服务已关闭");
+        }
+    }
+
+    /**
+     * 发送失败（序列化失败或 Redis 不可用）时抛出，由调用方降级或补偿，与 sendBatch 一致
+     */
+    @Override
+    public void sendMessage(String topic, String key, AsyncDataMsg message) {
+        append(topic, key, TYPE_ASYNC, message);
+    }
+
+    /**
+     * 批量发送：每 MAX_MESSAGES_PER_CALL 条消息一次脚本调用（一次往返），序列化失败或所在调用失败的消息作为被拒绝的消息返回
+     */
+    @Override
+    public List<AsyncDataMsg<?>> sendBatch(String topic, List<AsyncDataMsg<?>> messages) {
+        List<String> keys = Arrays.asList(STREAM_PREFIX + topic, TOPICS_KEY);
+        List<AsyncDataMsg<?>> rejected = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += MAX_MESSAGES_PER_CALL) {
+            List<AsyncDataMsg<?>> chunk = messages.subList(from, Math.min(messages.size(), from + MAX_MESSAGES_PER_CALL));
+            List<Object> args = new ArrayList<>(3 + chunk.size() * 3);
+            List<AsyncDataMsg<?>> encoded = new ArrayList<>(chunk.size());
+            args.add(topic);
+            args.add(maxLen);
+            args.add(System.currentTimeMillis());
+            for (AsyncDataMsg<?> message : chunk) {
+                try {
+                    String payload = objectMapper.writeValueAsString(message);
+                    args.add(message.getKey() != null ? message.getKey() : "");
+                    args.add(TYPE_ASYNC);
+                    args.add(payload);
+                    encoded.add(message);
+                } catch (JsonProcessingException e) {
+                    // 无法序列化的消息不发送，返回给调用方以异常完成对应的 future
+                    log.error("RedisStreamMQ: 消息序列化失败, topic: {}, key: {}", topic, message.getKey(), e);
+                    rejected.add(message);
+                }
+            }
+            if (encoded.isEmpty()) {
+                continue;
+            }
+            try {
+                streamScripts.executeScript(StreamScripts.STREAM_ADD_BATCH, keys, args.toArray());
+            } catch (RuntimeException e) {
+                // 只有这一次调用的消息未发送，之前已写入流的消息不能再报告为失败
+                log.error("RedisStreamMQ: 批量消息发送失败, topic: {}, size: {}", topic, encoded.size(), e);
+                rejected.addAll(encoded);
+            }
+        }
+        log.debug("RedisStreamMQ: 批量消息发送成功, topic: {}, size: {}, rejected: {}",
+                topic, messages.size() - rejected.size(), rejected.size());
+        return rejected;
+    }
+
+    /**
+     * 写入失败时抛出，调用方据此保留原消息或另行记录
+     */
+    @Override
+    public void sendDLMessage(String key, CompensationMsg message) {
+        append(DL_TOPIC, key, TYPE_COMPENSATION, message);
+    }
+
+    /**
+     * 写入死信流，失败时返回 false，调用方据此决定是否 ACK 原消息
+     */
+    private boolean tryDeadLetter(String key, CompensationMsg message) {
+        try {
+            appendOrThrow(DL_TOPIC, key, TYPE_COMPENSATION, message);
+            return true;
+        } catch (Exception e) {
+            log.error("RedisStreamMQ: 死信写入失败，原消息保持未确认, key: {}", key, e);
+            return false;
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        long total = 0;
+        for (String topic : subscribedTopics) {
+            Long size = stringRedisTemplate.opsForStream().size(STREAM_PREFIX + topic);
+            total += size != null ? size : 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public boolean isHealthy() {
+        if (!running.get()) {
+            return false;
+        }
+        try {
+            stringRedisTemplate.hasKey(TOPICS_KEY);
+            return true;
+        } catch (Exception e) {
+            log.warn("RedisStreamMQ: Redis不可用", e);
+            return false;
+        }
+    }
+
+    public void setMessageHandler(MemoryMQServiceImpl.MessageHandler handler) {
+        this.messageHandler = handler;
+    }
+
+    public void setBatchMessageHandler(MemoryMQServiceImpl.BatchMessageHandler handler) {
+        this.batchMessageHandler = handler;
+    }
+
+    public void setDeadLetterHandler(MemoryMQServiceImpl.DeadLetterHandler handler) {
+        this.deadLetterHandler = handler;
+    }
+
+    private void append(String topic, String key, String type, Object message) {
+        try {
+            appendOrThrow(topic, key, type, message);
+        } catch (JsonProcessingException e) {
+            log.error("RedisStreamMQ: 消息序列化失败, topic: {}, key: {}", topic, key, e);
+            throw new IllegalArgumentException("failed to serialize message, topic: " + topic + ", key: " + key, e);
+        } catch (RuntimeException e) {
+            log.error("RedisStreamMQ: 消息发送失败, topic: {}, key: {}", topic, key, e);
+            throw e;
+        }
+    }
+
+    private void appendOrThrow(String topic, String key, String type, Object message)
+            throws JsonProcessingException {
+        String payload = objectMapper.writeValueAsString(message);
+        streamScripts.executeScript(StreamScripts.STREAM_ADD,
+                Arrays.asList(STREAM_PREFIX + topic, TOPICS_KEY),
+                topic, maxLen, key, type, payload, System.currentTimeMillis());
+        log.debug("RedisStreamMQ: 消息发送成功, topic: {}, key: {}", topic, key);
+    }
+
+    /**
+     * 消费循环：一次 XREADGROUP 读取所有已订阅流的新消息；维护任务请求认领时先在本线程认领卡住的消息
+     */
+    private void consumeLoop() {
+        Consumer consumer = Consumer.from(group, consumerName);
+        StreamReadOptions options = StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs));
+        while (running.get()) {
+            try {
+                if (claimRequested.compareAndSet(true, false)) {
+                    for (String topic : subscribedTopics) {
+                        claimStuck(topic);
+                    }
+                }
+                List<String> topics = new ArrayList<>(subscribedTopics);
+                if (topics.isEmpty()) {
+                    TimeUnit.MILLISECONDS.sleep(blockMs);
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                StreamOffset<String>[] offsets = new StreamOffset[topics.size()];
+                for (int i = 0; i < topics.size(); i++) {
+                    offsets[i] = StreamOffset.create(STREAM_PREFIX + topics.get(i), ReadOffset.lastConsumed());
+                }
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                        .read(consumer, options, offsets);
+                if (records == null || records.isEmpty()) {
+                    continue;
+                }
+                List<StreamEntry> entries = new ArrayList<>(records.size());
+                for (MapRecord<String, Object, Object> record : records) {
+                    Map<Object, Object> value = record.getValue();
+                    entries.add(new StreamEntry(record.getStream().substring(STREAM_PREFIX.length()),
+                            record.getId().getValue(), (String) value.get("key"), (String) value.get("type"),
+                            (String) value.get("payload")));
+                }
+                process(entries);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("RedisStreamMQ: 消息消费异常", e);
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    /**
+     * 处理一批消息，ACK 已处理完成（或已写入死信流）的消息
+     */
+    private void process(List<StreamEntry> entries) {
+        Map<String, List<StreamEntry>> byTopic = new LinkedHashMap<>();
+        for (StreamEntry entry : entries) {
+            byTopic.computeIfAbsent(entry.topic, t -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<StreamEntry>> e : byTopic.entrySet()) {
+            String topic = e.getKey();
+            List<StreamEntry> topicEntries = e.getValue();
+            List<StreamEntry> done = new ArrayList<>(topicEntries.size());
+            if (DL_TOPIC.equals(topic)) {
+                for (StreamEntry entry : topicEntries) {
+                    if (dispatchDeadLetter(entry)) {
+                        done.add(entry);
+                    }
+                }
+            } else if (batchMessageHandler != null) {
+                if (dispatchBatch(topic, topicEntries)) {
+                    done.addAll(topicEntries);
+                }
+            } else {
+                for (StreamEntry entry : topicEntries) {
+                    if (dispatchOne(entry)) {
+                        done.add(entry);
+                    }
+                }
+            }
+            if (!done.isEmpty()) {
+                acknowledge(topic, done);
+            }
+        }
+    }
+
+    /**
+     * 批量处理一个 topic 的消息，合并后无法对应回单条记录，任一死信写入失败时整批都不 ACK，之后整批重新处理
+     *
+     * @return 是否可以 ACK 整批
+     */
+    private boolean dispatchBatch(String topic, List<StreamEntry> entries) {
+        boolean ackable = true;
+        List<String> topics = new ArrayList<>(entries.size());
+        List<AsyncDataMsg<?>> messages = new ArrayList<>(entries.size());
+        for (StreamEntry entry : entries) {
+            AsyncDataMsg<?> message = decodeAsync(entry);
+            if (message != null) {
+                topics.add(topic);
+                messages.add(message);
+            } else {
+                ackable &= deadLetterUndecodable(entry);
+            }
+        }
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(topics, messages);
+        for (Map.Entry<String, List<AsyncDataMsg<?>>> entry : result.getByTopic().entrySet()) {
+            try {
+                batchMessageHandler.handleBatch(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.error("RedisStreamMQ: 批量消息处理失败, topic: {}, size: {}", topic, entry.getValue().size(), e);
+                for (AsyncDataMsg<?> message : entry.getValue()) {
+                    ackable &= sendToDL(message, e);
+                }
+            }
+        }
+        return ackable;
+    }
+
+    /**
+     * @return 是否可以 ACK：处理成功，或处理失败但已写入死信流
+     */
+    private boolean dispatchOne(StreamEntry entry) {
+        AsyncDataMsg<?> message = decodeAsync(entry);
+        if (message == null) {
+            return deadLetterUndecodable(entry);
+        }
+        try {
+            MemoryMQServiceImpl.MessageHandler handler = messageHandler;
+            if (handler != null) {
+                handler.handleMessage(entry.topic, entry.key, message);
+            } else {
+                log.warn("RedisStreamMQ: 未设置消息处理器，消息被忽略, topic: {}, key: {}", entry.topic, entry.key);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("RedisStreamMQ: 消息处理失败, topic: {}, key: {}", entry.topic, entry.key, e);
+            return sendToDL(message, e);
+        }
+    }
+
+    /**
+     * @return 是否可以 ACK：已交给死信处理器；未设置处理器、反序列化或处理失败时保持未确认，之后重新认领
+     */
+    private boolean dispatchDeadLetter(StreamEntry entry) {
+        log.error("RedisStreamMQ: 处理死信消息, key: {}, payload: {}", entry.key, entry.payload);
+        if (!TYPE_COMPENSATION.equals(entry.type)) {
+            // 死信流中只有补偿消息，其他类型没有处理方式，记录日志后确认
+            log.warn("RedisStreamMQ: 无法识别的死信消息, id: {}, type: {}", entry.id, entry.type);
+            return true;
+        }
+        MemoryMQServiceImpl.DeadLetterHandler handler = deadLetterHandler;
+        if (handler == null) {
+            log.warn("RedisStreamMQ: 未设置死信处理器，死信保持未确认, id: {}", entry.id);
+            return false;
+        }
+        try {
+            handler.handleDeadLetter(entry.key, objectMapper.readValue(entry.payload, CompensationMsg.class));
+            return true;
+        } catch (Exception e) {
+            log.error("RedisStreamMQ: 死信处理失败，保持未确认, key: {}, id: {}", entry.key, entry.id, e);
+            return false;
+        }
+    }
+
+    private AsyncDataMsg<?> decodeAsync(StreamEntry entry) {
+        if (!TYPE_ASYNC.equals(entry.type) || entry.payload == null) {
+            log.warn("RedisStreamMQ: 无法识别的消息, topic: {}, id: {}, type: {}", entry.topic, entry.id, entry.type);
+            return null;
+        }
+        try {
+            return objectMapper.readValue(entry.payload, AsyncDataMsg.class);
+        } catch (JsonProcessingException e) {
+            log.error("RedisStreamMQ: 消息反序列化失败, topic: {}, id: {}", entry.topic, entry.id, e);
+            return null;
+        }
+    }
+
+    /**
+     * 无法解析的消息原样（类型和原始内容）写入死信流，便于人工排查
+     */
+    private boolean deadLetterUndecodable(StreamEntry entry) {
+        CacheSyncParam<Object> param = CacheSyncParam.builder()
+                .key(entry.key)
+                .newValue(entry.payload)
+                .messageTopic(entry.topic)
+                .build();
+        return tryDeadLetter(entry.key, CompensationMsg.builder()
+                .originalParam(param)
+                .failReason("undecodable stream entry " + entry.id + ", type: " + entry.type)
+                .failTime(System.currentTimeMillis())
+                .build());
+    }
+
+    private boolean sendToDL(AsyncDataMsg<?> message, Exception e) {
+        return tryDeadLetter(message.getKey(), CompensationMsg.ofAsyncDataMsg(message, e.getMessage()));
+    }
+
+    private void acknowledge(String topic, List<StreamEntry> entries) {
+        String[] ids = new String[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).id;
+        }
+        stringRedisTemplate.opsForStream().acknowledge(STREAM_PREFIX + topic, group, ids);
+    }
+
+    /**
+     * 定期维护：订阅新 topic，请求消费线程认领卡住的消息
+     */
+    private void maintain() {
+        try {
+            refreshTopics();
+            claimRequested.set(true);
+        } catch (Exception e) {
+            log.error("RedisStreamMQ: 维护任务失败", e);
+        }
+    }
+
+    private void refreshTopics() {
+        Set<String> topics = stringRedisTemplate.opsForSet().members(TOPICS_KEY);
+        List<String> all = new ArrayList<>(topics != null ? topics : Collections.<String>emptySet());
+        if (!all.contains(DL_TOPIC)) {
+            all.add(DL_TOPIC);
+        }
+        for (String topic : all) {
+            if (subscribedTopics.contains(topic)) {
+                continue;
+            }
+            Long created = streamScripts.executeScript(StreamScripts.STREAM_GROUP_CREATE,
+                    Collections.singletonList(STREAM_PREFIX + topic), group);
+            subscribedTopics.add(topic);
+            log.info("RedisStreamMQ: 订阅 topic: {}, 新建消费组: {}", topic, created != null && created == 1);
+        }
+    }
+
+    /**
+     * XAUTOCLAIM 认领空闲超过 claimIdleMs 的消息，分页直到扫描完整个待确认列表；只在消费线程上调用
+     */
+    private void claimStuck(String topic) {
+        String cursor = "0-0";
+        int claimedTotal = 0;
+        do {
+            List<String> result = streamScripts.executeScript(StreamScripts.STREAM_AUTOCLAIM,
+                    Collections.singletonList(STREAM_PREFIX + topic), group, consumerName, claimIdleMs, cursor,
+                    batchSize);
+            if (result == null || result.isEmpty()) {
+                return;
+            }
+            cursor = result.get(0);
+            List<StreamEntry> entries = new ArrayList<>();
+            for (int i = 1; i + 3 < result.size(); i += 4) {
+                entries.add(new StreamEntry(topic, result.get(i), result.get(i + 1), result.get(i + 2),
+                        result.get(i + 3)));
+            }
+            if (!entries.isEmpty()) {
+                claimedTotal += entries.size();
+                process(entries);
+            }
+        } while (!"0-0".equals(cursor) && running.get());
+        if (claimedTotal > 0) {
+            log.warn("RedisStreamMQ: 认领卡住的消息, topic: {}, count: {}", topic, claimedTotal);
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 流中读取的一条消息
+    private static class StreamEntry {
+        final String topic;
+        final String id;
+        final String key;
+        final String type;
+        final String payload;
+
+        StreamEntry(String topic, String id, String key, String type, String payload) {
+            this.topic = topic;
+            this.id = id;
+            this.key = key;
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+}
@@ -1,85 +1,465 @@
 package com.wait.service.impl;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Builder.Default;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 关系数据批量持久化任务
  * 用于缓冲点赞和收藏操作，支持定时和定量批量写入
+ *
+ * 实现要点：
+ * - 操作按 (id, id) 两个原始 long 存放在开放寻址表中，同一对 id 只保留最新状态，写入不产生字符串和装箱对象
+ * - 双缓冲：写入方无锁写入当前缓冲；刷库时原子切换到备用缓冲，等待仍在写旧缓冲的线程退出后读取旧缓冲，
+ *   读完清空留作下次切换的备用缓冲，不需要在锁内复制、清空整张表
+ * - 缓冲容量固定，写满时 add 返回 false，由调用方触发刷库切换缓冲后重试
  */
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
 public class RelationBatchTask {
 
+    /** 每块缓冲中点赞、收藏操作各自的最大条数 */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+
+    /** 当前接收写入的缓冲 */
+    private final AtomicReference<Buffer> active;
+
+    /** 已读取并清空的旧缓冲，下次切换时复用 */
+    private final AtomicReference<Buffer> spare = new AtomicReference<>();
+
+    /** 刷库失败放回的操作，下次切换时与缓冲合并（缓冲中的新操作优先） */
+    private final AtomicReference<Batch> retained = new AtomicReference<>();
+
+    public RelationBatchTask() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RelationBatchTask(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        Buffer first = new Buffer(capacity);
+        first.sealed = false;
+        this.active = new AtomicReference<>(first);
+    }
+
     /**
-     * 点赞操作缓冲：key = "postId:userId", value = true(点赞) / false(取消点赞)
+     * 添加点赞操作到缓冲
+     *
+     * @return 缓冲已满时返回 false，需要先刷库切换缓冲
      */
-    @Default
-    private ConcurrentMap<String, Boolean> likeOperations = new ConcurrentHashMap<>();
+    public boolean addLikeOperation(long postId, long userId, boolean isLike) {
+        return add(true, postId, userId, isLike);
+    }
 
     /**
-     * 收藏操作缓冲：key = "userId:postId", value = true(收藏) / false(取消收藏)
+     * 添加收藏操作到缓冲
+     *
+     * @return 缓冲已满时返回 false，需要先刷库切换缓冲
      */
-    @Default
-    private ConcurrentMap<String, Boolean> favoriteOperations = new ConcurrentHashMap<>();
+    public boolean addFavoriteOperation(long userId, long postId, boolean isFavorite) {
+        return add(false, userId, postId, isFavorite);
+    }
+
+    private boolean add(boolean like, long first, long second, boolean value) {
+        while (true) {
+            Buffer buffer = active.get();
+            buffer.writers.incrementAndGet();
+            try {
+                // 已被切换出去的缓冲不再接收写入，重新读取当前缓冲
+                if (!buffer.sealed) {
+                    return (like ? buffer.likes : buffer.favorites).put(first, second, value, false);
+                }
+            } finally {
+                buffer.writers.decrementAndGet();
+            }
+        }
+    }
 
     /**
-     * 添加点赞操作到缓冲
+     * 原子切换缓冲，取出切换前缓冲中的全部操作（含之前刷库失败放回的操作）
      */
-    public void addLikeOperation(Long postId, Long userId, boolean isLike) {
-        String key = postId + ":" + userId;
-        likeOperations.put(key, isLike);
+    public Batch swap() {
+        Buffer next = spare.getAndSet(null);
+        if (next == null) {
+            next = new Buffer(capacity);
+        }
+        next.sealed = false;
+        Buffer old = active.getAndSet(next);
+        old.sealed = true;
+        // 等待切换前已进入旧缓冲的写入完成，之后的写入会看到 sealed 并转到新缓冲
+        while (old.writers.get() != 0) {
+            Thread.yield();
+        }
+
+        Batch drained = new Batch(old.likes.drain(), old.favorites.drain());
+        old.reset();
+        spare.compareAndSet(null, old);
+
+        Batch older = retained.getAndSet(null);
+        return older == null ? drained : older.overriddenBy(drained);
     }
 
     /**
-     * 添加收藏操作到缓冲
+     * 刷库失败时放回操作，下次切换时重新取出；期间缓冲中同一对 id 的新操作优先
+     * 只与仍在缓冲中的操作比较新旧，调用方需要串行执行 切换-写库-放回，
+     * 否则失败批次放回前已有更新的一批提交时，重试会用旧状态覆盖新状态
      */
-    public void addFavoriteOperation(Long userId, Long postId, boolean isFavorite) {
-        String key = userId + ":" + postId;
-        favoriteOperations.put(key, isFavorite);
+    public void retain(Batch batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        retained.accumulateAndGet(batch, (current, failed) -> current == null ? failed : failed.overriddenBy(current));
+    }
+
+    /**
+     * 从放回的操作中取出最多 maxSize 条，其余仍留在放回操作中（snapshot 可见）
+     * 关闭排空时逐块取出刷库，未执行到的块不会从缓冲中消失
+     */
+    public Batch pollRetained(int maxSize) {
+        while (true) {
+            Batch current = retained.get();
+            if (current == null || current.isEmpty()) {
+                return Batch.EMPTY;
+            }
+            Batch rest = current.skip(maxSize);
+            if (retained.compareAndSet(current, rest.isEmpty() ? null : rest)) {
+                return current.take(maxSize);
+            }
+        }
+    }
+
+    /**
+     * 当前缓冲和放回操作的只读快照（用于报告未刷库的数据，不影响缓冲）
+     */
+    public Batch snapshot() {
+        Buffer buffer = active.get();
+        Batch current = new Batch(buffer.likes.drain(), buffer.favorites.drain());
+        Batch older = retained.get();
+        return older == null ? current : older.overriddenBy(current);
     }
 
     /**
      * 获取点赞操作数量
      */
     public int getLikeOperationCount() {
-        return likeOperations.size();
+        Batch older = retained.get();
+        return active.get().likes.size() + (older == null ? 0 : older.getLikes().size());
     }
 
     /**
      * 获取收藏操作数量
      */
     public int getFavoriteOperationCount() {
-        return favoriteOperations.size();
+        Batch older = retained.get();
+        return active.get().favorites.size() + (older == null ? 0 : older.getFavorites().size());
     }
 
     /**
      * 获取总操作数量
      */
     public int getTotalOperationCount() {
-        return likeOperations.size() + favoriteOperations.size();
+        return getLikeOperationCount() + getFavoriteOperationCount();
     }
 
     /**
-     * 清空所有操作
+     * 检查是否有待处理的操作
      */
-    public void clear() {
-        likeOperations.clear();
-        favoriteOperations.clear();
+    public boolean hasPendingOperations() {
+        return getTotalOperationCount() > 0;
     }
 
     /**
-     * 检查是否有待处理的操作
+     * 一块缓冲：点赞、收藏两张表和正在写入的线程数
      */
-    public boolean hasPendingOperations() {
-        return !likeOperations.isEmpty() || !favoriteOperations.isEmpty();
+    private static final class Buffer {
+        final OperationTable likes;
+        final OperationTable favorites;
+        final AtomicInteger writers = new AtomicInteger();
+        /** 未激活或已切换出去的缓冲为 true，拒绝写入 */
+        volatile boolean sealed = true;
+
+        Buffer(int capacity) {
+            this.likes = new OperationTable(capacity);
+            this.favorites = new OperationTable(capacity);
+        }
+
+        void reset() {
+            likes.clear();
+            favorites.clear();
+        }
+    }
+
+    /**
+     * 从缓冲取出的一批操作
+     */
+    public static final class Batch {
+
+        static final Batch EMPTY = new Batch(Operations.EMPTY, Operations.EMPTY);
+
+        private final Operations likes;
+        private final Operations favorites;
+
+        Batch(Operations likes, Operations favorites) {
+            this.likes = likes;
+            this.favorites = favorites;
+        }
+
+        /**
+         * 单条点赞操作（缓冲停止接收后直接写库使用）
+         */
+        public static Batch ofLike(long postId, long userId, boolean isLike) {
+            return new Batch(Operations.of(postId, userId, isLike), Operations.EMPTY);
+        }
+
+        /**
+         * 单条收藏操作（缓冲停止接收后直接写库使用）
+         */
+        public static Batch ofFavorite(long userId, long postId, boolean isFavorite) {
+            return new Batch(Operations.EMPTY, Operations.of(userId, postId, isFavorite));
+        }
+
+        /** 点赞操作：first = postId, second = userId */
+        public Operations getLikes() {
+            return likes;
+        }
+
+        /** 收藏操作：first = userId, second = postId */
+        public Operations getFavorites() {
+            return favorites;
+        }
+
+        public int size() {
+            return likes.size() + favorites.size();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * 前 count 条操作（点赞在前，收藏在后）
+         */
+        Batch take(int count) {
+            int likeCount = Math.min(count, likes.size());
+            int favoriteCount = Math.min(count - likeCount, favorites.size());
+            return new Batch(likes.slice(0, likeCount), favorites.slice(0, favoriteCount));
+        }
+
+        /**
+         * 去掉前 count 条后剩余的操作，与 take 互补
+         */
+        Batch skip(int count) {
+            int likeCount = Math.min(count, likes.size());
+            int favoriteCount = Math.min(count - likeCount, favorites.size());
+            return new Batch(likes.slice(likeCount, likes.size()), favorites.slice(favoriteCount, favorites.size()));
+        }
+
+        /**
+         * 与更新的一批操作合并，同一对 id 以 newer 为准
+         */
+        Batch overriddenBy(Batch newer) {
+            return new Batch(likes.overriddenBy(newer.likes), favorites.overriddenBy(newer.favorites));
+        }
+    }
+
+    /**
+     * 紧凑存放的一组 (first, second) -> 状态 操作
+     */
+    public static final class Operations {
+
+        static final Operations EMPTY = new Operations(new long[0], new long[0], new boolean[0]);
+
+        private final long[] firsts;
+        private final long[] seconds;
+        private final boolean[] values;
+
+        Operations(long[] firsts, long[] seconds, boolean[] values) {
+            this.firsts = firsts;
+            this.seconds = seconds;
+            this.values = values;
+        }
+
+        static Operations of(long first, long second, boolean value) {
+            return new Operations(new long[] { first }, new long[] { second }, new boolean[] { value });
+        }
+
+        public int size() {
+            return firsts.length;
+        }
+
+        public boolean isEmpty() {
+            return firsts.length == 0;
+        }
+
+        public long first(int i) {
+            return firsts[i];
+        }
+
+        public long second(int i) {
+            return seconds[i];
+        }
+
+        public boolean value(int i) {
+            return values[i];
+        }
+
+        Operations slice(int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return EMPTY;
+            }
+            long[] f = new long[length];
+            long[] s = new long[length];
+            boolean[] v = new boolean[length];
+            System.arraycopy(firsts, from, f, 0, length);
+            System.arraycopy(seconds, from, s, 0, length);
+            System.arraycopy(values, from, v, 0, length);
+            return new Operations(f, s, v);
+        }
+
+        Operations overriddenBy(Operations newer) {
+            if (isEmpty()) {
+                return newer;
+            }
+            if (newer.isEmpty()) {
+                return this;
+            }
+            OperationTable merged = new OperationTable(size() + newer.size());
+            for (int i = 0; i < newer.size(); i++) {
+                merged.put(newer.firsts[i], newer.seconds[i], newer.values[i], false);
+            }
+            for (int i = 0; i < size(); i++) {
+                merged.put(firsts[i], seconds[i], values[i], true);
+            }
+            return merged.drain();
+        }
+    }
+
+    /**
+     * 固定容量的并发开放寻址表，键为两个 long
+     * 槽位只会从空变为占用（清空除外），线性探测遇到空槽即可判定键不存在；
+     * 写入方 CAS 抢占空槽后写入键，再发布状态，读取方看到已发布状态后才读取键
+     */
+    private static final class OperationTable {
+
+        private static final int EMPTY = 0;
+        private static final int CLAIMED = 1;
+        private static final int FALSE = 2;
+        private static final int TRUE = 3;
+
+        private final int maxSize;
+        private final int mask;
+        private final long[] firsts;
+        private final long[] seconds;
+        private final AtomicIntegerArray states;
+        private final AtomicInteger size = new AtomicInteger();
+
+        OperationTable(int maxSize) {
+            this.maxSize = maxSize;
+            // 负载因子不超过 0.5
+            int slots = Integer.highestOneBit(Math.max(2, maxSize) - 1) << 2;
+            this.mask = slots - 1;
+            this.firsts = new long[slots];
+            this.seconds = new long[slots];
+            this.states = new AtomicIntegerArray(slots);
+        }
+
+        /**
+         * 写入操作
+         *
+         * @param onlyIfAbsent 为 true 时已存在的键保留原状态
+         * @return 表已满、键不存在时返回 false
+         */
+        boolean put(long first, long second, boolean value, boolean onlyIfAbsent) {
+            int encoded = value ? TRUE : FALSE;
+            int index = hash(first, second) & mask;
+            for (int probes = 0; probes <= mask; probes++, index = (index + 1) & mask) {
+                int state = states.get(index);
+                if (state == EMPTY) {
+                    if (size.incrementAndGet() > maxSize) {
+                        size.decrementAndGet();
+                        return false;
+                    }
+                    if (states.compareAndSet(index, EMPTY, CLAIMED)) {
+                        firsts[index] = first;
+                        seconds[index] = second;
+                        states.set(index, encoded);
+                        return true;
+                    }
+                    // 被其他线程抢占，按已占用槽位继续比较
+                    size.decrementAndGet();
+                    state = states.get(index);
+                }
+                if (state == CLAIMED) {
+                    state = awaitPublished(index);
+                }
+                if (firsts[index] == first && seconds[index] == second) {
+                    if (!onlyIfAbsent) {
+                        states.set(index, encoded);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        /**
+         * 复制出已发布的全部操作（切换缓冲后调用时表已不再有写入）
+         */
+        Operations drain() {
+            int count = size.get();
+            if (count == 0) {
+                return Operations.EMPTY;
+            }
+            long[] f = new long[count];
+            long[] s = new long[count];
+            boolean[] v = new boolean[count];
+            int n = 0;
+            for (int i = 0; i <= mask && n < count; i++) {
+                int state = states.get(i);
+                if (state == FALSE || state == TRUE) {
+                    f[n] = firsts[i];
+                    s[n] = seconds[i];
+                    v[n] = state == TRUE;
+                    n++;
+                }
+            }
+            if (n < count) {
+                // 只读快照时可能有尚未发布的槽位
+                Operations published = new Operations(f, s, v);
+                return published.slice(0, n);
+            }
+            return new Operations(f, s, v);
+        }
+
+        void clear() {
+            if (size.get() == 0) {
+                return;
+            }
+            for (int i = 0; i <= mask; i++) {
+                states.set(i, EMPTY);
+            }
+            size.set(0);
+        }
+
+        private int awaitPublished(int index) {
+            int state;
+            while ((state = states.get(index)) == CLAIMED) {
+                Thread.yield();
+            }
+            return state;
+        }
+
+        private static int hash(long first, long second) {
+            long h = first * 0x9E3779B97F4A7C15L ^ second;
+            h *= 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 32));
+        }
     }
 }
@@ -0,0 +1,145 @@
+package com.wait.service.impl;
+
+import static com.wait.service.impl.RelationServiceImpl.POST_FAVORITED_BY_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.POST_LIKE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_BLACKLIST_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_BLOCKED_BY_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FAVORITE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FOLLOWER_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FOLLOW_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_LIKE_PREFIX;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.script.RelationBitmapScripts;
+import com.wait.config.script.RelationScripts;
+import com.wait.entity.CursorPage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Set 布局到压缩位图布局的迁移工具
+ * 用 SCAN 找出各类关系 Set，再用 SSCAN 分页读取成员批量写入对应的压缩位图集合，不会一次性读取大集合；
+ * 写入时跳过已存在的成员，可以重复执行。迁移期间应暂停关系写入，或在切换 relation.storage=bitmap 后立即再执行一次，
+ * 补齐迁移与切换之间写入 Set 布局的关系（这段时间内的取消操作需要重新执行）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RelationBitmapMigrator {
+
+    /** 需要迁移的 Set 布局前缀 */
+    private static final List<String> SET_PREFIXES = Arrays.asList(
+            USER_FOLLOW_PREFIX, USER_FOLLOWER_PREFIX,
+            POST_LIKE_PREFIX, USER_LIKE_PREFIX,
+            USER_FAVORITE_PREFIX, POST_FAVORITED_BY_PREFIX,
+            USER_BLACKLIST_PREFIX, USER_BLOCKED_BY_PREFIX);
+
+    private static final int KEY_SCAN_COUNT = 1000;
+    private static final int MEMBER_PAGE_SIZE = 1000;
+    private static final int MAX_SCAN_ROUNDS = 16;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationScripts relationScripts;
+    private final RelationBitmapScripts bitmapScripts;
+
+    @Value("${relation.bitmap.array-max:512}")
+    private final int arrayMax;
+
+    /**
+     * 迁移所有关系 Set
+     *
+     * @param deleteSource 迁移成功后是否删除原 Set（UNLINK，后台释放内存）
+     * @return 每类关系迁移的集合数、成员数和跳过的非法成员数
+     */
+    public Map<String, Object> migrateAll(boolean deleteSource) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (String prefix : SET_PREFIXES) {
+            report.put(prefix, migratePrefix(prefix, deleteSource));
+        }
+        log.info("Relation bitmap migration finished: {}", report);
+        return report;
+    }
+
+    private Map<String, Long> migratePrefix(String prefix, boolean deleteSource) {
+        long[] stats = new long[3];
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(KEY_SCAN_COUNT).build();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            try (Cursor<byte[]> keys = connection.scan(options)) {
+                while (keys.hasNext()) {
+                    String key = new String(keys.next(), StandardCharsets.UTF_8);
+                    // 大集合分片后的分片 key 写入基础集合对应的位图，元数据 key 不含成员
+                    if (!ShardedRelationSets.isMetaKey(key)) {
+                        migrateSet(key, stats);
+                        stats[0]++;
+                    }
+                    if (deleteSource) {
+                        stringRedisTemplate.unlink(key);
+                    }
+                }
+            }
+            return null;
+        });
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("sets", stats[0]);
+        result.put("members", stats[1]);
+        result.put("skipped", stats[2]);
+        log.info("Migrated relation sets with prefix {}: {}", prefix, result);
+        return result;
+    }
+
+    /**
+     * 分页读取一个 Set 并写入对应的压缩位图集合
+     */
+    private void migrateSet(String key, long[] stats) {
+        String bitmapKey = BitmapRelationServiceImpl.bitmapKey(ShardedRelationSets.baseKeyOf(key));
+        String cursor = CursorPage.START;
+        do {
+            List<String> page = relationScripts.executeScript(RelationScripts.SCAN_PAGE,
+                    Collections.singletonList(key), cursor, MEMBER_PAGE_SIZE, MAX_SCAN_ROUNDS);
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            cursor = page.get(0);
+            List<Object> args = new ArrayList<>(page.size());
+            args.add(arrayMax);
+            for (int i = 1; i < page.size(); i++) {
+                Long id = parseId(page.get(i));
+                if (id == null) {
+                    stats[2]++;
+                    log.warn("Skip member out of bitmap range, key: {}, member: {}", key, page.get(i));
+                } else {
+                    args.add(id);
+                }
+            }
+            if (args.size() > 1) {
+                Long added = bitmapScripts.executeScript(RelationBitmapScripts.RBM_ADD_ALL,
+                        Collections.singletonList(bitmapKey), args.toArray());
+                stats[1] += added != null ? added : 0;
+            }
+        } while (!CursorPage.START.equals(cursor));
+    }
+
+    private static Long parseId(String member) {
+        try {
+            long id = Long.parseLong(member);
+            return id >= 0 && id <= BitmapRelationServiceImpl.MAX_ID ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,19 +1,22 @@
 package com.wait.service.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.wait.entity.RelationPair;
 import com.wait.entity.domain.PostFavorite;
 import com.wait.entity.domain.PostLike;
 import com.wait.entity.domain.UserFollow;
@@ -21,8 +24,8 @@ import com.wait.mapper.FollowMapper;
 import com.wait.mapper.PostFavoriteMapper;
 import com.wait.mapper.PostLikeMapper;
 import com.wait.service.RelationPersistenceService;
+import com.wait.sync.write.DrainableBuffer;
 import com.wait.util.AsyncSQLWrapper;
-import com.wait.util.BoundUtil;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -42,7 +45,7 @@ import lombok.extern.slf4j.Slf4j;
  * - 策略：先写 Redis，缓冲操作，定时（如 5 分钟）或定量（如 100 条）批量写入数据库
  * - 优势：减少数据库压力，提高响应速度，批量写入效率更高
  * - 适用场景：帖子点赞、评论点赞等高频操作
- * - 实现：参考 IncrementalWriteStrategy，使用 ConcurrentHashMap 缓冲 + ThreadPoolTaskScheduler 定时执行
+ * - 实现：参考 IncrementalWriteStrategy，使用原始 long 对开放寻址表双缓冲 + ThreadPoolTaskScheduler 定时执行
  * 
  * 3. **收藏关系（Favorite）**：采用 Write-Behind（写回）策略 - 定时+定量批量写入
  * - 原因：类似点赞，高频操作，但可接受最终一致性
@@ -61,7 +64,7 @@ import lombok.extern.slf4j.Slf4j;
  * - **去重合并**：同一 key 的多次操作只保留最新状态（如点赞后取消点赞，最终状态为未点赞）
  * 
  * 性能优化：
- * - 批量操作：将多个操作合并为批量写入，减少数据库交互次数
+ * - 批量操作：一批点赞/收藏在一个事务中用多行 INSERT ... ON DUPLICATE KEY UPDATE 和元组 IN 的多行 DELETE 写入，不再逐条查询、删除
  * - 异步写入：使用线程池异步执行数据库写入，不阻塞主流程
  * - 事务控制：使用 @Transactional 保证数据一致性
  * - 去重优化：相同操作的多次更新只保留最新状态，减少无效写入
@@ -69,22 +72,26 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class RelationPersistenceServiceImpl implements RelationPersistenceService {
-
-    private final BoundUtil boundUtil;
+public class RelationPersistenceServiceImpl implements RelationPersistenceService, DrainableBuffer {
 
     private final FollowMapper followMapper;
     private final PostLikeMapper postLikeMapper;
     private final PostFavoriteMapper postFavoriteMapper;
     private final AsyncSQLWrapper asyncSQLWrapper;
+    private final RelationReconciler relationReconciler;
+
+    private final TransactionTemplate transactionTemplate;
 
     @Qualifier("refreshScheduler")
     private final ThreadPoolTaskScheduler taskScheduler;
 
-    // Redis Key 前缀（与 RelationServiceImpl 保持一致）
-    private static final String USER_FOLLOW_PREFIX = "user:follow:";
-    private static final String POST_LIKE_PREFIX = "post:like:";
-    private static final String USER_FAVORITE_PREFIX = "user:favorite:";
+    /** 数据库的 max_allowed_packet，用于计算多行语句的分块大小 */
+    @Value("${relation.persistence.max-allowed-packet:4194304}")
+    private final long maxAllowedPacket;
+
+    /** 单条多行 INSERT/DELETE 的最大行数 */
+    @Value("${relation.persistence.max-statement-rows:5000}")
+    private final int maxStatementRows;
 
     // ==================== 批量写入配置 ====================
     /** 定时批量写入延迟时间：30 s */
@@ -93,13 +100,36 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
     /** 定量批量写入阈值：当缓冲达到 5 条时立即写入 */
     private static final int BATCH_SIZE_THRESHOLD = 5;
 
+    /** 多行语句分块估算：long 值的最大文本长度、每行括号和分隔符长度、预编译语句占位符上限 */
+    private static final int MAX_VALUE_CHARS = 20;
+    private static final int ROW_OVERHEAD_CHARS = 3;
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    /** 各多行语句每行的列数 */
+    private static final int FOLLOW_COLUMNS = 2;
+    private static final int LIKE_COLUMNS = 2;
+    private static final int FAVORITE_COLUMNS = 3;
+    private static final int FAVORITE_KEY_COLUMNS = 2;
+
+    /** 关闭排空时每个刷库任务包含的操作数 */
+    private static final int DRAIN_CHUNK_SIZE = 200;
+
     // ==================== 批量缓冲 ====================
-    /** 批量任务缓冲：使用单例任务对象，所有操作都缓冲到同一个任务中 */
+    /** 批量任务缓冲：双缓冲，刷库时原子切换，写入无需加锁 */
     private final RelationBatchTask batchTask = new RelationBatchTask();
 
     /** 定时刷库任务：用于定时批量写入 */
     private volatile ScheduledFuture<?> scheduledFlushTask;
 
+    /** 刷库锁：切换缓冲和写库在锁内完成，刷库串行执行 */
+    private final Object flushLock = new Object();
+
+    /** 是否已有排队中的异步刷库 */
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    /** 是否接收新的缓冲写入，应用关闭时置为false，之后的点赞/收藏直接同步写库 */
+    private volatile boolean accepting = true;
+
     // ==================== 关注关系持久化（Write-Through）====================
 
     @Override
@@ -133,12 +163,52 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
         });
     }
 
+    @Override
+    @Transactional
+    public void persistFollows(List<RelationPair> follows, boolean isFollow) {
+        if (follows == null || follows.isEmpty()) {
+            return;
+        }
+        List<UserFollow> rows = new ArrayList<>(follows.size());
+        for (RelationPair pair : follows) {
+            rows.add(UserFollow.builder()
+                    .followerId(pair.getActorId())
+                    .followedId(pair.getTargetId())
+                    .build());
+        }
+        int rowsPerStatement = rowsPerStatement(FOLLOW_COLUMNS);
+        asyncSQLWrapper.executeSync(() -> {
+            for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                List<UserFollow> chunk = rows.subList(from, Math.min(rows.size(), from + rowsPerStatement));
+                if (isFollow) {
+                    followMapper.batchInsertIgnoreDuplicates(chunk);
+                } else {
+                    followMapper.batchDelete(chunk);
+                }
+            }
+            log.info("Persisted {} {} in batch", rows.size(), isFollow ? "follows" : "unfollows");
+            return null;
+        });
+    }
+
     // ==================== 点赞关系持久化（Write-Behind - 定时+定量批量写入）====================
 
     @Override
     public CompletableFuture<Void> persistLike(Long userId, Long postId, boolean isLike) {
-        // 1. 将操作添加到缓冲队列（去重：同一 key 的多次操作只保留最新状态）
-        batchTask.addLikeOperation(postId, userId, isLike);
+        if (!accepting) {
+            // 应用关闭中，缓冲已停止接收，直接同步写库
+            RelationBatchTask.Batch single = RelationBatchTask.Batch.ofLike(postId, userId, isLike);
+            asyncSQLWrapper.executeSync(() -> {
+                applyBatch(single);
+                return null;
+            });
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // 1. 将操作添加到缓冲队列（去重：同一 key 的多次操作只保留最新状态），缓冲写满时在当前线程同步刷库腾出缓冲
+        while (!batchTask.addLikeOperation(postId, userId, isLike)) {
+            flushSerially(false);
+        }
 
         // 2. 检查是否达到定量阈值，如果达到则立即触发批量写入
         if (batchTask.getTotalOperationCount() >= BATCH_SIZE_THRESHOLD) {
@@ -158,8 +228,20 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
 
     @Override
     public CompletableFuture<Void> persistFavorite(Long userId, Long postId, boolean isFavorite) {
-        // 1. 将操作添加到缓冲队列（去重：同一 key 的多次操作只保留最新状态）
-        batchTask.addFavoriteOperation(userId, postId, isFavorite);
+        if (!accepting) {
+            // 应用关闭中，缓冲已停止接收，直接同步写库
+            RelationBatchTask.Batch single = RelationBatchTask.Batch.ofFavorite(userId, postId, isFavorite);
+            asyncSQLWrapper.executeSync(() -> {
+                applyBatch(single);
+                return null;
+            });
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // 1. 将操作添加到缓冲队列（去重：同一 key 的多次操作只保留最新状态），缓冲写满时在当前线程同步刷库腾出缓冲
+        while (!batchTask.addFavoriteOperation(userId, postId, isFavorite)) {
+            flushSerially(false);
+        }
 
         // 2. 检查是否达到定量阈值，如果达到则立即触发批量写入
         if (batchTask.getTotalOperationCount() >= BATCH_SIZE_THRESHOLD) {
@@ -205,40 +287,11 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
     // ==================== 批量同步（用于数据恢复/迁移）====================
 
     @Override
-    @Transactional
     public void batchSyncFollows(Long userId) {
         try {
-            // 从 Redis 读取关注列表
-            Set<Long> following = boundUtil.sMembers(USER_FOLLOW_PREFIX + userId, Long.class);
-            if (following == null || following.isEmpty()) {
-                log.info("No follows to sync for user {}", userId);
-                return;
-            }
-
-            // 从数据库读取已存在的关注关系
-            List<Long> dbFollowedIds = followMapper.selectFollowedIds(userId);
-            Set<Long> dbFollowedSet = new HashSet<>(dbFollowedIds);
-
-            // 找出需要新增的关注关系（在 Redis 中但不在数据库中）
-            List<UserFollow> toInsert = new ArrayList<>();
-            for (Long followedId : following) {
-                if (!dbFollowedSet.contains(followedId)) {
-                    toInsert.add(UserFollow.builder()
-                            .followerId(userId)
-                            .followedId(followedId)
-                            .build());
-                }
-            }
-
-            // 批量插入
-            if (!toInsert.isEmpty()) {
-                for (UserFollow follow : toInsert) {
-                    followMapper.insert(follow);
-                }
-                log.info("Batch synced {} follows for user {}", toInsert.size(), userId);
-            } else {
-                log.debug("All follows already synced for user {}", userId);
-            }
+            RelationReconciler.OwnerResult result = relationReconciler.reconcileOwner(
+                    RelationReconciler.RelationType.FOLLOW, userId, RelationReconciler.Options.insertOnly());
+            log.info("Batch synced {} follows for user {}", result.getInserted(), userId);
         } catch (Exception e) {
             log.error("Failed to batch sync follows for user {}", userId, e);
             throw new RuntimeException("批量同步关注关系失败", e);
@@ -246,39 +299,11 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
     }
 
     @Override
-    @Transactional
     public void batchSyncLikes(Long postId) {
         try {
-            // 从 Redis 读取点赞用户列表
-            Set<Long> likers = boundUtil.sMembers(POST_LIKE_PREFIX + postId, Long.class);
-            if (likers == null || likers.isEmpty()) {
-                log.info("No likes to sync for post {}", postId);
-                return;
-            }
-
-            // 批量插入（简化版，实际项目中应该检查是否存在）
-            List<PostLike> toInsert = new ArrayList<>();
-            for (Long userId : likers) {
-                boolean exists = postLikeMapper.exists(postId, userId);
-                if (!exists) {
-                    toInsert.add(PostLike.builder()
-                            .postId(postId)
-                            .userId(userId)
-                            .build());
-                }
-            }
-
-            // 批量插入
-            if (!toInsert.isEmpty()) {
-                if (toInsert.size() == 1) {
-                    postLikeMapper.insert(toInsert.get(0));
-                } else {
-                    postLikeMapper.batchInsert(toInsert);
-                }
-                log.info("Batch synced {} likes for post {}", toInsert.size(), postId);
-            } else {
-                log.debug("All likes already synced for post {}", postId);
-            }
+            RelationReconciler.OwnerResult result = relationReconciler.reconcileOwner(
+                    RelationReconciler.RelationType.LIKE, postId, RelationReconciler.Options.insertOnly());
+            log.info("Batch synced {} likes for post {}", result.getInserted(), postId);
         } catch (Exception e) {
             log.error("Failed to batch sync likes for post {}", postId, e);
             throw new RuntimeException("批量同步点赞关系失败", e);
@@ -286,42 +311,11 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
     }
 
     @Override
-    @Transactional
     public void batchSyncFavorites(Long userId) {
         try {
-            // 从 Redis 读取收藏列表
-            Set<Long> favorites = boundUtil.sMembers(USER_FAVORITE_PREFIX + userId, Long.class);
-            if (favorites == null || favorites.isEmpty()) {
-                log.info("No favorites to sync for user {}", userId);
-                return;
-            }
-
-            // 批量插入（简化版）
-            List<PostFavorite> toInsert = new ArrayList<>();
-            long now = System.currentTimeMillis();
-            for (Long postId : favorites) {
-                boolean exists = postFavoriteMapper.exists(userId, postId);
-                if (!exists) {
-                    toInsert.add(PostFavorite.builder()
-                            .userId(userId)
-                            .postId(postId)
-                            .createdAt(now)
-                            .build());
-                }
-            }
-
-            // 批量插入
-            if (!toInsert.isEmpty()) {
-                // 可以使用批量插入优化（如果 Mapper 支持）
-                if (toInsert.size() == 1) {
-                    postFavoriteMapper.insert(toInsert.get(0));
-                } else {
-                    postFavoriteMapper.batchInsert(toInsert);
-                }
-                log.info("Batch synced {} favorites for user {}", toInsert.size(), userId);
-            } else {
-                log.debug("All favorites already synced for user {}", userId);
-            }
+            RelationReconciler.OwnerResult result = relationReconciler.reconcileOwner(
+                    RelationReconciler.RelationType.FAVORITE, userId, RelationReconciler.Options.insertOnly());
+            log.info("Batch synced {} favorites for user {}", result.getInserted(), userId);
         } catch (Exception e) {
             log.error("Failed to batch sync favorites for user {}", userId, e);
             throw new RuntimeException("批量同步收藏关系失败", e);
@@ -350,196 +344,222 @@ public class RelationPersistenceServiceImpl implements RelationPersistenceServic
 
     /**
      * 批量刷写到数据库 - 核心方法
-     * 将缓冲的点赞和收藏操作批量写入数据库
+     * 将缓冲的点赞和收藏操作批量写入数据库：异步执行，已有排队中的刷库时不重复提交（排队中的刷库会带上新操作）
      */
     @Transactional
     public void flushBatchToDatabase() {
-        // 1. 获取当前缓冲的任务（使用同步块确保线程安全）
-        RelationBatchTask currentTask;
-        synchronized (batchTask) {
-            if (!batchTask.hasPendingOperations()) {
-                log.debug("No pending operations to flush");
-                return;
-            }
-
-            // 创建当前任务的快照，避免在写入过程中新操作影响
-            currentTask = new RelationBatchTask();
-            currentTask.getLikeOperations().putAll(batchTask.getLikeOperations());
-            currentTask.getFavoriteOperations().putAll(batchTask.getFavoriteOperations());
-
-            // 清空原任务，准备接收新操作
-            batchTask.clear();
+        if (!batchTask.hasPendingOperations()) {
+            log.debug("No pending operations to flush");
+            return;
         }
 
-        // 2. 取消已存在的定时任务（因为已经手动触发了）
+        // 1. 取消已存在的定时任务（因为已经手动触发了）
         if (scheduledFlushTask != null && !scheduledFlushTask.isDone()) {
             scheduledFlushTask.cancel(false);
             scheduledFlushTask = null;
         }
+        if (!flushQueued.compareAndSet(false, true)) {
+            return;
+        }
 
-        // 3. 异步执行批量写入，不阻塞主流程
+        // 2. 异步执行批量写入，不阻塞主流程
         asyncSQLWrapper.executeAsyncVoid(() -> {
+            flushQueued.set(false);
+            flushSerially(true);
+        });
+    }
+
+    /**
+     * 切换缓冲并写库，两步在同一把锁内完成，刷库串行执行
+     * 失败放回的操作一定早于之后切换出的任何操作，下次切换时与缓冲合并（缓冲中的新操作优先）再写库，
+     * 不会出现较新的一批已提交后，旧的失败操作重试时覆盖新状态
+     *
+     * @param onlyIfAccepting 为 true 时应用关闭中不再刷库，由排空任务接管
+     */
+    private void flushSerially(boolean onlyIfAccepting) {
+        synchronized (flushLock) {
+            if (onlyIfAccepting && !accepting) {
+                return;
+            }
+            RelationBatchTask.Batch currentBatch = batchTask.swap();
+            if (currentBatch.isEmpty()) {
+                return;
+            }
             try {
-                flushLikesToDatabase(currentTask);
-                flushFavoritesToDatabase(currentTask);
+                applyBatch(currentBatch);
                 log.info("Batch flush completed: {} likes, {} favorites",
-                        currentTask.getLikeOperationCount(),
-                        currentTask.getFavoriteOperationCount());
-            } catch (Exception e) {
+                        currentBatch.getLikes().size(),
+                        currentBatch.getFavorites().size());
+            } catch (RuntimeException e) {
                 log.error("Failed to flush batch to database", e);
-                // 写入失败时，将任务重新放回缓冲队列（补偿机制）
-                synchronized (batchTask) {
-                    batchTask.getLikeOperations().putAll(currentTask.getLikeOperations());
-                    batchTask.getFavoriteOperations().putAll(currentTask.getFavoriteOperations());
-                }
+                // 写入失败时，将操作放回缓冲（补偿机制，缓冲中的新操作优先）
+                batchTask.retain(currentBatch);
                 throw e;
             }
-        });
+        }
+    }
+
+    // ==================== 关闭时排空缓冲 ====================
+
+    @Override
+    public String getBufferName() {
+        return "relation";
+    }
+
+    @Override
+    public void stopAccepting() {
+        accepting = false;
     }
 
     /**
-     * 批量写入点赞操作到数据库
+     * 按 DRAIN_CHUNK_SIZE 拆分为多个刷库任务，便于并行执行
+     * 缓冲中的操作先整体转入放回区，每个任务执行时才从中取出一块：超时未执行的块、失败放回的块都仍在放回区，
+     * pendingKeys 能如实报告未刷库的数据
      */
-    private void flushLikesToDatabase(RelationBatchTask task) {
-        if (task.getLikeOperations().isEmpty()) {
-            return;
+    @Override
+    public List<DrainTask> drainTasks() {
+        if (scheduledFlushTask != null && !scheduledFlushTask.isDone()) {
+            scheduledFlushTask.cancel(false);
+            scheduledFlushTask = null;
         }
 
-        // 分离点赞和取消点赞操作
-        List<PostLike> likeCandidates = new ArrayList<>();
-        List<PostLike> toDelete = new ArrayList<>();
+        RelationBatchTask.Batch pending;
+        // 等待进行中的刷库结束，之后的异步刷库见到 accepting=false 不再执行
+        synchronized (flushLock) {
+            pending = batchTask.swap();
+            batchTask.retain(pending);
+        }
+        int chunks = (pending.size() + DRAIN_CHUNK_SIZE - 1) / DRAIN_CHUNK_SIZE;
+        List<DrainTask> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            tasks.add(new DrainTask("relation-chunk-" + i, () -> {
+                RelationBatchTask.Batch part = batchTask.pollRetained(DRAIN_CHUNK_SIZE);
+                if (!part.isEmpty()) {
+                    flushChunkForDrain(part);
+                }
+                return null;
+            }));
+        }
+        return tasks;
+    }
 
-        for (java.util.Map.Entry<String, Boolean> entry : task.getLikeOperations().entrySet()) {
-            String[] parts = entry.getKey().split(":");
-            Long postId = Long.parseLong(parts[0]);
-            Long userId = Long.parseLong(parts[1]);
-            boolean isLike = entry.getValue();
-
-            if (isLike) {
-                likeCandidates.add(PostLike.builder()
-                        .postId(postId)
-                        .userId(userId)
-                        .build());
-            } else {
-                toDelete.add(PostLike.builder()
-                        .postId(postId)
-                        .userId(userId)
-                        .build());
-            }
+    @Override
+    public Collection<String> pendingKeys() {
+        RelationBatchTask.Batch pending = batchTask.snapshot();
+        List<String> keys = new ArrayList<>(pending.size());
+        RelationBatchTask.Operations likes = pending.getLikes();
+        for (int i = 0; i < likes.size(); i++) {
+            keys.add("like:" + likes.first(i) + ":" + likes.second(i));
         }
+        RelationBatchTask.Operations favorites = pending.getFavorites();
+        for (int i = 0; i < favorites.size(); i++) {
+            keys.add("favorite:" + favorites.first(i) + ":" + favorites.second(i));
+        }
+        return keys;
+    }
 
-        // 批量查询已存在的点赞关系（优化：减少数据库交互次数）
-        Set<String> existingLikes = new HashSet<>();
-        if (!likeCandidates.isEmpty()) {
-            List<PostLike> existing = postLikeMapper.batchExists(likeCandidates);
-            for (PostLike like : existing) {
-                existingLikes.add(like.getPostId() + ":" + like.getUserId());
-            }
+    /**
+     * 排空时同步刷库：失败后放回缓冲区（缓冲中已有的新操作优先）并抛出异常
+     */
+    private void flushChunkForDrain(RelationBatchTask.Batch chunk) {
+        try {
+            applyBatch(chunk);
+        } catch (RuntimeException e) {
+            batchTask.retain(chunk);
+            throw e;
         }
+    }
 
-        // 过滤出需要插入的点赞关系（排除已存在的）
-        List<PostLike> toInsert = new ArrayList<>();
-        for (PostLike candidate : likeCandidates) {
-            String key = candidate.getPostId() + ":" + candidate.getUserId();
-            if (!existingLikes.contains(key)) {
-                toInsert.add(candidate);
-            }
+    /**
+     * 在一个事务中把一批点赞、收藏操作写入数据库
+     */
+    private void applyBatch(RelationBatchTask.Batch batch) {
+        transactionTemplate.execute(status -> {
+            flushLikesToDatabase(batch.getLikes());
+            flushFavoritesToDatabase(batch.getFavorites());
+            return null;
+        });
+    }
+
+    /**
+     * 批量写入点赞操作到数据库
+     * 点赞用多行 INSERT ... ON DUPLICATE KEY UPDATE（已存在的忽略），取消点赞用元组 IN 的多行 DELETE，
+     * 不再事先查询存在性；每条语句的行数受 max_allowed_packet 限制
+     */
+    private void flushLikesToDatabase(RelationBatchTask.Operations likes) {
+        if (likes.isEmpty()) {
+            return;
         }
 
-        // 批量插入点赞
-        if (!toInsert.isEmpty()) {
-            if (toInsert.size() == 1) {
-                postLikeMapper.insert(toInsert.get(0));
-            } else {
-                postLikeMapper.batchInsert(toInsert);
-            }
-            log.debug("Batch inserted {} likes", toInsert.size());
+        // 分离点赞和取消点赞操作（同一对 id 在缓冲中已去重）
+        List<PostLike> toInsert = new ArrayList<>();
+        List<PostLike> toDelete = new ArrayList<>();
+        for (int i = 0; i < likes.size(); i++) {
+            PostLike like = PostLike.builder()
+                    .postId(likes.first(i))
+                    .userId(likes.second(i))
+                    .build();
+            (likes.value(i) ? toInsert : toDelete).add(like);
         }
 
-        // 批量删除取消点赞（MyBatis 批量删除需要循环调用，或使用 IN 子句）
-        int deletedCount = 0;
-        for (PostLike like : toDelete) {
-            int deleted = postLikeMapper.delete(like.getPostId(), like.getUserId());
-            if (deleted > 0) {
-                deletedCount++;
-            }
+        int rows = rowsPerStatement(LIKE_COLUMNS);
+        int statements = 0;
+        for (int from = 0; from < toInsert.size(); from += rows, statements++) {
+            postLikeMapper.batchInsertIgnoreDuplicates(toInsert.subList(from, Math.min(toInsert.size(), from + rows)));
         }
-        if (deletedCount > 0) {
-            log.debug("Batch deleted {} unlikes", deletedCount);
+        int deleted = 0;
+        for (int from = 0; from < toDelete.size(); from += rows, statements++) {
+            deleted += postLikeMapper.batchDelete(toDelete.subList(from, Math.min(toDelete.size(), from + rows)));
         }
+        log.debug("Flushed likes: {} inserts, {} deletes ({} rows deleted) in {} statements",
+                toInsert.size(), toDelete.size(), deleted, statements);
     }
 
     /**
-     * 批量写入收藏操作到数据库
+     * 批量写入收藏操作到数据库，做法同点赞
      */
-    private void flushFavoritesToDatabase(RelationBatchTask task) {
-        if (task.getFavoriteOperations().isEmpty()) {
+    private void flushFavoritesToDatabase(RelationBatchTask.Operations favorites) {
+        if (favorites.isEmpty()) {
             return;
         }
 
         // 分离收藏和取消收藏操作
-        List<PostFavorite> favoriteCandidates = new ArrayList<>();
+        List<PostFavorite> toInsert = new ArrayList<>();
         List<PostFavorite> toDelete = new ArrayList<>();
         long now = System.currentTimeMillis();
-
-        for (java.util.Map.Entry<String, Boolean> entry : task.getFavoriteOperations().entrySet()) {
-            String[] parts = entry.getKey().split(":");
-            Long userId = Long.parseLong(parts[0]);
-            Long postId = Long.parseLong(parts[1]);
-            boolean isFavorite = entry.getValue();
-
-            if (isFavorite) {
-                favoriteCandidates.add(PostFavorite.builder()
-                        .userId(userId)
-                        .postId(postId)
-                        .createdAt(now)
-                        .build());
-            } else {
-                toDelete.add(PostFavorite.builder()
-                        .userId(userId)
-                        .postId(postId)
-                        .build());
-            }
+        for (int i = 0; i < favorites.size(); i++) {
+            PostFavorite favorite = PostFavorite.builder()
+                    .userId(favorites.first(i))
+                    .postId(favorites.second(i))
+                    .createdAt(now)
+                    .build();
+            (favorites.value(i) ? toInsert : toDelete).add(favorite);
         }
 
-        // 批量查询已存在的收藏关系（优化：减少数据库交互次数）
-        Set<String> existingFavorites = new HashSet<>();
-        if (!favoriteCandidates.isEmpty()) {
-            List<PostFavorite> existing = postFavoriteMapper.batchExists(favoriteCandidates);
-            for (PostFavorite favorite : existing) {
-                existingFavorites.add(favorite.getUserId() + ":" + favorite.getPostId());
-            }
-        }
-
-        // 过滤出需要插入的收藏关系（排除已存在的）
-        List<PostFavorite> toInsert = new ArrayList<>();
-        for (PostFavorite candidate : favoriteCandidates) {
-            String key = candidate.getUserId() + ":" + candidate.getPostId();
-            if (!existingFavorites.contains(key)) {
-                toInsert.add(candidate);
-            }
+        int insertRows = rowsPerStatement(FAVORITE_COLUMNS);
+        int deleteRows = rowsPerStatement(FAVORITE_KEY_COLUMNS);
+        int statements = 0;
+        for (int from = 0; from < toInsert.size(); from += insertRows, statements++) {
+            postFavoriteMapper.batchInsertIgnoreDuplicates(
+                    toInsert.subList(from, Math.min(toInsert.size(), from + insertRows)));
         }
-
-        // 批量插入收藏
-        if (!toInsert.isEmpty()) {
-            if (toInsert.size() == 1) {
-                postFavoriteMapper.insert(toInsert.get(0));
-            } else {
-                postFavoriteMapper.batchInsert(toInsert);
-            }
-            log.debug("Batch inserted {} favorites", toInsert.size());
+        int deleted = 0;
+        for (int from = 0; from < toDelete.size(); from += deleteRows, statements++) {
+            deleted += postFavoriteMapper.batchDelete(
+                    toDelete.subList(from, Math.min(toDelete.size(), from + deleteRows)));
         }
+        log.debug("Flushed favorites: {} inserts, {} deletes ({} rows deleted) in {} statements",
+                toInsert.size(), toDelete.size(), deleted, statements);
+    }
 
-        // 批量删除取消收藏
-        int deletedCount = 0;
-        for (PostFavorite favorite : toDelete) {
-            int deleted = postFavoriteMapper.delete(favorite.getUserId(), favorite.getPostId());
-            if (deleted > 0) {
-                deletedCount++;
-            }
-        }
-        if (deletedCount > 0) {
-            log.debug("Batch deleted {} unfavorites", deletedCount);
-        }
+    /**
+     * 单条多行语句的最大行数：SQL 文本不超过 max_allowed_packet 的一半（每个值按最长的 long 文本估算），
+     * 占位符不超过 MySQL 预编译语句上限，同时不超过配置的行数上限，避免单条语句持锁过久
+     */
+    private int rowsPerStatement(int columns) {
+        long rowBytes = (long) columns * (MAX_VALUE_CHARS + 1) + ROW_OVERHEAD_CHARS;
+        long byPacket = maxAllowedPacket / 2 / rowBytes;
+        long byPlaceholders = MAX_PLACEHOLDERS / columns;
+        return (int) Math.max(1, Math.min(maxStatementRows, Math.min(byPacket, byPlaceholders)));
     }
 }
@@ -0,0 +1,608 @@
+package com.wait.service.impl;
+
+import static com.wait.service.impl.RelationServiceImpl.POST_LIKE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FAVORITE_PREFIX;
+import static com.wait.service.impl.RelationServiceImpl.USER_FOLLOW_PREFIX;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.config.script.RelationBitmapScripts;
+import com.wait.entity.CursorPage;
+import com.wait.entity.domain.PostFavorite;
+import com.wait.entity.domain.PostLike;
+import com.wait.entity.domain.UserFollow;
+import com.wait.mapper.FollowMapper;
+import com.wait.mapper.PostFavoriteMapper;
+import com.wait.mapper.PostLikeMapper;
+import com.wait.util.BulkSQLExecutor;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 关系数据对账：以 Redis 为准修复数据库中的关注、点赞、收藏记录
+ * 1. 枚举 owner（关注者/帖子/收藏者）：数据库按键集分页读取有记录的 owner，Redis 用 SCAN 找出有集合的 owner，合并去重后
+ *    按窗口交给 BulkSQLExecutor 并行处理，在途分块数即并发上限
+ * 2. 单个 owner：分页读取 Redis 成员（Set 布局用 SSCAN，位图布局按 id 升序）排序为 long 数组，数据库按成员 id 键集分页升序读取，
+ *    归并比较得出数据库缺失（Redis 有、数据库无）和多余（数据库有、Redis 无）的记录，不需要逐条查询
+ * 3. 修复：写入前用一次批量成员检查复核差异，排除对账期间正常发生的关注/取消，再用多行 INSERT 和元组 IN 的 DELETE 分块写入
+ * Redis 集合为空的 owner 默认不删除数据库记录，避免 Redis 数据丢失后把数据库一并清空
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RelationReconciler {
+
+    /**
+     * 对账的关系类型：Redis 中以 owner 为 key 的集合，数据库中对应的 (owner, member) 记录
+     */
+    public enum RelationType {
+        /** user:follow:{followerId} <-> user_follow(follower_id, followed_id) */
+        FOLLOW(USER_FOLLOW_PREFIX),
+        /** post:like:{postId} <-> post_like(post_id, user_id) */
+        LIKE(POST_LIKE_PREFIX),
+        /** user:favorite:{userId} <-> post_favorite(user_id, post_id) */
+        FAVORITE(USER_FAVORITE_PREFIX);
+
+        private final String keyPrefix;
+
+        RelationType(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public static RelationType of(String name) {
+            for (RelationType type : values()) {
+                if (type.name().equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("unknown relation type: " + name);
+        }
+    }
+
+    /**
+     * 对账参数
+     */
+    @Data
+    @Builder
+    public static class Options {
+        /** 是否删除数据库中多余的记录，为 false 时只补齐缺失的记录 */
+        @Builder.Default
+        private boolean deleteStale = true;
+        /** Redis 集合为空时是否仍以 Redis 为准删除该 owner 的全部数据库记录 */
+        private boolean trustEmptyRedis;
+        /** 同时对账的 owner 分块数，未设置（<=0）时使用配置的默认值 */
+        private int concurrency;
+
+        /**
+         * 只补齐缺失记录（用于数据恢复/迁移的同步）
+         */
+        public static Options insertOnly() {
+            return Options.builder().deleteStale(false).build();
+        }
+    }
+
+    /**
+     * 单个 owner 的对账结果
+     */
+    @Data
+    public static class OwnerResult {
+        private long redisMembers;
+        private long dbRows;
+        private long missingInDb;
+        private long staleInDb;
+        private long inserted;
+        private long deleted;
+        /** Redis 集合为空、未删除数据库记录 */
+        private boolean staleSkipped;
+    }
+
+    private static final String STORAGE_BITMAP = "bitmap";
+
+    /** 数据库 owner、成员键集分页大小 */
+    private static final int OWNER_PAGE_SIZE = 1000;
+    private static final int MEMBER_PAGE_SIZE = 1000;
+
+    /** Redis SCAN 参数 */
+    private static final int KEY_SCAN_COUNT = 1000;
+
+    /** 每次提交给 BulkSQLExecutor 的 owner 数和每个分块的 owner 数 */
+    private static final int OWNER_WINDOW = 10000;
+    private static final int OWNERS_PER_CHUNK = 16;
+
+    /** 复核和修复时每批处理的成员数（一次 Redis 批量检查、一条多行语句） */
+    private static final int FIX_CHUNK_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationBitmapScripts bitmapScripts;
+    private final FollowMapper followMapper;
+    private final PostLikeMapper postLikeMapper;
+    private final PostFavoriteMapper postFavoriteMapper;
+    private final BulkSQLExecutor bulkSQLExecutor;
+    private final RedisKeyLayout keyLayout;
+    private final ShardedRelationSets shardedSets;
+
+    @Value("${relation.storage:set}")
+    private final String storage;
+
+    @Value("${relation.reconcile.concurrency:4}")
+    private final int defaultConcurrency;
+
+    /**
+     * 对账全部关系类型
+     */
+    public Map<String, Object> reconcileAll(Options options) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (RelationType type : RelationType.values()) {
+            report.put(type.name().toLowerCase(), reconcile(type, options));
+        }
+        return report;
+    }
+
+    /**
+     * 对账一种关系的全部 owner
+     *
+     * @return owner 数、两侧成员数、差异数、修复数、跳过删除和失败的 owner 数
+     */
+    public Map<String, Long> reconcile(RelationType type, Options options) {
+        long start = System.currentTimeMillis();
+        long[] owners = ownerIds(type);
+        int concurrency = options.getConcurrency() > 0 ? options.getConcurrency() : defaultConcurrency;
+        BulkSQLExecutor.Options bulkOptions = BulkSQLExecutor.Options.builder()
+                .maxInFlight(concurrency)
+                .chunkSize(OWNERS_PER_CHUNK)
+                .build();
+
+        OwnerResult total = new OwnerResult();
+        long[] counters = new long[2];
+        for (int from = 0; from < owners.length; from += OWNER_WINDOW) {
+            int to = Math.min(owners.length, from + OWNER_WINDOW);
+            List<Callable<OwnerResult>> operations = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                long ownerId = owners[i];
+                operations.add(() -> reconcileOwner(type, ownerId, options));
+            }
+            int windowStart = from;
+            bulkSQLExecutor.executeStreaming(operations, bulkOptions, result -> {
+                if (result.isSuccess()) {
+                    accumulate(total, result.getValue());
+                    if (result.getValue().isStaleSkipped()) {
+                        counters[0]++;
+                    }
+                } else {
+                    counters[1]++;
+                    log.warn("Reconcile failed, type: {}, owner: {}", type,
+                            owners[windowStart + result.getIndex()], result.getError());
+                }
+            });
+        }
+
+        Map<String, Long> report = new LinkedHashMap<>();
+        report.put("owners", (long) owners.length);
+        report.put("redisMembers", total.getRedisMembers());
+        report.put("dbRows", total.getDbRows());
+        report.put("missingInDb", total.getMissingInDb());
+        report.put("staleInDb", total.getStaleInDb());
+        report.put("inserted", total.getInserted());
+        report.put("deleted", total.getDeleted());
+        report.put("staleSkippedOwners", counters[0]);
+        report.put("failedOwners", counters[1]);
+        report.put("costMs", System.currentTimeMillis() - start);
+        log.info("Reconciled {} relations: {}", type, report);
+        return report;
+    }
+
+    /**
+     * 对账单个 owner
+     */
+    public OwnerResult reconcileOwner(RelationType type, long ownerId, Options options) {
+        String key = keyLayout.key(type.getKeyPrefix(), ownerId);
+        long[] redis = redisMembers(key);
+        OwnerResult result = new OwnerResult();
+        result.setRedisMembers(redis.length);
+
+        MemberDiff diff = new MemberDiff(redis);
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> page = dbMembersAfter(type, ownerId, afterId, MEMBER_PAGE_SIZE);
+            diff.accept(page);
+            result.setDbRows(result.getDbRows() + page.size());
+            if (page.size() < MEMBER_PAGE_SIZE) {
+                break;
+            }
+            afterId = page.get(page.size() - 1);
+        }
+        diff.finish();
+        LongArray missing = diff.getMissing();
+        LongArray stale = diff.getStale();
+        result.setMissingInDb(missing.size());
+        result.setStaleInDb(stale.size());
+
+        for (int from = 0; from < missing.size(); from += FIX_CHUNK_SIZE) {
+            List<Long> confirmed = confirm(key, missing, from, Math.min(missing.size(), from + FIX_CHUNK_SIZE), true);
+            if (!confirmed.isEmpty()) {
+                insert(type, ownerId, confirmed);
+                result.setInserted(result.getInserted() + confirmed.size());
+            }
+        }
+
+        if (!stale.isEmpty() && options.isDeleteStale()) {
+            if (redis.length == 0 && !options.isTrustEmptyRedis()) {
+                result.setStaleSkipped(true);
+                log.warn("Redis set {} is empty, keep {} db rows", key, stale.size());
+            } else {
+                for (int from = 0; from < stale.size(); from += FIX_CHUNK_SIZE) {
+                    List<Long> confirmed = confirm(key, stale, from, Math.min(stale.size(), from + FIX_CHUNK_SIZE), false);
+                    if (!confirmed.isEmpty()) {
+                        result.setDeleted(result.getDeleted() + delete(type, ownerId, confirmed));
+                    }
+                }
+            }
+        }
+
+        if (result.getInserted() > 0 || result.getDeleted() > 0) {
+            log.debug("Reconciled {}: {} inserted, {} deleted", key, result.getInserted(), result.getDeleted());
+        }
+        return result;
+    }
+
+    // ==================== owner 枚举 ====================
+
+    /**
+     * 数据库和 Redis 中出现过的 owner，升序去重
+     */
+    private long[] ownerIds(RelationType type) {
+        LongArray owners = new LongArray();
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> page = dbOwnersAfter(type, afterId, OWNER_PAGE_SIZE);
+            for (Long id : page) {
+                owners.add(id);
+            }
+            if (page.size() < OWNER_PAGE_SIZE) {
+                break;
+            }
+            afterId = page.get(page.size() - 1);
+        }
+
+        // 位图布局每个集合都有 {base}:card 计数 key，Set 布局 key 本身即集合
+        boolean bitmap = isBitmapStorage();
+        String keyPrefix = bitmap ? BitmapRelationServiceImpl.bitmapKey(type.getKeyPrefix()) : type.getKeyPrefix();
+        String keySuffix = bitmap ? ":card" : "";
+        ScanOptions scanOptions = ScanOptions.scanOptions()
+                .match(keyPrefix + "*" + keySuffix)
+                .count(KEY_SCAN_COUNT)
+                .build();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                // 集群不支持跨节点 SCAN，逐个主节点扫描
+                RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        try (Cursor<byte[]> keys = clusterConnection.scan(node, scanOptions)) {
+                            collectOwners(keys, keyPrefix, keySuffix, bitmap, owners);
+                        }
+                    }
+                }
+            } else {
+                try (Cursor<byte[]> keys = connection.scan(scanOptions)) {
+                    collectOwners(keys, keyPrefix, keySuffix, bitmap, owners);
+                }
+            }
+            return null;
+        });
+        return owners.sortedDistinct();
+    }
+
+    private void collectOwners(Cursor<byte[]> keys, String keyPrefix, String keySuffix, boolean bitmap,
+            LongArray owners) {
+        while (keys.hasNext()) {
+            String key = new String(keys.next(), StandardCharsets.UTF_8);
+            // Set 布局在集群模式下 id 带 hash tag；分片集合的基础 key 可能已迁空，按分片 key、元数据 key 找回所属集合
+            String id = bitmap ? key.substring(keyPrefix.length(), key.length() - keySuffix.length())
+                    : keyLayout.idOf(keyPrefix, ShardedRelationSets.baseKeyOf(key));
+            try {
+                owners.add(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                log.debug("Skip non relation key: {}", key);
+            }
+        }
+    }
+
+    // ==================== Redis 侧 ====================
+
+    private boolean isBitmapStorage() {
+        return STORAGE_BITMAP.equals(storage);
+    }
+
+    /**
+     * 分页读取集合全部成员，升序去重
+     */
+    private long[] redisMembers(String key) {
+        LongArray members = new LongArray();
+        if (isBitmapStorage()) {
+            long startId = 0L;
+            do {
+                List<Object> page = bitmapScripts.executeScript(RelationBitmapScripts.RBM_RANGE,
+                        Collections.singletonList(BitmapRelationServiceImpl.bitmapKey(key)), startId, MEMBER_PAGE_SIZE);
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                for (int i = 1; i < page.size(); i++) {
+                    members.add(toLong(page.get(i)));
+                }
+                startId = toLong(page.get(0));
+            } while (startId != 0L);
+        } else {
+            // 包含分片，迁移中的成员可能重复返回，由 sortedDistinct 去重
+            String cursor = CursorPage.START;
+            do {
+                CursorPage<String> page = shardedSets.scanPage(key, cursor, MEMBER_PAGE_SIZE);
+                for (String member : page.getItems()) {
+                    try {
+                        members.add(Long.parseLong(member));
+                    } catch (NumberFormatException e) {
+                        log.warn("Skip invalid member in {}: {}", key, member);
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (!CursorPage.START.equals(cursor));
+        }
+        return members.sortedDistinct();
+    }
+
+    /**
+     * 复核差异：一次批量检查，返回 Redis 中当前成员状态仍为 expectMember 的 id
+     */
+    private List<Long> confirm(String key, LongArray ids, int from, int to, boolean expectMember) {
+        List<Long> candidates = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            candidates.add(ids.get(i));
+        }
+        List<Boolean> flags;
+        if (isBitmapStorage()) {
+            flags = new ArrayList<>(candidates.size());
+            List<Object> args = new ArrayList<>(candidates.size());
+            for (Long id : candidates) {
+                if (id >= 0 && id <= BitmapRelationServiceImpl.MAX_ID) {
+                    args.add(id);
+                }
+            }
+            List<Object> result = null;
+            if (!args.isEmpty()) {
+                result = bitmapScripts.executeScript(RelationBitmapScripts.RBM_CHECK,
+                        Collections.singletonList(BitmapRelationServiceImpl.bitmapKey(key)), args.toArray());
+            }
+            int next = 0;
+            for (Long id : candidates) {
+                boolean checked = id >= 0 && id <= BitmapRelationServiceImpl.MAX_ID;
+                flags.add(checked && result != null && next < result.size() && toLong(result.get(next)) == 1L);
+                if (checked) {
+                    next++;
+                }
+            }
+        } else {
+            flags = shardedSets.isMember(key, candidates);
+        }
+
+        List<Long> confirmed = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            boolean member = i < flags.size() && Boolean.TRUE.equals(flags.get(i));
+            if (member == expectMember) {
+                confirmed.add(candidates.get(i));
+            }
+        }
+        return confirmed;
+    }
+
+    // ==================== 数据库侧 ====================
+
+    private List<Long> dbOwnersAfter(RelationType type, long afterId, int limit) {
+        switch (type) {
+            case FOLLOW:
+                return followMapper.selectFollowerIdsAfter(afterId, limit);
+            case LIKE:
+                return postLikeMapper.selectPostIdsAfter(afterId, limit);
+            case FAVORITE:
+                return postFavoriteMapper.selectUserIdsAfter(afterId, limit);
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    private List<Long> dbMembersAfter(RelationType type, long ownerId, long afterId, int limit) {
+        switch (type) {
+            case FOLLOW:
+                return followMapper.selectFollowedIdsAfter(ownerId, afterId, limit);
+            case LIKE:
+                return postLikeMapper.selectUserIdsAfter(ownerId, afterId, limit);
+            case FAVORITE:
+                return postFavoriteMapper.selectPostIdsAfter(ownerId, afterId, limit);
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    private void insert(RelationType type, long ownerId, List<Long> memberIds) {
+        switch (type) {
+            case FOLLOW:
+                followMapper.batchInsertIgnoreDuplicates(follows(ownerId, memberIds));
+                break;
+            case LIKE:
+                postLikeMapper.batchInsertIgnoreDuplicates(likes(ownerId, memberIds));
+                break;
+            case FAVORITE:
+                postFavoriteMapper.batchInsertIgnoreDuplicates(favorites(ownerId, memberIds));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    private int delete(RelationType type, long ownerId, List<Long> memberIds) {
+        switch (type) {
+            case FOLLOW:
+                return followMapper.batchDelete(follows(ownerId, memberIds));
+            case LIKE:
+                return postLikeMapper.batchDelete(likes(ownerId, memberIds));
+            case FAVORITE:
+                return postFavoriteMapper.batchDelete(favorites(ownerId, memberIds));
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    private static List<UserFollow> follows(long followerId, List<Long> followedIds) {
+        List<UserFollow> follows = new ArrayList<>(followedIds.size());
+        for (Long followedId : followedIds) {
+            follows.add(UserFollow.builder().followerId(followerId).followedId(followedId).build());
+        }
+        return follows;
+    }
+
+    private static List<PostLike> likes(long postId, List<Long> userIds) {
+        List<PostLike> likes = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            likes.add(PostLike.builder().postId(postId).userId(userId).build());
+        }
+        return likes;
+    }
+
+    private static List<PostFavorite> favorites(long userId, List<Long> postIds) {
+        List<PostFavorite> favorites = new ArrayList<>(postIds.size());
+        long now = System.currentTimeMillis();
+        for (Long postId : postIds) {
+            favorites.add(PostFavorite.builder().userId(userId).postId(postId).createdAt(now).build());
+        }
+        return favorites;
+    }
+
+    // ==================== 工具 ====================
+
+    private static void accumulate(OwnerResult total, OwnerResult owner) {
+        total.setRedisMembers(total.getRedisMembers() + owner.getRedisMembers());
+        total.setDbRows(total.getDbRows() + owner.getDbRows());
+        total.setMissingInDb(total.getMissingInDb() + owner.getMissingInDb());
+        total.setStaleInDb(total.getStaleInDb() + owner.getStaleInDb());
+        total.setInserted(total.getInserted() + owner.getInserted());
+        total.setDeleted(total.getDeleted() + owner.getDeleted());
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+
+    /**
+     * 成员归并：Redis 成员和数据库分页读出的成员都按 id 升序，逐页归并找出两侧的差异
+     */
+    static final class MemberDiff {
+        private final long[] redis;
+        private int next;
+        /** Redis 中有、数据库中没有 */
+        private final LongArray missing = new LongArray();
+        /** 数据库中有、Redis 中没有 */
+        private final LongArray stale = new LongArray();
+
+        MemberDiff(long[] redis) {
+            this.redis = redis;
+        }
+
+        /**
+         * 归并数据库的一页成员，页内和页间都需按 id 升序
+         */
+        void accept(List<Long> page) {
+            for (Long dbId : page) {
+                while (next < redis.length && redis[next] < dbId) {
+                    missing.add(redis[next++]);
+                }
+                if (next < redis.length && redis[next] == dbId) {
+                    next++;
+                } else {
+                    stale.add(dbId);
+                }
+            }
+        }
+
+        /**
+         * 数据库已读完，剩余的 Redis 成员都是缺失的
+         */
+        void finish() {
+            while (next < redis.length) {
+                missing.add(redis[next++]);
+            }
+        }
+
+        LongArray getMissing() {
+            return missing;
+        }
+
+        LongArray getStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * 可增长的 long 数组，避免大集合成员装箱
+     */
+    static final class LongArray {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] sortedDistinct() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (n == 0 || sorted[i] != sorted[n - 1]) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+        }
+    }
+}
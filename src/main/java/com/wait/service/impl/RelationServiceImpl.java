@@ -1,21 +1,28 @@
 package com.wait.service.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import com.wait.config.RedisKeyLayout;
 import com.wait.config.script.RelationScripts;
+import com.wait.entity.CursorPage;
+import com.wait.entity.PostCounts;
+import com.wait.entity.RelationPair;
+import com.wait.entity.type.RelationAction;
 import com.wait.service.RelationPersistenceService;
 import com.wait.service.RelationService;
-import com.wait.util.BoundUtil;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,28 +30,44 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * 关系服务实现 - 使用 Redis Set 实现关注、点赞、收藏等功能
  * 使用 Lua 脚本确保多条 Redis 命令的原子性
+ * 默认存储方式（relation.storage=set），连续数字 id 的大规模关系可切换为压缩位图存储 {@link BitmapRelationServiceImpl}
+ * 连接 Redis Cluster 时 key 按 id 加 hash tag，关系两侧的集合在不同 slot，写操作拆成单 slot 步骤执行（见 {@link #applyInSteps}）
+ * 成员数达到阈值的集合自动拆分为子集合（见 {@link ShardedRelationSets}），读写接口对分片透明
  */
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "relation.storage", havingValue = "set", matchIfMissing = true)
 @RequiredArgsConstructor
 public class RelationServiceImpl implements RelationService {
 
-    private final BoundUtil boundUtil;
     private final RedisTemplate<String, Object> redisTemplate;
     private final RelationScripts relationScripts;
     private final RelationPersistenceService persistenceService;
-
-    // Redis Key 前缀
-    private static final String USER_FOLLOW_PREFIX = "user:follow:";
-    private static final String USER_FOLLOWER_PREFIX = "user:follower:";
-    private static final String POST_LIKE_PREFIX = "post:like:";
-    private static final String USER_LIKE_PREFIX = "user:like:";
-    private static final String POST_LIKE_COUNT_PREFIX = "post:like_count:";
-    private static final String USER_FAVORITE_PREFIX = "user:favorite:";
-    private static final String POST_FAVORITED_BY_PREFIX = "post:favorited_by:";
-    private static final String POST_FAVORITE_COUNT_PREFIX = "post:favorite_count:";
-    private static final String USER_BLACKLIST_PREFIX = "user:blacklist:";
-    private static final String USER_BLOCKED_BY_PREFIX = "user:blocked_by:";
+    private final RedisKeyLayout keyLayout;
+    private final ShardedRelationSets shardedSets;
+    private final PostCounters postCounters;
+    private final RelationWarmLoader warmLoader;
+
+    // Redis Key 前缀（压缩位图存储和迁移工具共用）
+    static final String USER_FOLLOW_PREFIX = "user:follow:";
+    static final String USER_FOLLOWER_PREFIX = "user:follower:";
+    static final String POST_LIKE_PREFIX = "post:like:";
+    static final String USER_LIKE_PREFIX = "user:like:";
+    static final String USER_FAVORITE_PREFIX = "user:favorite:";
+    static final String POST_FAVORITED_BY_PREFIX = "post:favorited_by:";
+    static final String USER_BLACKLIST_PREFIX = "user:blacklist:";
+    static final String USER_BLOCKED_BY_PREFIX = "user:blocked_by:";
+
+    // 游标分页
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // 批量关系脚本的操作
+    static final String OP_ADD = "add";
+    static final String OP_REMOVE = "rem";
+    // 关系脚本返回值的位：状态发生变化、第一个（relation_step 为当前）集合进入分片状态、第二个集合进入分片状态
+    private static final long CHANGED = 1L;
+    private static final long SPLIT_FIRST = 2L;
+    private static final long SPLIT_SECOND = 4L;
 
     // ==================== 关注相关 ====================
 
@@ -59,13 +82,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行关注操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_FOLLOW_PREFIX + followerId);
-        keys.add(USER_FOLLOWER_PREFIX + followedId);
-
-        Long added = relationScripts.executeScript(RelationScripts.FOLLOW, keys, followedId, followerId);
+        boolean added = applyOne(RelationAction.FOLLOW, followerId, followedId);
 
-        if (added != null && added > 0) {
+        if (added) {
             log.info("user {} follows user {}", followerId, followedId);
 
             // Write-Through: 立即持久化到数据库
@@ -89,13 +108,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行取消关注操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_FOLLOW_PREFIX + followerId);
-        keys.add(USER_FOLLOWER_PREFIX + followedId);
-
-        Long removed = relationScripts.executeScript(RelationScripts.UNFOLLOW, keys, followedId, followerId);
+        boolean removed = applyOne(RelationAction.UNFOLLOW, followerId, followedId);
 
-        if (removed != null && removed > 0) {
+        if (removed) {
             log.info("user {} unfollows user {}", followerId, followedId);
 
             // Write-Through: 立即持久化到数据库
@@ -116,8 +131,15 @@ public class RelationServiceImpl implements RelationService {
         if (followerId == null || followedId == null) {
             return false;
         }
-        return Boolean.TRUE.equals(
-                boundUtil.sIsMember(USER_FOLLOW_PREFIX + followerId, followedId));
+        return isMember(keyLayout.key(USER_FOLLOW_PREFIX, followerId), followedId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckFollowing(Long followerId, List<Long> followedIds) {
+        if (followerId == null || followedIds == null || followedIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(keyLayout.key(USER_FOLLOW_PREFIX, followerId), followedIds);
     }
 
     @Override
@@ -125,7 +147,15 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(USER_FOLLOW_PREFIX + userId, Long.class);
+        return members(keyLayout.key(USER_FOLLOW_PREFIX, userId));
+    }
+
+    @Override
+    public CursorPage<Long> getFollowingPage(Long userId, String cursor, int count) {
+        if (userId == null) {
+            return emptyPage();
+        }
+        return scanPage(keyLayout.key(USER_FOLLOW_PREFIX, userId), cursor, count);
     }
 
     @Override
@@ -133,7 +163,15 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(USER_FOLLOWER_PREFIX + userId, Long.class);
+        return members(keyLayout.key(USER_FOLLOWER_PREFIX, userId));
+    }
+
+    @Override
+    public CursorPage<Long> getFollowersPage(Long userId, String cursor, int count) {
+        if (userId == null) {
+            return emptyPage();
+        }
+        return scanPage(keyLayout.key(USER_FOLLOWER_PREFIX, userId), cursor, count);
     }
 
     @Override
@@ -141,7 +179,7 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return 0L;
         }
-        return boundUtil.sCard(USER_FOLLOW_PREFIX + userId);
+        return shardedSets.count(keyLayout.key(USER_FOLLOW_PREFIX, userId));
     }
 
     @Override
@@ -149,7 +187,7 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return 0L;
         }
-        return boundUtil.sCard(USER_FOLLOWER_PREFIX + userId);
+        return shardedSets.count(keyLayout.key(USER_FOLLOWER_PREFIX, userId));
     }
 
     @Override
@@ -157,10 +195,22 @@ public class RelationServiceImpl implements RelationService {
         if (userId1 == null || userId2 == null) {
             return Collections.emptySet();
         }
+        String key1 = keyLayout.key(USER_FOLLOW_PREFIX, userId1);
+        String key2 = keyLayout.key(USER_FOLLOW_PREFIX, userId2);
+        if (keyLayout.isCluster() || shardedSets.isSharded(key1) || shardedSets.isSharded(key2)) {
+            // 两个用户的关注集合在不同 slot 或已分片，不能 SINTER：读取一方后批量检查另一方
+            List<Long> following = new ArrayList<>(getFollowing(userId1));
+            if (following.isEmpty()) {
+                return Collections.emptySet();
+            }
+            Map<Long, Boolean> both = batchIsMember(key2, following);
+            return both.entrySet().stream()
+                    .filter(e -> Boolean.TRUE.equals(e.getValue()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        }
         // 使用交集运算获取共同关注
-        Set<Object> mutual = redisTemplate.opsForSet().intersect(
-                USER_FOLLOW_PREFIX + userId1,
-                USER_FOLLOW_PREFIX + userId2);
+        Set<Object> mutual = redisTemplate.opsForSet().intersect(key1, key2);
 
         if (mutual == null || mutual.isEmpty()) {
             return Collections.emptySet();
@@ -197,14 +247,9 @@ public class RelationServiceImpl implements RelationService {
 
         // 使用 Lua 脚本原子性地执行点赞操作
         // 存储帖子点赞用户是为了展示头像，提供朋友共同点赞功能
-        List<String> keys = new ArrayList<>();
-        keys.add(POST_LIKE_PREFIX + postId);
-        keys.add(USER_LIKE_PREFIX + userId);
-        keys.add(POST_LIKE_COUNT_PREFIX + postId);
-
-        Long added = relationScripts.executeScript(RelationScripts.LIKE_POST, keys, userId, postId);
+        boolean added = applyOne(RelationAction.LIKE, userId, postId);
 
-        if (added != null && added > 0) {
+        if (added) {
             log.info("user {} likes post {}", userId, postId);
 
             // Write-Behind: 异步持久化到数据库（不阻塞主流程）
@@ -227,14 +272,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行取消点赞操作
-        List<String> keys = new ArrayList<>();
-        keys.add(POST_LIKE_PREFIX + postId);
-        keys.add(USER_LIKE_PREFIX + userId);
-        keys.add(POST_LIKE_COUNT_PREFIX + postId);
-
-        Long removed = relationScripts.executeScript(RelationScripts.UNLIKE_POST, keys, userId, postId);
+        boolean removed = applyOne(RelationAction.UNLIKE, userId, postId);
 
-        if (removed != null && removed > 0) {
+        if (removed) {
             log.info("user {} unlikes post {}", userId, postId);
 
             // Write-Behind: 异步持久化到数据库
@@ -256,8 +296,7 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null || postId == null) {
             return false;
         }
-        return Boolean.TRUE.equals(
-                boundUtil.sIsMember(POST_LIKE_PREFIX + postId, userId));
+        return isMember(keyLayout.key(POST_LIKE_PREFIX, postId), userId);
     }
 
     @Override
@@ -265,7 +304,15 @@ public class RelationServiceImpl implements RelationService {
         if (postId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(POST_LIKE_PREFIX + postId, Long.class);
+        return members(keyLayout.key(POST_LIKE_PREFIX, postId));
+    }
+
+    @Override
+    public CursorPage<Long> getLikersPage(Long postId, String cursor, int count) {
+        if (postId == null) {
+            return emptyPage();
+        }
+        return scanPage(keyLayout.key(POST_LIKE_PREFIX, postId), cursor, count);
     }
 
     @Override
@@ -273,8 +320,8 @@ public class RelationServiceImpl implements RelationService {
         if (postId == null) {
             return 0L;
         }
-        // 优先从 Set 获取准确计数
-        return boundUtil.sCard(POST_LIKE_PREFIX + postId);
+        Long count = postCounters.getCounts(Collections.singletonList(postId)).get(postId).getLikeCount();
+        return count != null ? count : shardedSets.count(keyLayout.key(POST_LIKE_PREFIX, postId));
     }
 
     @Override
@@ -283,11 +330,8 @@ public class RelationServiceImpl implements RelationService {
             return Collections.emptyMap();
         }
 
-        Map<Long, Boolean> result = new HashMap<>();
-        for (Long postId : postIds) {
-            result.put(postId, isLiked(userId, postId));
-        }
-        return result;
+        // 点赞脚本同时维护帖子侧和用户侧集合，批量检查用用户侧集合，一次往返代替逐个帖子检查
+        return batchIsMember(keyLayout.key(USER_LIKE_PREFIX, userId), postIds);
     }
 
     @Override
@@ -295,7 +339,7 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(USER_LIKE_PREFIX + userId, Long.class);
+        return members(keyLayout.key(USER_LIKE_PREFIX, userId));
     }
 
     // ==================== 收藏相关 ====================
@@ -307,14 +351,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行收藏操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_FAVORITE_PREFIX + userId);
-        keys.add(POST_FAVORITED_BY_PREFIX + postId);
-        keys.add(POST_FAVORITE_COUNT_PREFIX + postId);
+        boolean added = applyOne(RelationAction.FAVORITE, userId, postId);
 
-        Long added = relationScripts.executeScript(RelationScripts.FAVORITE_POST, keys, userId, postId);
-
-        if (added != null && added > 0) {
+        if (added) {
             log.info("user {} favorites post {}", userId, postId);
 
             // Write-Behind: 异步持久化到数据库
@@ -338,14 +377,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行取消收藏操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_FAVORITE_PREFIX + userId);
-        keys.add(POST_FAVORITED_BY_PREFIX + postId);
-        keys.add(POST_FAVORITE_COUNT_PREFIX + postId);
+        boolean removed = applyOne(RelationAction.UNFAVORITE, userId, postId);
 
-        Long removed = relationScripts.executeScript(RelationScripts.UNFAVORITE_POST, keys, userId, postId);
-
-        if (removed != null && removed > 0) {
+        if (removed) {
             log.info("user {} unfavorites post {}", userId, postId);
 
             // Write-Behind: 异步持久化到数据库
@@ -367,8 +401,15 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null || postId == null) {
             return false;
         }
-        return Boolean.TRUE.equals(
-                boundUtil.sIsMember(USER_FAVORITE_PREFIX + userId, postId));
+        return isMember(keyLayout.key(USER_FAVORITE_PREFIX, userId), postId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckFavorited(Long userId, List<Long> postIds) {
+        if (userId == null || postIds == null || postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(keyLayout.key(USER_FAVORITE_PREFIX, userId), postIds);
     }
 
     @Override
@@ -376,7 +417,7 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(USER_FAVORITE_PREFIX + userId, Long.class);
+        return members(keyLayout.key(USER_FAVORITE_PREFIX, userId));
     }
 
     @Override
@@ -384,8 +425,39 @@ public class RelationServiceImpl implements RelationService {
         if (postId == null) {
             return 0L;
         }
-        // 优先从 Set 获取准确计数
-        return boundUtil.sCard(POST_FAVORITED_BY_PREFIX + postId);
+        Long count = postCounters.getCounts(Collections.singletonList(postId)).get(postId).getFavoriteCount();
+        return count != null ? count : shardedSets.count(keyLayout.key(POST_FAVORITED_BY_PREFIX, postId));
+    }
+
+    @Override
+    public Map<Long, PostCounts> getPostCounts(List<Long> postIds) {
+        Map<Long, PostCounts> counts = postCounters.getCounts(postIds);
+        // 还没有发生过点赞/收藏变更的帖子没有计数字段，按集合成员数补齐，缺失的字段合并为一次管道往返
+        List<PostCounts> missing = new ArrayList<>();
+        List<Boolean> missingLike = new ArrayList<>();
+        List<String> baseKeys = new ArrayList<>();
+        for (Map.Entry<Long, PostCounts> e : counts.entrySet()) {
+            PostCounts c = e.getValue();
+            if (c.getLikeCount() == null) {
+                missing.add(c);
+                missingLike.add(Boolean.TRUE);
+                baseKeys.add(keyLayout.key(POST_LIKE_PREFIX, e.getKey()));
+            }
+            if (c.getFavoriteCount() == null) {
+                missing.add(c);
+                missingLike.add(Boolean.FALSE);
+                baseKeys.add(keyLayout.key(POST_FAVORITED_BY_PREFIX, e.getKey()));
+            }
+        }
+        List<Long> fallback = shardedSets.counts(baseKeys);
+        for (int i = 0; i < missing.size(); i++) {
+            if (missingLike.get(i)) {
+                missing.get(i).setLikeCount(fallback.get(i));
+            } else {
+                missing.get(i).setFavoriteCount(fallback.get(i));
+            }
+        }
+        return counts;
     }
 
     // ==================== 黑名单相关 ====================
@@ -401,13 +473,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行拉黑操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_BLACKLIST_PREFIX + userId);
-        keys.add(USER_BLOCKED_BY_PREFIX + blockedUserId);
-
-        Long added = relationScripts.executeScript(RelationScripts.BLOCK_USER, keys, blockedUserId, userId);
+        boolean added = applyOne(RelationAction.BLOCK, userId, blockedUserId);
 
-        if (added != null && added > 0) {
+        if (added) {
             log.info("user {} blocks user {}", userId, blockedUserId);
 
             // Write-Through: 立即持久化到数据库
@@ -430,13 +498,9 @@ public class RelationServiceImpl implements RelationService {
         }
 
         // 使用 Lua 脚本原子性地执行取消拉黑操作
-        List<String> keys = new ArrayList<>();
-        keys.add(USER_BLACKLIST_PREFIX + userId);
-        keys.add(USER_BLOCKED_BY_PREFIX + blockedUserId);
-
-        Long removed = relationScripts.executeScript(RelationScripts.UNBLOCK_USER, keys, blockedUserId, userId);
+        boolean removed = applyOne(RelationAction.UNBLOCK, userId, blockedUserId);
 
-        if (removed != null && removed > 0) {
+        if (removed) {
             log.info("user {} unblocks user {}", userId, blockedUserId);
 
             // Write-Through: 立即持久化到数据库
@@ -457,8 +521,15 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null || blockedUserId == null) {
             return false;
         }
-        return Boolean.TRUE.equals(
-                boundUtil.sIsMember(USER_BLACKLIST_PREFIX + userId, blockedUserId));
+        return isMember(keyLayout.key(USER_BLACKLIST_PREFIX, userId), blockedUserId);
+    }
+
+    @Override
+    public Map<Long, Boolean> batchCheckBlocked(Long userId, List<Long> blockedUserIds) {
+        if (userId == null || blockedUserIds == null || blockedUserIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return batchIsMember(keyLayout.key(USER_BLACKLIST_PREFIX, userId), blockedUserIds);
     }
 
     @Override
@@ -466,7 +537,15 @@ public class RelationServiceImpl implements RelationService {
         if (userId == null) {
             return Collections.emptySet();
         }
-        return boundUtil.sMembers(USER_BLACKLIST_PREFIX + userId, Long.class);
+        return members(keyLayout.key(USER_BLACKLIST_PREFIX, userId));
+    }
+
+    @Override
+    public CursorPage<Long> getBlacklistPage(Long userId, String cursor, int count) {
+        if (userId == null) {
+            return emptyPage();
+        }
+        return scanPage(keyLayout.key(USER_BLACKLIST_PREFIX, userId), cursor, count);
     }
 
     @Override
@@ -484,4 +563,418 @@ public class RelationServiceImpl implements RelationService {
                 .filter(id -> !blacklist.contains(id))
                 .collect(Collectors.toList());
     }
+
+    // ==================== 批量操作 ====================
+
+    @Override
+    public List<Boolean> batchApply(RelationAction action, List<RelationPair> pairs) {
+        checkBatch(action, pairs);
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(pairs.size(), Boolean.FALSE));
+
+        List<Integer> sent = new ArrayList<>(pairs.size());
+        List<RelationPair> sentPairs = new ArrayList<>(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            if (!isSelfRelation(action, pairs.get(i))) {
+                sent.add(i);
+                sentPairs.add(pairs.get(i));
+            }
+        }
+        if (sent.isEmpty()) {
+            return results;
+        }
+
+        List<Boolean> applied = applyRelations(action, sentPairs);
+        List<RelationPair> changed = new ArrayList<>();
+        for (int i = 0; i < sent.size(); i++) {
+            if (applied.get(i)) {
+                results.set(sent.get(i), Boolean.TRUE);
+                changed.add(sentPairs.get(i));
+            }
+        }
+        log.info("batch {} applied, {} of {} relations changed", action, changed.size(), pairs.size());
+        persistBatch(persistenceService, action, changed);
+        return results;
+    }
+
+    /**
+     * 执行单条关系操作，与批量操作共用脚本
+     */
+    private boolean applyOne(RelationAction action, Long actorId, Long targetId) {
+        return applyRelations(action, Collections.singletonList(new RelationPair(actorId, targetId))).get(0);
+    }
+
+    private List<Boolean> applyRelations(RelationAction action, List<RelationPair> pairs) {
+        RelationReconciler.RelationType warmType = warmTypeOf(action);
+        boolean warming = warmType != null && warmLoader.isLoading(warmType);
+        if (warming) {
+            // 预热期间先登记（或清除）删除标记再写 Redis，预热不会把已删除的关系重新加回
+            if (action.isAdd()) {
+                warmLoader.clearRemoved(warmType, pairs);
+            } else {
+                warmLoader.markRemoved(warmType, pairs);
+            }
+        }
+        List<Boolean> applied = keyLayout.isCluster() ? applyInSteps(action, pairs) : applyBulk(action, pairs);
+        if (warming && !action.isAdd()) {
+            // 关系可能还没有加载到 Redis，删除一律视为生效，保证数据库中的记录被删除
+            applied = new ArrayList<>(Collections.nCopies(pairs.size(), Boolean.TRUE));
+        }
+        if (action == RelationAction.LIKE || action == RelationAction.UNLIKE) {
+            // 点赞数由脚本维护在计数 hash 中，登记后定时写回 post.like_count
+            for (int i = 0; i < pairs.size(); i++) {
+                if (applied.get(i)) {
+                    postCounters.markDirty(pairs.get(i).getTargetId());
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 可预热的关系类型，拉黑关系没有数据库表，返回 null
+     */
+    private static RelationReconciler.RelationType warmTypeOf(RelationAction action) {
+        switch (action) {
+            case FOLLOW:
+            case UNFOLLOW:
+                return RelationReconciler.RelationType.FOLLOW;
+            case LIKE:
+            case UNLIKE:
+                return RelationReconciler.RelationType.LIKE;
+            case FAVORITE:
+            case UNFAVORITE:
+                return RelationReconciler.RelationType.FAVORITE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 单机模式：所有关系的 key 和成员拼到一次脚本调用中，整批原子执行
+     * 每个集合传 基础 key、分片 key、元数据 key，脚本返回集合本次进入分片状态时提交后台迁移
+     */
+    private List<Boolean> applyBulk(RelationAction action, List<RelationPair> pairs) {
+        boolean withCounter = hasCounter(action);
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(action.isAdd() ? OP_ADD : OP_REMOVE);
+        args.add(withCounter ? 7 : 6);
+        args.add(shardedSets.getThreshold());
+        args.add(counterField(action));
+        args.add(counterSide(action) + 1);
+        for (RelationPair pair : pairs) {
+            List<String> relationKeys = relationKeys(keyLayout, action, pair);
+            Long[] members = relationMembers(action, pair);
+            keys.addAll(ShardedRelationSets.keyGroup(relationKeys.get(0), members[0]));
+            keys.addAll(ShardedRelationSets.keyGroup(relationKeys.get(1), members[1]));
+            if (withCounter) {
+                keys.add(relationKeys.get(2));
+            }
+            args.addAll(Arrays.asList(members));
+        }
+        List<Object> flags = relationScripts.executeScript(RelationScripts.BULK_RELATION, keys, args.toArray());
+        List<Boolean> applied = new ArrayList<>(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            long flag = flags != null && i < flags.size() ? ((Number) flags.get(i)).longValue() : 0L;
+            applied.add((flag & CHANGED) != 0);
+            if ((flag & (SPLIT_FIRST | SPLIT_SECOND)) != 0) {
+                List<String> relationKeys = relationKeys(keyLayout, action, pairs.get(i));
+                if ((flag & SPLIT_FIRST) != 0) {
+                    shardedSets.splitAsync(relationKeys.get(0));
+                }
+                if ((flag & SPLIT_SECOND) != 0) {
+                    shardedSets.splitAsync(relationKeys.get(1));
+                }
+            }
+        }
+        return applied;
+    }
+
+    // ==================== 集群模式 ====================
+
+    /**
+     * 集群模式下关系两侧的集合在不同 slot，拆成两个单 slot 步骤（每个步骤按 slot 分组批量执行）：
+     * 1. 修改第一个集合，以它判断每条关系是否已是目标状态
+     * 2. 只对发生变化的关系修改第二个集合
+     * 计数 key 与帖子侧集合同 slot，随该侧的步骤维护。步骤以集合自身判断状态，重复执行和回滚都是幂等的；
+     * 第二步失败时按相反操作回滚两个步骤后抛出异常，与单机脚本执行失败时的表现一致（关系未建立/解除）
+     */
+    private List<Boolean> applyInSteps(RelationAction action, List<RelationPair> pairs) {
+        String op = action.isAdd() ? OP_ADD : OP_REMOVE;
+        List<Boolean> applied = applyStep(relationScripts, keyLayout, shardedSets, action, op, pairs, 0);
+        List<RelationPair> changed = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            boolean c = applied.get(i);
+            if (c) {
+                changed.add(pairs.get(i));
+            }
+        }
+        if (changed.isEmpty()) {
+            return applied;
+        }
+        try {
+            applyStep(relationScripts, keyLayout, shardedSets, action, op, changed, 1);
+        } catch (RuntimeException e) {
+            String undo = action.isAdd() ? OP_REMOVE : OP_ADD;
+            log.error("Failed to apply {} to second side, rolling back {} relations", action, changed.size(), e);
+            try {
+                applyStep(relationScripts, keyLayout, shardedSets, action, undo, changed, 1);
+                applyStep(relationScripts, keyLayout, shardedSets, action, undo, changed, 0);
+            } catch (RuntimeException rollbackError) {
+                // 回滚也失败时两侧集合可能不一致，记录关系以便人工修复
+                log.error("Failed to roll back {}, relations may be half applied: {}", action, changed, rollbackError);
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+        return applied;
+    }
+
+    /**
+     * 对一批关系的一侧（0 为第一个集合，1 为第二个集合）执行 relation_step，计数 key 跟随帖子侧集合
+     * 各侧独立判断状态，预热加载也用它重建两侧集合（见 {@link RelationWarmLoader}）
+     *
+     * @return 每条关系该侧是否发生变化
+     */
+    static List<Boolean> applyStep(RelationScripts relationScripts, RedisKeyLayout keyLayout,
+            ShardedRelationSets shardedSets, RelationAction action, String op, List<RelationPair> pairs, int side) {
+        boolean withCounter = hasCounter(action) && side == counterSide(action);
+        int stride = withCounter ? 4 : 3;
+        List<String> keys = new ArrayList<>(pairs.size() * stride);
+        List<Object> members = new ArrayList<>(pairs.size());
+        for (RelationPair pair : pairs) {
+            List<String> relationKeys = relationKeys(keyLayout, action, pair);
+            Long member = relationMembers(action, pair)[side];
+            keys.addAll(ShardedRelationSets.keyGroup(relationKeys.get(side), member));
+            if (withCounter) {
+                keys.add(relationKeys.get(2));
+            }
+            members.add(member);
+        }
+        List<Object> flags = relationScripts.executeBySlot(RelationScripts.RELATION_STEP, keys, stride,
+                Arrays.asList(op, stride, shardedSets.getThreshold(), withCounter ? counterField(action) : ""),
+                members, 1);
+        List<Boolean> applied = new ArrayList<>(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            long flag = flags.get(i) != null ? ((Number) flags.get(i)).longValue() : 0L;
+            applied.add((flag & CHANGED) != 0);
+            if ((flag & SPLIT_FIRST) != 0) {
+                shardedSets.splitAsync(keys.get(i * stride));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 计数 key 所在的一侧：点赞计数与帖子点赞集合（第一个集合）同 slot，收藏计数与帖子收藏集合（第二个集合）同 slot
+     */
+    static int counterSide(RelationAction action) {
+        return action == RelationAction.LIKE || action == RelationAction.UNLIKE ? 0 : 1;
+    }
+
+    /**
+     * 校验批量操作参数
+     */
+    static void checkBatch(RelationAction action, List<RelationPair> pairs) {
+        if (action == null || pairs == null) {
+            throw new IllegalArgumentException("action or pairs is null");
+        }
+        if (pairs.size() > MAX_BATCH_PAIRS) {
+            throw new IllegalArgumentException("too many relations in one batch, max " + MAX_BATCH_PAIRS);
+        }
+        for (RelationPair pair : pairs) {
+            if (pair == null || pair.getActorId() == null || pair.getTargetId() == null) {
+                throw new IllegalArgumentException("actor id or target id is null");
+            }
+        }
+    }
+
+    /**
+     * 不能关注、拉黑自己，与单条操作一致直接返回 false
+     */
+    static boolean isSelfRelation(RelationAction action, RelationPair pair) {
+        return (action == RelationAction.FOLLOW || action == RelationAction.BLOCK)
+                && pair.getActorId().equals(pair.getTargetId());
+    }
+
+    /**
+     * 点赞、收藏带计数 key（帖子计数 hash）
+     */
+    static boolean hasCounter(RelationAction action) {
+        switch (action) {
+            case LIKE:
+            case UNLIKE:
+            case FAVORITE:
+            case UNFAVORITE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 帖子计数 hash 中对应的字段，没有计数时为空
+     */
+    static String counterField(RelationAction action) {
+        switch (action) {
+            case LIKE:
+            case UNLIKE:
+                return PostCounters.LIKE_FIELD;
+            case FAVORITE:
+            case UNFAVORITE:
+                return PostCounters.FAVORITE_FIELD;
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * 一条关系涉及的 key：第一个集合（用于判断是否已是目标状态）、第二个集合、帖子计数 hash
+     */
+    static List<String> relationKeys(RedisKeyLayout layout, RelationAction action, RelationPair pair) {
+        Long actorId = pair.getActorId();
+        Long targetId = pair.getTargetId();
+        switch (action) {
+            case FOLLOW:
+            case UNFOLLOW:
+                return Arrays.asList(layout.key(USER_FOLLOW_PREFIX, actorId), layout.key(USER_FOLLOWER_PREFIX, targetId));
+            case LIKE:
+            case UNLIKE:
+                return Arrays.asList(layout.key(POST_LIKE_PREFIX, targetId), layout.key(USER_LIKE_PREFIX, actorId),
+                        layout.key(PostCounters.POST_COUNTER_PREFIX, targetId));
+            case FAVORITE:
+            case UNFAVORITE:
+                return Arrays.asList(layout.key(USER_FAVORITE_PREFIX, actorId), layout.key(POST_FAVORITED_BY_PREFIX, targetId),
+                        layout.key(PostCounters.POST_COUNTER_PREFIX, targetId));
+            case BLOCK:
+            case UNBLOCK:
+                return Arrays.asList(layout.key(USER_BLACKLIST_PREFIX, actorId), layout.key(USER_BLOCKED_BY_PREFIX, targetId));
+            default:
+                throw new IllegalArgumentException("unknown relation action: " + action);
+        }
+    }
+
+    /**
+     * 写入第一个、第二个集合的成员
+     */
+    static Long[] relationMembers(RelationAction action, RelationPair pair) {
+        if (action == RelationAction.LIKE || action == RelationAction.UNLIKE) {
+            // 帖子点赞集合存用户，用户点赞集合存帖子
+            return new Long[] { pair.getActorId(), pair.getTargetId() };
+        }
+        return new Long[] { pair.getTargetId(), pair.getActorId() };
+    }
+
+    /**
+     * 状态发生变化的关系按单条操作的策略持久化：关注批量写透，点赞、收藏进入写回缓冲，拉黑逐条写透
+     */
+    static void persistBatch(RelationPersistenceService persistenceService, RelationAction action,
+            List<RelationPair> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        boolean add = action.isAdd();
+        switch (action) {
+            case FOLLOW:
+            case UNFOLLOW:
+                try {
+                    persistenceService.persistFollows(changed, add);
+                } catch (Exception e) {
+                    log.error("Failed to persist batch {} to DB, but Redis operation succeeded", action, e);
+                }
+                break;
+            case LIKE:
+            case UNLIKE:
+                for (RelationPair pair : changed) {
+                    persistenceService.persistLike(pair.getActorId(), pair.getTargetId(), add)
+                            .exceptionally(ex -> {
+                                log.error("Failed to persist {} to DB (async), user {} post {}", action,
+                                        pair.getActorId(), pair.getTargetId(), ex);
+                                return null;
+                            });
+                }
+                break;
+            case FAVORITE:
+            case UNFAVORITE:
+                for (RelationPair pair : changed) {
+                    persistenceService.persistFavorite(pair.getActorId(), pair.getTargetId(), add)
+                            .exceptionally(ex -> {
+                                log.error("Failed to persist {} to DB (async), user {} post {}", action,
+                                        pair.getActorId(), pair.getTargetId(), ex);
+                                return null;
+                            });
+                }
+                break;
+            case BLOCK:
+            case UNBLOCK:
+                for (RelationPair pair : changed) {
+                    try {
+                        persistenceService.persistBlock(pair.getActorId(), pair.getTargetId(), add);
+                    } catch (Exception e) {
+                        log.error("Failed to persist {} to DB, but Redis operation succeeded", action, e);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown relation action: " + action);
+        }
+    }
+
+    /**
+     * 批量判断 ids 是否在集合 key 中，去掉空值和重复 id 后一次往返，结果按请求顺序返回
+     */
+    private Map<Long, Boolean> batchIsMember(String key, List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.removeIf(Objects::isNull);
+        if (distinct.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Boolean> flags = shardedSets.isMember(key, distinct);
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        for (int i = 0; i < distinct.size(); i++) {
+            result.put(distinct.get(i), i < flags.size() && Boolean.TRUE.equals(flags.get(i)));
+        }
+        return result;
+    }
+
+    private boolean isMember(String key, Long id) {
+        return shardedSets.isMember(key, Collections.singletonList(id)).get(0);
+    }
+
+    /**
+     * 全部成员，已分片的集合逐个分片读取
+     */
+    private Set<Long> members(String key) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (String member : shardedSets.members(key)) {
+            try {
+                result.add(Long.parseLong(member));
+            } catch (NumberFormatException e) {
+                log.warn("skip invalid member in {}: {}", key, member);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * SSCAN 游标分页：脚本内循环扫描凑够一页，一次往返；避免 SMEMBERS 对大集合一次性返回全部成员阻塞 Redis
+     * 已分片的集合遍历完基础集合后依次遍历各分片，游标由 {@link ShardedRelationSets#scanPage} 维护
+     */
+    private CursorPage<Long> scanPage(String key, String cursor, int count) {
+        int pageSize = count <= 0 ? DEFAULT_PAGE_SIZE : Math.min(count, MAX_PAGE_SIZE);
+        CursorPage<String> page = shardedSets.scanPage(key, cursor, pageSize);
+        List<Long> items = new ArrayList<>(page.getItems().size());
+        for (String member : page.getItems()) {
+            try {
+                items.add(Long.parseLong(member));
+            } catch (NumberFormatException e) {
+                log.warn("skip invalid member in {}: {}", key, member);
+            }
+        }
+        return new CursorPage<>(items, page.getNextCursor());
+    }
+
+    private static CursorPage<Long> emptyPage() {
+        return new CursorPage<>(Collections.emptyList(), CursorPage.START);
+    }
 }
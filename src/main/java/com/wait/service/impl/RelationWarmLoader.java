@@ -0,0 +1,576 @@
+package com.wait.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.wait.config.RedisKeyLayout;
+import com.wait.config.script.RelationScripts;
+import com.wait.entity.RelationPair;
+import com.wait.entity.domain.PostFavorite;
+import com.wait.entity.domain.PostLike;
+import com.wait.entity.domain.UserFollow;
+import com.wait.entity.type.RelationAction;
+import com.wait.mapper.FollowMapper;
+import com.wait.mapper.PostFavoriteMapper;
+import com.wait.mapper.PostLikeMapper;
+import com.wait.service.impl.RelationReconciler.RelationType;
+import com.wait.util.BulkSQLExecutor;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 关系缓存预热：Redis 数据丢失或新集群上线后，从数据库重建关注、点赞、收藏的 Redis 集合（Set 布局）
+ * 1. 按 owner（关注者/帖子/收藏者）id 范围切分为多个 worker，交给 BulkSQLExecutor 并行执行，在途 worker 数即并发上限
+ * 2. 每个 worker 按 (owner, member) 键集分页顺序读取，每页对关系两侧各执行一次 relation_step 批量写入
+ *    （集群模式按 slot 分组），与在线写入共用脚本：两侧各自判断状态、维护计数、达到阈值自动分片，重复加载不会重复计数
+ * 3. 所有 worker 共享一个按行数限速的 RateLimiter，控制对数据库的读取压力
+ * 4. 每页写入后把 worker 的键集位置记入检查点 relation:warm:{type}，中断后再次执行从检查点继续，全部完成后删除检查点；
+ *    检查点与数据存于同一个 Redis，Redis 再次丢失时两者一起丢失，不会跳过未加载的数据
+ * 5. 检查点存在期间（预热中或中断待续），在线的取消关注/取消点赞/取消收藏先把关系记入删除标记 relation:warm:{type}:removed，
+ *    再执行 Redis 写入；worker 写入前跳过已标记的关系，写入后再检查一次，对这一页写入期间新标记的关系补一次删除，
+ *    避免把数据库中尚未删除（或读取后才删除）的旧记录重新加回 Redis；重新关注等添加操作先清除标记再写入
+ * 6. 各节点按 LOADING_CACHE_MS 缓存检查点是否存在，新建检查点后等待缓存过期再读取数据库，预热开始前已提交但未写回数据库的删除不在保护范围内
+ * 预热期间可以正常读写，预热结束前读取到的关系可能不完整；拉黑关系没有数据库表，不在预热范围内
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RelationWarmLoader {
+
+    /**
+     * 预热参数，未设置（<=0）的数值使用配置的默认值
+     */
+    @Data
+    @Builder
+    public static class Options {
+        /** 并行 worker 数，按 owner id 范围切分；从检查点继续时沿用检查点的切分 */
+        private int workers;
+        /** 每页读取的行数 */
+        private int pageSize;
+        /** 所有 worker 合计每秒最多读取的行数 */
+        private long maxRowsPerSecond;
+        /** 忽略已有检查点，从头加载 */
+        private boolean restart;
+    }
+
+    /**
+     * 一种关系的预热进度，worker 并发更新
+     */
+    public static class Progress {
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong added = new AtomicLong();
+        private final AtomicInteger finishedWorkers = new AtomicInteger();
+        private final AtomicInteger failedWorkers = new AtomicInteger();
+        private volatile int workers;
+        private volatile boolean resumed;
+        private volatile String state = "RUNNING";
+        private volatile long finishedAt;
+
+        public Map<String, Object> snapshot() {
+            long costMs = (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("state", state);
+            report.put("resumed", resumed);
+            report.put("workers", workers);
+            report.put("finishedWorkers", finishedWorkers.get());
+            report.put("failedWorkers", failedWorkers.get());
+            report.put("rows", rows.get());
+            report.put("addedMembers", added.get());
+            report.put("rowsPerSecond", costMs > 0 ? rows.get() * 1000 / costMs : 0L);
+            report.put("costMs", costMs);
+            return report;
+        }
+    }
+
+    /**
+     * worker 负责的 owner id 范围 [start, end)
+     */
+    private static final class Range {
+        private final long start;
+        private final long end;
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final String CHECKPOINT_PREFIX = "relation:warm:";
+    private static final String RANGES_FIELD = "ranges";
+    private static final String WORKER_FIELD_PREFIX = "w";
+    private static final String DONE = "done";
+    private static final String REMOVED_SUFFIX = ":removed";
+    // 各节点缓存“是否在预热”的时长，新建检查点后等待其两倍再开始读取
+    private static final long LOADING_CACHE_MS = 1000L;
+
+    /**
+     * 一种关系是否在预热的本地缓存
+     */
+    private static final class LoadingFlag {
+        private final boolean loading;
+        private final long checkedAt;
+
+        LoadingFlag(boolean loading, long checkedAt) {
+            this.loading = loading;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationScripts relationScripts;
+    private final RedisKeyLayout keyLayout;
+    private final ShardedRelationSets shardedSets;
+    private final FollowMapper followMapper;
+    private final PostLikeMapper postLikeMapper;
+    private final PostFavoriteMapper postFavoriteMapper;
+    private final BulkSQLExecutor bulkSQLExecutor;
+
+    @Qualifier("relationWarmExecutor")
+    private final ThreadPoolTaskExecutor warmExecutor;
+
+    @Value("${relation.storage:set}")
+    private final String storage;
+
+    @Value("${relation.warm.workers:4}")
+    private final int defaultWorkers;
+
+    @Value("${relation.warm.page-size:2000}")
+    private final int defaultPageSize;
+
+    // 0 表示不限速
+    @Value("${relation.warm.max-rows-per-second:0}")
+    private final long defaultMaxRowsPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<RelationType, Progress> progress = new ConcurrentHashMap<>();
+    private final Map<RelationType, LoadingFlag> loadingFlags = new ConcurrentHashMap<>();
+
+    /**
+     * 后台预热指定的关系类型，同时只能有一个预热任务
+     *
+     * @return 启动时的进度
+     */
+    public Map<String, Object> start(List<RelationType> types, Options options) {
+        if (!"set".equals(storage)) {
+            // 位图布局先预热 Set 布局，再用 RelationBitmapMigrator 迁移
+            throw new IllegalStateException("warm load only rebuilds the set layout, relation.storage: " + storage);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("relation warm load is already running");
+        }
+        progress.clear();
+        try {
+            warmExecutor.execute(() -> {
+                try {
+                    for (RelationType type : types) {
+                        load(type, options);
+                    }
+                } catch (Exception e) {
+                    log.error("Relation warm load failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return status();
+    }
+
+    /**
+     * 当前（或最近一次）预热的进度
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("running", running.get());
+        for (RelationType type : RelationType.values()) {
+            Progress p = progress.get(type);
+            if (p != null) {
+                report.put(type.name().toLowerCase(), p.snapshot());
+            }
+        }
+        return report;
+    }
+
+    // ==================== 预热期间的删除标记 ====================
+
+    /**
+     * 该关系是否有预热在进行（或中断待续），按 LOADING_CACHE_MS 缓存
+     */
+    public boolean isLoading(RelationType type) {
+        long now = System.currentTimeMillis();
+        LoadingFlag flag = loadingFlags.get(type);
+        if (flag != null && now - flag.checkedAt < LOADING_CACHE_MS) {
+            return flag.loading;
+        }
+        boolean loading = Boolean.TRUE.equals(stringRedisTemplate.hasKey(checkpointKey(type)));
+        loadingFlags.put(type, new LoadingFlag(loading, now));
+        return loading;
+    }
+
+    /**
+     * 预热期间的删除：在 Redis 写入之前调用，worker 不再加载这些关系
+     */
+    public void markRemoved(RelationType type, List<RelationPair> pairs) {
+        stringRedisTemplate.opsForSet().add(removedKey(type), members(pairs));
+    }
+
+    /**
+     * 预热期间的添加：在 Redis 写入之前调用，清除之前的删除标记
+     */
+    public void clearRemoved(RelationType type, List<RelationPair> pairs) {
+        stringRedisTemplate.opsForSet().remove(removedKey(type), (Object[]) members(pairs));
+    }
+
+    /**
+     * 一页关系中带删除标记的
+     */
+    private List<RelationPair> removedOf(RelationType type, List<RelationPair> pairs) {
+        Map<Object, Boolean> marked = stringRedisTemplate.opsForSet().isMember(removedKey(type),
+                (Object[]) members(pairs));
+        List<RelationPair> removed = new ArrayList<>();
+        for (RelationPair pair : pairs) {
+            if (marked != null && Boolean.TRUE.equals(marked.get(member(pair)))) {
+                removed.add(pair);
+            }
+        }
+        return removed;
+    }
+
+    private static String checkpointKey(RelationType type) {
+        return CHECKPOINT_PREFIX + type.name().toLowerCase();
+    }
+
+    private static String removedKey(RelationType type) {
+        return checkpointKey(type) + REMOVED_SUFFIX;
+    }
+
+    private static String member(RelationPair pair) {
+        return pair.getActorId() + ":" + pair.getTargetId();
+    }
+
+    private static String[] members(List<RelationPair> pairs) {
+        String[] members = new String[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            members[i] = member(pairs.get(i));
+        }
+        return members;
+    }
+
+    /**
+     * 预热一种关系，阻塞到全部 worker 结束
+     */
+    public Map<String, Object> load(RelationType type, Options options) {
+        Progress p = new Progress();
+        progress.put(type, p);
+        String checkpointKey = checkpointKey(type);
+        if (options.isRestart()) {
+            stringRedisTemplate.delete(checkpointKey);
+        }
+
+        List<Range> ranges = loadRanges(checkpointKey);
+        p.resumed = ranges != null;
+        if (ranges == null) {
+            ranges = splitRanges(type, options.getWorkers() > 0 ? options.getWorkers() : defaultWorkers);
+            if (ranges.isEmpty()) {
+                p.state = "DONE";
+                p.finishedAt = System.currentTimeMillis();
+                log.info("No {} rows to warm load", type);
+                return p.snapshot();
+            }
+            // 新一轮预热：清除上一轮残留的删除标记，建立检查点后等各节点开始记录删除再读取数据库
+            stringRedisTemplate.delete(removedKey(type));
+            saveRanges(checkpointKey, ranges);
+            loadingFlags.remove(type);
+            awaitLoadingVisible();
+        }
+        p.workers = ranges.size();
+
+        int pageSize = options.getPageSize() > 0 ? options.getPageSize() : defaultPageSize;
+        long maxRowsPerSecond = options.getMaxRowsPerSecond() > 0 ? options.getMaxRowsPerSecond()
+                : defaultMaxRowsPerSecond;
+        RateLimiter limiter = maxRowsPerSecond > 0 ? RateLimiter.create(maxRowsPerSecond) : null;
+        log.info("Warm loading {} relations, workers: {}, resumed: {}, pageSize: {}, maxRowsPerSecond: {}",
+                type, ranges.size(), p.resumed, pageSize, maxRowsPerSecond);
+
+        List<Callable<Long>> workers = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            int worker = i;
+            Range range = ranges.get(i);
+            workers.add(() -> loadRange(type, checkpointKey, worker, range, pageSize, limiter, p));
+        }
+        BulkSQLExecutor.Options bulkOptions = BulkSQLExecutor.Options.builder()
+                .maxInFlight(workers.size())
+                .chunkSize(1)
+                .build();
+        bulkSQLExecutor.executeStreaming(workers, bulkOptions, result -> {
+            if (result.isSuccess()) {
+                p.finishedWorkers.incrementAndGet();
+            } else {
+                p.failedWorkers.incrementAndGet();
+                log.error("Warm load worker failed, type: {}, worker: {}", type, result.getIndex(), result.getError());
+            }
+        });
+
+        if (p.failedWorkers.get() == 0) {
+            stringRedisTemplate.delete(Arrays.asList(checkpointKey, removedKey(type)));
+            loadingFlags.remove(type);
+            p.state = "DONE";
+        } else {
+            // 保留检查点，再次执行时只重跑未完成的 worker
+            p.state = "FAILED";
+        }
+        p.finishedAt = System.currentTimeMillis();
+        Map<String, Object> report = p.snapshot();
+        log.info("Warm loaded {} relations: {}", type, report);
+        return report;
+    }
+
+    /**
+     * 一个 worker：从检查点位置开始按键集分页读取范围内的记录并写入 Redis
+     *
+     * @return 读取的行数
+     */
+    private long loadRange(RelationType type, String checkpointKey, int worker, Range range, int pageSize,
+            RateLimiter limiter, Progress p) {
+        String field = WORKER_FIELD_PREFIX + worker;
+        Object saved = stringRedisTemplate.opsForHash().get(checkpointKey, field);
+        if (DONE.equals(saved)) {
+            return 0L;
+        }
+        long afterOwner = range.start;
+        long afterMember = Long.MIN_VALUE;
+        if (saved != null) {
+            String[] position = saved.toString().split(":");
+            afterOwner = Long.parseLong(position[0]);
+            afterMember = Long.parseLong(position[1]);
+        }
+
+        RelationAction action = actionOf(type);
+        long rows = 0;
+        while (true) {
+            if (limiter != null) {
+                limiter.acquire(pageSize);
+            }
+            List<RelationPair> page = rowsAfter(type, afterOwner, afterMember, range.end, pageSize);
+            if (!page.isEmpty()) {
+                List<RelationPair> pending = new ArrayList<>(page);
+                pending.removeAll(removedOf(type, page));
+                long added = 0;
+                if (!pending.isEmpty()) {
+                    for (int side = 0; side < 2; side++) {
+                        List<Boolean> changed = RelationServiceImpl.applyStep(relationScripts, keyLayout,
+                                shardedSets, action, RelationServiceImpl.OP_ADD, pending, side);
+                        for (Boolean c : changed) {
+                            if (c) {
+                                added++;
+                            }
+                        }
+                    }
+                    // 写入期间被删除的关系：删除方的 Redis 写入可能早于本页写入，补一次删除
+                    List<RelationPair> removed = removedOf(type, pending);
+                    if (!removed.isEmpty()) {
+                        for (int side = 0; side < 2; side++) {
+                            RelationServiceImpl.applyStep(relationScripts, keyLayout, shardedSets, action,
+                                    RelationServiceImpl.OP_REMOVE, removed, side);
+                        }
+                    }
+                }
+                RelationPair last = page.get(page.size() - 1);
+                afterOwner = ownerOf(type, last);
+                afterMember = memberOf(type, last);
+                stringRedisTemplate.opsForHash().put(checkpointKey, field, afterOwner + ":" + afterMember);
+                rows += page.size();
+                p.rows.addAndGet(page.size());
+                p.added.addAndGet(added);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        stringRedisTemplate.opsForHash().put(checkpointKey, field, DONE);
+        log.info("Warm load worker finished, type: {}, worker: {}, range: [{}, {}), rows: {}",
+                type, worker, range.start, range.end, rows);
+        return rows;
+    }
+
+    private static void awaitLoadingVisible() {
+        try {
+            Thread.sleep(LOADING_CACHE_MS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted before warm load started", e);
+        }
+    }
+
+    // ==================== worker 切分和检查点 ====================
+
+    /**
+     * 按 owner id 范围等分，最后一个 worker 不设上界，覆盖切分之后新增的 owner
+     */
+    private List<Range> splitRanges(RelationType type, int workers) {
+        List<Long> first = ownersAfter(type);
+        Long max = maxOwner(type);
+        if (first.isEmpty() || max == null) {
+            return Collections.emptyList();
+        }
+        long min = first.get(0);
+        long step = Math.max(1L, (max - min) / workers + 1);
+        List<Range> ranges = new ArrayList<>(workers);
+        for (long start = min; ranges.size() < workers; start += step) {
+            boolean last = ranges.size() == workers - 1 || start + step > max;
+            ranges.add(new Range(start, last ? Long.MAX_VALUE : start + step));
+            if (last) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    private void saveRanges(String checkpointKey, List<Range> ranges) {
+        StringBuilder sb = new StringBuilder();
+        for (Range range : ranges) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range.start).append(':').append(range.end);
+        }
+        stringRedisTemplate.opsForHash().put(checkpointKey, RANGES_FIELD, sb.toString());
+    }
+
+    /**
+     * 检查点中的 worker 切分，没有检查点时返回 null
+     */
+    private List<Range> loadRanges(String checkpointKey) {
+        Object saved = stringRedisTemplate.opsForHash().get(checkpointKey, RANGES_FIELD);
+        if (saved == null) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<>();
+        for (String range : saved.toString().split(",")) {
+            String[] bounds = range.split(":");
+            ranges.add(new Range(Long.parseLong(bounds[0]), Long.parseLong(bounds[1])));
+        }
+        return ranges;
+    }
+
+    // ==================== 数据库侧 ====================
+
+    private List<Long> ownersAfter(RelationType type) {
+        switch (type) {
+            case FOLLOW:
+                return followMapper.selectFollowerIdsAfter(Long.MIN_VALUE, 1);
+            case LIKE:
+                return postLikeMapper.selectPostIdsAfter(Long.MIN_VALUE, 1);
+            case FAVORITE:
+                return postFavoriteMapper.selectUserIdsAfter(Long.MIN_VALUE, 1);
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    private Long maxOwner(RelationType type) {
+        switch (type) {
+            case FOLLOW:
+                return followMapper.selectMaxFollowerId();
+            case LIKE:
+                return postLikeMapper.selectMaxPostId();
+            case FAVORITE:
+                return postFavoriteMapper.selectMaxUserId();
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    /**
+     * 一页记录，转换为关系写入脚本使用的 (actor, target)
+     */
+    private List<RelationPair> rowsAfter(RelationType type, long afterOwner, long afterMember, long endOwner,
+            int limit) {
+        List<RelationPair> pairs;
+        switch (type) {
+            case FOLLOW: {
+                List<UserFollow> rows = followMapper.selectFollowsAfter(afterOwner, afterMember, endOwner, limit);
+                pairs = new ArrayList<>(rows.size());
+                for (UserFollow row : rows) {
+                    pairs.add(new RelationPair(row.getFollowerId(), row.getFollowedId()));
+                }
+                return pairs;
+            }
+            case LIKE: {
+                List<PostLike> rows = postLikeMapper.selectLikesAfter(afterOwner, afterMember, endOwner, limit);
+                pairs = new ArrayList<>(rows.size());
+                for (PostLike row : rows) {
+                    pairs.add(new RelationPair(row.getUserId(), row.getPostId()));
+                }
+                return pairs;
+            }
+            case FAVORITE: {
+                List<PostFavorite> rows = postFavoriteMapper.selectFavoritesAfter(afterOwner, afterMember, endOwner,
+                        limit);
+                pairs = new ArrayList<>(rows.size());
+                for (PostFavorite row : rows) {
+                    pairs.add(new RelationPair(row.getUserId(), row.getPostId()));
+                }
+                return pairs;
+            }
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    private static RelationAction actionOf(RelationType type) {
+        switch (type) {
+            case FOLLOW:
+                return RelationAction.FOLLOW;
+            case LIKE:
+                return RelationAction.LIKE;
+            case FAVORITE:
+                return RelationAction.FAVORITE;
+            default:
+                throw new IllegalArgumentException("unknown relation type: " + type);
+        }
+    }
+
+    /**
+     * 键集分页的 owner：点赞按帖子分页，关注、收藏按发起者分页
+     */
+    private static long ownerOf(RelationType type, RelationPair pair) {
+        return type == RelationType.LIKE ? pair.getTargetId() : pair.getActorId();
+    }
+
+    private static long memberOf(RelationType type, RelationPair pair) {
+        return type == RelationType.LIKE ? pair.getActorId() : pair.getTargetId();
+    }
+
+    /**
+     * 解析关系类型参数，all 表示全部
+     */
+    public static List<RelationType> typesOf(String type) {
+        return "all".equalsIgnoreCase(type) ? Arrays.asList(RelationType.values())
+                : Collections.singletonList(RelationType.of(type));
+    }
+}
@@ -0,0 +1,290 @@
+package com.wait.service.impl;
+
+import com.wait.exception.BackpressureException;
+import com.wait.service.MQService;
+import com.wait.util.message.AsyncDataMsg;
+import com.wait.util.message.CompensationMsg;
+import com.wait.util.message.MessageCoalescer;
+import com.wait.util.queue.RingBuffer;
+import com.wait.util.queue.WaitStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于预分配环形队列的内存MQ，作为 MemoryMQServiceImpl 的高吞吐替代实现
+ * 1. 发送：无锁 CAS 认领槽位，不分配队列节点；队列满时短暂退避重试，超时后抛出 BackpressureException，由调用方降级或补偿
+ * 2. 消费：工作线程批量认领连续槽位，批量处理器模式下同一批次按 topic 合并同 key 消息
+ * 3. 死信：单独的小容量环形队列，单线程消费；死信队列满时在发送线程上直接交给死信处理器
+ * 通过 mq.ring.enabled=true 启用，业务方按 bean 名称 ringBufferMQService 选用
+ * 注意：多个工作线程之间不保证同一 key 的消费顺序，默认单个工作线程；写回消息要求同 key 有序，不要调大 mq.ring.workers
+ */
+@Service("ringBufferMQService")
+@ConditionalOnProperty(name = "mq.ring.enabled", havingValue = "true")
+@Slf4j
+public class RingBufferMQServiceImpl implements MQService {
+
+    @Value("${mq.ring.capacity:65536}")
+    private int capacity = 65536;
+
+    @Value("${mq.ring.workers:1}")
+    private int workerCount = 1;
+
+    @Value("${mq.ring.batch-size:256}")
+    private int batchSize = 256;
+
+    @Value("${mq.ring.wait-strategy:SLEEPING}")
+    private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+
+    // 队列满时发送方最多等待的时间
+    @Value("${mq.ring.publish-timeout-ms:100}")
+    private long publishTimeoutMs = 100;
+
+    private static final int DLQ_CAPACITY = 8192;
+
+    private RingBuffer<Slot> ringBuffer;
+    private RingBuffer<Slot> dlqBuffer;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong rejectedTotal = new AtomicLong(0);
+    private final AtomicLong coalescedTotal = new AtomicLong(0);
+
+    // 消息处理器（由业务方注入）
+    private volatile MemoryMQServiceImpl.MessageHandler messageHandler;
+
+    // 批量消息处理器（由业务方注入），设置后优先于单条处理器
+    private volatile MemoryMQServiceImpl.BatchMessageHandler batchMessageHandler;
+
+    // 死信处理器（由补偿引擎注入），未设置时只记录日志
+    private volatile MemoryMQServiceImpl.DeadLetterHandler deadLetterHandler;
+
+    public RingBufferMQServiceImpl() {
+    }
+
+    /**
+     * 非 Spring 环境（如基准测试）使用
+     */
+    public RingBufferMQServiceImpl(int capacity, int workerCount, int batchSize, WaitStrategy waitStrategy) {
+        this.capacity = capacity;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @PostConstruct
+    @Override
+    public void start() {
+        if (running.compareAndSet(false, true)) {
+            ringBuffer = new RingBuffer<>("RingMQ", capacity, Slot::new, waitStrategy, batchSize);
+            dlqBuffer = new RingBuffer<>("RingMQ-DLQ", DLQ_CAPACITY, Slot::new, WaitStrategy.BLOCKING, batchSize);
+            ringBuffer.start(workerCount, this::processBatch);
+            dlqBuffer.start(1, this::processDLQBatch);
+            log.info("RingBufferMQ服务启动成功, capacity: {}, workers: {}, waitStrategy: {}",
+                    ringBuffer.capacity(), workerCount, waitStrategy);
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        if (running.compareAndSet(true, false)) {
+            ringBuffer.shutdown(TimeUnit.SECONDS.toMillis(10));
+            dlqBuffer.shutdown(TimeUnit.SECONDS.toMillis(5));
+            log.info("RingBufferMQ服务已关闭");
+        }
+    }
+
+    /**
+     * @throws BackpressureException 服务未运行或队列已满且等待超时
+     */
+    @Override
+    public void sendMessage(String topic, String key, AsyncDataMsg message) {
+        if (!running.get()) {
+            throw reject(topic, key, "ring mq is not running");
+        }
+        long timestamp = System.currentTimeMillis();
+        boolean published = ringBuffer.publish(slot -> slot.set(topic, key, message, timestamp),
+                TimeUnit.MILLISECONDS.toNanos(publishTimeoutMs));
+        if (!published) {
+            throw reject(topic, key, "ring is full, capacity: " + ringBuffer.capacity());
+        }
+    }
+
+    /**
+     * 死信队列满时在当前线程上直接交给死信处理器；没有处理器时抛出 BackpressureException，不静默丢弃
+     */
+    @Override
+    public void sendDLMessage(String key, CompensationMsg message) {
+        long timestamp = System.currentTimeMillis();
+        boolean published = running.get() && dlqBuffer.publish(slot -> slot.set(DL_TOPIC, key, message, timestamp),
+                TimeUnit.MILLISECONDS.toNanos(publishTimeoutMs));
+        if (published) {
+            return;
+        }
+        MemoryMQServiceImpl.DeadLetterHandler handler = deadLetterHandler;
+        if (handler == null) {
+            throw reject(DL_TOPIC, key, "dead letter ring is full and no dead letter handler is set");
+        }
+        log.warn("RingBufferMQ: 死信队列已满，直接交给死信处理器, key: {}", key);
+        handler.handleDeadLetter(key, message);
+    }
+
+    @Override
+    public int getQueueSize() {
+        return ringBuffer == null ? 0 : (int) ringBuffer.size();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return running.get()
+                && ringBuffer.remainingCapacity() > ringBuffer.capacity() / 10
+                && dlqBuffer.remainingCapacity() > dlqBuffer.capacity() / 10;
+    }
+
+    public void setMessageHandler(MemoryMQServiceImpl.MessageHandler handler) {
+        this.messageHandler = handler;
+    }
+
+    public void setBatchMessageHandler(MemoryMQServiceImpl.BatchMessageHandler handler) {
+        this.batchMessageHandler = handler;
+    }
+
+    public void setDeadLetterHandler(MemoryMQServiceImpl.DeadLetterHandler handler) {
+        this.deadLetterHandler = handler;
+    }
+
+    public long getRejectedTotal() {
+        return rejectedTotal.get();
+    }
+
+    public long getCoalescedTotal() {
+        return coalescedTotal.get();
+    }
+
+    /**
+     * 工作线程回调：槽位在返回后会被复用，处理完清空引用
+     */
+    private void processBatch(List<Slot> slots) {
+        try {
+            MemoryMQServiceImpl.BatchMessageHandler batchHandler = batchMessageHandler;
+            if (batchHandler != null) {
+                dispatchBatch(batchHandler, slots);
+            } else {
+                for (Slot slot : slots) {
+                    processMessage(slot);
+                }
+            }
+        } finally {
+            for (Slot slot : slots) {
+                slot.clear();
+            }
+        }
+    }
+
+    private void dispatchBatch(MemoryMQServiceImpl.BatchMessageHandler batchHandler, List<Slot> slots) {
+        List<String> topics = new ArrayList<>(slots.size());
+        List<AsyncDataMsg<?>> messages = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            if (slot.message instanceof AsyncDataMsg) {
+                topics.add(slot.topic);
+                messages.add((AsyncDataMsg<?>) slot.message);
+            } else {
+                processMessage(slot);
+            }
+        }
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(topics, messages);
+        coalescedTotal.addAndGet(result.getCoalescedCount());
+
+        for (Map.Entry<String, List<AsyncDataMsg<?>>> entry : result.getByTopic().entrySet()) {
+            try {
+                batchHandler.handleBatch(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.error("RingBufferMQ: 批量消息处理失败, topic: {}, size: {}",
+                        entry.getKey(), entry.getValue().size(), e);
+                for (AsyncDataMsg<?> message : entry.getValue()) {
+                    sendToDLQ(message.getKey(), message, e);
+                }
+            }
+        }
+    }
+
+    private void processMessage(Slot slot) {
+        try {
+            MemoryMQServiceImpl.MessageHandler handler = messageHandler;
+            if (handler != null) {
+                handler.handleMessage(slot.topic, slot.key, slot.message);
+            } else {
+                log.warn("RingBufferMQ: 未设置消息处理器，消息被忽略, topic: {}, key: {}", slot.topic, slot.key);
+            }
+        } catch (Exception e) {
+            log.error("RingBufferMQ: 消息处理失败, topic: {}, key: {}", slot.topic, slot.key, e);
+            sendToDLQ(slot.key, slot.message, e);
+        }
+    }
+
+    private void sendToDLQ(String key, Object message, Exception e) {
+        if (message instanceof AsyncDataMsg) {
+            sendDLMessage(key, CompensationMsg.ofAsyncDataMsg((AsyncDataMsg<?>) message, e.getMessage()));
+            return;
+        }
+        sendDLMessage(key, CompensationMsg.builder()
+                .failReason(e.getMessage())
+                .failTime(System.currentTimeMillis())
+                .build());
+    }
+
+    private BackpressureException reject(String topic, String key, String reason) {
+        rejectedTotal.incrementAndGet();
+        log.warn("RingBufferMQ: 消息被拒绝, topic: {}, key: {}, 原因: {}", topic, key, reason);
+        return new BackpressureException(reason + ", topic: " + topic + ", key: " + key);
+    }
+
+    private void processDLQBatch(List<Slot> slots) {
+        MemoryMQServiceImpl.DeadLetterHandler handler = deadLetterHandler;
+        for (Slot slot : slots) {
+            log.error("RingBufferMQ: 处理死信消息, key: {}, message: {}", slot.key, slot.message);
+            try {
+                if (handler != null && slot.message instanceof CompensationMsg) {
+                    handler.handleDeadLetter(slot.key, (CompensationMsg<?>) slot.message);
+                }
+            } catch (Exception e) {
+                log.error("RingBufferMQ: 死信处理失败, key: {}", slot.key, e);
+            } finally {
+                slot.clear();
+            }
+        }
+    }
+
+    /**
+     * 预分配的槽位，由生产者填充、消费者读取后清空
+     */
+    private static final class Slot {
+        String topic;
+        String key;
+        Object message;
+        long timestamp;
+
+        void set(String topic, String key, Object message, long timestamp) {
+            this.topic = topic;
+            this.key = key;
+            this.message = message;
+            this.timestamp = timestamp;
+        }
+
+        void clear() {
+            this.topic = null;
+            this.key = null;
+            this.message = null;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.wait.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.script.RelationScripts;
+import com.wait.entity.CursorPage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 关系集合分片（Set 布局）：大 V 的粉丝、热门帖子的点赞等集合成员达到阈值后自动拆分，避免单个大 key
+ * 1. 基础集合成员数达到 relation.shard.threshold 时，写入脚本创建元数据 hash {基础 key}:meta，集合进入分片状态
+ * 2. 分片状态下新成员按成员 id 取模写入 {基础 key}:s:{n} 子集合，元数据中的 count 记录分片内成员数；
+ *    基础集合中的已有成员由后台迁移到分片，迁移期间两处的成员都有效
+ * 3. 成员数 = SCARD 基础集合 + count；成员检查先查基础集合再查所在分片；分页先遍历基础集合再依次遍历各分片
+ * 分片 key 带基础 key 的 hash tag，集群模式下与基础集合同 slot，脚本仍可原子执行；分片数固定，修改后已有分片无法定位
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardedRelationSets {
+
+    /** 分片数，固定不变：成员所在分片由 成员 id % SHARDS 决定 */
+    public static final int SHARDS = 64;
+    /** 元数据 hash 中分片成员数的字段 */
+    public static final String COUNT_FIELD = "count";
+
+    private static final String SHARD_INFIX = ":s:";
+    private static final String META_SUFFIX = ":meta";
+    private static final Pattern SHARD_KEY = Pattern.compile("(.+):s:\\d{1,2}");
+    // 基础集合阶段游标为 SSCAN 游标，分片阶段为 s{分片}:{SSCAN 游标}
+    private static final Pattern BASE_CURSOR = Pattern.compile("\\d{1,20}");
+    private static final Pattern SHARD_CURSOR = Pattern.compile("s(\\d{1,2}):(\\d{1,20})");
+    /** 基础集合阶段 */
+    private static final int BASE_STAGE = -1;
+
+    private static final int MOVE_PAGE_SIZE = 1000;
+    private static final int MAX_SCAN_ROUNDS = 16;
+    /** 单次迁移最多遍历基础集合的次数，迁移期间仍有成员写入基础集合时（分片前的请求）需要再遍历 */
+    private static final int MAX_MOVE_PASSES = 8;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RelationScripts relationScripts;
+
+    @Qualifier("refreshScheduler")
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    // 基础集合成员数达到该值时开始分片，0 表示不分片
+    @Value("${relation.shard.threshold:100000}")
+    private final long threshold;
+
+    /** 正在迁移的基础集合，避免重复提交 */
+    private final Set<String> splitting = ConcurrentHashMap.newKeySet();
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    // ==================== key ====================
+
+    /**
+     * 成员所在分片：按十进制数字逐位取模，与脚本中的计算一致，超出 long 范围的成员也能定位
+     */
+    public static int shardOf(String member) {
+        int shard = 0;
+        for (int i = 0; i < member.length(); i++) {
+            char c = member.charAt(i);
+            if (c >= '0' && c <= '9') {
+                shard = (shard * 10 + (c - '0')) % SHARDS;
+            }
+        }
+        return shard;
+    }
+
+    public static String shardKey(String baseKey, int shard) {
+        return baseKey + SHARD_INFIX + shard;
+    }
+
+    public static String metaKey(String baseKey) {
+        return baseKey + META_SUFFIX;
+    }
+
+    /**
+     * 写入脚本中一个集合对应的 key 组：基础 key、成员所在分片 key、元数据 key
+     */
+    public static List<String> keyGroup(String baseKey, Object member) {
+        return Arrays.asList(baseKey, shardKey(baseKey, shardOf(String.valueOf(member))), metaKey(baseKey));
+    }
+
+    /**
+     * 分片 key、元数据 key 对应的基础 key，其他 key 原样返回
+     */
+    public static String baseKeyOf(String key) {
+        if (isMetaKey(key)) {
+            return key.substring(0, key.length() - META_SUFFIX.length());
+        }
+        Matcher matcher = SHARD_KEY.matcher(key);
+        return matcher.matches() ? matcher.group(1) : key;
+    }
+
+    public static boolean isMetaKey(String key) {
+        return key.endsWith(META_SUFFIX);
+    }
+
+    // ==================== 读取 ====================
+
+    public boolean isSharded(String baseKey) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(metaKey(baseKey)));
+    }
+
+    /**
+     * 成员数：基础集合 + 分片
+     */
+    public long count(String baseKey) {
+        Long card = stringRedisTemplate.opsForSet().size(baseKey);
+        Object sharded = stringRedisTemplate.opsForHash().get(metaKey(baseKey), COUNT_FIELD);
+        return (card == null ? 0L : card) + (sharded == null ? 0L : Long.parseLong(sharded.toString()));
+    }
+
+    /**
+     * 多个集合的成员数，一次管道往返，结果与 baseKeys 顺序一致
+     */
+    public List<Long> counts(List<String> baseKeys) {
+        if (baseKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        byte[] countField = serializer.serialize(COUNT_FIELD);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String baseKey : baseKeys) {
+                connection.setCommands().sCard(serializer.serialize(baseKey));
+                connection.hashCommands().hGet(serializer.serialize(metaKey(baseKey)), countField);
+            }
+            return null;
+        });
+        List<Long> counts = new ArrayList<>(baseKeys.size());
+        for (int i = 0; i < baseKeys.size(); i++) {
+            Object card = i * 2 < results.size() ? results.get(i * 2) : null;
+            Object sharded = i * 2 + 1 < results.size() ? results.get(i * 2 + 1) : null;
+            counts.add((card == null ? 0L : ((Number) card).longValue())
+                    + (sharded == null ? 0L : Long.parseLong(sharded.toString())));
+        }
+        return counts;
+    }
+
+    /**
+     * 批量检查成员，一次往返，结果与 members 顺序一致
+     */
+    public List<Boolean> isMember(String baseKey, List<?> members) {
+        if (members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>(members.size() + 2);
+        keys.add(baseKey);
+        keys.add(metaKey(baseKey));
+        for (Object member : members) {
+            keys.add(shardKey(baseKey, shardOf(String.valueOf(member))));
+        }
+        List<Object> flags = relationScripts.executeScript(RelationScripts.SHARD_CHECK, keys, members.toArray());
+        List<Boolean> result = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            result.add(flags != null && i < flags.size() && ((Number) flags.get(i)).longValue() == 1L);
+        }
+        return result;
+    }
+
+    /**
+     * 全部成员；分片集合逐个分片读取，不会对整个关系执行一次 SMEMBERS
+     */
+    public Set<String> members(String baseKey) {
+        Set<String> result = new LinkedHashSet<>();
+        Set<String> base = stringRedisTemplate.opsForSet().members(baseKey);
+        if (base != null) {
+            result.addAll(base);
+        }
+        if (isSharded(baseKey)) {
+            for (int shard = 0; shard < SHARDS; shard++) {
+                Set<String> members = stringRedisTemplate.opsForSet().members(shardKey(baseKey, shard));
+                if (members != null) {
+                    result.addAll(members);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 游标分页：未分片时游标即 SSCAN 游标；分片集合遍历完基础集合后依次遍历各分片，一页可以跨越多个分片
+     * 遍历期间一直存在的成员至少返回一次，迁移中的成员可能重复返回，调用方需去重
+     */
+    public CursorPage<String> scanPage(String baseKey, String cursor, int count) {
+        String start = cursor == null || cursor.isEmpty() ? CursorPage.START : cursor;
+        int stage;
+        String scanCursor;
+        Matcher shardCursor = SHARD_CURSOR.matcher(start);
+        if (BASE_CURSOR.matcher(start).matches()) {
+            stage = BASE_STAGE;
+            scanCursor = start;
+        } else if (shardCursor.matches() && Integer.parseInt(shardCursor.group(1)) < SHARDS) {
+            stage = Integer.parseInt(shardCursor.group(1));
+            scanCursor = shardCursor.group(2);
+        } else {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+
+        List<String> items = new ArrayList<>(count);
+        while (true) {
+            String key = stage == BASE_STAGE ? baseKey : shardKey(baseKey, stage);
+            List<String> page = relationScripts.executeScript(RelationScripts.SCAN_PAGE,
+                    Collections.singletonList(key), scanCursor, count - items.size(), MAX_SCAN_ROUNDS);
+            if (page == null || page.isEmpty()) {
+                scanCursor = CursorPage.START;
+            } else {
+                scanCursor = page.get(0);
+                items.addAll(page.subList(1, page.size()));
+            }
+            if (!CursorPage.START.equals(scanCursor)) {
+                break;
+            }
+            // 当前阶段遍历结束，进入下一个分片
+            if (stage == BASE_STAGE ? !isSharded(baseKey) : stage + 1 >= SHARDS) {
+                return new CursorPage<>(items, CursorPage.START);
+            }
+            stage++;
+            if (items.size() >= count) {
+                break;
+            }
+        }
+        return new CursorPage<>(items, stage == BASE_STAGE ? scanCursor : "s" + stage + ":" + scanCursor);
+    }
+
+    // ==================== 迁移 ====================
+
+    /**
+     * 后台把基础集合中的成员迁移到分片，同一个集合同时只有一个迁移任务
+     */
+    public void splitAsync(String baseKey) {
+        if (!splitting.add(baseKey)) {
+            return;
+        }
+        taskScheduler.execute(() -> {
+            try {
+                split(baseKey);
+            } catch (Exception e) {
+                // 迁移可以重复执行，未迁移的成员留在基础集合中仍然有效
+                log.error("Failed to split relation set {}", baseKey, e);
+            } finally {
+                splitting.remove(baseKey);
+            }
+        });
+    }
+
+    /**
+     * 把基础集合中的成员迁移到分片，可重复执行；集合未分片时先进入分片状态
+     *
+     * @return 迁移的成员数
+     */
+    public long split(String baseKey) {
+        stringRedisTemplate.opsForHash().putIfAbsent(metaKey(baseKey), COUNT_FIELD, "0");
+        long moved = 0;
+        for (int pass = 0; pass < MAX_MOVE_PASSES; pass++) {
+            String cursor = CursorPage.START;
+            do {
+                List<String> page = relationScripts.executeScript(RelationScripts.SCAN_PAGE,
+                        Collections.singletonList(baseKey), cursor, MOVE_PAGE_SIZE, MAX_SCAN_ROUNDS);
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                cursor = page.get(0);
+                List<String> members = page.subList(1, page.size());
+                if (!members.isEmpty()) {
+                    List<String> keys = new ArrayList<>(members.size() + 2);
+                    keys.add(baseKey);
+                    keys.add(metaKey(baseKey));
+                    for (String member : members) {
+                        keys.add(shardKey(baseKey, shardOf(member)));
+                    }
+                    Long n = relationScripts.executeScript(RelationScripts.SHARD_MOVE, keys, members.toArray());
+                    moved += n != null ? n : 0;
+                }
+            } while (!CursorPage.START.equals(cursor));
+            Long remaining = stringRedisTemplate.opsForSet().size(baseKey);
+            if (remaining == null || remaining == 0) {
+                break;
+            }
+        }
+        log.info("Split relation set {} into {} shards, moved {} members", baseKey, SHARDS, moved);
+        return moved;
+    }
+}
@@ -44,8 +44,8 @@ public class ThirdMQServiceImpl implements MQService {
     @Override
     public void sendMessage(String topic, String key, AsyncDataMsg message) {
         if (!initialized) {
-            log.error("ThirdMQ: 服务未初始化，消息发送失败");
-            return;
+            // 抛出异常而不是返回：调用方（如批量生产者）据此走补偿，避免消息被当作发送成功而丢失
+            throw new IllegalStateException("ThirdMQ not initialized, message not sent, topic: " + topic + ", key: " + key);
         }
 
         try {
@@ -61,8 +61,7 @@ public class ThirdMQServiceImpl implements MQService {
     @Override
     public void sendDLMessage(String key, CompensationMsg message) {
         if (!initialized) {
-            log.error("ThirdMQ: 服务未初始化，死信消息发送失败");
-            return;
+            throw new IllegalStateException("ThirdMQ not initialized, dead letter not sent, key: " + key);
         }
 
         try {
@@ -0,0 +1,153 @@
+package com.wait.sync;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 方法调用的序列化与还原
+ * MethodExecutor 本身（ProceedingJoinPoint）无法跨进程传递，这里把一次调用拆成"方法标识 + 参数JSON"，
+ * 任意节点都可以据此还原出可执行的 MethodExecutor，用于 Redis 写回缓冲、补偿重试等场景
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MethodInvocationResolver {
+
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Method> methodCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Object> targetCache = new ConcurrentHashMap<>();
+
+    /**
+     * 生成方法标识，格式：全限定类名#方法名(参数类型,...)
+     */
+    public String toMethodId(Method method) {
+        StringBuilder sb = new StringBuilder(method.getDeclaringClass().getName())
+                .append('#').append(method.getName()).append('(');
+        Class<?>[] paramTypes = method.getParameterTypes();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(paramTypes[i].getName());
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 根据方法标识解析方法
+     */
+    public Method resolveMethod(String methodId) {
+        return methodCache.computeIfAbsent(methodId, this::doResolveMethod);
+    }
+
+    /**
+     * 根据方法标识和参数JSON还原 MethodExecutor
+     */
+    public MethodExecutor resolve(String methodId, String argsJson) {
+        Method method = resolveMethod(methodId);
+        Object target = resolveTarget(method.getDeclaringClass());
+        return new ReflectiveMethodExecutor(target, method, decodeArgs(method, argsJson));
+    }
+
+    /**
+     * 序列化单个值（参数或覆盖值）
+     */
+    public String encodeValue(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("序列化参数失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按方法参数的声明类型反序列化单个参数
+     */
+    public Object decodeArg(Method method, int index, String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, argType(method, index));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("反序列化参数失败, index: " + index + ", " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按方法参数的声明类型反序列化参数数组
+     */
+    public Object[] decodeArgs(Method method, String argsJson) {
+        Object[] args = new Object[method.getParameterCount()];
+        if (argsJson == null || argsJson.isEmpty()) {
+            return args;
+        }
+        try {
+            JsonNode array = objectMapper.readTree(argsJson);
+            for (int i = 0; i < args.length && i < array.size(); i++) {
+                JsonNode node = array.get(i);
+                args[i] = node == null || node.isNull() ? null : objectMapper.convertValue(node, argType(method, i));
+            }
+            return args;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("反序列化参数失败: " + e.getMessage(), e);
+        }
+    }
+
+    private JavaType argType(Method method, int index) {
+        Type type = method.getGenericParameterTypes()[index];
+        return objectMapper.getTypeFactory().constructType(type);
+    }
+
+    private Method doResolveMethod(String methodId) {
+        int hash = methodId.indexOf('#');
+        int open = methodId.indexOf('(', hash);
+        if (hash <= 0 || open <= hash || !methodId.endsWith(")")) {
+            throw new IllegalArgumentException("非法的方法标识: " + methodId);
+        }
+        try {
+            ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+            Class<?> clazz = ClassUtils.forName(methodId.substring(0, hash), classLoader);
+            String methodName = methodId.substring(hash + 1, open);
+            String params = methodId.substring(open + 1, methodId.length() - 1);
+            String[] typeNames = params.isEmpty() ? new String[0] : params.split(",");
+            Class<?>[] paramTypes = new Class<?>[typeNames.length];
+            for (int i = 0; i < typeNames.length; i++) {
+                paramTypes[i] = ClassUtils.forName(typeNames[i], classLoader);
+            }
+            return clazz.getMethod(methodName, paramTypes);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IllegalArgumentException("无法解析方法标识: " + methodId, e);
+        }
+    }
+
+    /**
+     * 获取方法所属的 Bean，并剥离切面代理
+     * 必须绕过 RedisCacheAspect，否则刷库时会再次进入写策略被重新缓冲
+     */
+    private Object resolveTarget(Class<?> declaringClass) {
+        return targetCache.computeIfAbsent(declaringClass, clazz -> {
+            Object bean = applicationContext.getBean(clazz);
+            Object target = AopProxyUtils.getSingletonTarget(bean);
+            log.debug("resolve invocation target, class: {}, unwrapped: {}", clazz.getName(), target != null);
+            return target != null ? target : bean;
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.wait.sync;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 基于反射的MethodExecutor实现
+ * 用于没有ProceedingJoinPoint的场景（如其他节点从Redis中恢复的写回任务），直接调用目标对象的方法
+ * 注意：target 应该是未经切面代理的原始对象，否则执行时会再次进入缓存切面
+ */
+public class ReflectiveMethodExecutor implements MethodExecutor {
+
+    private final Object target;
+    private final Method method;
+    private final Object[] args;
+    private final Map<Integer, String> paramIndexToName;
+    private final boolean isVoidMethod;
+
+    public ReflectiveMethodExecutor(Object target, Method method, Object[] args) {
+        this.target = target;
+        this.method = method;
+        this.args = args != null ? args : new Object[0];
+        this.isVoidMethod = method.getReturnType() == void.class;
+        this.paramIndexToName = buildParamIndexToName();
+    }
+
+    @Override
+    public Object execute(Object... args) throws Throwable {
+        Object[] actualArgs = (args != null && args.length > 0) ? args : this.args;
+        try {
+            return method.invoke(target, actualArgs);
+        } catch (InvocationTargetException e) {
+            // 抛出真实异常，与 joinPoint.proceed 的行为保持一致
+            throw e.getTargetException();
+        }
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return args.clone();
+    }
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public Map<Integer, String> getParamIndexToName() {
+        return paramIndexToName;
+    }
+
+    @Override
+    public boolean isVoidMethod() {
+        return isVoidMethod;
+    }
+
+    /**
+     * 解析位置到参数名的映射，规则与 ProceedingJoinPointMethodExecutor 一致
+     */
+    private Map<Integer, String> buildParamIndexToName() {
+        Map<Integer, String> map = new HashMap<>();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            String paramName = null;
+            for (Annotation annotation : parameters[i].getAnnotations()) {
+                if (annotation instanceof Param) {
+                    paramName = ((Param) annotation).value();
+                    break;
+                }
+            }
+            if (paramName == null) {
+                paramName = parameters[i].isNamePresent() ? parameters[i].getName() : "arg" + i;
+            }
+            map.put(i, paramName);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,414 @@
+package com.wait.sync.compensation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.wait.config.script.CompensationScripts;
+import com.wait.entity.BulkItemResult;
+import com.wait.entity.CacheSyncParam;
+import com.wait.service.impl.MemoryMQServiceImpl;
+import com.wait.service.impl.RedisStreamMQServiceImpl;
+import com.wait.service.impl.RingBufferMQServiceImpl;
+import com.wait.sync.MethodExecutor;
+import com.wait.sync.MethodInvocationResolver;
+import com.wait.util.BulkSQLExecutor;
+import com.wait.util.message.CompensationMsg;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 补偿引擎：持久化失败的缓存/数据库同步，按指数退避自动重试
+ * 1. 存储：每个缓存 key 一个 compensation:entry:{key} hash，同一 key 的多次失败合并为最新一次；
+ *    待重试 key 登记在 compensation:due（score 为下次重试时间），超过最大次数转入 compensation:dead 等待人工处理
+ * 2. 重试：所有节点定期认领到期条目（带租约，不会被重复认领），一批条目通过 BulkSQLExecutor 限并发执行：
+ *    有方法标识时重新调用原方法写库，然后删除缓存，让下次读取从数据库加载；没有方法标识时只删除缓存
+ * 3. 提交：按认领时的 version 提交结果，重试期间又有新的失败写入时以新条目为准
+ * 4. 入口：AsyncSQLWrapper、MQ 写回策略直接提交；各内存 MQ 的死信消息也转交到这里
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CompensationEngine implements MemoryMQServiceImpl.DeadLetterHandler {
+
+    public static final String ENTRY_PREFIX = "compensation:entry:";
+    /** 待重试 key 集合，score 为下次重试时间 */
+    public static final String DUE_KEYS = "compensation:due";
+    /** 超过最大重试次数的 key 集合，score 为最后失败时间 */
+    public static final String DEAD_KEYS = "compensation:dead";
+
+    /** 管理接口单次最多扫描的条目数 */
+    private static final int MAX_SCAN = 10000;
+    private static final int SCAN_PAGE = 500;
+
+    private final CompensationScripts compensationScripts;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MethodInvocationResolver methodInvocationResolver;
+    private final BulkSQLExecutor bulkSQLExecutor;
+    private final MemoryMQServiceImpl memoryMQService;
+    /** 启用 mq.ring.enabled 时存在 */
+    private final ObjectProvider<RingBufferMQServiceImpl> ringBufferMQService;
+    /** 启用 mq.redis-stream.enabled 时存在 */
+    private final ObjectProvider<RedisStreamMQServiceImpl> redisStreamMQService;
+
+    @Qualifier("refreshScheduler")
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    @Value("${compensation.poll-interval-ms:1000}")
+    private final long pollIntervalMs;
+
+    @Value("${compensation.batch-size:100}")
+    private final int batchSize;
+
+    @Value("${compensation.base-delay-ms:1000}")
+    private final long baseDelayMs;
+
+    @Value("${compensation.max-delay-ms:300000}")
+    private final long maxDelayMs;
+
+    @Value("${compensation.max-attempts:10}")
+    private final int maxAttempts;
+
+    @Value("${compensation.max-in-flight:4}")
+    private final int maxInFlight;
+
+    /** 认领租约，节点在租约内未提交结果时条目重新到期 */
+    @Value("${compensation.lease-ms:60000}")
+    private final long leaseMs;
+
+    private volatile ScheduledFuture<?> retryLoop;
+
+    @PostConstruct
+    public void init() {
+        memoryMQService.setDeadLetterHandler(this);
+        ringBufferMQService.ifAvailable(mq -> mq.setDeadLetterHandler(this));
+        redisStreamMQService.ifAvailable(mq -> mq.setDeadLetterHandler(this));
+        retryLoop = taskScheduler.scheduleWithFixedDelay(this::drainDue, pollIntervalMs);
+        log.info("Compensation engine started, interval: {}ms, batch: {}, max attempts: {}",
+                pollIntervalMs, batchSize, maxAttempts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ScheduledFuture<?> loop = retryLoop;
+        if (loop != null) {
+            loop.cancel(false);
+            retryLoop = null;
+            // 已认领未提交的条目在租约到期后由其他节点（或重启后的本节点）重试
+            log.info("Compensation engine stopped");
+        }
+    }
+
+    /**
+     * 提交一次失败的同步，保存方法调用以便重试时重新写库
+     */
+    public void submit(CacheSyncParam<?> param, MethodExecutor methodExecutor, Throwable error) {
+        String methodId = null;
+        String argsJson = null;
+        if (methodExecutor != null) {
+            try {
+                methodId = methodInvocationResolver.toMethodId(methodExecutor.getMethod());
+                argsJson = methodInvocationResolver.encodeValue(methodExecutor.getArgs());
+            } catch (Exception e) {
+                // 参数无法序列化时退化为只失效缓存
+                log.warn("Compensation cannot record invocation, key: {}, fallback to invalidation", param.getKey(), e);
+                methodId = null;
+                argsJson = null;
+            }
+        }
+        add(param.getKey(), methodId, argsJson, error != null ? error.getMessage() : null, System.currentTimeMillis());
+    }
+
+    /**
+     * 死信消息：消息中带方法调用时可以重放，否则只失效缓存
+     */
+    @Override
+    public void handleDeadLetter(String key, CompensationMsg<?> message) {
+        String cacheKey = message.getOriginalParam() != null && message.getOriginalParam().getKey() != null
+                ? message.getOriginalParam().getKey()
+                : key;
+        if (cacheKey == null) {
+            log.error("Compensation dropped dead letter without key: {}", message);
+            return;
+        }
+        long failTime = message.getFailTime() > 0 ? message.getFailTime() : System.currentTimeMillis();
+        add(cacheKey, message.getMethodId(), message.getArgsJson(), message.getFailReason(), failTime);
+    }
+
+    private void add(String key, String methodId, String argsJson, String failReason, long failTime) {
+        try {
+            Long superseded = compensationScripts.executeScript(CompensationScripts.COMPENSATION_ADD,
+                    Arrays.asList(ENTRY_PREFIX + key, DUE_KEYS, DEAD_KEYS),
+                    key, nullToEmpty(methodId), nullToEmpty(argsJson), nullToEmpty(failReason), failTime,
+                    System.currentTimeMillis() + baseDelayMs);
+            log.info("Compensation recorded, key: {}, replayable: {}, superseded: {}",
+                    key, methodId != null, superseded != null && superseded == 1);
+        } catch (Exception e) {
+            // Redis 也不可用时只能记录日志，人工修复
+            log.error("Compensation store unavailable, entry lost, key: {}, method: {}, args: {}, reason: {}",
+                    key, methodId, argsJson, failReason, e);
+        }
+    }
+
+    /**
+     * 认领到期条目并分批重试，认领满一批说明还有积压，继续下一批
+     */
+    private void drainDue() {
+        try {
+            List<String> claimed;
+            do {
+                long now = System.currentTimeMillis();
+                claimed = compensationScripts.executeScript(CompensationScripts.COMPENSATION_CLAIM,
+                        Collections.singletonList(DUE_KEYS), now, batchSize, now + leaseMs);
+                if (claimed == null || claimed.isEmpty()) {
+                    return;
+                }
+                retryBatch(claimed);
+            } while (claimed.size() >= batchSize && retryLoop != null);
+        } catch (Exception e) {
+            log.error("Compensation retry loop failed", e);
+        }
+    }
+
+    private void retryBatch(List<String> keys) {
+        List<CompensationEntry> entries = new ArrayList<>(keys.size());
+        for (CompensationEntry entry : load(keys).values()) {
+            if (entry != null && CompensationEntry.STATUS_PENDING.equals(entry.getStatus())) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Callable<Object>> operations = new ArrayList<>(entries.size());
+        for (CompensationEntry entry : entries) {
+            operations.add(() -> {
+                retry(entry);
+                return null;
+            });
+        }
+        List<BulkItemResult<Object>> results = bulkSQLExecutor.execute(operations,
+                BulkSQLExecutor.Options.builder().maxInFlight(maxInFlight).chunkSize(1).build());
+
+        int succeeded = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            CompensationEntry entry = entries.get(i);
+            BulkItemResult<Object> result = results.get(i);
+            if (result.isSuccess()) {
+                succeeded++;
+                compensationScripts.executeScript(CompensationScripts.COMPENSATION_COMPLETE,
+                        Arrays.asList(ENTRY_PREFIX + entry.getKey(), DUE_KEYS), entry.getKey(), entry.getVersion());
+            } else {
+                fail(entry, result.getError());
+            }
+        }
+        log.info("Compensation batch retried, total: {}, succeeded: {}", entries.size(), succeeded);
+    }
+
+    /**
+     * 重试一个条目：重放原方法写库（绕过缓存切面），再删除缓存
+     */
+    private void retry(CompensationEntry entry) throws Exception {
+        if (entry.isReplayable()) {
+            MethodExecutor methodExecutor = methodInvocationResolver.resolve(entry.getMethodId(), entry.getArgsJson());
+            try {
+                methodExecutor.execute();
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException("Compensation replay failed", e);
+            }
+        }
+        stringRedisTemplate.delete(entry.getKey());
+    }
+
+    private void fail(CompensationEntry entry, Throwable error) {
+        long now = System.currentTimeMillis();
+        long nextRetryAt = now + backoff(entry.getAttempts() + 1, baseDelayMs, maxDelayMs);
+        Long attempts = compensationScripts.executeScript(CompensationScripts.COMPENSATION_FAIL,
+                Arrays.asList(ENTRY_PREFIX + entry.getKey(), DUE_KEYS, DEAD_KEYS),
+                entry.getKey(), entry.getVersion(), nullToEmpty(error.getMessage()), now, nextRetryAt, maxAttempts);
+        if (attempts != null && attempts == 0) {
+            log.error("Compensation gave up after {} attempts, moved to dead set, key: {}",
+                    maxAttempts, entry.getKey(), error);
+        } else {
+            log.warn("Compensation retry failed, key: {}, attempt: {}, next retry in {}ms, reason: {}",
+                    entry.getKey(), attempts, nextRetryAt - now, error.getMessage());
+        }
+    }
+
+    /**
+     * 指数退避：base * 2^(attempt-1)，不超过 maxDelay，叠加 ±20% 抖动避免批量失败的条目同时到期
+     */
+    static long backoff(int attempt, long baseDelayMs, long maxDelayMs) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long delay = Math.min(maxDelayMs, baseDelayMs << shift);
+        long jitter = delay / 5;
+        return Math.max(baseDelayMs, delay + (jitter > 0 ? ThreadLocalRandom.current().nextLong(-jitter, jitter) : 0));
+    }
+
+    /**
+     * 查询条目
+     *
+     * @param keyPrefix      缓存 key 前缀，可为空
+     * @param reasonContains 失败原因包含的文本，可为空
+     * @param status         PENDING / DEAD，为空时两者都查
+     * @param limit          最多返回条数
+     */
+    public List<CompensationEntry> list(String keyPrefix, String reasonContains, String status, int limit) {
+        List<CompensationEntry> matched = new ArrayList<>();
+        scan(keyPrefix, reasonContains, status, entry -> {
+            matched.add(entry);
+            return matched.size() < limit;
+        });
+        return matched;
+    }
+
+    /**
+     * 按条件重放：重置重试次数并立即到期，死亡条目移回待重试集合
+     *
+     * @return 重放的条目数
+     */
+    public int replay(String keyPrefix, String reasonContains, String status) {
+        int[] replayed = {0};
+        long now = System.currentTimeMillis();
+        scan(keyPrefix, reasonContains, status, entry -> {
+            Long result = compensationScripts.executeScript(CompensationScripts.COMPENSATION_REPLAY,
+                    Arrays.asList(ENTRY_PREFIX + entry.getKey(), DUE_KEYS, DEAD_KEYS), entry.getKey(), now);
+            replayed[0] += result != null ? result.intValue() : 0;
+            return true;
+        });
+        log.info("Compensation replay requested, prefix: {}, reason: {}, status: {}, replayed: {}",
+                keyPrefix, reasonContains, status, replayed[0]);
+        return replayed[0];
+    }
+
+    /**
+     * 按条件清除条目（放弃补偿）
+     *
+     * @return 清除的条目数
+     */
+    public int purge(String keyPrefix, String reasonContains, String status) {
+        int[] purged = {0};
+        scan(keyPrefix, reasonContains, status, entry -> {
+            Long result = compensationScripts.executeScript(CompensationScripts.COMPENSATION_PURGE,
+                    Arrays.asList(ENTRY_PREFIX + entry.getKey(), DUE_KEYS, DEAD_KEYS), entry.getKey());
+            purged[0] += result != null ? result.intValue() : 0;
+            return true;
+        });
+        log.warn("Compensation entries purged, prefix: {}, reason: {}, status: {}, purged: {}",
+                keyPrefix, reasonContains, status, purged[0]);
+        return purged[0];
+    }
+
+    /**
+     * 待重试 / 死亡条目数
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Long pending = stringRedisTemplate.opsForZSet().zCard(DUE_KEYS);
+        Long dead = stringRedisTemplate.opsForZSet().zCard(DEAD_KEYS);
+        Long overdue = stringRedisTemplate.opsForZSet().count(DUE_KEYS, 0, System.currentTimeMillis());
+        metrics.put("pending", pending != null ? pending : 0);
+        metrics.put("overdue", overdue != null ? overdue : 0);
+        metrics.put("dead", dead != null ? dead : 0);
+        metrics.put("maxAttempts", maxAttempts);
+        return metrics;
+    }
+
+    /**
+     * 扫描待重试集合和死亡集合，visitor 返回 false 时停止
+     * 先用 ZSCAN 收集两个集合中符合 key 前缀的 key 快照（最多 MAX_SCAN 个），再按页加载条目交给 visitor：
+     * replay、purge 会修改正在扫描的集合（ZREM、从死亡集合移回待重试集合），按下标分页会跳过条目或重复访问，
+     * 先取快照后修改不受影响；ZSCAN 期间一直存在的条目至少返回一次，重复返回的 key 在快照中去重
+     */
+    private void scan(String keyPrefix, String reasonContains, String status, Predicate<CompensationEntry> visitor) {
+        List<String> sets = new ArrayList<>(2);
+        if (status == null || CompensationEntry.STATUS_PENDING.equalsIgnoreCase(status)) {
+            sets.add(DUE_KEYS);
+        }
+        if (status == null || CompensationEntry.STATUS_DEAD.equalsIgnoreCase(status)) {
+            sets.add(DEAD_KEYS);
+        }
+        Set<String> snapshot = new LinkedHashSet<>();
+        int scanned = 0;
+        ScanOptions options = ScanOptions.scanOptions().count(SCAN_PAGE).build();
+        for (String set : sets) {
+            try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet().scan(set, options)) {
+                while (scanned < MAX_SCAN && cursor.hasNext()) {
+                    String key = cursor.next().getValue();
+                    scanned++;
+                    if (key != null && (keyPrefix == null || key.startsWith(keyPrefix))) {
+                        snapshot.add(key);
+                    }
+                }
+            }
+        }
+
+        List<String> keys = new ArrayList<>(snapshot);
+        for (int from = 0; from < keys.size(); from += SCAN_PAGE) {
+            for (CompensationEntry entry : load(keys.subList(from, Math.min(keys.size(), from + SCAN_PAGE))).values()) {
+                if (entry == null) {
+                    continue;
+                }
+                if (reasonContains != null
+                        && (entry.getFailReason() == null || !entry.getFailReason().contains(reasonContains))) {
+                    continue;
+                }
+                if (!visitor.test(entry)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 通过 pipeline 一次加载一批条目，不存在的条目值为 null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, CompensationEntry> load(List<String> keys) {
+        Map<String, CompensationEntry> loaded = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return loaded;
+        }
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.hashCommands().hGetAll(stringRedisTemplate.getStringSerializer().serialize(ENTRY_PREFIX + key));
+            }
+            return null;
+        });
+        for (int i = 0; i < keys.size() && i < results.size(); i++) {
+            Object hash = results.get(i);
+            loaded.put(keys.get(i), hash instanceof Map ? CompensationEntry.fromHash((Map<String, String>) hash) : null);
+        }
+        return loaded;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
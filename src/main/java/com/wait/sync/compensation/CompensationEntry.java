@@ -0,0 +1,72 @@
+package com.wait.sync.compensation;
+
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * 补偿引擎中一个缓存 key 的待补偿条目，对应 compensation:entry:{cacheKey} hash
+ * 同一个 key 多次失败只保留最新一次（旧的写入已被取代），superseded 记录被合并的次数
+ */
+@Data
+public class CompensationEntry {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private String key;
+    /** 方法标识，为空时只能通过失效缓存补偿 */
+    private String methodId;
+    private String argsJson;
+    private String failReason;
+    private long firstFailTime;
+    private long lastFailTime;
+    private int attempts;
+    private long nextRetryAt;
+    private String status;
+    private long superseded;
+    /** 每次新的失败写入时递增，提交重试结果时校验 */
+    private String version;
+
+    /**
+     * 从 HGETALL 的结果解析，条目不存在时返回 null
+     */
+    public static CompensationEntry fromHash(Map<String, String> hash) {
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        CompensationEntry entry = new CompensationEntry();
+        entry.setKey(str(hash, "key"));
+        entry.setMethodId(emptyToNull(str(hash, "methodId")));
+        entry.setArgsJson(emptyToNull(str(hash, "argsJson")));
+        entry.setFailReason(str(hash, "failReason"));
+        entry.setFirstFailTime(num(hash, "firstFailTime"));
+        entry.setLastFailTime(num(hash, "lastFailTime"));
+        entry.setAttempts((int) num(hash, "attempts"));
+        entry.setNextRetryAt(num(hash, "nextRetryAt"));
+        entry.setStatus(str(hash, "status"));
+        entry.setSuperseded(num(hash, "superseded"));
+        entry.setVersion(str(hash, "version"));
+        return entry;
+    }
+
+    /**
+     * 是否可以通过重新调用原方法补偿
+     */
+    public boolean isReplayable() {
+        return methodId != null;
+    }
+
+    private static String str(Map<String, String> hash, String field) {
+        return hash.get(field);
+    }
+
+    private static long num(Map<String, String> hash, String field) {
+        String value = str(hash, field);
+        return value == null || value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,203 @@
+package com.wait.sync.write;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 写回缓冲的自适应刷库控制器
+ * 1. 缓冲 key 数量或估算字节数越接近阈值，刷库延迟越短；超过阈值时触发提前刷库，保证高峰期内存有界
+ * 2. 数据库写入延迟（EWMA）超过阈值时拉长刷库和重试间隔，形成背压，避免高峰期把数据库压垮
+ * 3. 空闲时使用基础延迟，尽可能多地合并同一 key 的更新
+ * 每个写策略持有一个实例，只负责计算和统计，刷库动作仍由写策略执行
+ */
+@Slf4j
+public class AdaptiveFlushController {
+
+    /** EWMA 平滑系数 */
+    private static final double LATENCY_ALPHA = 0.2;
+    /** 背压时延迟最多放大的倍数 */
+    private static final double MAX_BACKOFF_FACTOR = 4.0;
+    /** 缓冲压力最多把延迟缩短到基础延迟的比例 */
+    private static final double MIN_PRESSURE_RATIO = 0.1;
+    /** 吞吐量统计窗口 */
+    private static final long THROUGHPUT_WINDOW_MS = 10_000L;
+    /** 一次提前刷库最多刷出的 key 数，仍超过阈值时由后续写入再次触发 */
+    public static final int EARLY_FLUSH_BATCH_SIZE = 500;
+
+    private final String name;
+    private final long baseDelayMs;
+    private final long baseRetryDelayMs;
+    private final int maxBufferedKeys;
+    private final long maxBufferedBytes;
+    private final long latencyThresholdMs;
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicBoolean earlyFlushRunning = new AtomicBoolean(false);
+    private volatile double latencyEwmaMs = 0;
+
+    private final AtomicLong flushedTotal = new AtomicLong();
+    private final AtomicLong failedTotal = new AtomicLong();
+    private final AtomicLong earlyFlushTotal = new AtomicLong();
+
+    // 吞吐量窗口：窗口内刷库成功的 key 数量
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong windowFlushed = new AtomicLong();
+    private volatile double lastThroughput = 0;
+
+    public AdaptiveFlushController(String name, long baseDelayMs, long baseRetryDelayMs, int maxBufferedKeys,
+            long maxBufferedBytes, long latencyThresholdMs) {
+        this.name = name;
+        this.baseDelayMs = baseDelayMs;
+        this.baseRetryDelayMs = baseRetryDelayMs;
+        this.maxBufferedKeys = maxBufferedKeys;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.latencyThresholdMs = latencyThresholdMs;
+    }
+
+    /**
+     * 计算新 key 的刷库延迟
+     */
+    public long nextFlushDelayMs(int bufferedKeys) {
+        double ratio = Math.max(MIN_PRESSURE_RATIO, 1.0 - pressure(bufferedKeys));
+        return Math.max(1L, (long) (baseDelayMs * ratio * backoffFactor()));
+    }
+
+    /**
+     * 计算重试延迟，数据库越慢重试越晚
+     */
+    public long nextRetryDelayMs() {
+        return (long) (baseRetryDelayMs * backoffFactor());
+    }
+
+    /**
+     * 缓冲是否超过阈值，需要提前刷库
+     */
+    public boolean shouldFlushEarly(int bufferedKeys) {
+        return bufferedKeys >= maxBufferedKeys || bufferedBytes.get() >= maxBufferedBytes;
+    }
+
+    /**
+     * 开始一次提前刷库，已有提前刷库在执行时返回false，避免重复触发
+     */
+    public boolean tryBeginEarlyFlush() {
+        if (earlyFlushRunning.compareAndSet(false, true)) {
+            earlyFlushTotal.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void endEarlyFlush() {
+        earlyFlushRunning.set(false);
+    }
+
+    /**
+     * 调整缓冲的估算字节数（新增为正，刷出为负）
+     */
+    public void adjustBufferedBytes(long delta) {
+        if (delta != 0) {
+            bufferedBytes.addAndGet(delta);
+        }
+    }
+
+    /**
+     * 记录一次刷库结果
+     */
+    public void recordFlush(long latencyMs, boolean success) {
+        // EWMA 允许少量并发更新丢失，只用于估算
+        double current = latencyEwmaMs;
+        latencyEwmaMs = current == 0 ? latencyMs : current + LATENCY_ALPHA * (latencyMs - current);
+
+        if (!success) {
+            failedTotal.incrementAndGet();
+            return;
+        }
+        flushedTotal.incrementAndGet();
+        windowFlushed.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= THROUGHPUT_WINDOW_MS && windowStart.compareAndSet(start, now)) {
+            lastThroughput = windowFlushed.getAndSet(0) * 1000.0 / (now - start);
+        }
+    }
+
+    /**
+     * 导出指标
+     *
+     * @param bufferedKeys   当前缓冲 key 数量
+     * @param oldestEntryTime 最早缓冲条目的创建时间，没有缓冲时传0
+     */
+    public Map<String, Object> metrics(int bufferedKeys, long oldestEntryTime) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("name", name);
+        metrics.put("bufferedKeys", bufferedKeys);
+        metrics.put("estimatedBytes", bufferedBytes.get());
+        metrics.put("oldestEntryAgeMs", oldestEntryTime > 0 ? System.currentTimeMillis() - oldestEntryTime : 0);
+        metrics.put("nextFlushDelayMs", nextFlushDelayMs(bufferedKeys));
+        metrics.put("dbLatencyEwmaMs", Math.round(latencyEwmaMs * 100) / 100.0);
+        metrics.put("flushThroughputPerSec", Math.round(lastThroughput * 100) / 100.0);
+        metrics.put("flushedTotal", flushedTotal.get());
+        metrics.put("failedTotal", failedTotal.get());
+        metrics.put("earlyFlushTotal", earlyFlushTotal.get());
+        return metrics;
+    }
+
+    /**
+     * 估算缓冲值占用的字节数，只用于阈值判断，不追求精确
+     */
+    public static long estimateBytes(Object value) {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateBytes(e.getKey()) + estimateBytes(e.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 40;
+            for (Object item : (Collection<?>) value) {
+                size += 8 + estimateBytes(item);
+            }
+            return size;
+        }
+        // 普通对象无法廉价估算，按经验值计
+        return 256;
+    }
+
+    /**
+     * 缓冲压力：key 数量和字节数占阈值比例的较大者
+     */
+    private double pressure(int bufferedKeys) {
+        double keyPressure = maxBufferedKeys > 0 ? (double) bufferedKeys / maxBufferedKeys : 0;
+        double bytePressure = maxBufferedBytes > 0 ? (double) bufferedBytes.get() / maxBufferedBytes : 0;
+        return Math.min(1.0, Math.max(keyPressure, bytePressure));
+    }
+
+    /**
+     * 背压系数：数据库延迟超过阈值后按比例放大，最多放大 MAX_BACKOFF_FACTOR 倍
+     */
+    private double backoffFactor() {
+        double latency = latencyEwmaMs;
+        if (latencyThresholdMs <= 0 || latency <= latencyThresholdMs) {
+            return 1.0;
+        }
+        double factor = Math.min(MAX_BACKOFF_FACTOR, latency / latencyThresholdMs);
+        log.debug("{} flush backoff, dbLatencyEwma: {}ms, factor: {}", name, latency, factor);
+        return factor;
+    }
+}
@@ -5,6 +5,7 @@ import com.wait.entity.type.WriteStrategyType;
 import com.wait.sync.MethodExecutor;
 import com.wait.util.AsyncSQLWrapper;
 import com.wait.util.BoundUtil;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -25,10 +26,13 @@ public class CacheAsideStrategy implements WriteStrategy {
     public void write(CacheSyncParam<?> param, MethodExecutor methodExecutor) {
         try {
             // 1. 先执行数据库操作
-            asyncSQLWrapper.executeAspectMethod(param, methodExecutor);
+            CompletableFuture<Void> written = asyncSQLWrapper.executeAspectMethod(param, methodExecutor);
 
-            // 2. 删除缓存（Cache-Aside模式）
+            // 2. 删除缓存（Cache-Aside模式）；异步写库结束后再删一次，清掉写库期间按旧数据回填的缓存
             boundUtil.del(param.getKey());
+            if (Boolean.TRUE.equals(param.getIsExecuteASync())) {
+                written.whenComplete((result, ex) -> boundUtil.del(param.getKey()));
+            }
 
             log.debug("Cache-Aside write strategy executed, key: {}", param.getKey());
 
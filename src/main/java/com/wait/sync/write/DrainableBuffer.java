@@ -0,0 +1,46 @@
+package com.wait.sync.write;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 可排空的写回缓冲
+ * 应用关闭时由 WriteBehindDrainer 统一调用：先停止接收新的缓冲写入，再把已缓冲的数据强制刷库
+ */
+public interface DrainableBuffer {
+
+    /**
+     * 缓冲名称（用于日志和报告）
+     */
+    String getBufferName();
+
+    /**
+     * 停止接收新的缓冲写入，之后的写入直接同步写库
+     */
+    void stopAccepting();
+
+    /**
+     * 取出当前所有待刷写数据对应的刷库任务，调用后不再由定时任务刷库
+     * 任务执行失败时抛出异常，并把数据放回缓冲区
+     */
+    List<DrainTask> drainTasks();
+
+    /**
+     * 仍在缓冲区中未刷库的 key
+     */
+    Collection<String> pendingKeys();
+
+    /**
+     * 一次独立的刷库操作
+     */
+    @Data
+    @AllArgsConstructor
+    class DrainTask {
+        private String key;
+        private Callable<?> action;
+    }
+}
@@ -1,19 +1,29 @@
 package com.wait.sync.write;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
 import com.wait.entity.CacheSyncParam;
 import com.wait.entity.type.WriteStrategyType;
 import com.wait.sync.MethodExecutor;
+import com.wait.sync.MethodInvocationResolver;
+import com.wait.sync.write.buffer.RedisDirtyEntry;
+import com.wait.sync.write.buffer.RedisWriteBehindBuffer;
 import com.wait.util.BoundUtil;
 
 import lombok.AllArgsConstructor;
@@ -24,27 +34,61 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * 增量更新策略，不立即更新数据库，由定时任务执行数据库写入，通过修改方法参数实现批量增量更新
  * 适用于对写入性能要求极高，但对数据一致性和可靠性要求不高的场景，如帖子点赞数、视频播放量。
+ * 缓冲区支持两种后端（write-behind.incremental.buffer）：
+ * - local：缓冲在本 JVM 内存中（默认），多实例部署时每个节点各自刷库，节点宕机缓冲丢失
+ * - redis：缓冲在 Redis 中，由各节点通过 Lua 认领刷写，同一 key 每个窗口只写库一次
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
-public class IncrementalWriteStrategy implements WriteStrategy {
+public class IncrementalWriteStrategy implements WriteStrategy, DrainableBuffer {
 
-    /** 定时刷库延迟时间：2分钟 */
+    /** 基础刷库延迟时间：2分钟，实际延迟由 AdaptiveFlushController 根据缓冲压力和数据库延迟调整 */
     private static final long FLUSH_DELAY_MS = TimeUnit.SECONDS.toMillis(120);
 
-    /** 重试延迟时间：60秒 */
+    /** 基础重试延迟时间：60秒 */
     private static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(60);
 
+    /** 缓冲 key 数量阈值，超过后提前刷库 */
+    private static final int MAX_BUFFERED_KEYS = 10_000;
+
+    /** 缓冲估算字节数阈值：64MB */
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    /** 数据库写入延迟阈值，超过后拉长刷库间隔 */
+    private static final long DB_LATENCY_THRESHOLD_MS = 200;
+
+    private static final String BUFFER_REDIS = "redis";
+
     private final BoundUtil boundUtil;
 
     @Qualifier("refreshScheduler")
     private final ThreadPoolTaskScheduler taskScheduler;
 
+    private final RedisWriteBehindBuffer redisWriteBehindBuffer;
+    private final MethodInvocationResolver methodInvocationResolver;
+
+    @Value("${write-behind.incremental.buffer:local}")
+    private final String bufferBackend;
+
     // 存储每个key对应的增量/覆盖任务和原始joinPoint
     private final Map<String, IncrementalTask> taskBuffer = new ConcurrentHashMap<>();
     private final Map<String, ScheduledFuture<?>> flushTasks = new ConcurrentHashMap<>();
 
+    private final AdaptiveFlushController flushController = new AdaptiveFlushController("incremental",
+            FLUSH_DELAY_MS, RETRY_DELAY_MS, MAX_BUFFERED_KEYS, MAX_BUFFERED_BYTES, DB_LATENCY_THRESHOLD_MS);
+
+    /** 是否接收新的缓冲写入，应用关闭时置为false，之后的写入直接同步写库 */
+    private volatile boolean accepting = true;
+
+    @PostConstruct
+    public void init() {
+        if (isRedisBuffer()) {
+            redisWriteBehindBuffer.startFlusher(this::flushRedisEntry, RETRY_DELAY_MS);
+        }
+        log.info("IncrementalWrite buffer backend: {}", bufferBackend);
+    }
+
     @Override
     public void write(CacheSyncParam<?> param, MethodExecutor methodExecutor) {
         String key = param.getKey();
@@ -56,12 +100,26 @@ public class IncrementalWriteStrategy implements WriteStrategy {
             // 2. 立即更新Redis（能识别的场景尽量更新，识别不了则延后以DB为准）
             updateRedisImmediately(key, changeBundle, param, methodExecutor);
 
-            // 3. 缓冲任务（对同一key进行合并：增量相加、覆盖取最近值）
-            bufferIncrementalTask(key, changeBundle, methodExecutor);
+            if (!accepting && !isRedisBuffer()) {
+                // 应用关闭中，本地缓冲已停止接收，直接同步写库
+                executeDirectly(key, methodExecutor);
+            } else if (isRedisBuffer()) {
+                // 3. 缓冲到Redis（HINCRBY合并增量），由各节点的刷写循环认领后写库
+                redisWriteBehindBuffer.buffer(key, methodExecutor, changeBundle.numericIncrements,
+                        changeBundle.latestReplacements, FLUSH_DELAY_MS);
+            } else {
+                // 3. 缓冲任务（对同一key进行合并：增量相加、覆盖取最近值）
+                bufferIncrementalTask(key, changeBundle, methodExecutor);
+
+                // 4. 启动定时刷库任务（统一由定时任务执行数据库写入）
+                // 中间更新多次都放到IncrementalTask中，写入数据库时根据key获取，定时任务不用改动
+                scheduleFlushTask(key);
 
-            // 4. 启动定时刷库任务（统一由定时任务执行数据库写入）
-            // 中间更新多次都放到IncrementalTask中，写入数据库时根据key获取，定时任务不用改动
-            scheduleFlushTask(key);
+                // 5. 缓冲超过阈值时提前刷库，保证高峰期内存有界
+                if (flushController.shouldFlushEarly(taskBuffer.size())) {
+                    triggerEarlyFlush();
+                }
+            }
 
             log.debug("IncrementalWrite Buffered changes, key: {}, incIdx: {}, setIdx: {}",
                     key, changeBundle.numericIncrements.keySet(), changeBundle.latestReplacements.keySet());
@@ -80,8 +138,14 @@ public class IncrementalWriteStrategy implements WriteStrategy {
             boundUtil.del(param.getKey());
 
             // 2. 清理缓冲区中的任务
-            taskBuffer.remove(param.getKey());
+            IncrementalTask removed = taskBuffer.remove(param.getKey());
+            if (removed != null) {
+                flushController.adjustBufferedBytes(-removed.getEstimatedBytes());
+            }
             cancelFlushTask(param.getKey());
+            if (isRedisBuffer()) {
+                redisWriteBehindBuffer.discard(param.getKey());
+            }
 
             // 3. 执行原始删除方法
             methodExecutor.execute();
@@ -94,6 +158,18 @@ public class IncrementalWriteStrategy implements WriteStrategy {
         }
     }
 
+    /**
+     * 直接同步执行原始方法（单次调用的增量即原始参数）
+     */
+    private void executeDirectly(String key, MethodExecutor methodExecutor) {
+        try {
+            methodExecutor.execute();
+            log.debug("IncrementalWrite not accepting, executed directly, key: {}", key);
+        } catch (Throwable e) {
+            throw new RuntimeException("增量更新同步写库失败, key: " + key, e);
+        }
+    }
+
     /**
      * 缓冲增量/覆盖任务
      */
@@ -101,19 +177,34 @@ public class IncrementalWriteStrategy implements WriteStrategy {
         taskBuffer.compute(key, (k, existingTask) -> {
             if (existingTask == null) {
                 long now = System.currentTimeMillis();
-                IncrementalTask task = new IncrementalTask(methodExecutor, new HashMap<>(), new HashMap<>(), now, now);
+                IncrementalTask task = new IncrementalTask(methodExecutor, new HashMap<>(), new HashMap<>(), now, now,
+                        0L);
                 mergeIntoTask(task, changeBundle);
+                updateEstimatedBytes(k, task, 0L);
                 log.debug("create new incremental task, key: {}, time: {}", key, now);
                 return task;
             } else {
+                long before = existingTask.getEstimatedBytes();
                 mergeIntoTask(existingTask, changeBundle);
                 existingTask.setLastUpdateTime(System.currentTimeMillis());
+                updateEstimatedBytes(k, existingTask, before);
                 log.debug("update incremental task, key: {}, time: {}", key, existingTask.getLastUpdateTime());
                 return existingTask;
             }
         });
     }
 
+    /**
+     * 重新估算任务占用的字节数，并把变化量同步给刷库控制器
+     */
+    private void updateEstimatedBytes(String key, IncrementalTask task, long before) {
+        long after = 64 + AdaptiveFlushController.estimateBytes(key)
+                + AdaptiveFlushController.estimateBytes(task.getNumericDeltas())
+                + AdaptiveFlushController.estimateBytes(task.getLatestValues());
+        task.setEstimatedBytes(after);
+        flushController.adjustBufferedBytes(after - before);
+    }
+
     private void mergeIntoTask(IncrementalTask task, ChangeBundle changeBundle) {
         // 合并增量：按参数下标相加，保持原始类型精度
         for (Map.Entry<Integer, Number> e : changeBundle.numericIncrements.entrySet()) {
@@ -164,13 +255,54 @@ public class IncrementalWriteStrategy implements WriteStrategy {
             return;
         }
 
-        // 任务不存在或已取消/完成，创建新任务
+        // 任务不存在或已取消/完成，创建新任务，延迟由控制器根据缓冲压力和数据库延迟计算
+        long delayMs = flushController.nextFlushDelayMs(taskBuffer.size());
         ScheduledFuture<?> future = taskScheduler.schedule(
                 () -> flushToDatabase(key),
-                new Date(System.currentTimeMillis() + FLUSH_DELAY_MS));
+                new Date(System.currentTimeMillis() + delayMs));
 
         flushTasks.put(key, future);
-        log.debug("Scheduled task created, key: {}, delay: {}ms", key, FLUSH_DELAY_MS);
+        log.debug("Scheduled task created, key: {}, delay: {}ms", key, delayMs);
+    }
+
+    /**
+     * 提前刷库：缓冲超过阈值时，立即刷出一批（EARLY_FLUSH_BATCH_SIZE 个）key，不占用共享调度线程刷完整个缓冲
+     * 同一时间只允许一个提前刷库任务执行，刷完一批后仍超过阈值时由后续写入再次触发
+     */
+    private void triggerEarlyFlush() {
+        if (!flushController.tryBeginEarlyFlush()) {
+            return;
+        }
+        log.info("IncrementalWrite buffer over threshold, flush early, bufferedKeys: {}", taskBuffer.size());
+        taskScheduler.execute(() -> {
+            try {
+                int flushed = 0;
+                for (String key : taskBuffer.keySet()) {
+                    if (flushed++ >= AdaptiveFlushController.EARLY_FLUSH_BATCH_SIZE) {
+                        break;
+                    }
+                    cancelFlushTask(key);
+                    flushToDatabase(key);
+                }
+            } finally {
+                flushController.endEarlyFlush();
+            }
+        });
+    }
+
+    /**
+     * 缓冲指标：缓冲深度、最早条目的等待时间、刷库吞吐量等
+     */
+    public Map<String, Object> getBufferMetrics() {
+        long oldest = 0;
+        for (IncrementalTask task : taskBuffer.values()) {
+            if (oldest == 0 || task.getCreateTime() < oldest) {
+                oldest = task.getCreateTime();
+            }
+        }
+        Map<String, Object> metrics = flushController.metrics(taskBuffer.size(), oldest);
+        metrics.put("backend", bufferBackend);
+        return metrics;
     }
 
     /**
@@ -183,7 +315,9 @@ public class IncrementalWriteStrategy implements WriteStrategy {
         }
 
         flushTasks.remove(key);
+        flushController.adjustBufferedBytes(-task.getEstimatedBytes());
 
+        long start = System.currentTimeMillis();
         try {
             // 基于原始参数进行合并：
             // 数值型增量：用累计增量替换对应参数（由SQL执行 "col = col + #{arg}"）
@@ -192,6 +326,7 @@ public class IncrementalWriteStrategy implements WriteStrategy {
 
             // 使用修改后的参数执行原始MyBatis方法
             task.getMethodExecutor().execute(modifiedArgs);
+            flushController.recordFlush(System.currentTimeMillis() - start, true);
 
             log.info("IncrementalWrite Flushed to database, key: {}, deltaArgs: {}, latestArgs: {}",
                     key, task.getNumericDeltas().keySet(), task.getLatestValues().keySet());
@@ -206,12 +341,119 @@ public class IncrementalWriteStrategy implements WriteStrategy {
 
         } catch (Throwable e) {
             log.error("IncrementalWrite Flush failed, key: {}", key, e);
-            // 重试：将任务放回缓冲区，并重新创建任务
-            taskBuffer.put(key, task);
+            flushController.recordFlush(System.currentTimeMillis() - start, false);
+            // 重试：将任务合并回缓冲区，并重新创建任务
+            requeueFailedTask(key, task);
             scheduleRetryTask(key);
         }
     }
 
+    /**
+     * 刷库失败的任务放回缓冲区
+     * 刷库期间可能已有新的写入，直接 put 会覆盖掉新增量，这里与新任务合并：增量相加，覆盖值以新写入为准
+     */
+    private void requeueFailedTask(String key, IncrementalTask failedTask) {
+        taskBuffer.compute(key, (k, newerTask) -> {
+            if (newerTask == null) {
+                updateEstimatedBytes(k, failedTask, 0L);
+                return failedTask;
+            }
+            long before = newerTask.getEstimatedBytes();
+            for (Map.Entry<Integer, Number> e : failedTask.getNumericDeltas().entrySet()) {
+                newerTask.getNumericDeltas().merge(e.getKey(), e.getValue(), this::addNumbers);
+            }
+            for (Map.Entry<Integer, Object> e : failedTask.getLatestValues().entrySet()) {
+                newerTask.getLatestValues().putIfAbsent(e.getKey(), e.getValue());
+            }
+            newerTask.setCreateTime(Math.min(newerTask.getCreateTime(), failedTask.getCreateTime()));
+            updateEstimatedBytes(k, newerTask, before);
+            return newerTask;
+        });
+    }
+
+    /**
+     * 刷写Redis缓冲中认领到的数据
+     * 认领节点不一定是产生写入的节点，根据方法标识和参数模板还原执行器后，复用本地缓冲的参数合并逻辑
+     */
+    private void flushRedisEntry(String key, RedisDirtyEntry entry) throws Throwable {
+        MethodExecutor methodExecutor = methodInvocationResolver.resolve(entry.getMethodId(), entry.getArgsJson());
+        Method method = methodExecutor.getMethod();
+
+        Map<Integer, Object> latestValues = new HashMap<>();
+        for (Map.Entry<Integer, String> e : entry.getLatestValueJson().entrySet()) {
+            int idx = e.getKey();
+            if (idx >= 0 && idx < method.getParameterCount()) {
+                latestValues.put(idx, methodInvocationResolver.decodeArg(method, idx, e.getValue()));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        IncrementalTask task = new IncrementalTask(methodExecutor, entry.getNumericDeltas(), latestValues, now, now,
+                0L);
+        try {
+            methodExecutor.execute(modifyMethodArgs(task));
+            flushController.recordFlush(System.currentTimeMillis() - now, true);
+        } catch (Throwable e) {
+            flushController.recordFlush(System.currentTimeMillis() - now, false);
+            throw e;
+        }
+
+        log.info("IncrementalWrite Flushed redis buffer to database, key: {}, deltaArgs: {}, latestArgs: {}",
+                key, task.getNumericDeltas().keySet(), task.getLatestValues().keySet());
+    }
+
+    // ==================== 关闭时排空缓冲 ====================
+
+    @Override
+    public String getBufferName() {
+        return "incremental";
+    }
+
+    @Override
+    public void stopAccepting() {
+        // Redis 缓冲的数据不随节点关闭丢失，由其他节点继续刷写，这里只处理本地缓冲
+        accepting = false;
+    }
+
+    @Override
+    public List<DrainTask> drainTasks() {
+        List<DrainTask> tasks = new ArrayList<>();
+        for (String key : new ArrayList<>(taskBuffer.keySet())) {
+            cancelFlushTask(key);
+            tasks.add(new DrainTask(key, () -> {
+                flushForDrain(key);
+                return null;
+            }));
+        }
+        return tasks;
+    }
+
+    @Override
+    public Collection<String> pendingKeys() {
+        return new ArrayList<>(taskBuffer.keySet());
+    }
+
+    /**
+     * 排空时刷库：失败后放回缓冲区并抛出异常，不再创建重试任务
+     */
+    private void flushForDrain(String key) throws Exception {
+        IncrementalTask task = taskBuffer.remove(key);
+        if (task == null) {
+            return;
+        }
+        flushController.adjustBufferedBytes(-task.getEstimatedBytes());
+        try {
+            task.getMethodExecutor().execute(modifyMethodArgs(task));
+        } catch (Throwable e) {
+            requeueFailedTask(key, task);
+            throw new IllegalStateException("增量任务排空刷库失败, key: " + key, e);
+        }
+    }
+
+    private boolean isRedisBuffer() {
+        return BUFFER_REDIS.equalsIgnoreCase(bufferBackend);
+    }
+
     /**
      * 修改方法参数 - 关键实现
      * MethodExecutor.getArgs() 返回的数组可能是一个副本，也可能是原始数组的引用。
@@ -413,11 +655,12 @@ public class IncrementalWriteStrategy implements WriteStrategy {
     private void scheduleRetryTask(String key) {
         // 重试任务取消旧任务后创建
         cancelFlushTask(key);
+        long delayMs = flushController.nextRetryDelayMs();
         ScheduledFuture<?> future = taskScheduler.schedule(
                 () -> flushToDatabase(key),
-                new Date(System.currentTimeMillis() + RETRY_DELAY_MS));
+                new Date(System.currentTimeMillis() + delayMs));
         flushTasks.put(key, future);
-        log.debug("Scheduled retry task, key: {}, delay: {}ms", key, RETRY_DELAY_MS);
+        log.debug("Scheduled retry task, key: {}, delay: {}ms", key, delayMs);
     }
 
     private void cancelFlushTask(String key) {
@@ -449,6 +692,7 @@ public class IncrementalWriteStrategy implements WriteStrategy {
         private Map<Integer, Object> latestValues;
         private long createTime; // 任务创建时间
         private long lastUpdateTime; // 最后一次更新时间
+        private long estimatedBytes; // 估算占用字节数，用于缓冲阈值判断
     }
 
     @Data
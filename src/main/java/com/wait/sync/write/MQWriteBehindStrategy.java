@@ -3,12 +3,13 @@ package com.wait.sync.write;
 import com.wait.entity.CacheSyncParam;
 import com.wait.entity.type.DataOperationType;
 import com.wait.entity.type.WriteStrategyType;
-import com.wait.service.MQService;
 import com.wait.sync.MethodExecutor;
+import com.wait.sync.MethodInvocationResolver;
+import com.wait.sync.compensation.CompensationEngine;
 import com.wait.util.AsyncSQLWrapper;
 import com.wait.util.BoundUtil;
 import com.wait.util.message.AsyncDataMsg;
-import com.wait.util.message.CompensationMsg;
+import com.wait.util.message.BatchingMQProducer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -24,14 +25,27 @@ public class MQWriteBehindStrategy implements WriteStrategy {
 
     private final BoundUtil boundUtil;
 
-    @Qualifier("thirdMQService")
-    private final MQService mqService;
+    /** 按 topic 攒批发送到 mq.producer.target 指定的 MQ，见 MQConfig */
+    @Qualifier("writeBehindProducer")
+    private final BatchingMQProducer producer;
 
     private final AsyncSQLWrapper asyncSQLWrapper;
 
+    private final CompensationEngine compensationEngine;
+
+    private final MethodInvocationResolver methodInvocationResolver;
+
     @Override
     public void write(CacheSyncParam<?> param, MethodExecutor methodExecutor) {
         try {
+            // 默认使用第一个方法参数作为缓存值和消息内容，切面在写回路径上不设置 newValue
+            Object[] args = methodExecutor.getArgs();
+            if (param.getNewValue() == null && args != null && args.length > 0) {
+                @SuppressWarnings("unchecked")
+                CacheSyncParam<Object> objectParam = (CacheSyncParam<Object>) param;
+                objectParam.setNewValue(args[0]);
+            }
+
             // 1. 立即写入缓存
             if (param.getNewValue() != null) {
                 boundUtil.writeWithAsyncRetry(param, 3);
@@ -41,9 +55,9 @@ public class MQWriteBehindStrategy implements WriteStrategy {
             // 2. 发送消息到MQ（异步更新数据库）
             @SuppressWarnings("unchecked")
             AsyncDataMsg<Object> task = new AsyncDataMsg<>(DataOperationType.UPDATE, (CacheSyncParam<Object>) param);
-            mqService.sendMessage(extractEntityType(param), param.getKey(), task);
+            send(param, methodExecutor, task);
 
-            log.debug("MQ Write-Behind: 更新消息已发送, key: {}", param.getKey());
+            log.debug("MQ Write-Behind: 更新消息已入队, key: {}", param.getKey());
 
         } catch (Exception e) {
             log.error("MQ Write-Behind写入失败, key: {}", param.getKey(), e);
@@ -62,9 +76,9 @@ public class MQWriteBehindStrategy implements WriteStrategy {
             // 2. 发送删除消息到MQ
             @SuppressWarnings("unchecked")
             AsyncDataMsg<Object> task = new AsyncDataMsg<>(DataOperationType.DELETE, (CacheSyncParam<Object>) param);
-            mqService.sendMessage(extractEntityType(param), key, task);
+            send(param, methodExecutor, task);
 
-            log.debug("MQ Write-Behind: 删除消息已发送, key: {}", key);
+            log.debug("MQ Write-Behind: 删除消息已入队, key: {}", key);
 
         } catch (Exception e) {
             log.error("MQ Write-Behind删除失败, key: {}", param.getKey(), e);
@@ -72,6 +86,34 @@ public class MQWriteBehindStrategy implements WriteStrategy {
         }
     }
 
+    /**
+     * 交给批量生产者发送：入队被背压拒绝时同步抛出，由调用方降级同步写库；
+     * 批次发送失败时在发送线程上回调，提交补偿引擎而不是在发送线程上写库
+     */
+    private void send(CacheSyncParam<?> param, MethodExecutor methodExecutor, AsyncDataMsg<Object> task) {
+        recordInvocation(param, methodExecutor, task);
+        producer.send(extractEntityType(param), param.getKey(), task).whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                log.error("MQ Write-Behind消息发送失败, 提交补偿引擎, key: {}", param.getKey(), ex);
+                compensationEngine.submit(param, methodExecutor, ex);
+            }
+        });
+    }
+
+    /**
+     * 在消息中记录方法调用，写库失败进入死信后补偿引擎可以重放；参数无法序列化时死信只能失效缓存
+     */
+    private void recordInvocation(CacheSyncParam<?> param, MethodExecutor methodExecutor, AsyncDataMsg<Object> task) {
+        try {
+            task.setMethodId(methodInvocationResolver.toMethodId(methodExecutor.getMethod()));
+            task.setArgsJson(methodInvocationResolver.encodeValue(methodExecutor.getArgs()));
+        } catch (Exception e) {
+            log.warn("MQ Write-Behind: 无法记录方法调用, key: {}, 死信补偿只能失效缓存", param.getKey(), e);
+            task.setMethodId(null);
+            task.setArgsJson(null);
+        }
+    }
+
     /**
      * 统一的失败处理
      */
@@ -80,17 +122,17 @@ public class MQWriteBehindStrategy implements WriteStrategy {
             asyncSQLWrapper.executeAspectMethod(param, methodExecutor);
             log.info("降级同步写入成功, key: {}", param.getKey());
         } catch (Exception ex) {
-            log.error("同步写入也失败, 保存到死信队列, key: {}", param.getKey(), ex);
-            @SuppressWarnings("unchecked")
-            CompensationMsg<Object> compensationMsg = new CompensationMsg<>((CacheSyncParam<Object>) param, ex.getMessage(), System.currentTimeMillis());
-            mqService.sendDLMessage(param.getKey(), compensationMsg);
+            log.error("同步写入也失败, 提交补偿引擎, key: {}", param.getKey(), ex);
+            compensationEngine.submit(param, methodExecutor, ex);
         }
     }
 
+    /**
+     * 按实体类型生成 topic，如 Post_topic，批量消费端按此 topic 路由到对应的批量写库器
+     */
     private String extractEntityType(CacheSyncParam<?> param) {
-        String type = param.getClazz().toString();
-        int beginInd = type.indexOf(".");
-        return beginInd == -1 ? "Unknown" : type.substring(beginInd + 1) + "_topic";
+        Class<?> clazz = param.getClazz();
+        return clazz == null ? "Unknown_topic" : clazz.getSimpleName() + "_topic";
     }
 
     @Override
@@ -25,7 +25,7 @@ import java.util.concurrent.TimeUnit;
 @Component
 @Slf4j
 @RequiredArgsConstructor
-public class SnapshotWriteStrategy implements WriteStrategy {
+public class SnapshotWriteStrategy implements WriteStrategy, DrainableBuffer {
 
     private final BoundUtil boundUtil;
 
@@ -34,16 +34,31 @@ public class SnapshotWriteStrategy implements WriteStrategy {
 
     private final HashMappingUtil hashMappingUtil;
 
-    /** 定时刷库延迟时间：60秒 */
+    /** 基础刷库延迟时间：60秒，实际延迟由 AdaptiveFlushController 根据缓冲压力和数据库延迟调整 */
     private static final long FLUSH_DELAY_MS = TimeUnit.SECONDS.toMillis(60);
     
-    /** 重试延迟时间：60秒 */
+    /** 基础重试延迟时间：60秒 */
     private static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(60);
 
+    /** 缓冲 key 数量阈值，超过后提前刷库 */
+    private static final int MAX_BUFFERED_KEYS = 5_000;
+
+    /** 缓冲估算字节数阈值：64MB */
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    /** 数据库写入延迟阈值，超过后拉长刷库间隔 */
+    private static final long DB_LATENCY_THRESHOLD_MS = 200;
+
     // 存储每个key对应的最新实体状态和joinPoint
     private final Map<String, SnapshotTask> snapshotBuffer = new ConcurrentHashMap<>();
     private final Map<String, ScheduledFuture<?>> flushTasks = new ConcurrentHashMap<>();
 
+    private final AdaptiveFlushController flushController = new AdaptiveFlushController("snapshot",
+            FLUSH_DELAY_MS, RETRY_DELAY_MS, MAX_BUFFERED_KEYS, MAX_BUFFERED_BYTES, DB_LATENCY_THRESHOLD_MS);
+
+    /** 是否接收新的缓冲写入，应用关闭时置为false，之后的写入直接同步写库 */
+    private volatile boolean accepting = true;
+
     @Override
     public void write(CacheSyncParam<?> param, MethodExecutor methodExecutor) {
         String key = param.getKey();
@@ -53,14 +68,27 @@ public class SnapshotWriteStrategy implements WriteStrategy {
             Object updatedEntity = parseEntityFromArgs(methodExecutor);
 
             // 2. 立即更新Redis Hash
-            updateRedisHashImmediately(key, updatedEntity, param);
+            Map<String, Object> fieldMap = updateRedisHashImmediately(key, updatedEntity, param);
+
+            if (!accepting) {
+                // 应用关闭中，缓冲已停止接收，直接同步写库
+                executeDirectly(key, methodExecutor);
+                return;
+            }
 
             // 3. 缓冲实体快照
-            bufferSnapshotTask(key, updatedEntity, methodExecutor);
+            long estimatedBytes = 64 + AdaptiveFlushController.estimateBytes(key)
+                    + AdaptiveFlushController.estimateBytes(fieldMap);
+            bufferSnapshotTask(key, updatedEntity, methodExecutor, estimatedBytes);
 
             // 4. 启动定时刷库任务（统一由定时任务执行数据库写入）
             scheduleFlushTask(key);
 
+            // 5. 缓冲超过阈值时提前刷库，保证高峰期内存有界
+            if (flushController.shouldFlushEarly(snapshotBuffer.size())) {
+                triggerEarlyFlush();
+            }
+
             log.debug("SnapshotWrite: Buffered snapshot, key: {}", key);
 
         } catch (Exception e) {
@@ -73,7 +101,10 @@ public class SnapshotWriteStrategy implements WriteStrategy {
     public void delete(CacheSyncParam<?> param, MethodExecutor methodExecutor) {
         try {
             boundUtil.del(param.getKey());
-            snapshotBuffer.remove(param.getKey());
+            SnapshotTask removed = snapshotBuffer.remove(param.getKey());
+            if (removed != null) {
+                flushController.adjustBufferedBytes(-removed.getEstimatedBytes());
+            }
             cancelFlushTask(param.getKey());
             methodExecutor.execute();
             log.debug("SnapshotWrite: Delete completed, key: {}", param.getKey());
@@ -83,19 +114,36 @@ public class SnapshotWriteStrategy implements WriteStrategy {
         }
     }
 
+    /**
+     * 直接同步执行原始方法
+     */
+    private void executeDirectly(String key, MethodExecutor methodExecutor) {
+        try {
+            methodExecutor.execute();
+            log.debug("SnapshotWrite not accepting, executed directly, key: {}", key);
+        } catch (Throwable e) {
+            throw new RuntimeException("全量更新同步写库失败, key: " + key, e);
+        }
+    }
+
     /**
      * 缓冲快照任务
      */
-    private void bufferSnapshotTask(String key, Object newEntity, MethodExecutor methodExecutor) {
+    private void bufferSnapshotTask(String key, Object newEntity, MethodExecutor methodExecutor,
+            long estimatedBytes) {
         snapshotBuffer.compute(key, (k, existingTask) -> {
             if (existingTask == null) {
                 log.debug("SnapshotWrite New snapshot task, key: {}, entity: {}, time: {}", key, newEntity,
                         System.currentTimeMillis());
-                return new SnapshotTask(methodExecutor, newEntity, System.currentTimeMillis());
+                long now = System.currentTimeMillis();
+                flushController.adjustBufferedBytes(estimatedBytes);
+                return new SnapshotTask(methodExecutor, newEntity, now, now, estimatedBytes);
             } else {
                 // 合并更新：用新实体替换旧实体，保留methodExecutor
                 existingTask.setLatestEntity(mergeEntities(existingTask.getLatestEntity(), newEntity));
                 existingTask.setLastUpdateTime(System.currentTimeMillis());
+                flushController.adjustBufferedBytes(estimatedBytes - existingTask.getEstimatedBytes());
+                existingTask.setEstimatedBytes(estimatedBytes);
                 log.debug("SnapshotWrite refresh snapshot task, key: {}, entity: {}, time: {}", key, newEntity,
                         System.currentTimeMillis());
                 return existingTask;
@@ -122,13 +170,16 @@ public class SnapshotWriteStrategy implements WriteStrategy {
         }
 
         flushTasks.remove(key);
+        flushController.adjustBufferedBytes(-task.getEstimatedBytes());
 
+        long start = System.currentTimeMillis();
         try {
             // 修改方法参数：使用最新的实体状态
             Object[] modifiedArgs = modifyMethodArgs(task.getMethodExecutor(), task.getLatestEntity());
 
             // 执行更新
             task.getMethodExecutor().execute(modifiedArgs);
+            flushController.recordFlush(System.currentTimeMillis() - start, true);
 
             log.info("SnapshotWrite: Flushed to database, key: {}", key);
 
@@ -141,8 +192,16 @@ public class SnapshotWriteStrategy implements WriteStrategy {
 
         } catch (Throwable e) {
             log.error("SnapshotWrite: Flush failed, key: {}", key, e);
-            // 重试：将任务放回缓冲区，并重新创建任务
-            snapshotBuffer.put(key, task);
+            flushController.recordFlush(System.currentTimeMillis() - start, false);
+            // 重试：将任务放回缓冲区，刷库期间已有更新的快照时以新快照为准，并重新创建任务
+            snapshotBuffer.compute(key, (k, newerTask) -> {
+                if (newerTask != null) {
+                    newerTask.setCreateTime(Math.min(newerTask.getCreateTime(), task.getCreateTime()));
+                    return newerTask;
+                }
+                flushController.adjustBufferedBytes(task.getEstimatedBytes());
+                return task;
+            });
             scheduleRetryTask(key);
         }
     }
@@ -170,7 +229,7 @@ public class SnapshotWriteStrategy implements WriteStrategy {
         return args != null && args.length > 0 ? args[0] : null;
     }
 
-    private void updateRedisHashImmediately(String key, Object entity, CacheSyncParam<?> param) {
+    private Map<String, Object> updateRedisHashImmediately(String key, Object entity, CacheSyncParam<?> param) {
         // 将实体转换为Map存储到Redis Hash
         Map<String, Object> fieldMap = hashMappingUtil.objectToMap(entity);
         if (!fieldMap.isEmpty()) {
@@ -180,6 +239,7 @@ public class SnapshotWriteStrategy implements WriteStrategy {
             }
             log.debug("SnapshotWrite Updated Redis Hash, key: {}, value: {}", key, fieldMap);
         }
+        return fieldMap;
     }
 
     /**
@@ -194,25 +254,65 @@ public class SnapshotWriteStrategy implements WriteStrategy {
             return;
         }
 
-        // 任务不存在或已取消/完成，创建新任务
+        // 任务不存在或已取消/完成，创建新任务，延迟由控制器根据缓冲压力和数据库延迟计算
+        long delayMs = flushController.nextFlushDelayMs(snapshotBuffer.size());
         ScheduledFuture<?> future = taskScheduler.schedule(
                 () -> flushToDatabase(key),
-                new Date(System.currentTimeMillis() + FLUSH_DELAY_MS)
+                new Date(System.currentTimeMillis() + delayMs)
         );
 
         flushTasks.put(key, future);
-        log.debug("Scheduled task created, key: {}, delay: {}ms", key, FLUSH_DELAY_MS);
+        log.debug("Scheduled task created, key: {}, delay: {}ms", key, delayMs);
+    }
+
+    /**
+     * 提前刷库：缓冲超过阈值时，立即刷出一批（EARLY_FLUSH_BATCH_SIZE 个）key，不占用共享调度线程刷完整个缓冲
+     * 同一时间只允许一个提前刷库任务执行，刷完一批后仍超过阈值时由后续写入再次触发
+     */
+    private void triggerEarlyFlush() {
+        if (!flushController.tryBeginEarlyFlush()) {
+            return;
+        }
+        log.info("SnapshotWrite buffer over threshold, flush early, bufferedKeys: {}", snapshotBuffer.size());
+        taskScheduler.execute(() -> {
+            try {
+                int flushed = 0;
+                for (String key : snapshotBuffer.keySet()) {
+                    if (flushed++ >= AdaptiveFlushController.EARLY_FLUSH_BATCH_SIZE) {
+                        break;
+                    }
+                    cancelFlushTask(key);
+                    flushToDatabase(key);
+                }
+            } finally {
+                flushController.endEarlyFlush();
+            }
+        });
+    }
+
+    /**
+     * 缓冲指标：缓冲深度、最早条目的等待时间、刷库吞吐量等
+     */
+    public Map<String, Object> getBufferMetrics() {
+        long oldest = 0;
+        for (SnapshotTask task : snapshotBuffer.values()) {
+            if (oldest == 0 || task.getCreateTime() < oldest) {
+                oldest = task.getCreateTime();
+            }
+        }
+        return flushController.metrics(snapshotBuffer.size(), oldest);
     }
 
     private void scheduleRetryTask(String key) {
         // 重试任务取消旧任务后创建
         cancelFlushTask(key);
+        long delayMs = flushController.nextRetryDelayMs();
         ScheduledFuture<?> future = taskScheduler.schedule(
                 () -> flushToDatabase(key),
-                new Date(System.currentTimeMillis() + RETRY_DELAY_MS)
+                new Date(System.currentTimeMillis() + delayMs)
         );
         flushTasks.put(key, future);
-        log.debug("Scheduled retry task, key: {}, delay: {}ms", key, RETRY_DELAY_MS);
+        log.debug("Scheduled retry task, key: {}, delay: {}ms", key, delayMs);
     }
 
     private void cancelFlushTask(String key) {
@@ -224,6 +324,59 @@ public class SnapshotWriteStrategy implements WriteStrategy {
         }
     }
 
+    // ==================== 关闭时排空缓冲 ====================
+
+    @Override
+    public String getBufferName() {
+        return "snapshot";
+    }
+
+    @Override
+    public void stopAccepting() {
+        accepting = false;
+    }
+
+    @Override
+    public List<DrainTask> drainTasks() {
+        List<DrainTask> tasks = new ArrayList<>();
+        for (String key : new ArrayList<>(snapshotBuffer.keySet())) {
+            cancelFlushTask(key);
+            tasks.add(new DrainTask(key, () -> {
+                flushForDrain(key);
+                return null;
+            }));
+        }
+        return tasks;
+    }
+
+    @Override
+    public Collection<String> pendingKeys() {
+        return new ArrayList<>(snapshotBuffer.keySet());
+    }
+
+    /**
+     * 排空时刷库：失败后放回缓冲区并抛出异常，不再创建重试任务
+     */
+    private void flushForDrain(String key) throws Exception {
+        SnapshotTask task = snapshotBuffer.remove(key);
+        if (task == null) {
+            return;
+        }
+        flushController.adjustBufferedBytes(-task.getEstimatedBytes());
+        try {
+            task.getMethodExecutor().execute(modifyMethodArgs(task.getMethodExecutor(), task.getLatestEntity()));
+        } catch (Throwable e) {
+            snapshotBuffer.compute(key, (k, newerTask) -> {
+                if (newerTask != null) {
+                    return newerTask;
+                }
+                flushController.adjustBufferedBytes(task.getEstimatedBytes());
+                return task;
+            });
+            throw new IllegalStateException("快照任务排空刷库失败, key: " + key, e);
+        }
+    }
+
     @Override
     public WriteStrategyType getStrategyType() {
         return WriteStrategyType.SNAPSHOT_WRITE_BEHIND;
@@ -237,6 +390,8 @@ public class SnapshotWriteStrategy implements WriteStrategy {
     private static class SnapshotTask {
         private MethodExecutor methodExecutor;
         private Object latestEntity;
+        private long createTime; // 任务创建时间
         private long lastUpdateTime;
+        private long estimatedBytes; // 估算占用字节数，用于缓冲阈值判断
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.wait.sync.write;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 写回缓冲关闭排空组件
+ * 应用关闭时（Web 服务停止接收请求之后、线程池销毁之前）执行：
+ * 1. 所有缓冲停止接收新的缓冲写入，之后的写入降级为同步写库
+ * 2. 取出所有缓冲数据，分批并行强制刷库，整体不超过 DRAIN_TIMEOUT_MS
+ * 3. 汇总报告刷库成功数量、失败和超时未刷库的 key
+ * 避免滚动发布时定时器尚未触发的缓冲数据（计数、快照、点赞收藏）直接丢失
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WriteBehindDrainer implements SmartLifecycle {
+
+    /** 排空总时限 */
+    private static final long DRAIN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(20);
+
+    /** 并行刷库线程数 */
+    private static final int DRAIN_PARALLELISM = 8;
+
+    /** 每批刷库任务数量 */
+    private static final int DRAIN_BATCH_SIZE = 100;
+
+    /** 报告中最多打印的 key 数量 */
+    private static final int MAX_REPORTED_KEYS = 100;
+
+    /**
+     * 比 Web 服务器优雅关闭（DEFAULT_PHASE）更晚停止，保证不再有新请求进入时才开始排空
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    private final List<DrainableBuffer> buffers;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        drainAll();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * 排空所有缓冲
+     */
+    public void drainAll() {
+        long start = System.currentTimeMillis();
+        long deadline = start + DRAIN_TIMEOUT_MS;
+
+        // 1. 先全部停止接收，再收集任务，避免排空过程中又有新数据进入缓冲
+        for (DrainableBuffer buffer : buffers) {
+            buffer.stopAccepting();
+        }
+
+        Map<String, AtomicInteger> flushedCount = new ConcurrentHashMap<>();
+        Queue<String> failedKeys = new ConcurrentLinkedQueue<>();
+        List<List<Runnable>> batches = new ArrayList<>();
+        List<Runnable> batch = new ArrayList<>();
+        int total = 0;
+
+        // 2. 收集刷库任务并分批
+        for (DrainableBuffer buffer : buffers) {
+            String name = buffer.getBufferName();
+            flushedCount.put(name, new AtomicInteger());
+            for (DrainableBuffer.DrainTask task : buffer.drainTasks()) {
+                total++;
+                batch.add(() -> {
+                    try {
+                        task.getAction().call();
+                        flushedCount.get(name).incrementAndGet();
+                    } catch (Exception e) {
+                        failedKeys.add(name + "/" + task.getKey());
+                        log.error("Drain flush failed, buffer: {}, key: {}", name, task.getKey(), e);
+                    }
+                });
+                if (batch.size() >= DRAIN_BATCH_SIZE) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        if (total == 0) {
+            log.info("Write-behind drain: nothing buffered");
+            return;
+        }
+        log.info("Write-behind drain started, tasks: {}, batches: {}, timeout: {}ms", total, batches.size(),
+                DRAIN_TIMEOUT_MS);
+
+        // 3. 并行执行，每个批次内顺序执行；超过时限后中断剩余批次
+        ExecutorService pool = Executors.newFixedThreadPool(DRAIN_PARALLELISM,
+                new ThreadFactoryBuilder().setNameFormat("write-behind-drain-%d").build());
+        for (List<Runnable> tasks : batches) {
+            pool.execute(() -> {
+                for (Runnable task : tasks) {
+                    if (System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    task.run();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+                log.warn("Write-behind drain timed out after {}ms", DRAIN_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // 4. 报告
+        report(flushedCount, failedKeys, System.currentTimeMillis() - start);
+    }
+
+    private void report(Map<String, AtomicInteger> flushedCount, Collection<String> failedKeys, long costMs) {
+        List<String> leftover = new ArrayList<>();
+        for (DrainableBuffer buffer : buffers) {
+            for (String key : buffer.pendingKeys()) {
+                leftover.add(buffer.getBufferName() + "/" + key);
+            }
+        }
+
+        log.info("Write-behind drain finished in {}ms, flushed: {}, failed: {}, not flushed: {}",
+                costMs, flushedCount, failedKeys.size(), leftover.size());
+        if (!leftover.isEmpty()) {
+            log.error("Write-behind drain left {} entries unflushed, data may be lost: {}", leftover.size(),
+                    leftover.size() > MAX_REPORTED_KEYS ? leftover.subList(0, MAX_REPORTED_KEYS) + "..." : leftover);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.wait.sync.write.batch;
+
+import java.util.List;
+
+import com.wait.util.message.AsyncDataMsg;
+
+/**
+ * 实体批量写库器：负责一个实体 topic 的写回消息
+ * 每个实现对应一个 topic（与 MQWriteBehindStrategy 发送时的 topic 一致，如 Post_topic）
+ */
+public interface EntityBatchWriter {
+
+    /**
+     * 负责的 topic
+     */
+    String getTopic();
+
+    /**
+     * 批量写库
+     *
+     * @param messages 同一 topic 合并后的消息，同一 key 只有一条
+     * @return 写库失败的消息，全部成功时返回空列表
+     */
+    List<AsyncDataMsg<?>> writeBatch(List<AsyncDataMsg<?>> messages);
+}
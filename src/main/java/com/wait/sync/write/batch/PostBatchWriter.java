@@ -0,0 +1,97 @@
+package com.wait.sync.write.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wait.entity.BulkItemResult;
+import com.wait.entity.domain.Post;
+import com.wait.entity.type.DataOperationType;
+import com.wait.mapper.PostMapper;
+import com.wait.util.BulkSQLExecutor;
+import com.wait.util.message.AsyncDataMsg;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 帖子写回消息的批量写库：更新和删除分别合并为一次 JDBC batch
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PostBatchWriter implements EntityBatchWriter {
+
+    public static final String TOPIC = Post.class.getSimpleName() + "_topic";
+
+    private final BulkSQLExecutor bulkSQLExecutor;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getTopic() {
+        return TOPIC;
+    }
+
+    @Override
+    public List<AsyncDataMsg<?>> writeBatch(List<AsyncDataMsg<?>> messages) {
+        List<AsyncDataMsg<?>> updateMsgs = new ArrayList<>();
+        List<Post> posts = new ArrayList<>();
+        List<AsyncDataMsg<?>> deleteMsgs = new ArrayList<>();
+        List<Long> deleteIds = new ArrayList<>();
+        List<AsyncDataMsg<?>> failed = new ArrayList<>();
+
+        for (AsyncDataMsg<?> message : messages) {
+            try {
+                if (message.getType() == DataOperationType.DELETE) {
+                    deleteIds.add(parseId(message.getKey()));
+                    deleteMsgs.add(message);
+                } else if (message.getData() != null) {
+                    posts.add(toPost(message.getData()));
+                    updateMsgs.add(message);
+                } else {
+                    // 没有内容的更新无法写库，交给死信按方法调用重放，不能当作成功确认
+                    log.warn("Post write-behind update without data, key: {}", message.getKey());
+                    failed.add(message);
+                }
+            } catch (RuntimeException e) {
+                log.error("Invalid post write-behind message, key: {}", message.getKey(), e);
+                failed.add(message);
+            }
+        }
+
+        BulkSQLExecutor.Options options = bulkSQLExecutor.defaultOptions();
+        if (!posts.isEmpty()) {
+            collectFailed(bulkSQLExecutor.executeGrouped(posts, PostMapper.class, PostMapper::update, options),
+                    updateMsgs, failed);
+        }
+        if (!deleteIds.isEmpty()) {
+            collectFailed(bulkSQLExecutor.executeGrouped(deleteIds, PostMapper.class, PostMapper::delete, options),
+                    deleteMsgs, failed);
+        }
+        log.debug("Post batch written, updates: {}, deletes: {}, failed: {}", posts.size(), deleteIds.size(),
+                failed.size());
+        return failed;
+    }
+
+    private Post toPost(Object data) {
+        return data instanceof Post ? (Post) data : objectMapper.convertValue(data, Post.class);
+    }
+
+    /**
+     * 缓存 key 形如 post:{id}
+     */
+    private Long parseId(String key) {
+        return Long.valueOf(key.substring(key.lastIndexOf(':') + 1));
+    }
+
+    private static void collectFailed(List<BulkItemResult<Integer>> results, List<AsyncDataMsg<?>> messages,
+            List<AsyncDataMsg<?>> failed) {
+        for (BulkItemResult<Integer> result : results) {
+            if (!result.isSuccess()) {
+                failed.add(messages.get(result.getIndex()));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.wait.sync.write.batch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.wait.service.impl.MemoryMQServiceImpl;
+import com.wait.service.impl.RedisStreamMQServiceImpl;
+import com.wait.service.impl.RingBufferMQServiceImpl;
+import com.wait.util.message.AsyncDataMsg;
+import com.wait.util.message.CompensationMsg;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MQ 写回消息的批量消费者
+ * 注册为 MemoryMQ（以及启用时的 RingBufferMQ、RedisStreamMQ）的批量处理器：MQ 每次拉取一批消息并按 topic 合并同 key 更新后交给这里，
+ * 再按 topic 路由到对应的 EntityBatchWriter 批量写库，写库失败的单条消息进入死信队列
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WriteBehindBatchConsumer implements MemoryMQServiceImpl.BatchMessageHandler {
+
+    private final MemoryMQServiceImpl memoryMQService;
+    /** 启用 mq.ring.enabled 时存在 */
+    private final ObjectProvider<RingBufferMQServiceImpl> ringBufferMQService;
+    /** 启用 mq.redis-stream.enabled 时存在 */
+    private final ObjectProvider<RedisStreamMQServiceImpl> redisStreamMQService;
+    private final List<EntityBatchWriter> writers;
+
+    private final Map<String, EntityBatchWriter> writersByTopic = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (EntityBatchWriter writer : writers) {
+            writersByTopic.put(writer.getTopic(), writer);
+        }
+        memoryMQService.setBatchMessageHandler(this);
+        ringBufferMQService.ifAvailable(mq -> mq.setBatchMessageHandler(this));
+        redisStreamMQService.ifAvailable(mq -> mq.setBatchMessageHandler(this));
+        log.info("Write-behind batch consumer registered, topics: {}", writersByTopic.keySet());
+    }
+
+    @Override
+    public void handleBatch(String topic, List<AsyncDataMsg<?>> messages) {
+        EntityBatchWriter writer = writersByTopic.get(topic);
+        if (writer == null) {
+            // 没有对应写入器的 topic 无法写库，转入死信队列等待人工处理，而不是丢弃
+            log.warn("No batch writer for topic: {}, {} messages sent to dead letter queue", topic, messages.size());
+            for (AsyncDataMsg<?> message : messages) {
+                deadLetter(message, "no batch writer for topic: " + topic);
+            }
+            return;
+        }
+        List<AsyncDataMsg<?>> failed = writer.writeBatch(messages);
+        for (AsyncDataMsg<?> message : failed) {
+            deadLetter(message, "batch write failed, topic: " + topic);
+        }
+    }
+
+    private void deadLetter(AsyncDataMsg<?> message, String reason) {
+        memoryMQService.sendDLMessage(message.getKey(), CompensationMsg.ofAsyncDataMsg(message, reason));
+    }
+}
@@ -0,0 +1,64 @@
+package com.wait.sync.write.buffer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * Redis 写回缓冲中一个 key 的待刷写数据
+ * 对应 dirty hash 的字段：m=方法标识，a=原始参数JSON，i:{下标}=整数增量，f:{下标}=浮点增量，s:{下标}=覆盖值JSON
+ * 认领后的刷写中 hash 另有 b=批次号、l=租约凭证
+ */
+@Data
+public class RedisDirtyEntry {
+
+    public static final String FIELD_METHOD = "m";
+    public static final String FIELD_ARGS = "a";
+    public static final String FIELD_BATCH = "b";
+    public static final String PREFIX_INT_DELTA = "i:";
+    public static final String PREFIX_FLOAT_DELTA = "f:";
+    public static final String PREFIX_LATEST = "s:";
+
+    private String methodId;
+    private String argsJson;
+    // 认领时分配的批次号，租约被接管后保持不变，用于数据库侧去重
+    private String batchId;
+    // 参数下标 -> 累计增量值
+    private Map<Integer, Number> numericDeltas = new HashMap<>();
+    // 参数下标 -> 最新值JSON，按方法参数类型反序列化
+    private Map<Integer, String> latestValueJson = new HashMap<>();
+
+    /**
+     * 从 HGETALL 的结果解析
+     */
+    public static RedisDirtyEntry fromHash(Map<String, String> hash) {
+        RedisDirtyEntry entry = new RedisDirtyEntry();
+        for (Map.Entry<String, String> e : hash.entrySet()) {
+            String field = e.getKey();
+            String value = e.getValue();
+            if (FIELD_METHOD.equals(field)) {
+                entry.setMethodId(value);
+            } else if (FIELD_ARGS.equals(field)) {
+                entry.setArgsJson(value);
+            } else if (FIELD_BATCH.equals(field)) {
+                entry.setBatchId(value);
+            } else if (field.startsWith(PREFIX_INT_DELTA)) {
+                entry.getNumericDeltas().put(parseIndex(field), Long.parseLong(value));
+            } else if (field.startsWith(PREFIX_FLOAT_DELTA)) {
+                entry.getNumericDeltas().put(parseIndex(field), Double.parseDouble(value));
+            } else if (field.startsWith(PREFIX_LATEST)) {
+                entry.getLatestValueJson().put(parseIndex(field), value);
+            }
+        }
+        return entry;
+    }
+
+    public boolean isEmpty() {
+        return numericDeltas.isEmpty() && latestValueJson.isEmpty();
+    }
+
+    private static int parseIndex(String field) {
+        return Integer.parseInt(field.substring(2));
+    }
+}
@@ -0,0 +1,291 @@
+package com.wait.sync.write.buffer;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wait.config.script.WriteBehindScripts;
+import com.wait.mapper.WriteBehindBatchMapper;
+import com.wait.sync.MethodExecutor;
+import com.wait.sync.MethodInvocationResolver;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Redis 端的写回缓冲，供多实例部署使用
+ * 1. 写入：增量通过 HINCRBY/HINCRBYFLOAT 累加到 dirty:{key} hash 中，key 登记到 dirty:due 有序集合（score 为到期时间）
+ * 2. 刷写：每个节点都运行刷写循环（无主节点），通过 Lua 脚本原子认领到期 key，认领后批量加载并交给处理器写库
+ * 3. 租约：认领的 key 进入 dirty:inflight，持有节点宕机或刷库失败时租约过期，其他节点连同批次号整批接管
+ * 4. 去重：认领时为每批数据分配批次号，写库与登记批次号（write_behind_applied）在同一事务中，
+ *    原持有节点已提交但未来得及完成租约的批次被接管后不会再写一次，增量不会重复累加
+ * 缓冲数据保存在 Redis 中，节点重启不会丢失，同一个 key 每个刷新窗口只会被一个节点写库一次
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RedisWriteBehindBuffer {
+
+    public static final String DIRTY_PREFIX = "dirty:";
+    public static final String INFLIGHT_PREFIX = "dirty:inflight:";
+    /** 待刷写 key 集合，score 为到期时间 */
+    public static final String DUE_KEYS = "dirty:due";
+    /** 刷写中 key 集合，score 为租约到期时间 */
+    public static final String INFLIGHT_KEYS = "dirty:inflight";
+
+    /** 刷写循环间隔 */
+    private static final long POLL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+    /** 单次认领的最大 key 数量 */
+    private static final int CLAIM_BATCH_SIZE = 100;
+    /** 认领租约时长，超过后视为持有节点失效 */
+    private static final long LEASE_MS = TimeUnit.SECONDS.toMillis(30);
+    /** 已写库批次号的保留时长，远大于租约和重试间隔 */
+    private static final long APPLIED_RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long APPLIED_PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final WriteBehindScripts writeBehindScripts;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MethodInvocationResolver methodInvocationResolver;
+    private final WriteBehindBatchMapper writeBehindBatchMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Qualifier("refreshScheduler")
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    private volatile ScheduledFuture<?> flushLoop;
+    private volatile long lastPurgeAt;
+
+    /**
+     * 刷写处理器，由使用缓冲的写策略提供
+     */
+    public interface DirtyEntryHandler {
+        void flush(String key, RedisDirtyEntry entry) throws Throwable;
+    }
+
+    /**
+     * 写入一次调用的变更
+     *
+     * @param numericDeltas 参数下标 -> 增量值
+     * @param latestValues  参数下标 -> 覆盖值
+     * @param flushDelayMs  首次写入时的刷写延迟，已登记的 key 保持原到期时间
+     */
+    public void buffer(String key, MethodExecutor methodExecutor, Map<Integer, Number> numericDeltas,
+            Map<Integer, Object> latestValues, long flushDelayMs) {
+        List<Object> args = new ArrayList<>();
+        args.add(key);
+        args.add(System.currentTimeMillis() + flushDelayMs);
+        args.add(methodInvocationResolver.toMethodId(methodExecutor.getMethod()));
+        args.add(methodInvocationResolver.encodeValue(methodExecutor.getArgs()));
+        for (Map.Entry<Integer, Number> e : numericDeltas.entrySet()) {
+            Number value = e.getValue();
+            boolean isFloat = value instanceof Double || value instanceof Float;
+            args.add(isFloat ? "f" : "i");
+            args.add(e.getKey());
+            args.add(isFloat ? String.valueOf(value.doubleValue()) : String.valueOf(value.longValue()));
+        }
+        for (Map.Entry<Integer, Object> e : latestValues.entrySet()) {
+            args.add("s");
+            args.add(e.getKey());
+            args.add(methodInvocationResolver.encodeValue(e.getValue()));
+        }
+
+        writeBehindScripts.executeScript(WriteBehindScripts.BUFFER_WRITE,
+                Arrays.asList(DIRTY_PREFIX + key, DUE_KEYS), args.toArray());
+    }
+
+    /**
+     * 丢弃 key 的待刷写数据（删除场景），刷写中的数据不受影响
+     */
+    public void discard(String key) {
+        stringRedisTemplate.delete(DIRTY_PREFIX + key);
+        stringRedisTemplate.opsForZSet().remove(DUE_KEYS, key);
+    }
+
+    /**
+     * 启动本节点的刷写循环
+     *
+     * @param handler      刷写处理器
+     * @param retryDelayMs 刷写失败后的重试延迟
+     */
+    public synchronized void startFlusher(DirtyEntryHandler handler, long retryDelayMs) {
+        if (flushLoop != null) {
+            return;
+        }
+        flushLoop = taskScheduler.scheduleWithFixedDelay(() -> drainDueKeys(handler, retryDelayMs), POLL_INTERVAL_MS);
+        log.info("Redis write-behind flusher started, interval: {}ms, batch: {}, lease: {}ms",
+                POLL_INTERVAL_MS, CLAIM_BATCH_SIZE, LEASE_MS);
+    }
+
+    @PreDestroy
+    public synchronized void stopFlusher() {
+        if (flushLoop != null) {
+            flushLoop.cancel(false);
+            flushLoop = null;
+            // 已认领未完成的 key 由租约过期后其他节点接管
+            log.info("Redis write-behind flusher stopped");
+        }
+    }
+
+    /**
+     * 认领到期 key 并分批刷写，认领满一批说明还有积压，继续下一批
+     */
+    private void drainDueKeys(DirtyEntryHandler handler, long retryDelayMs) {
+        try {
+            List<String> claimed;
+            do {
+                String token = UUID.randomUUID().toString();
+                claimed = claim(token);
+                if (!claimed.isEmpty()) {
+                    flushClaimed(claimed, token, handler, retryDelayMs);
+                }
+            } while (claimed.size() >= CLAIM_BATCH_SIZE && flushLoop != null);
+            purgeAppliedBatches();
+        } catch (Exception e) {
+            log.error("Redis write-behind drain failed", e);
+        }
+    }
+
+    /**
+     * 先读取候选 key（租约过期的在前），脚本中重新校验后认领，脚本访问的 key 全部通过 KEYS 传入
+     */
+    private List<String> claim(String token) {
+        long now = System.currentTimeMillis();
+        List<String> candidates = new ArrayList<>(rangeDue(INFLIGHT_KEYS, now));
+        int expiredCount = candidates.size();
+        candidates.addAll(rangeDue(DUE_KEYS, now));
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> keys = new ArrayList<>(candidates.size() * 2 + 2);
+        keys.add(DUE_KEYS);
+        keys.add(INFLIGHT_KEYS);
+        List<Object> args = new ArrayList<>(candidates.size() + 4);
+        args.add(now);
+        args.add(now + LEASE_MS);
+        args.add(token);
+        args.add(expiredCount);
+        for (String candidate : candidates) {
+            keys.add(DIRTY_PREFIX + candidate);
+            keys.add(INFLIGHT_PREFIX + candidate);
+            args.add(candidate);
+        }
+        List<String> claimed = writeBehindScripts.executeScript(WriteBehindScripts.BUFFER_CLAIM, keys,
+                args.toArray());
+        return claimed != null ? claimed : Collections.emptyList();
+    }
+
+    private List<String> rangeDue(String setKey, long now) {
+        Set<String> due = stringRedisTemplate.opsForZSet().rangeByScore(setKey, Double.NEGATIVE_INFINITY, now, 0,
+                CLAIM_BATCH_SIZE);
+        return due != null ? new ArrayList<>(due) : Collections.emptyList();
+    }
+
+    private void flushClaimed(List<String> keys, String token, DirtyEntryHandler handler, long retryDelayMs) {
+        Map<String, Map<String, String>> loaded = loadInflight(keys);
+        for (Map.Entry<String, Map<String, String>> e : loaded.entrySet()) {
+            String key = e.getKey();
+            RedisDirtyEntry entry = RedisDirtyEntry.fromHash(e.getValue());
+            long retryAt = 0L;
+            try {
+                if (!entry.isEmpty()) {
+                    flushOnce(key, entry, handler);
+                }
+            } catch (Throwable ex) {
+                log.error("Redis write-behind flush failed, key: {}, retry in {}ms", key, retryDelayMs, ex);
+                retryAt = System.currentTimeMillis() + retryDelayMs;
+            }
+            Long completed = writeBehindScripts.executeScript(WriteBehindScripts.BUFFER_COMPLETE,
+                    Arrays.asList(INFLIGHT_KEYS, INFLIGHT_PREFIX + key), key, token, retryAt);
+            if (completed == null || completed == 0) {
+                // 租约已被其他节点接管，接管节点按批次号去重，本节点已提交的写入不会重复
+                log.warn("Redis write-behind lease lost before completion, key: {}, batch: {}", key,
+                        entry.getBatchId());
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中登记批次号并写库，批次号已存在说明之前的持有节点已经写过，直接跳过
+     */
+    private void flushOnce(String key, RedisDirtyEntry entry, DirtyEntryHandler handler) throws Throwable {
+        if (entry.getBatchId() == null) {
+            handler.flush(key, entry);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (writeBehindBatchMapper.insertIgnore(entry.getBatchId(), System.currentTimeMillis()) == 0) {
+                    log.info("Redis write-behind batch already applied, skipped, key: {}, batch: {}", key,
+                            entry.getBatchId());
+                    return;
+                }
+                try {
+                    handler.flush(key, entry);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new UndeclaredThrowableException(ex);
+                }
+            });
+        } catch (UndeclaredThrowableException ex) {
+            throw ex.getUndeclaredThrowable();
+        }
+    }
+
+    /**
+     * 定期清理过期的批次号，各节点都会执行，重复删除无影响
+     */
+    private void purgeAppliedBatches() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeAt < APPLIED_PURGE_INTERVAL_MS) {
+            return;
+        }
+        lastPurgeAt = now;
+        int purged = writeBehindBatchMapper.deleteAppliedBefore(now - APPLIED_RETENTION_MS);
+        if (purged > 0) {
+            log.info("Purged {} applied write-behind batch ids", purged);
+        }
+    }
+
+    /**
+     * 通过 pipeline 一次加载一批刷写中数据
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, String>> loadInflight(List<String> keys) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                hGetAll(connection, INFLIGHT_PREFIX + key);
+            }
+            return null;
+        });
+        Map<String, Map<String, String>> loaded = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size() && i < results.size(); i++) {
+            Object hash = results.get(i);
+            loaded.put(keys.get(i), hash instanceof Map ? (Map<String, String>) hash : Collections.emptyMap());
+        }
+        return loaded;
+    }
+
+    private void hGetAll(RedisConnection connection, String key) {
+        connection.hashCommands().hGetAll(stringRedisTemplate.getStringSerializer().serialize(key));
+    }
+}
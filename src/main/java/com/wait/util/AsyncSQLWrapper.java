@@ -1,13 +1,18 @@
 package com.wait.util;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.annotation.Backoff;
@@ -15,10 +20,11 @@ import org.springframework.retry.annotation.Retryable;
 import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
 
+import com.wait.entity.BulkItemResult;
 import com.wait.entity.CacheSyncParam;
-import com.wait.service.MQService;
+import com.wait.exception.BackpressureException;
 import com.wait.sync.MethodExecutor;
-import com.wait.util.message.CompensationMsg;
+import com.wait.sync.compensation.CompensationEngine;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,20 +34,32 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class AsyncSQLWrapper {
 
-    @Qualifier("thirdMQService")
-    private final MQService mqService;
-
     @Qualifier("asyncSqlExecutor")
     private final ExecutorService executor;
 
+    // 只在 keyed 模式下创建
+    @Qualifier("asyncSqlLaneExecutor")
+    private final ObjectProvider<KeyedLaneExecutor> laneExecutor;
+
+    private final BulkSQLExecutor bulkSQLExecutor;
+
+    private final CompensationEngine compensationEngine;
+
+    /**
+     * 异步执行模式：shared（共享线程池）/ keyed（按 key 分通道，同一 key 保序）
+     */
+    @Value("${async-sql.executor-mode:shared}")
+    private final String executorMode;
+
     /**
      * 执行切面方法 - 用于策略类调用
-     * 根据param中的isExecuteASync标志决定同步或异步执行
+     * 根据param中的isExecuteASync标志（来自 @RedisCache(async = true)）决定同步或异步执行
      * 
      * @param param          缓存参数
      * @param methodExecutor 方法执行器
+     * @return 数据库操作结束（成功或已转入补偿）时完成；同步执行时返回已完成的 future
      */
-    public <T> void executeAspectMethod(CacheSyncParam<T> param, MethodExecutor methodExecutor) {
+    public <T> CompletableFuture<Void> executeAspectMethod(CacheSyncParam<T> param, MethodExecutor methodExecutor) {
         boolean isVoidMethod = methodExecutor.isVoidMethod();
 
         // 创建Callable操作
@@ -59,8 +77,24 @@ public class AsyncSQLWrapper {
         // 根据配置决定同步或异步执行
         if (Boolean.TRUE.equals(param.getIsExecuteASync())) {
             // 异步执行
-            CompletableFuture<T> future = executeAsync(operation);
-            future.thenAccept(result -> {
+            CompletableFuture<T> future;
+            if (isKeyedMode()) {
+                // 只有整体覆盖的写入才能合并，被合并的旧写入不会再执行
+                String coalesceKey = Boolean.TRUE.equals(param.getCoalesceWrites())
+                        ? param.getKey() + "#" + methodExecutor.getMethod()
+                        : null;
+                try {
+                    future = executeOrdered(param.getKey(), coalesceKey, operation);
+                } catch (BackpressureException e) {
+                    // 通道已满，不在调用线程执行，直接进入补偿流程
+                    log.warn("Async lane rejected operation, key: {}, reason: {}", param.getKey(), e.getMessage());
+                    sendToCompensationQueue(param, methodExecutor, e);
+                    return CompletableFuture.completedFuture(null);
+                }
+            } else {
+                future = executeAsync(operation);
+            }
+            return future.thenAccept(result -> {
                 if (!isVoidMethod && result != null) {
                     param.setNewValue(result);
                     log.debug("Async operation completed, result set for key: {}", param.getKey());
@@ -69,7 +103,7 @@ public class AsyncSQLWrapper {
                 log.error("Async operation failed: {}, send compensation message", param.getKey(), ex);
                 Exception exception = ex instanceof Exception ? (Exception) ex
                         : new RuntimeException("Async operation failed", ex);
-                sendToCompensationQueue(param, exception);
+                sendToCompensationQueue(param, methodExecutor, exception);
                 return null;
             });
         } else {
@@ -79,6 +113,7 @@ public class AsyncSQLWrapper {
                 param.setNewValue(result);
                 log.debug("Sync operation completed, result set for key: {}", param.getKey());
             }
+            return CompletableFuture.completedFuture(null);
         }
     }
 
@@ -95,18 +130,14 @@ public class AsyncSQLWrapper {
     }
 
     /**
-     * 发送到补偿队列
+     * 提交到补偿引擎，保存方法调用以便按退避重试
      */
-    private <T> void sendToCompensationQueue(CacheSyncParam<T> param, Exception error) {
+    private <T> void sendToCompensationQueue(CacheSyncParam<T> param, MethodExecutor methodExecutor,
+            Exception error) {
         try {
-            CompensationMsg<T> message = CompensationMsg.<T>builder()
-                    .originalParam(param)
-                    .failReason(error.getMessage())
-                    .failTime(System.currentTimeMillis())
-                    .build();
-            mqService.sendDLMessage(param.getKey(), message);
-        } catch (Exception mqError) {
-            log.error("Failed to send to compensation queue: {}", param.getKey(), mqError);
+            compensationEngine.submit(param, methodExecutor, error);
+        } catch (Exception compensationError) {
+            log.error("Failed to send to compensation queue: {}", param.getKey(), compensationError);
         }
     }
 
@@ -136,6 +167,43 @@ public class AsyncSQLWrapper {
         }, executor);
     }
 
+    /**
+     * 按 key 有序异步执行数据库操作（带重试）
+     * 同一 key 的操作按提交顺序串行执行，不同 key 并行执行
+     *
+     * @param key         路由 key，一般为缓存 key
+     * @param coalesceKey 合并 key，通道中尚未执行的同一合并 key 的操作会被替换，为 null 时不合并
+     * @throws BackpressureException 通道队列已满
+     */
+    public <T> CompletableFuture<T> executeOrdered(String key, String coalesceKey, Callable<T> operation) {
+        KeyedLaneExecutor lanes = laneExecutor.getIfAvailable();
+        if (lanes == null) {
+            throw new IllegalStateException("ordered execution requires async-sql.executor-mode=keyed");
+        }
+        return lanes.submit(key, coalesceKey, () -> {
+            try {
+                return executeWithRetry(operation, key);
+            } catch (Exception e) {
+                log.error("Ordered async operation failed, key: {}", key, e);
+                throw new RuntimeException("Ordered async operation failed after retries", e);
+            }
+        });
+    }
+
+    /**
+     * 分通道执行器指标
+     */
+    public Map<String, Object> getLaneMetrics() {
+        KeyedLaneExecutor lanes = laneExecutor.getIfAvailable();
+        Map<String, Object> metrics = lanes != null ? lanes.metrics() : new LinkedHashMap<>();
+        metrics.put("mode", executorMode);
+        return metrics;
+    }
+
+    private boolean isKeyedMode() {
+        return "keyed".equalsIgnoreCase(executorMode);
+    }
+
     /**
      * 异步执行void数据库操作（带重试和异常处理）
      */
@@ -155,15 +223,35 @@ public class AsyncSQLWrapper {
 
     /**
      * 批量执行多个操作
+     * 交给 BulkSQLExecutor 分块、限制并发执行，不占用请求链路的异步线程池；任一条目失败时抛出异常
      */
     public <T> List<T> executeBatch(List<Callable<T>> operations) {
-        List<CompletableFuture<T>> futures = operations.stream()
-                .map(this::executeAsync)
-                .collect(Collectors.toList());
+        List<BulkItemResult<T>> results = bulkSQLExecutor.execute(operations, bulkSQLExecutor.defaultOptions());
+        List<T> values = new ArrayList<>(results.size());
+        for (BulkItemResult<T> result : results) {
+            if (!result.isSuccess()) {
+                throw new RuntimeException("Batch operation failed at index " + result.getIndex(), result.getError());
+            }
+            values.add(result.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * 批量执行多个操作，返回每个条目的结果（部分失败不抛异常）
+     */
+    public <T> List<BulkItemResult<T>> executeBatch(List<Callable<T>> operations, BulkSQLExecutor.Options options) {
+        return bulkSQLExecutor.execute(operations, options);
+    }
 
-        return futures.stream()
-                .map(CompletableFuture::join)
-                .collect(Collectors.toList());
+    /**
+     * 批量执行多个操作，每完成一个分块就回调其条目结果
+     *
+     * @return 失败条目数
+     */
+    public <T> int executeBatchStreaming(List<Callable<T>> operations, BulkSQLExecutor.Options options,
+            Consumer<BulkItemResult<T>> onResult) {
+        return bulkSQLExecutor.executeStreaming(operations, options, onResult);
     }
 
-}
\ No newline at end of file
+}
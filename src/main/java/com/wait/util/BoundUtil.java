@@ -16,6 +16,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.dao.QueryTimeoutException;
@@ -25,8 +26,10 @@ import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.BoundSetOperations;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.BoundZSetOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
@@ -64,6 +67,9 @@ public class BoundUtil {
     @Qualifier("retryExecutor")
     private final ThreadPoolTaskExecutor retryExecutor;
 
+    // 服务端不支持 SMISMEMBER（Redis < 6.2）时置为 false，之后批量判断改用管道 SISMEMBER
+    private volatile boolean smIsMemberSupported = true;
+
     public static final int NULL_CACHE_TIME = 30; // 空值缓存时间
     public static final TimeUnit NULL_CACHE_TIME_UNIT = TimeUnit.SECONDS; // 空值缓存时间
 
@@ -736,6 +742,81 @@ public class BoundUtil {
         return boundSet(key).isMember(value);
     }
 
+    /**
+     * 批量判断多个值是否在同一个集合中：SMISMEMBER 一次往返，服务端不支持时退化为管道 SISMEMBER（同样一次往返）
+     *
+     * @return 与 values 顺序一致的结果
+     */
+    public <T> List<Boolean> sMIsMember(String key, List<T> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (smIsMemberSupported) {
+            byte[] rawKey = rawKey(key);
+            byte[][] rawValues = new byte[values.size()][];
+            for (int i = 0; i < values.size(); i++) {
+                rawValues[i] = rawValue(values.get(i));
+            }
+            try {
+                List<Boolean> result = redisTemplate.execute(
+                        (RedisCallback<List<Boolean>>) connection -> connection.sMIsMember(rawKey, rawValues));
+                return result != null ? result : Collections.nCopies(values.size(), Boolean.FALSE);
+            } catch (DataAccessException e) {
+                if (!isUnknownCommand(e)) {
+                    throw e;
+                }
+                smIsMemberSupported = false;
+                log.warn("SMISMEMBER is not supported by the server, fallback to pipelined SISMEMBER");
+            }
+        }
+        return sIsMemberPipelined(Collections.nCopies(values.size(), key), values);
+    }
+
+    /**
+     * 管道批量 SISMEMBER：第 i 项判断 values[i] 是否在 keys[i] 中，各项的 key 可以不同，一次往返
+     *
+     * @return 与参数顺序一致的结果
+     */
+    public <T> List<Boolean> sIsMemberPipelined(List<String> keys, List<T> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("keys and values size mismatch: " + keys.size() + " vs " + values.size());
+        }
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                connection.sIsMember(rawKey(keys.get(i)), rawValue(values.get(i)));
+            }
+            return null;
+        });
+        List<Boolean> flags = new ArrayList<>(results.size());
+        for (Object result : results) {
+            flags.add(Boolean.TRUE.equals(result));
+        }
+        return flags;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    private boolean isUnknownCommand(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String msg = t.getMessage();
+            if (msg != null && msg.toLowerCase().contains("unknown command")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public <T> Set<T> sMembers(String key, Class<T> clazz) {
         Set<Object> members = boundSet(key).members();
         if (members == null)
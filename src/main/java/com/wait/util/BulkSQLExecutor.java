@@ -0,0 +1,294 @@
+package com.wait.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wait.entity.BulkItemResult;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 批量数据库操作执行器，用于数据修复、迁移等批量维护任务
+ * 1. 分块：输入按 chunkSize 切分，每个分块在一个线程内顺序执行
+ * 2. 限流：同一批次最多同时执行 maxInFlight 个分块，前一个分块完成才提交下一个，不会挤占请求链路的异步线程池
+ * 3. 事务：可选每个分块一个事务；同构的 Mapper 操作可以合并成一次 JDBC 批量提交
+ * 4. 部分失败：分块整体失败时逐条重新执行，结果精确到每个条目
+ * 5. 流式：每个分块完成后立即回调该分块的条目结果
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BulkSQLExecutor {
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    @Qualifier("bulkSqlExecutor")
+    private final ExecutorService executor;
+
+    @Value("${bulk-sql.max-in-flight:4}")
+    private final int defaultMaxInFlight;
+
+    @Value("${bulk-sql.chunk-size:200}")
+    private final int defaultChunkSize;
+
+    /**
+     * 批量执行参数，未设置（<=0）的数值使用配置的默认值
+     */
+    @Data
+    @Builder
+    public static class Options {
+        /** 同时执行的最大分块数 */
+        private int maxInFlight;
+        /** 每个分块的条目数 */
+        private int chunkSize;
+        /** 每个分块是否在一个事务中执行 */
+        private boolean transactional;
+    }
+
+    /**
+     * 分块执行器：执行 [from, to) 范围内的条目，返回每个条目的结果，不抛出异常
+     */
+    private interface ChunkRunner<T> {
+        List<BulkItemResult<T>> run(int from, int to);
+    }
+
+    public Options defaultOptions() {
+        return Options.builder().build();
+    }
+
+    /**
+     * 批量执行并收集全部结果，结果顺序与输入一致
+     */
+    public <T> List<BulkItemResult<T>> execute(List<Callable<T>> operations, Options options) {
+        // 回调在调用线程中执行，按下标放回即可保持输入顺序
+        List<BulkItemResult<T>> results = new ArrayList<>(Collections.nCopies(operations.size(), null));
+        executeStreaming(operations, options, r -> results.set(r.getIndex(), r));
+        return results;
+    }
+
+    /**
+     * 批量执行，每个分块完成后在调用线程中回调其条目结果（按完成顺序，不保证输入顺序）
+     *
+     * @return 失败条目数
+     */
+    public <T> int executeStreaming(List<Callable<T>> operations, Options options,
+            Consumer<BulkItemResult<T>> onResult) {
+        ChunkRunner<T> runner = options.isTransactional()
+                ? (from, to) -> runInTransaction(operations, from, to)
+                : (from, to) -> runEach(operations, from, to);
+        return runChunks(operations.size(), options, runner, onResult);
+    }
+
+    /**
+     * 同构 Mapper 操作的批量执行：每个分块在一个事务中通过 JDBC batch 提交
+     * 分块失败时回滚，并逐条单独执行以找出失败条目
+     *
+     * @param items       待写入的条目
+     * @param mapperClass Mapper 接口
+     * @param statement   对单个条目调用的 Mapper 方法，如 (mapper, post) -> mapper.update(post)
+     * @return 每个条目的结果，值为影响行数（驱动未返回时为 null）
+     */
+    public <M, E> List<BulkItemResult<Integer>> executeGrouped(List<E> items, Class<M> mapperClass,
+            BiConsumer<M, E> statement, Options options) {
+        List<BulkItemResult<Integer>> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+        runChunks(items.size(), options, (from, to) -> runJdbcBatch(items, from, to, mapperClass, statement),
+                r -> results.set(r.getIndex(), r));
+        return results;
+    }
+
+    /**
+     * 按窗口提交分块：在途分块达到 maxInFlight 后，等一个分块完成再提交下一个
+     */
+    private <T> int runChunks(int total, Options options, ChunkRunner<T> runner,
+            Consumer<BulkItemResult<T>> onResult) {
+        if (total == 0) {
+            return 0;
+        }
+        int chunkSize = options.getChunkSize() > 0 ? options.getChunkSize() : defaultChunkSize;
+        int maxInFlight = options.getMaxInFlight() > 0 ? options.getMaxInFlight() : defaultMaxInFlight;
+        int chunkCount = (total + chunkSize - 1) / chunkSize;
+        BlockingQueue<List<BulkItemResult<T>>> completed = new LinkedBlockingQueue<>();
+        long start = System.currentTimeMillis();
+
+        int submitted = 0;
+        int finished = 0;
+        int failed = 0;
+        while (finished < chunkCount) {
+            while (submitted < chunkCount && submitted - finished < maxInFlight) {
+                int from = submitted * chunkSize;
+                int to = Math.min(total, from + chunkSize);
+                submitChunk(runner, from, to, completed);
+                submitted++;
+            }
+            List<BulkItemResult<T>> chunkResults;
+            try {
+                chunkResults = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Bulk execution interrupted, finished chunks: " + finished, e);
+            }
+            finished++;
+            for (BulkItemResult<T> result : chunkResults) {
+                if (!result.isSuccess()) {
+                    failed++;
+                }
+                onResult.accept(result);
+            }
+        }
+        log.info("Bulk execution finished, items: {}, chunks: {}, failed: {}, cost: {}ms",
+                total, chunkCount, failed, System.currentTimeMillis() - start);
+        return failed;
+    }
+
+    private <T> void submitChunk(ChunkRunner<T> runner, int from, int to,
+            BlockingQueue<List<BulkItemResult<T>>> completed) {
+        try {
+            CompletableFuture.supplyAsync(() -> runner.run(from, to), executor)
+                    .whenComplete((results, ex) -> completed.add(ex == null ? results : failAll(from, to, ex)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Bulk chunk rejected, range: [{}, {})", from, to);
+            completed.add(failAll(from, to, e));
+        }
+    }
+
+    private <T> List<BulkItemResult<T>> runEach(List<Callable<T>> operations, int from, int to) {
+        List<BulkItemResult<T>> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            results.add(callOne(operations.get(i), i));
+        }
+        return results;
+    }
+
+    private <T> BulkItemResult<T> callOne(Callable<T> operation, int index) {
+        try {
+            return BulkItemResult.success(index, operation.call());
+        } catch (Exception e) {
+            log.debug("Bulk item failed, index: {}", index, e);
+            return BulkItemResult.failure(index, e);
+        }
+    }
+
+    /**
+     * 整个分块一个事务，任一条目失败则回滚，再逐条各自在事务中执行
+     */
+    private <T> List<BulkItemResult<T>> runInTransaction(List<Callable<T>> operations, int from, int to) {
+        try {
+            return transactionTemplate.execute(status -> {
+                List<BulkItemResult<T>> results = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    results.add(BulkItemResult.success(i, call(operations.get(i))));
+                }
+                return results;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Bulk chunk transaction rolled back, range: [{}, {}), retrying items one by one", from, to, e);
+        }
+        List<BulkItemResult<T>> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Callable<T> operation = operations.get(i);
+            int index = i;
+            try {
+                results.add(transactionTemplate.execute(status -> BulkItemResult.success(index, call(operation))));
+            } catch (RuntimeException e) {
+                results.add(BulkItemResult.failure(index, e));
+            }
+        }
+        return results;
+    }
+
+    private <M, E> List<BulkItemResult<Integer>> runJdbcBatch(List<E> items, int from, int to, Class<M> mapperClass,
+            BiConsumer<M, E> statement) {
+        try {
+            return transactionTemplate.execute(status -> {
+                // 事务内打开的 SqlSession 使用事务绑定的连接，由事务统一提交或回滚
+                try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                    M mapper = session.getMapper(mapperClass);
+                    for (int i = from; i < to; i++) {
+                        statement.accept(mapper, items.get(i));
+                    }
+                    int[] counts = updateCounts(session.flushStatements());
+                    List<BulkItemResult<Integer>> results = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        Integer count = counts.length == to - from ? counts[i - from] : null;
+                        results.add(BulkItemResult.success(i, count));
+                    }
+                    return results;
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("JDBC batch failed, range: [{}, {}), retrying items one by one", from, to, e);
+        }
+        List<BulkItemResult<Integer>> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            E item = items.get(i);
+            int index = i;
+            try {
+                transactionTemplate.execute(status -> {
+                    try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.SIMPLE)) {
+                        statement.accept(session.getMapper(mapperClass), item);
+                    }
+                    return null;
+                });
+                results.add(BulkItemResult.success(index, null));
+            } catch (RuntimeException e) {
+                results.add(BulkItemResult.failure(index, e));
+            }
+        }
+        return results;
+    }
+
+    private static int[] updateCounts(List<BatchResult> batchResults) {
+        int size = 0;
+        for (BatchResult result : batchResults) {
+            size += result.getUpdateCounts().length;
+        }
+        int[] counts = new int[size];
+        int pos = 0;
+        for (BatchResult result : batchResults) {
+            int[] part = result.getUpdateCounts();
+            System.arraycopy(part, 0, counts, pos, part.length);
+            pos += part.length;
+        }
+        return counts;
+    }
+
+    private static <T> T call(Callable<T> operation) {
+        try {
+            return operation.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> List<BulkItemResult<T>> failAll(int from, int to, Throwable error) {
+        List<BulkItemResult<T>> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            results.add(BulkItemResult.failure(i, error));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,261 @@
+package com.wait.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.wait.exception.BackpressureException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按 key 分配的有序执行通道
+ * 1. key 哈希到 N 个通道之一，每个通道只有一个消费线程：同一 key 的任务严格按提交顺序执行，不同 key 之间并行
+ * 2. 每个通道的队列有界，队列满时抛出 BackpressureException，由调用方决定降级方式（不做 caller-runs）
+ * 3. 合并：提交时携带合并 key，若通道中还有同一合并 key 且尚未开始执行的任务，用新任务替换它，
+ *    两次提交的 future 都以新任务的结果完成（只适用于后一次写入完全覆盖前一次的场景）
+ */
+@Slf4j
+public class KeyedLaneExecutor {
+
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final String name;
+    private final Lane[] lanes;
+
+    public KeyedLaneExecutor(String name, int laneCount, int laneCapacity) {
+        if (laneCount <= 0 || laneCapacity <= 0) {
+            throw new IllegalArgumentException("laneCount and laneCapacity must be positive");
+        }
+        this.name = name;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(laneCapacity);
+            Thread thread = new Thread(lanes[i], name + "-" + i);
+            thread.setDaemon(true);
+            lanes[i].thread = thread;
+            thread.start();
+        }
+        log.info("KeyedLaneExecutor {} started, lanes: {}, capacity per lane: {}", name, laneCount, laneCapacity);
+    }
+
+    /**
+     * 提交任务，不合并
+     */
+    public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+        return submit(key, null, task);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param key         路由 key，同一 key 的任务保持提交顺序
+     * @param coalesceKey 合并 key，为 null 时不合并
+     * @throws BackpressureException 通道队列已满
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String key, String coalesceKey, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        lanes[laneOf(key)].offer(coalesceKey, task, (CompletableFuture<Object>) (CompletableFuture<?>) future);
+        return future;
+    }
+
+    /**
+     * key 对应的通道下标
+     */
+    public int laneOf(String key) {
+        int h = key == null ? 0 : key.hashCode();
+        // 扰动高位，避免 key 只在高位有差异时集中到同一通道
+        h ^= (h >>> 16);
+        return Math.floorMod(h, lanes.length);
+    }
+
+    /**
+     * 通道指标：每个通道的积压、执行、合并、拒绝数量
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        List<Map<String, Object>> laneMetrics = new ArrayList<>();
+        long totalDepth = 0;
+        for (Lane lane : lanes) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            int depth = lane.depth();
+            totalDepth += depth;
+            m.put("depth", depth);
+            m.put("executed", lane.executed.get());
+            m.put("coalesced", lane.coalesced.get());
+            m.put("rejected", lane.rejected.get());
+            laneMetrics.add(m);
+        }
+        metrics.put("name", name);
+        metrics.put("totalDepth", totalDepth);
+        metrics.put("lanes", laneMetrics);
+        return metrics;
+    }
+
+    public void shutdown() {
+        shutdown(DEFAULT_SHUTDOWN_TIMEOUT_MS);
+    }
+
+    /**
+     * 关闭：不再接收新任务，等待已提交任务执行完，超时后中断
+     */
+    public void shutdown(long timeoutMs) {
+        for (Lane lane : lanes) {
+            lane.close();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (lane.thread.isAlive()) {
+                log.warn("KeyedLaneExecutor {} lane {} did not finish in time, remaining: {}",
+                        name, lane.thread.getName(), lane.depth());
+                lane.thread.interrupt();
+            }
+        }
+        log.info("KeyedLaneExecutor {} shut down", name);
+    }
+
+    /**
+     * 通道：单消费线程 + 有界队列
+     */
+    private static final class Lane implements Runnable {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final ArrayDeque<LaneTask> queue = new ArrayDeque<>();
+        // 合并 key -> 尚未开始执行的任务
+        private final Map<String, LaneTask> pending = new HashMap<>();
+        private final int capacity;
+        private boolean accepting = true;
+
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Thread thread;
+
+        Lane(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(String coalesceKey, Callable<?> action, CompletableFuture<Object> future) {
+            lock.lock();
+            try {
+                if (!accepting) {
+                    rejected.incrementAndGet();
+                    throw new BackpressureException("lane executor is shutting down");
+                }
+                if (coalesceKey != null) {
+                    LaneTask existing = pending.get(coalesceKey);
+                    if (existing != null) {
+                        // 被替换的任务还没开始执行，直接换成最新的操作，保留其在队列中的位置
+                        existing.action = action;
+                        existing.waiters.add(future);
+                        coalesced.incrementAndGet();
+                        return;
+                    }
+                }
+                if (queue.size() >= capacity) {
+                    rejected.incrementAndGet();
+                    throw new BackpressureException("lane queue is full, capacity: " + capacity);
+                }
+                LaneTask task = new LaneTask(coalesceKey, action, future);
+                queue.addLast(task);
+                if (coalesceKey != null) {
+                    pending.put(coalesceKey, task);
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int depth() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                accepting = false;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                LaneTask task;
+                lock.lock();
+                try {
+                    while (queue.isEmpty()) {
+                        if (!accepting) {
+                            return;
+                        }
+                        notEmpty.await();
+                    }
+                    task = queue.pollFirst();
+                    // 开始执行后不再允许合并
+                    if (task.coalesceKey != null) {
+                        pending.remove(task.coalesceKey, task);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                task.run();
+                executed.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class LaneTask {
+        private final String coalesceKey;
+        // 只在持有通道锁时修改，出队后由消费线程读取
+        private Callable<?> action;
+        private final List<CompletableFuture<Object>> waiters = new ArrayList<>(1);
+
+        LaneTask(String coalesceKey, Callable<?> action, CompletableFuture<Object> future) {
+            this.coalesceKey = coalesceKey;
+            this.action = action;
+            this.waiters.add(future);
+        }
+
+        void run() {
+            try {
+                Object result = action.call();
+                for (CompletableFuture<Object> waiter : waiters) {
+                    waiter.complete(result);
+                }
+            } catch (Throwable e) {
+                for (CompletableFuture<Object> waiter : waiters) {
+                    waiter.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
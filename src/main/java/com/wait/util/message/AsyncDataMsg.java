@@ -34,6 +34,12 @@ public class AsyncDataMsg<T> implements Serializable {
     /** 重试次数 */
     private int retryCount;
 
+    /** 产生该消息的方法标识（MethodInvocationResolver 格式），写库失败进入死信时用于补偿重放 */
+    private String methodId;
+
+    /** 产生该消息的方法参数 JSON */
+    private String argsJson;
+
     /** 构造函数 - 用于保存操作 */
     public AsyncDataMsg(DataOperationType type, CacheSyncParam<T> param) {
         this.type = type;
@@ -0,0 +1,280 @@
+package com.wait.util.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wait.exception.BackpressureException;
+import com.wait.service.MQService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 生产端批量发送：按 topic 累积消息，攒满 batchSize 或最早一条等待超过 lingerMs 时通过 MQService.sendBatch 一次发送
+ * 1. 每条消息返回一个 future，所在批次发送成功后完成，发送失败时整批以异常完成，被 MQ 拒绝的单条消息单独以异常完成，由调用方决定补偿方式
+ * 2. 未发送的消息总数受 maxPending 限制，超过时等待 lingerMs 仍无空间则抛出背压异常，不无限堆积在内存中
+ * 3. 发送在单独的线程中执行，调用线程只做入队；同一 topic 的批次按累积顺序发送
+ * 对网络 MQ（Redis Streams、第三方 MQ）可以把每条消息一次往返降低为每批一次往返；内存 MQ 的默认 sendBatch 逐条发送
+ */
+@Slf4j
+public class BatchingMQProducer {
+
+    private final String name;
+    private final MQService mqService;
+    private final int batchSize;
+    private final long lingerMs;
+    private final Semaphore pendingPermits;
+    private final int maxPending;
+
+    private final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService lingerTimer;
+    /** 单线程发送，保证同一 topic 的批次按顺序发送 */
+    private final ExecutorService sender;
+
+    private final AtomicLong sentMessages = new AtomicLong(0);
+    private final AtomicLong sentBatches = new AtomicLong(0);
+    private final AtomicLong failedMessages = new AtomicLong(0);
+    private final AtomicLong rejectedMessages = new AtomicLong(0);
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param batchSize  单批最多消息数
+     * @param lingerMs   第一条消息最多等待凑批的时间
+     * @param maxPending 已接收未发送完成的消息数上限
+     */
+    public BatchingMQProducer(String name, MQService mqService, int batchSize, long lingerMs, int maxPending) {
+        if (batchSize <= 0 || lingerMs < 0 || maxPending < batchSize) {
+            throw new IllegalArgumentException("invalid producer batching config, batchSize: " + batchSize
+                    + ", lingerMs: " + lingerMs + ", maxPending: " + maxPending);
+        }
+        this.name = name;
+        this.mqService = mqService;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.maxPending = maxPending;
+        this.pendingPermits = new Semaphore(maxPending);
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-linger").setDaemon(true).build());
+        this.sender = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-sender").build());
+        long tick = Math.max(1, lingerMs / 2);
+        lingerTimer.scheduleWithFixedDelay(this::flushExpired, tick, tick, TimeUnit.MILLISECONDS);
+        log.info("Batching producer {} started, batch: {}, linger: {}ms, max pending: {}",
+                name, batchSize, lingerMs, maxPending);
+    }
+
+    /**
+     * 发送一条消息，返回所在批次发送完成的 future
+     *
+     * @throws BackpressureException 未发送消息数达到上限
+     */
+    public CompletableFuture<Void> send(String topic, String key, AsyncDataMsg<?> message) {
+        if (closed) {
+            throw new IllegalStateException("producer " + name + " is closed");
+        }
+        acquirePermit(topic, key);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Accumulator accumulator = accumulators.computeIfAbsent(topic, Accumulator::new);
+        // 在批次锁内提交发送，保证同一 topic 的批次按累积顺序进入发送线程
+        synchronized (accumulator) {
+            List<Pending> full = accumulator.append(new Pending(message, future), batchSize);
+            if (full == null && closed) {
+                // close() 的最后一次 flush 之后到达的消息直接发送
+                full = accumulator.drain();
+            }
+            if (full != null) {
+                dispatch(topic, full);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 立即发送所有累积的消息（不等待发送完成）
+     */
+    public void flush() {
+        for (Accumulator accumulator : accumulators.values()) {
+            synchronized (accumulator) {
+                List<Pending> batch = accumulator.drain();
+                if (batch != null) {
+                    dispatch(accumulator.topic, batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭：发送剩余消息并等待发送线程结束
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        lingerTimer.shutdown();
+        flush();
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+                sender.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Batching producer {} closed, sent: {}, batches: {}, failed: {}",
+                name, sentMessages.get(), sentBatches.get(), failedMessages.get());
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long batches = sentBatches.get();
+        metrics.put("sentMessages", sentMessages.get());
+        metrics.put("sentBatches", batches);
+        metrics.put("avgBatchSize", batches == 0 ? 0 : (double) sentMessages.get() / batches);
+        metrics.put("failedMessages", failedMessages.get());
+        metrics.put("rejectedMessages", rejectedMessages.get());
+        metrics.put("pending", maxPending - pendingPermits.availablePermits());
+        metrics.put("batchSize", batchSize);
+        metrics.put("lingerMs", lingerMs);
+        return metrics;
+    }
+
+    private void acquirePermit(String topic, String key) {
+        boolean acquired;
+        try {
+            acquired = pendingPermits.tryAcquire(Math.max(1, lingerMs), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedMessages.incrementAndGet();
+            throw new BackpressureException("producer " + name + " pending messages exceed " + maxPending
+                    + ", topic: " + topic + ", key: " + key);
+        }
+    }
+
+    /**
+     * 定时检查：最早一条消息等待超过 lingerMs 的 topic 立即发送
+     */
+    private void flushExpired() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        for (Accumulator accumulator : accumulators.values()) {
+            synchronized (accumulator) {
+                List<Pending> batch = accumulator.drainIfOlderThan(deadline);
+                if (batch != null) {
+                    dispatch(accumulator.topic, batch);
+                }
+            }
+        }
+    }
+
+    private void dispatch(String topic, List<Pending> batch) {
+        try {
+            sender.execute(() -> sendBatch(topic, batch));
+        } catch (RejectedExecutionException e) {
+            // 已关闭，在当前线程发送
+            sendBatch(topic, batch);
+        }
+    }
+
+    private void sendBatch(String topic, List<Pending> batch) {
+        List<AsyncDataMsg<?>> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            List<AsyncDataMsg<?>> rejected = mqService.sendBatch(topic, messages);
+            Set<AsyncDataMsg<?>> rejectedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (rejected != null) {
+                rejectedSet.addAll(rejected);
+            }
+            sentMessages.addAndGet(batch.size() - rejectedSet.size());
+            failedMessages.addAndGet(rejectedSet.size());
+            sentBatches.incrementAndGet();
+            for (Pending pending : batch) {
+                if (rejectedSet.contains(pending.message)) {
+                    // 被 MQ 拒绝的消息（如无法序列化）以异常完成，调用方据此补偿
+                    pending.future.completeExceptionally(new IllegalStateException(
+                            "message rejected by MQ, topic: " + topic + ", key: " + pending.message.getKey()));
+                } else {
+                    pending.future.complete(null);
+                }
+            }
+            if (!rejectedSet.isEmpty()) {
+                log.error("Batching producer {} had {} messages rejected, topic: {}", name, rejectedSet.size(), topic);
+            }
+        } catch (Exception e) {
+            failedMessages.addAndGet(batch.size());
+            log.error("Batching producer {} failed to send batch, topic: {}, size: {}", name, topic, batch.size(), e);
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        } finally {
+            pendingPermits.release(batch.size());
+        }
+    }
+
+    private static final class Pending {
+        final AsyncDataMsg<?> message;
+        final CompletableFuture<Void> future;
+
+        Pending(AsyncDataMsg<?> message, CompletableFuture<Void> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 单个 topic 的累积批次，append/drain 在批次对象上同步，临界区只有列表操作和提交发送任务
+     */
+    private static final class Accumulator {
+        final String topic;
+        private List<Pending> batch = new ArrayList<>();
+        private long firstAppendNanos;
+
+        Accumulator(String topic) {
+            this.topic = topic;
+        }
+
+        /**
+         * 追加一条消息，攒满时返回整批并开始新批次
+         */
+        synchronized List<Pending> append(Pending pending, int batchSize) {
+            if (batch.isEmpty()) {
+                firstAppendNanos = System.nanoTime();
+            }
+            batch.add(pending);
+            return batch.size() >= batchSize ? swap() : null;
+        }
+
+        synchronized List<Pending> drain() {
+            return batch.isEmpty() ? null : swap();
+        }
+
+        synchronized List<Pending> drainIfOlderThan(long deadlineNanos) {
+            return !batch.isEmpty() && firstAppendNanos - deadlineNanos <= 0 ? swap() : null;
+        }
+
+        private List<Pending> swap() {
+            List<Pending> full = batch;
+            batch = new ArrayList<>(full.size());
+            return full;
+        }
+    }
+}
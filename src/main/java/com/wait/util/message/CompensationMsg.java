@@ -24,4 +24,26 @@ public class CompensationMsg<T> {
     
     /** 失败时间戳 */
     private long failTime;
+
+    /** 失败操作的方法标识（MethodInvocationResolver 格式），为空时补偿只能失效缓存 */
+    private String methodId;
+
+    /** 失败操作的参数 JSON */
+    private String argsJson;
+
+    /**
+     * 写回消息的死信：带上消息中记录的方法调用，补偿时重放写库，而不是只失效缓存
+     */
+    public static CompensationMsg<Object> ofAsyncDataMsg(AsyncDataMsg<?> message, String failReason) {
+        return CompensationMsg.<Object>builder()
+                .originalParam(CacheSyncParam.<Object>builder()
+                        .key(message.getKey())
+                        .newValue(message.getData())
+                        .build())
+                .failReason(failReason)
+                .failTime(System.currentTimeMillis())
+                .methodId(message.getMethodId())
+                .argsJson(message.getArgsJson())
+                .build();
+    }
 }
\ No newline at end of file
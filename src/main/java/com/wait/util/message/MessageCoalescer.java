@@ -0,0 +1,62 @@
+package com.wait.util.message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 批量消息合并工具
+ * 同一批次内按 topic 分组，每个 topic 内同一 key 只保留最后一条消息（后写覆盖先写），
+ * 保留下来的消息按其在批次中最后出现的位置排序，保证不同 key 之间的相对顺序不变
+ */
+public final class MessageCoalescer {
+
+    private MessageCoalescer() {
+    }
+
+    /**
+     * 合并结果：topic -> 合并后的消息列表
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Result {
+        private final Map<String, List<AsyncDataMsg<?>>> byTopic;
+        private final int inputCount;
+        private final int outputCount;
+
+        /** 被合并掉的消息数 */
+        public int getCoalescedCount() {
+            return inputCount - outputCount;
+        }
+    }
+
+    /**
+     * @param topics   每条消息的 topic，与 messages 一一对应
+     * @param messages 按接收顺序排列的消息
+     */
+    public static Result coalesce(List<String> topics, List<AsyncDataMsg<?>> messages) {
+        Map<String, LinkedHashMap<String, AsyncDataMsg<?>>> latest = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            AsyncDataMsg<?> message = messages.get(i);
+            LinkedHashMap<String, AsyncDataMsg<?>> perKey = latest.computeIfAbsent(topics.get(i),
+                    t -> new LinkedHashMap<>());
+            // 先移除再放入，使 key 的位置移动到最后一次出现处
+            perKey.remove(message.getKey());
+            perKey.put(message.getKey(), message);
+        }
+
+        Map<String, List<AsyncDataMsg<?>>> byTopic = new LinkedHashMap<>();
+        int outputCount = 0;
+        for (Map.Entry<String, LinkedHashMap<String, AsyncDataMsg<?>>> e : latest.entrySet()) {
+            List<AsyncDataMsg<?>> list = new ArrayList<>(e.getValue().values());
+            outputCount += list.size();
+            byTopic.put(e.getKey(), list);
+        }
+        return new Result(byTopic, messages.size(), outputCount);
+    }
+}
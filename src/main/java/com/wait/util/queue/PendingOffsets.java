@@ -0,0 +1,70 @@
+package com.wait.util.queue;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 追加日志中尚未消费完成的消息位置，用于计算可以安全写入检查点的偏移量
+ * 生产者在追加前以 SegmentLog.endOffset() 登记（实际偏移量不会小于它），消费完成后释放；
+ * 检查点 = min(最小未释放位置, 读取登记集合之前的 endOffset)，登记和释放都无锁
+ */
+public class PendingOffsets {
+
+    private final ConcurrentSkipListSet<Mark> marks = new ConcurrentSkipListSet<>();
+    private final AtomicLong ids = new AtomicLong(0);
+
+    /**
+     * 登记一个未消费位置
+     */
+    public Mark acquire(long offset) {
+        Mark mark = new Mark(offset, ids.incrementAndGet());
+        marks.add(mark);
+        return mark;
+    }
+
+    /**
+     * 消费完成（或消息被丢弃）后释放
+     */
+    public void release(Mark mark) {
+        if (mark != null) {
+            marks.remove(mark);
+        }
+    }
+
+    /**
+     * 可以写入检查点的偏移量
+     *
+     * @param endOffset 调用前读取的日志追加位置，必须先于本方法读取
+     */
+    public long lowWatermark(long endOffset) {
+        try {
+            return Math.min(marks.first().offset, endOffset);
+        } catch (NoSuchElementException e) {
+            return endOffset;
+        }
+    }
+
+    public int size() {
+        return marks.size();
+    }
+
+    /**
+     * 未消费位置，offset 相同时按登记顺序区分
+     */
+    public static final class Mark implements Comparable<Mark> {
+        final long offset;
+        final long id;
+
+        Mark(long offset, long id) {
+            this.offset = offset;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Mark other) {
+            int result = Long.compare(offset, other.offset);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.wait.util.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 预分配的多生产者、多消费者环形队列（参考 Disruptor 的序号栅栏设计）
+ * 1. 槽位在创建时一次性分配，生产者只填充已有对象，发布消息没有节点分配，也没有锁
+ * 2. 生产者：CAS 推进 cursor 认领序号，填充槽位后写入可用标记（序号的圈数），消费者据此判断连续可读的最大序号
+ * 3. 消费者：多个工作线程共享 workSequence，CAS 一次认领一段连续的已发布序号批量处理，每条消息只会被一个线程处理
+ * 4. 栅栏：生产者不能越过 min(workSequence, 正在处理中的工作线程序号) 一整圈，保证未消费槽位不被覆盖
+ * 注意：多个工作线程之间不保证同一 key 的处理顺序，需要严格有序时使用单个工作线程
+ *
+ * @param <E> 槽位类型，需为可复用的可变对象
+ */
+@Slf4j
+public class RingBuffer<E> {
+
+    /** 空闲工作线程的栅栏值，不参与生产者栅栏计算 */
+    private static final long IDLE = Long.MAX_VALUE;
+    /** 工作线程单次等待上限，超时后检查运行状态 */
+    private static final long WAIT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final Object[] entries;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray available;
+    private final WaitStrategy waitStrategy;
+    private final WaitStrategy.Signal signal = new WaitStrategy.Signal();
+
+    /** 生产者已认领的最大序号 */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /** 消费者已认领的最大序号 */
+    private final AtomicLong workSequence = new AtomicLong(-1);
+    /** 生产者缓存的栅栏值，减少读取工作线程序号的次数 */
+    private volatile long cachedGating = -1;
+
+    private final int batchSize;
+    private final List<Thread> workers = new ArrayList<>();
+    /** 每个工作线程正在处理批次的起始序号 - 1，空闲时为 IDLE */
+    private AtomicLongArray workerSequences = new AtomicLongArray(0);
+    private volatile boolean running = false;
+
+    /**
+     * 批量处理器：events 为一次认领的连续槽位，处理器返回后槽位会被复用，不能持有槽位引用
+     */
+    public interface BatchHandler<E> {
+        void onBatch(List<E> events);
+    }
+
+    /**
+     * @param capacity  容量，会向上取整为 2 的幂
+     * @param factory   槽位对象工厂
+     * @param batchSize 工作线程单次最多认领的消息数
+     */
+    public RingBuffer(String name, int capacity, Supplier<E> factory, WaitStrategy waitStrategy, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 2);
+        this.name = name;
+        this.entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+        }
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.available = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            available.set(i, -1);
+        }
+        this.waitStrategy = waitStrategy;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 启动工作线程
+     */
+    public synchronized void start(int workerCount, BatchHandler<E> handler) {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerSequences = new AtomicLongArray(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workerSequences.set(i, IDLE);
+            int workerIndex = i;
+            Thread thread = new Thread(() -> work(workerIndex, handler), name + "-worker-" + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+        log.info("RingBuffer {} started, capacity: {}, workers: {}, batch: {}, wait: {}",
+                name, entries.length, workerCount, batchSize, waitStrategy);
+    }
+
+    /**
+     * 停止：工作线程处理完已发布的消息后退出，最多等待 timeoutMs
+     */
+    public synchronized void shutdown(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        }
+        workers.clear();
+        log.info("RingBuffer {} stopped, remaining: {}", name, size());
+    }
+
+    /**
+     * 发布一条消息，队列满时最多等待 timeoutNanos
+     *
+     * @param translator 填充槽位
+     * @return 队列满且等待超时时返回 false
+     */
+    public boolean publish(Consumer<E> translator, long timeoutNanos) {
+        long sequence = tryClaim();
+        if (sequence < 0 && timeoutNanos > 0) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            long park = 1_000L;
+            while (sequence < 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(park);
+                park = Math.min(park << 1, TimeUnit.MILLISECONDS.toNanos(1));
+                sequence = tryClaim();
+            }
+        }
+        if (sequence < 0) {
+            return false;
+        }
+        try {
+            translator.accept(get(sequence));
+        } finally {
+            // 填充失败也必须发布，否则后续序号永远不可读
+            available.set((int) sequence & mask, (int) (sequence >>> indexShift));
+            waitStrategy.signalAll(signal);
+        }
+        return true;
+    }
+
+    /**
+     * 已发布未认领的消息数（近似值）
+     */
+    public long size() {
+        return Math.max(0, cursor.get() - workSequence.get());
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public long remainingCapacity() {
+        return entries.length - size();
+    }
+
+    /**
+     * 认领一个序号，队列满时返回 -1
+     */
+    private long tryClaim() {
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > cachedGating) {
+                long gating = minimumGatingSequence();
+                cachedGating = gating;
+                if (wrapPoint > gating) {
+                    return -1;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 生产者栅栏：必须先读 workSequence 再读各工作线程序号
+     * 工作线程先写自己的序号再 CAS workSequence，这个顺序保证不会漏掉正在认领的批次
+     */
+    private long minimumGatingSequence() {
+        long minimum = workSequence.get();
+        AtomicLongArray sequences = workerSequences;
+        for (int i = 0; i < sequences.length(); i++) {
+            minimum = Math.min(minimum, sequences.get(i));
+        }
+        return minimum;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    private boolean isAvailable(long sequence) {
+        return available.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * 从 lowerBound 开始连续已发布的最大序号
+     */
+    private long highestPublished(long lowerBound, long upperBound) {
+        for (long sequence = lowerBound; sequence <= upperBound; sequence++) {
+            if (!isAvailable(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return upperBound;
+    }
+
+    private void work(int workerIndex, BatchHandler<E> handler) {
+        List<E> batch = new ArrayList<>(batchSize);
+        while (true) {
+            long current = workSequence.get();
+            long next = current + 1;
+            long published = highestPublished(next, Math.min(cursor.get(), current + batchSize));
+            if (published < next) {
+                workerSequences.set(workerIndex, IDLE);
+                if (!running && cursor.get() <= current) {
+                    return;
+                }
+                try {
+                    waitStrategy.waitFor(next, () -> highestPublished(next, cursor.get()), signal,
+                            WAIT_TIMEOUT_NANOS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            // 先登记栅栏再认领，认领失败说明被其他线程抢先，重新读取
+            workerSequences.set(workerIndex, current);
+            if (!workSequence.compareAndSet(current, published)) {
+                continue;
+            }
+            batch.clear();
+            for (long sequence = next; sequence <= published; sequence++) {
+                batch.add(get(sequence));
+            }
+            try {
+                handler.onBatch(batch);
+            } catch (Throwable e) {
+                log.error("RingBuffer {} batch handler failed, sequences: [{}, {}]", name, next, published, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.wait.util.queue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于内存映射文件的追加日志，按大小滚动为多个段文件（文件名为段起始偏移量）
+ * 1. 记录格式：[magic][长度][CRC32][内容]，按 8 字节对齐；偏移量为全局递增的字节位置
+ * 2. 追加：getAndAdd 在当前段预留空间后直接写入映射内存，不加锁；段写满时才同步滚动到新段
+ * 3. 刷盘：由外部线程定期调用 flush() 成组刷盘，需要持久化确认的生产者调用 awaitFlush() 等待下一次刷盘完成
+ * 4. 恢复：从检查点偏移量开始扫描，CRC 校验失败或未写完的记录（崩溃时的空洞、半写记录）被跳过
+ * 检查点（已消费位置）单独存放在 consumer.checkpoint 文件中，写临时文件后原子替换
+ */
+@Slf4j
+public class SegmentLog {
+
+    private static final int MAGIC = 0x4D514C47;
+    private static final int HEADER_SIZE = 12;
+    private static final int ALIGNMENT = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "consumer.checkpoint";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+
+    /** 已开始 / 已完成的刷盘轮次，awaitFlush 据此判断自己写入的数据是否已落盘 */
+    private final AtomicLong flushStarted = new AtomicLong(0);
+    private volatile long flushCompleted = 0;
+    private final Object flushMonitor = new Object();
+
+    /**
+     * 恢复时每条有效记录的回调
+     */
+    public interface RecordVisitor {
+        void visit(long offset, byte[] payload);
+    }
+
+    /**
+     * @param segmentSize 单个段文件大小（字节），不超过 1GB
+     */
+    public SegmentLog(Path dir, int segmentSize) {
+        if (segmentSize <= HEADER_SIZE || segmentSize > (1 << 30)) {
+            throw new IllegalArgumentException("segmentSize must be in (" + HEADER_SIZE + ", 1GB]");
+        }
+        this.dir = dir;
+        this.segmentSize = align(segmentSize);
+    }
+
+    /**
+     * 打开日志：删除检查点之前的段，从 fromOffset 开始回放有效记录，最后一个段继续追加
+     *
+     * @return 回放的记录数
+     */
+    public synchronized long open(long fromOffset, RecordVisitor visitor) {
+        try {
+            Files.createDirectories(dir);
+            long nextBase = fromOffset;
+            long replayed = 0;
+            Segment last = null;
+            for (Path file : listSegmentFiles()) {
+                long base = parseBase(file);
+                long size = Files.size(file);
+                if (base + size <= fromOffset) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Segment segment = new Segment(base, file, (int) size);
+                int start = (int) Math.max(0, fromOffset - base);
+                ScanResult result = segment.scan(start, visitor);
+                replayed += result.records;
+                segment.position.set(result.validEnd);
+                segments.put(base, segment);
+                nextBase = Math.max(nextBase, base + size);
+                last = segment;
+            }
+            if (last != null && last.position.get() <= last.size - HEADER_SIZE - ALIGNMENT) {
+                active = last;
+            } else {
+                active = createSegment(nextBase);
+            }
+            log.info("Segment log opened, dir: {}, segments: {}, replayed: {}, from: {}, end: {}",
+                    dir, segments.size(), replayed, fromOffset, endOffset());
+            return replayed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open segment log: " + dir, e);
+        }
+    }
+
+    /**
+     * 追加一条记录（不等待落盘）
+     *
+     * @return 记录的起始偏移量
+     */
+    public long append(byte[] payload) {
+        int recordSize = align(HEADER_SIZE + payload.length);
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("record too large: " + payload.length + " bytes");
+        }
+        while (true) {
+            Segment segment = active;
+            int position = segment.position.getAndAdd(recordSize);
+            if (position <= segment.size - recordSize) {
+                segment.write(position, payload);
+                return segment.base + position;
+            }
+            roll(segment);
+        }
+    }
+
+    /**
+     * 当前追加位置：之后追加的记录偏移量都不小于该值
+     */
+    public long endOffset() {
+        Segment segment = active;
+        return segment.base + Math.min(segment.position.get(), segment.size);
+    }
+
+    /**
+     * 成组刷盘：把所有段的脏页写回磁盘，并唤醒等待本轮刷盘的生产者
+     */
+    public void flush() {
+        long round = flushStarted.incrementAndGet();
+        Segment current = active;
+        for (Segment segment : segments.values()) {
+            // 封存后的段再刷两轮（覆盖滚动前预留、滚动后才写完的记录），之后不再重复刷
+            if (segment == current) {
+                segment.buffer.force();
+            } else if (segment.sealedFlushes < 2) {
+                segment.buffer.force();
+                segment.sealedFlushes++;
+            }
+        }
+        synchronized (flushMonitor) {
+            flushCompleted = round;
+            flushMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 等待调用前已写入的记录落盘（下一轮刷盘完成）
+     *
+     * @return 超时返回 false
+     */
+    public boolean awaitFlush(long timeoutMs) throws InterruptedException {
+        long target = flushStarted.get() + 1;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (flushMonitor) {
+            while (flushCompleted < target) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                flushMonitor.wait(remainingMs);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除完全位于 offset 之前的段（当前段除外）
+     */
+    public void deleteBefore(long offset) {
+        for (Map.Entry<Long, Segment> entry : segments.headMap(offset).entrySet()) {
+            Segment segment = entry.getValue();
+            if (segment == active || segment.base + segment.size > offset) {
+                continue;
+            }
+            segments.remove(entry.getKey());
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.file);
+                log.debug("Segment deleted: {}", segment.file);
+            } catch (IOException e) {
+                log.warn("Failed to delete segment: {}", segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * 读取检查点，文件不存在或损坏时返回 0（从头回放）
+     */
+    public long readCheckpoint() {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        try {
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() != 16) {
+                log.warn("Corrupted checkpoint file, replaying from beginning: {}", file);
+                return 0;
+            }
+            long offset = buffer.getLong();
+            if (buffer.getLong() != checksum(offset)) {
+                log.warn("Checkpoint checksum mismatch, replaying from beginning: {}", file);
+                return 0;
+            }
+            return offset;
+        } catch (IOException e) {
+            log.warn("Failed to read checkpoint, replaying from beginning: {}", file, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 写入检查点：先写临时文件并刷盘，再原子替换
+     */
+    public void writeCheckpoint(long offset) {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(offset).putLong(checksum(offset)).flip();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write checkpoint: " + tmp, e);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to replace checkpoint: " + file, e);
+        }
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 刷盘并关闭所有段
+     */
+    public synchronized void close() {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        log.info("Segment log closed, dir: {}", dir);
+    }
+
+    /**
+     * 当前段写满时滚动到新段，只有一个线程真正创建新段
+     */
+    private synchronized void roll(Segment full) {
+        if (active != full) {
+            return;
+        }
+        try {
+            active = createSegment(full.base + full.size);
+            log.debug("Segment rolled, new base: {}", active.base);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to roll segment log: " + dir, e);
+        }
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        Path file = dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        Segment segment = new Segment(base, file, segmentSize);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(parseBase(a), parseBase(b)));
+        return files;
+    }
+
+    private static long parseBase(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static long checksum(long offset) {
+        return Long.rotateLeft(offset, 17) ^ 0x5A5A5A5A5A5A5A5AL;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return (int) crc32.getValue();
+    }
+
+    private static final class ScanResult {
+        final long records;
+        final int validEnd;
+
+        ScanResult(long records, int validEnd) {
+            this.records = records;
+            this.validEnd = validEnd;
+        }
+    }
+
+    /**
+     * 段文件：整体映射到内存，position 为已预留的写入位置
+     */
+    private static final class Segment {
+        final long base;
+        final Path file;
+        final int size;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger position = new AtomicInteger(0);
+        /** 封存后已刷盘的次数，只由刷盘线程读写 */
+        int sealedFlushes;
+
+        Segment(long base, Path file, int size) throws IOException {
+            this.base = base;
+            this.file = file;
+            this.size = size;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        void write(int position, byte[] payload) {
+            ByteBuffer target = buffer.duplicate();
+            target.position(position);
+            target.putInt(MAGIC);
+            target.putInt(payload.length);
+            target.putInt(crc(payload));
+            target.put(payload);
+        }
+
+        /**
+         * 从 start 开始扫描有效记录；遇到无效数据按对齐粒度向后查找下一条有效记录
+         */
+        ScanResult scan(int start, RecordVisitor visitor) {
+            long records = 0;
+            int position = align(start);
+            int validEnd = position;
+            while (position + HEADER_SIZE <= size) {
+                if (buffer.getInt(position) == MAGIC) {
+                    int length = buffer.getInt(position + 4);
+                    if (length >= 0 && length <= size - position - HEADER_SIZE) {
+                        byte[] payload = new byte[length];
+                        ByteBuffer source = buffer.duplicate();
+                        source.position(position + HEADER_SIZE);
+                        source.get(payload);
+                        if (crc(payload) == buffer.getInt(position + 8)) {
+                            visitor.visit(base + position, payload);
+                            records++;
+                            position += align(HEADER_SIZE + length);
+                            validEnd = position;
+                            continue;
+                        }
+                    }
+                }
+                position += ALIGNMENT;
+            }
+            return new ScanResult(records, validEnd);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close segment: {}", file, e);
+            }
+        }
+    }
+}
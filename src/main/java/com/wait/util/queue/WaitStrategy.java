@@ -0,0 +1,113 @@
+package com.wait.util.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 环形队列消费者的等待策略
+ * BLOCKING：锁 + 条件变量，CPU 占用最低，延迟最高
+ * YIELDING：自旋后 Thread.yield，低延迟，空闲时占满一个核
+ * SLEEPING：自旋、yield 后 parkNanos，延迟和 CPU 占用折中（默认）
+ */
+public enum WaitStrategy {
+
+    BLOCKING {
+        @Override
+        long waitFor(long sequence, LongSupplier cursor, Signal signal, long timeoutNanos) throws InterruptedException {
+            long available = cursor.getAsLong();
+            if (available >= sequence) {
+                return available;
+            }
+            long remaining = timeoutNanos;
+            signal.lock.lock();
+            try {
+                signal.waiters++;
+                while ((available = cursor.getAsLong()) < sequence && remaining > 0) {
+                    remaining = signal.published.awaitNanos(remaining);
+                }
+                signal.waiters--;
+            } finally {
+                signal.lock.unlock();
+            }
+            return available;
+        }
+    },
+
+    YIELDING {
+        @Override
+        long waitFor(long sequence, LongSupplier cursor, Signal signal, long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            int spins = SPIN_TRIES;
+            long available;
+            while ((available = cursor.getAsLong()) < sequence) {
+                if (spins > 0) {
+                    spins--;
+                } else {
+                    Thread.yield();
+                    if (System.nanoTime() > deadline) {
+                        break;
+                    }
+                }
+            }
+            return available;
+        }
+    },
+
+    SLEEPING {
+        @Override
+        long waitFor(long sequence, LongSupplier cursor, Signal signal, long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            int counter = SPIN_TRIES * 2;
+            long available;
+            while ((available = cursor.getAsLong()) < sequence) {
+                if (counter > SPIN_TRIES) {
+                    counter--;
+                } else if (counter > 0) {
+                    counter--;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(SLEEP_NANOS);
+                    if (System.nanoTime() > deadline) {
+                        break;
+                    }
+                }
+            }
+            return available;
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * 等待 cursor 推进到 sequence，超时返回当前 cursor（可能仍小于 sequence）
+     */
+    abstract long waitFor(long sequence, LongSupplier cursor, Signal signal, long timeoutNanos)
+            throws InterruptedException;
+
+    /**
+     * 生产者发布后的唤醒，只有 BLOCKING 策略且有等待者时才需要加锁
+     */
+    void signalAll(Signal signal) {
+        if (this == BLOCKING && signal.waiters > 0) {
+            signal.lock.lock();
+            try {
+                signal.published.signalAll();
+            } finally {
+                signal.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * BLOCKING 策略使用的锁和条件变量，每个环形队列一个
+     */
+    static final class Signal {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition published = lock.newCondition();
+        private volatile int waiters;
+    }
+}
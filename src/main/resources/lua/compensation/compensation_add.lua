@@ -0,0 +1,36 @@
+-- compensation_add.lua
+-- KEYS[1]: 补偿条目 hash (compensation:entry:{cacheKey})
+-- KEYS[2]: 待重试集合 (compensation:due)，score 为下次重试时间
+-- KEYS[3]: 死亡集合 (compensation:dead)，score 为最后失败时间
+-- ARGV[1]: 缓存 key
+-- ARGV[2]: 方法标识（无法重放时为空串）
+-- ARGV[3]: 参数 JSON（无法重放时为空串）
+-- ARGV[4]: 失败原因
+-- ARGV[5]: 失败时间戳（毫秒）
+-- ARGV[6]: 首次重试时间戳（毫秒）
+--
+-- 原子性地执行：
+-- 1. 同一缓存 key 只保留一个条目：已存在时用最新一次失败覆盖（旧的写入已被取代），累计 superseded
+-- 2. 重置重试次数，version + 1，正在重试旧版本的节点据此放弃提交结果
+-- 3. 登记到待重试集合（若已进入死亡集合则移回）
+-- 返回 1 表示覆盖了已有条目，0 表示新建
+
+local existed = redis.call('EXISTS', KEYS[1])
+
+-- 1. 合并已有条目
+if existed == 1 then
+    redis.call('HINCRBY', KEYS[1], 'superseded', 1)
+else
+    redis.call('HSET', KEYS[1], 'firstFailTime', ARGV[5], 'superseded', 0)
+end
+
+-- 2. 写入最新一次失败
+redis.call('HSET', KEYS[1], 'key', ARGV[1], 'methodId', ARGV[2], 'argsJson', ARGV[3],
+    'failReason', ARGV[4], 'lastFailTime', ARGV[5], 'attempts', 0, 'status', 'PENDING', 'nextRetryAt', ARGV[6])
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+
+-- 3. 登记待重试
+redis.call('ZREM', KEYS[3], ARGV[1])
+redis.call('ZADD', KEYS[2], ARGV[6], ARGV[1])
+
+return existed
@@ -0,0 +1,15 @@
+-- compensation_claim.lua
+-- KEYS[1]: 待重试集合 (compensation:due)，score 为下次重试时间
+-- ARGV[1]: 当前时间戳（毫秒）
+-- ARGV[2]: 本次最多认领的数量
+-- ARGV[3]: 租约到期时间戳（毫秒）
+--
+-- 认领到期的条目：把 score 推迟到租约到期时间，其他节点在租约内不会重复认领；
+-- 认领节点宕机时租约到期，条目自然重新到期
+-- 返回认领到的缓存 key 列表
+
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+for _, key in ipairs(due) do
+    redis.call('ZADD', KEYS[1], ARGV[3], key)
+end
+return due
@@ -0,0 +1,15 @@
+-- compensation_complete.lua
+-- KEYS[1]: 补偿条目 hash (compensation:entry:{cacheKey})
+-- KEYS[2]: 待重试集合 (compensation:due)
+-- ARGV[1]: 缓存 key
+-- ARGV[2]: 重试时读取到的 version
+--
+-- 重试成功后删除条目；重试期间又有新的失败写入（version 变化）时保留条目，按新的计划继续重试
+-- 返回 1 表示已删除，0 表示条目已被取代
+
+if redis.call('HGET', KEYS[1], 'version') ~= ARGV[2] then
+    return 0
+end
+redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,34 @@
+-- compensation_fail.lua
+-- KEYS[1]: 补偿条目 hash (compensation:entry:{cacheKey})
+-- KEYS[2]: 待重试集合 (compensation:due)
+-- KEYS[3]: 死亡集合 (compensation:dead)
+-- ARGV[1]: 缓存 key
+-- ARGV[2]: 重试时读取到的 version
+-- ARGV[3]: 失败原因
+-- ARGV[4]: 失败时间戳（毫秒）
+-- ARGV[5]: 下次重试时间戳（毫秒，退避由调用方计算）
+-- ARGV[6]: 最大重试次数
+--
+-- 原子性地执行：
+-- 1. 条目已被新的失败取代时不做处理
+-- 2. 重试次数 + 1，记录失败原因
+-- 3. 达到最大次数转入死亡集合等待人工处理，否则按退避时间重新登记
+-- 返回 -1 表示已被取代，0 表示转入死亡集合，其余为当前重试次数
+
+if redis.call('HGET', KEYS[1], 'version') ~= ARGV[2] then
+    return -1
+end
+
+local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1)
+redis.call('HSET', KEYS[1], 'failReason', ARGV[3], 'lastFailTime', ARGV[4])
+
+if attempts >= tonumber(ARGV[6]) then
+    redis.call('HSET', KEYS[1], 'status', 'DEAD')
+    redis.call('ZREM', KEYS[2], ARGV[1])
+    redis.call('ZADD', KEYS[3], ARGV[4], ARGV[1])
+    return 0
+end
+
+redis.call('HSET', KEYS[1], 'nextRetryAt', ARGV[5])
+redis.call('ZADD', KEYS[2], ARGV[5], ARGV[1])
+return attempts
@@ -0,0 +1,13 @@
+-- compensation_purge.lua
+-- KEYS[1]: 补偿条目 hash (compensation:entry:{cacheKey})
+-- KEYS[2]: 待重试集合 (compensation:due)
+-- KEYS[3]: 死亡集合 (compensation:dead)
+-- ARGV[1]: 缓存 key
+--
+-- 删除条目及其在两个集合中的登记
+-- 返回删除的条目数
+
+local deleted = redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+redis.call('ZREM', KEYS[3], ARGV[1])
+return deleted
@@ -0,0 +1,19 @@
+-- compensation_replay.lua
+-- KEYS[1]: 补偿条目 hash (compensation:entry:{cacheKey})
+-- KEYS[2]: 待重试集合 (compensation:due)
+-- KEYS[3]: 死亡集合 (compensation:dead)
+-- ARGV[1]: 缓存 key
+-- ARGV[2]: 当前时间戳（毫秒）
+--
+-- 人工重放：重置重试次数并立即到期（死亡条目移回待重试集合）
+-- 返回 1 表示已重放，0 表示条目不存在
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    redis.call('ZREM', KEYS[2], ARGV[1])
+    redis.call('ZREM', KEYS[3], ARGV[1])
+    return 0
+end
+redis.call('HSET', KEYS[1], 'attempts', 0, 'status', 'PENDING', 'nextRetryAt', ARGV[2])
+redis.call('ZREM', KEYS[3], ARGV[1])
+redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+return 1
@@ -0,0 +1,98 @@
+-- bulk_relation.lua
+-- 一次调用原子地执行 N 个同类关系操作（单条关注、点赞等也通过它执行，N = 1）
+-- KEYS: 每个 (actor, target) 对依次占 ARGV[2] 个 key：
+--   第一个集合的 基础 key、分片 key、分片元数据 key（如 user:follow:{followerId}、...:s:{n}、...:meta），
+--   第二个集合的 基础 key、分片 key、分片元数据 key（如 user:follower:{followedId}、...），
+--   [帖子计数 hash（如 post:counter:{postId}）]
+-- ARGV[1]: 操作，add 或 rem
+-- ARGV[2]: 每对的 key 数，6 或 7（有计数 key）
+-- ARGV[3]: 分片阈值，基础集合成员数达到该值时进入分片状态，0 表示不分片
+-- ARGV[4]: 计数 hash 的字段（like、favorite），没有计数 key 时为空
+-- ARGV[5]: 计数对应的帖子侧集合，1 为第一个集合，2 为第二个集合
+-- ARGV[6..]: 每对两个成员：写入第一个集合的成员、写入第二个集合的成员
+--
+-- 每对的处理：
+-- 1. 第一个集合已是目标状态时跳过（防止重复关注/重复计数）
+-- 2. 否则同时修改两个集合，有计数 key 时加减计数 hash 中的字段
+-- 集合已分片（元数据 key 存在）时新成员写入分片，基础集合中尚未迁移的成员仍然有效
+-- 返回：每对一个结果，按位：1 状态发生变化，2 第一个集合本次进入分片状态，4 第二个集合本次进入分片状态
+--       （进入分片状态后需要调用方把基础集合中的成员迁移到分片）
+
+local op = ARGV[1]
+local stride = tonumber(ARGV[2])
+local threshold = tonumber(ARGV[3])
+local field = ARGV[4]
+local counterGroup = tonumber(ARGV[5])
+local total = #KEYS / stride
+local results = {}
+
+-- 返回 是否变化(0/1), 是否本次进入分片状态
+local function add(base, shard, meta, member)
+    if redis.call('EXISTS', meta) == 1 then
+        if redis.call('SISMEMBER', base, member) == 1 or redis.call('SADD', shard, member) == 0 then
+            return 0, false
+        end
+        redis.call('HINCRBY', meta, 'count', 1)
+        return 1, false
+    end
+    if redis.call('SADD', base, member) == 0 then
+        return 0, false
+    end
+    if threshold > 0 and redis.call('SCARD', base) >= threshold then
+        redis.call('HSET', meta, 'count', 0)
+        return 1, true
+    end
+    return 1, false
+end
+
+local function rem(base, shard, meta, member)
+    if redis.call('SREM', base, member) == 1 then
+        return 1
+    end
+    if redis.call('EXISTS', meta) == 1 and redis.call('SREM', shard, member) == 1 then
+        redis.call('HINCRBY', meta, 'count', -1)
+        return 1
+    end
+    return 0
+end
+
+-- 计数：计数 hash 中没有该字段时（首次计数、Redis 数据重建）按帖子侧集合当前成员数初始化，集合已包含本次变更
+local function count(counter, base, meta, delta)
+    if redis.call('HEXISTS', counter, field) == 1 then
+        redis.call('HINCRBY', counter, field, delta)
+    else
+        local sharded = tonumber(redis.call('HGET', meta, 'count')) or 0
+        redis.call('HSET', counter, field, redis.call('SCARD', base) + sharded)
+    end
+end
+
+for i = 0, total - 1 do
+    local k = i * stride
+    local counter = stride > 6 and KEYS[k + 7] or nil
+    -- 帖子侧集合的 基础 key、元数据 key
+    local c = k + (counterGroup == 2 and 3 or 0)
+    local firstMember, secondMember = ARGV[6 + i * 2], ARGV[7 + i * 2]
+    local result = 0
+
+    if op == 'add' then
+        local changed, firstSplit = add(KEYS[k + 1], KEYS[k + 2], KEYS[k + 3], firstMember)
+        if changed == 1 then
+            local _, secondSplit = add(KEYS[k + 4], KEYS[k + 5], KEYS[k + 6], secondMember)
+            if counter then
+                count(counter, KEYS[c + 1], KEYS[c + 3], 1)
+            end
+            result = 1 + (firstSplit and 2 or 0) + (secondSplit and 4 or 0)
+        end
+    else
+        if rem(KEYS[k + 1], KEYS[k + 2], KEYS[k + 3], firstMember) == 1 then
+            rem(KEYS[k + 4], KEYS[k + 5], KEYS[k + 6], secondMember)
+            if counter then
+                count(counter, KEYS[c + 1], KEYS[c + 3], -1)
+            end
+            result = 1
+        end
+    end
+    results[i + 1] = result
+end
+
+return results
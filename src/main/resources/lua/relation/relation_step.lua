@@ -0,0 +1,70 @@
+-- relation_step.lua
+-- 集群模式下关系操作的单 slot 步骤：关系两侧的集合在不同 slot，每次只修改一侧（批量关注、点赞等同样适用）
+-- KEYS: 每个条目依次占 ARGV[2] 个 key：
+--   集合的 基础 key、分片 key、分片元数据 key（如 user:follow:{followerId}、...:s:{n}、...:meta）[、同 slot 的帖子计数 hash（如 post:counter:{postId}）]
+-- ARGV[1]: 操作，add 或 rem
+-- ARGV[2]: 每个条目的 key 数，3 或 4（有计数 key）
+-- ARGV[3]: 分片阈值，基础集合成员数达到该值时进入分片状态，0 表示不分片
+-- ARGV[4]: 计数 hash 的字段（like、favorite），没有计数 key 时为空
+-- ARGV[5..]: 每个条目一个成员
+--
+-- 以集合自身判断状态：成员已是目标状态时不修改计数，
+-- 因此重复执行、按相反操作回滚都是幂等的，不会重复计数
+-- 返回：每个条目一个结果，按位：1 状态发生变化，2 集合本次进入分片状态（需要调用方迁移基础集合中的成员）
+
+local op = ARGV[1]
+local stride = tonumber(ARGV[2])
+local threshold = tonumber(ARGV[3])
+local field = ARGV[4]
+local items = #KEYS / stride
+local results = {}
+
+-- 计数：计数 hash 中没有该字段时（首次计数、Redis 数据重建）按帖子侧集合当前成员数初始化，集合已包含本次变更
+local function count(counter, base, meta, delta)
+    if redis.call('HEXISTS', counter, field) == 1 then
+        redis.call('HINCRBY', counter, field, delta)
+    else
+        local sharded = tonumber(redis.call('HGET', meta, 'count')) or 0
+        redis.call('HSET', counter, field, redis.call('SCARD', base) + sharded)
+    end
+end
+
+for i = 0, items - 1 do
+    local k = i * stride
+    local base, shard, meta = KEYS[k + 1], KEYS[k + 2], KEYS[k + 3]
+    local counter = stride > 3 and KEYS[k + 4] or nil
+    local member = ARGV[5 + i]
+    local sharded = redis.call('EXISTS', meta) == 1
+    local result = 0
+
+    if op == 'add' then
+        if sharded then
+            if redis.call('SISMEMBER', base, member) == 0 and redis.call('SADD', shard, member) == 1 then
+                redis.call('HINCRBY', meta, 'count', 1)
+                result = 1
+            end
+        elseif redis.call('SADD', base, member) == 1 then
+            result = 1
+            if threshold > 0 and redis.call('SCARD', base) >= threshold then
+                redis.call('HSET', meta, 'count', 0)
+                result = 3
+            end
+        end
+        if result > 0 and counter then
+            count(counter, base, meta, 1)
+        end
+    else
+        if redis.call('SREM', base, member) == 1 then
+            result = 1
+        elseif sharded and redis.call('SREM', shard, member) == 1 then
+            redis.call('HINCRBY', meta, 'count', -1)
+            result = 1
+        end
+        if result > 0 and counter then
+            count(counter, base, meta, -1)
+        end
+    end
+    results[i + 1] = result
+end
+
+return results
@@ -0,0 +1,34 @@
+-- scan_page.lua
+-- KEYS[1]: 关系集合 key（如 user:follower:{userId}）
+-- ARGV[1]: 起始游标，"0" 表示从头开始
+-- ARGV[2]: 每页期望数量
+-- ARGV[3]: 最多执行的 SSCAN 次数，避免稀疏集合上单次脚本执行过久
+--
+-- SSCAN 的 COUNT 只是提示，单次可能返回很少甚至零个成员，这里循环扫描直到凑够一页或遍历结束：
+-- 1. 从给定游标开始 SSCAN
+-- 2. 收集成员，凑够一页、游标回到 0 或达到扫描次数上限时停止
+-- 返回扁平列表：{下一页游标, member1, member2, ...}，游标为 "0" 表示遍历结束
+-- 遍历期间一直存在的成员至少返回一次，集合扩缩容时可能重复返回，调用方需去重
+
+local cursor = ARGV[1]
+local want = tonumber(ARGV[2])
+local maxRounds = tonumber(ARGV[3])
+local out = { cursor }
+local collected = 0
+
+for _ = 1, maxRounds do
+    -- 1. 从当前游标继续扫描
+    local result = redis.call('SSCAN', KEYS[1], cursor, 'COUNT', want - collected)
+    cursor = result[1]
+    -- 2. 收集成员
+    for _, member in ipairs(result[2]) do
+        table.insert(out, member)
+        collected = collected + 1
+    end
+    if cursor == '0' or collected >= want then
+        break
+    end
+end
+
+out[1] = cursor
+return out
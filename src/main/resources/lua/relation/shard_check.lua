@@ -0,0 +1,22 @@
+-- shard_check.lua
+-- 分片关系集合的批量成员检查
+-- KEYS[1]: 基础集合 key（如 user:follower:{userId}）
+-- KEYS[2]: 分片元数据 key（{基础 key}:meta），存在表示集合已分片
+-- KEYS[3..]: 每个成员所在的分片 key（{基础 key}:s:{n}）
+-- ARGV: 成员
+--
+-- 先查基础集合（未分片的集合、迁移中尚未移走的成员），已分片时再查成员所在分片
+-- 返回：每个成员一个结果，1 表示是成员
+
+local sharded = redis.call('EXISTS', KEYS[2]) == 1
+local results = {}
+
+for i, member in ipairs(ARGV) do
+    local found = redis.call('SISMEMBER', KEYS[1], member)
+    if found == 0 and sharded then
+        found = redis.call('SISMEMBER', KEYS[i + 2], member)
+    end
+    results[i] = found
+end
+
+return results
@@ -0,0 +1,22 @@
+-- shard_move.lua
+-- 把基础集合中的成员迁移到分片（集合达到分片阈值后由后台分页执行）
+-- KEYS[1]: 基础集合 key
+-- KEYS[2]: 分片元数据 key，count 字段为分片内成员数
+-- KEYS[3..]: 每个成员所在的分片 key
+-- ARGV: 成员
+--
+-- 成员已不在基础集合中（迁移期间被删除或已迁移）时跳过，可以重复执行
+-- 返回：迁移的成员数
+
+local moved = 0
+
+for i, member in ipairs(ARGV) do
+    if redis.call('SREM', KEYS[1], member) == 1 then
+        if redis.call('SADD', KEYS[i + 2], member) == 1 then
+            redis.call('HINCRBY', KEYS[2], 'count', 1)
+        end
+        moved = moved + 1
+    end
+end
+
+return moved
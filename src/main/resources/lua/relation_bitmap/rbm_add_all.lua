@@ -0,0 +1,44 @@
+-- rbm_add_all.lua
+-- KEYS[1]: 压缩位图集合的基础 key（rbm:{Set 布局的 key}）
+-- ARGV[1]: 数组容器最大成员数，超过后转换为位图容器
+-- ARGV[2..n]: 成员 id
+--
+-- 批量添加成员（从 Set 布局迁移时使用），已存在的成员跳过，可重复执行
+-- 布局说明见 rbm_update.lua
+-- 返回实际添加的成员数
+
+local CHUNK_SIZE = 65536
+local ARRAY_OFFSET = 32768
+
+local base = KEYS[1]
+local arrayMax = tonumber(ARGV[1])
+local added = 0
+
+for i = 2, #ARGV do
+    local id = tonumber(ARGV[i])
+    local chunk = math.floor(id / CHUNK_SIZE)
+    local low = id % CHUNK_SIZE
+    local key = base .. ':c:' .. chunk
+    local ok
+    if redis.call('TYPE', key)['ok'] == 'string' then
+        ok = redis.call('SETBIT', key, low, 1) == 0
+    else
+        ok = redis.call('SADD', key, low - ARRAY_OFFSET) == 1
+        if ok and redis.call('SCARD', key) > arrayMax then
+            local members = redis.call('SMEMBERS', key)
+            redis.call('DEL', key)
+            for _, m in ipairs(members) do
+                redis.call('SETBIT', key, tonumber(m) + ARRAY_OFFSET, 1)
+            end
+        end
+    end
+    if ok then
+        redis.call('SADD', base .. ':chunks', chunk)
+        added = added + 1
+    end
+end
+
+if added > 0 then
+    redis.call('INCRBY', base .. ':card', added)
+end
+return added
@@ -0,0 +1,31 @@
+-- rbm_check.lua
+-- KEYS[1]: 压缩位图集合的基础 key（rbm:{Set 布局的 key}）
+-- ARGV[1..n]: 待检查的成员 id
+--
+-- 批量检查成员是否存在，同一 chunk 的容器类型只查询一次
+-- 返回与 ARGV 顺序一致的列表，1 表示存在，0 表示不存在
+
+local CHUNK_SIZE = 65536
+local ARRAY_OFFSET = 32768
+
+local types = {}
+local out = {}
+
+for i = 1, #ARGV do
+    local id = tonumber(ARGV[i])
+    local low = id % CHUNK_SIZE
+    local key = KEYS[1] .. ':c:' .. math.floor(id / CHUNK_SIZE)
+    local t = types[key]
+    if t == nil then
+        t = redis.call('TYPE', key)['ok']
+        types[key] = t
+    end
+    if t == 'string' then
+        out[i] = redis.call('GETBIT', key, low)
+    elseif t == 'set' then
+        out[i] = redis.call('SISMEMBER', key, low - ARRAY_OFFSET)
+    else
+        out[i] = 0
+    end
+end
+return out
@@ -0,0 +1,56 @@
+-- rbm_intersect.lua
+-- KEYS[1]: 第一个压缩位图集合的基础 key
+-- KEYS[2]: 第二个压缩位图集合的基础 key
+--
+-- 求两个集合的交集，只访问两边都非空的 chunk：
+-- 1. 两边都是位图容器时逐字节按位与
+-- 2. 否则遍历数组容器的成员，在另一边的容器中检查
+-- 返回共同成员 id 列表
+
+local CHUNK_SIZE = 65536
+local ARRAY_OFFSET = 32768
+
+local out = {}
+
+for _, c in ipairs(redis.call('SINTER', KEYS[1] .. ':chunks', KEYS[2] .. ':chunks')) do
+    local chunk = tonumber(c)
+    local base = chunk * CHUNK_SIZE
+    local keyA = KEYS[1] .. ':c:' .. chunk
+    local keyB = KEYS[2] .. ':c:' .. chunk
+    local typeA = redis.call('TYPE', keyA)['ok']
+    local typeB = redis.call('TYPE', keyB)['ok']
+    if typeA == 'string' and typeB == 'string' then
+        -- 1. 位图与位图
+        local a = redis.call('GET', keyA)
+        local b = redis.call('GET', keyB)
+        for i = 1, math.min(#a, #b) do
+            local x = bit.band(string.byte(a, i), string.byte(b, i))
+            if x ~= 0 then
+                for j = 0, 7 do
+                    if bit.band(x, bit.rshift(128, j)) ~= 0 then
+                        table.insert(out, base + (i - 1) * 8 + j)
+                    end
+                end
+            end
+        end
+    elseif typeA == 'set' or typeB == 'set' then
+        -- 2. 数组容器逐个检查
+        local arrayKey, otherKey, otherType = keyA, keyB, typeB
+        if typeA ~= 'set' then
+            arrayKey, otherKey, otherType = keyB, keyA, typeA
+        end
+        for _, m in ipairs(redis.call('SMEMBERS', arrayKey)) do
+            local low = tonumber(m) + ARRAY_OFFSET
+            local hit
+            if otherType == 'string' then
+                hit = redis.call('GETBIT', otherKey, low) == 1
+            else
+                hit = redis.call('SISMEMBER', otherKey, m) == 1
+            end
+            if hit then
+                table.insert(out, base + low)
+            end
+        end
+    end
+end
+return out
@@ -0,0 +1,82 @@
+-- rbm_range.lua
+-- KEYS[1]: 压缩位图集合的基础 key（rbm:{Set 布局的 key}）
+-- ARGV[1]: 起始 id（包含），0 表示从头开始
+-- ARGV[2]: 最多返回数量
+--
+-- 按 id 升序分页读取成员：
+-- 1. 读取非空 chunk 编号并排序，跳过起始 id 之前的 chunk
+-- 2. 位图容器从起始字节开始按位解码，数组容器取出成员后排序
+-- 3. 凑够一页后，把下一个成员 id 作为下一页的起始 id
+-- 返回扁平列表：{下一页起始 id, id1, id2, ...}，下一页起始 id 为 0 表示遍历结束
+
+local CHUNK_SIZE = 65536
+local ARRAY_OFFSET = 32768
+
+local startId = tonumber(ARGV[1])
+local limit = tonumber(ARGV[2])
+local startChunk = math.floor(startId / CHUNK_SIZE)
+local out = { 0 }
+local count = 0
+
+local function emit(id)
+    if count >= limit then
+        out[1] = id
+        return true
+    end
+    table.insert(out, id)
+    count = count + 1
+    return false
+end
+
+-- 1. 非空 chunk 编号排序
+local chunks = {}
+for _, c in ipairs(redis.call('SMEMBERS', KEYS[1] .. ':chunks')) do
+    local chunk = tonumber(c)
+    if chunk >= startChunk then
+        table.insert(chunks, chunk)
+    end
+end
+table.sort(chunks)
+
+for _, chunk in ipairs(chunks) do
+    local key = KEYS[1] .. ':c:' .. chunk
+    local base = chunk * CHUNK_SIZE
+    local fromLow = 0
+    if chunk == startChunk then
+        fromLow = startId % CHUNK_SIZE
+    end
+    local t = redis.call('TYPE', key)['ok']
+    if t == 'string' then
+        -- 2. 位图容器按位解码，位偏移 0 为第一个字节的最高位
+        local fromByte = math.floor(fromLow / 8)
+        local bytes = redis.call('GETRANGE', key, fromByte, -1)
+        for i = 1, #bytes do
+            local b = string.byte(bytes, i)
+            if b ~= 0 then
+                for j = 0, 7 do
+                    if bit.band(b, bit.rshift(128, j)) ~= 0 then
+                        local low = (fromByte + i - 1) * 8 + j
+                        if low >= fromLow and emit(base + low) then
+                            return out
+                        end
+                    end
+                end
+            end
+        end
+    elseif t == 'set' then
+        local lows = {}
+        for _, m in ipairs(redis.call('SMEMBERS', key)) do
+            local low = tonumber(m) + ARRAY_OFFSET
+            if low >= fromLow then
+                table.insert(lows, low)
+            end
+        end
+        table.sort(lows)
+        for _, low in ipairs(lows) do
+            if emit(base + low) then
+                return out
+            end
+        end
+    end
+end
+return out
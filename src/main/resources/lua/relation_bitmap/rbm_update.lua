@@ -0,0 +1,108 @@
+-- rbm_update.lua
+-- KEYS[1..n]: 压缩位图集合的基础 key（rbm:{Set 布局的 key}），每个关系依次占 ARGV[3] 个 key，可以一次更新多个关系
+-- ARGV[1]: 操作，add 或 rem
+-- ARGV[2]: 数组容器最大成员数，超过后转换为位图容器
+-- ARGV[3]: 每个关系的 key 数
+-- ARGV[4..n+3]: 每个集合对应的成员 id
+--
+-- 压缩位图布局（参考 Roaring）：id 按高位分 chunk，每个 chunk 覆盖 65536 个 id，派生 key：
+--   {base}:c:{chunk}  容器：成员少时为 Set（数组容器，存 低16位-32768，intset 编码每个成员 2 字节），
+--                     成员超过阈值后转换为位图字符串（位图容器，最多 8KB）
+--   {base}:chunks     非空 chunk 编号集合
+--   {base}:card       集合基数
+--
+-- 原子性地对每个关系执行：
+-- 1. 检查第一个集合的成员状态，已经是目标状态时跳过（与 Set 布局脚本一致，防止重复添加/删除）
+-- 2. 对该关系的所有集合执行添加或删除，维护 chunk 索引和基数
+-- 3. 数组容器超过阈值时转换为位图容器，容器清空时删除
+-- 返回：每个关系一个结果，1 表示状态发生变化，0 表示已是目标状态
+
+local CHUNK_SIZE = 65536
+local ARRAY_OFFSET = 32768
+
+local function locate(base, id)
+    local chunk = math.floor(id / CHUNK_SIZE)
+    return base .. ':c:' .. chunk, chunk, id % CHUNK_SIZE
+end
+
+local function contains(key, low)
+    local t = redis.call('TYPE', key)['ok']
+    if t == 'string' then
+        return redis.call('GETBIT', key, low) == 1
+    elseif t == 'set' then
+        return redis.call('SISMEMBER', key, low - ARRAY_OFFSET) == 1
+    end
+    return false
+end
+
+local function add(base, id, arrayMax)
+    local key, chunk, low = locate(base, id)
+    local added
+    if redis.call('TYPE', key)['ok'] == 'string' then
+        added = redis.call('SETBIT', key, low, 1) == 0
+    else
+        added = redis.call('SADD', key, low - ARRAY_OFFSET) == 1
+        if added and redis.call('SCARD', key) > arrayMax then
+            -- 数组容器转换为位图容器
+            local members = redis.call('SMEMBERS', key)
+            redis.call('DEL', key)
+            for _, m in ipairs(members) do
+                redis.call('SETBIT', key, tonumber(m) + ARRAY_OFFSET, 1)
+            end
+        end
+    end
+    if added then
+        redis.call('SADD', base .. ':chunks', chunk)
+        redis.call('INCR', base .. ':card')
+    end
+end
+
+local function remove(base, id)
+    local key, chunk, low = locate(base, id)
+    local t = redis.call('TYPE', key)['ok']
+    local removed = false
+    if t == 'string' then
+        removed = redis.call('SETBIT', key, low, 0) == 1
+        if removed and redis.call('BITCOUNT', key) == 0 then
+            redis.call('DEL', key)
+        end
+    elseif t == 'set' then
+        -- 删除最后一个成员时 Redis 自动删除 key
+        removed = redis.call('SREM', key, low - ARRAY_OFFSET) == 1
+    end
+    if removed then
+        if redis.call('EXISTS', key) == 0 then
+            redis.call('SREM', base .. ':chunks', chunk)
+        end
+        if redis.call('DECR', base .. ':card') <= 0 then
+            redis.call('DEL', base .. ':card')
+        end
+    end
+end
+
+local op = ARGV[1]
+local arrayMax = tonumber(ARGV[2])
+local stride = tonumber(ARGV[3])
+local results = {}
+
+for r = 0, #KEYS / stride - 1 do
+    local base = r * stride
+    -- 1. 检查第一个集合的成员状态
+    local firstKey, _, firstLow = locate(KEYS[base + 1], tonumber(ARGV[base + 4]))
+    local present = contains(firstKey, firstLow)
+    if (op == 'add' and present) or (op == 'rem' and not present) then
+        results[r + 1] = 0
+    else
+        -- 2. 对该关系的所有集合执行添加或删除
+        for i = base + 1, base + stride do
+            local id = tonumber(ARGV[i + 3])
+            if op == 'add' then
+                add(KEYS[i], id, arrayMax)
+            else
+                remove(KEYS[i], id)
+            end
+        end
+        results[r + 1] = 1
+    end
+end
+return results
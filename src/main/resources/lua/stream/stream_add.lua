@@ -0,0 +1,23 @@
+-- stream_add.lua
+-- KEYS[1]: 消息流 (mq:stream:{topic})
+-- KEYS[2]: topic 注册集合 (mq:stream:topics)
+-- ARGV[1]: topic
+-- ARGV[2]: 流最大长度（近似裁剪）
+-- ARGV[3]: 消息 key
+-- ARGV[4]: 消息类型 (async / compensation)
+-- ARGV[5]: 消息体 JSON
+-- ARGV[6]: 发送时间戳（毫秒）
+--
+-- 原子性地执行：
+-- 1. XADD 追加消息，MAXLEN ~ 近似裁剪，避免流无限增长
+-- 2. 登记 topic，消费者据此发现需要读取的流
+-- 返回消息 ID
+
+-- 1. 追加消息
+local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[2], '*',
+    'key', ARGV[3], 'type', ARGV[4], 'payload', ARGV[5], 'ts', ARGV[6])
+
+-- 2. 登记 topic
+redis.call('SADD', KEYS[2], ARGV[1])
+
+return id
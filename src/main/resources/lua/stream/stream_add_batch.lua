@@ -0,0 +1,23 @@
+-- stream_add_batch.lua
+-- KEYS[1]: 消息流 (mq:stream:{topic})
+-- KEYS[2]: topic 注册集合 (mq:stream:topics)
+-- ARGV[1]: topic
+-- ARGV[2]: 流最大长度（近似裁剪）
+-- ARGV[3]: 发送时间戳（毫秒）
+-- ARGV[4..]: 每条消息三个参数：消息 key、消息类型、消息体 JSON
+--
+-- 一次往返追加一批消息：
+-- 1. 按顺序 XADD，MAXLEN ~ 近似裁剪
+-- 2. 登记 topic
+-- 返回追加的消息数
+
+local count = 0
+for i = 4, #ARGV, 3 do
+    redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[2], '*',
+        'key', ARGV[i], 'type', ARGV[i + 1], 'payload', ARGV[i + 2], 'ts', ARGV[3])
+    count = count + 1
+end
+
+redis.call('SADD', KEYS[2], ARGV[1])
+
+return count
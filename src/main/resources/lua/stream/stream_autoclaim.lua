@@ -0,0 +1,28 @@
+-- stream_autoclaim.lua（需要 Redis >= 6.2）
+-- KEYS[1]: 消息流 (mq:stream:{topic})
+-- ARGV[1]: 消费组名称
+-- ARGV[2]: 认领方消费者名称
+-- ARGV[3]: 最小空闲时间（毫秒），超过该时间未 ACK 的消息视为卡住
+-- ARGV[4]: 扫描起始 ID
+-- ARGV[5]: 单次最多认领数量
+--
+-- XAUTOCLAIM 把其他消费者（通常已宕机）长时间未确认的消息转移给当前消费者
+-- 返回扁平列表：{下次扫描起始ID, id1, key1, type1, payload1, id2, ...}
+-- 已被裁剪删除的消息不返回
+
+local result = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])
+local out = { result[1] }
+for _, entry in ipairs(result[2]) do
+    local fields = entry[2]
+    if fields then
+        local values = {}
+        for i = 1, #fields, 2 do
+            values[fields[i]] = fields[i + 1]
+        end
+        table.insert(out, entry[1])
+        table.insert(out, values['key'] or '')
+        table.insert(out, values['type'] or '')
+        table.insert(out, values['payload'] or '')
+    end
+end
+return out
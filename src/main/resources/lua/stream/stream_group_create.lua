@@ -0,0 +1,15 @@
+-- stream_group_create.lua
+-- KEYS[1]: 消息流 (mq:stream:{topic})
+-- ARGV[1]: 消费组名称
+--
+-- 创建消费组（流不存在时一并创建），从流的起点开始消费，保证创建组之前写入的消息也能被消费
+-- 返回 1 表示新建，0 表示消费组已存在
+
+local ok, err = pcall(redis.call, 'XGROUP', 'CREATE', KEYS[1], ARGV[1], '0', 'MKSTREAM')
+if ok then
+    return 1
+end
+if string.find(tostring(err), 'BUSYGROUP') then
+    return 0
+end
+return redis.error_reply(tostring(err))
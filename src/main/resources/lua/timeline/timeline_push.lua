@@ -0,0 +1,23 @@
+-- timeline_push.lua
+-- 集群模式下发布帖子的用户侧步骤（帖子缓存 post:{postId} 在其他 slot，由调用方单独写入）
+-- KEYS[1]: user post list key (user:post:rel:{userId})
+-- KEYS[2]: empty marker key (user:post:empty:{userId})，与列表同 slot，代替单机模式的全局空用户 Set
+-- ARGV[1]: postId
+-- ARGV[2]: max list size (用户帖子列表上限)
+--
+-- 原子性地执行：
+-- 1. 删除空用户标记（用户现在有帖子了）
+-- 2. 将帖子ID添加到用户帖子列表头部
+-- 3. 超过上限时删除尾部元素（最旧的帖子）
+
+redis.call('DEL', KEYS[2])
+redis.call('LPUSH', KEYS[1], ARGV[1])
+
+local listSize = redis.call('LLEN', KEYS[1])
+local maxSize = tonumber(ARGV[2])
+if listSize > maxSize then
+    redis.call('LTRIM', KEYS[1], 0, maxSize - 1)
+    return listSize - maxSize
+end
+
+return 0
@@ -0,0 +1,19 @@
+-- timeline_remove.lua
+-- 集群模式下删除帖子的用户侧步骤（帖子缓存 post:{postId} 在其他 slot，由调用方单独删除）
+-- KEYS[1]: user post list key (user:post:rel:{userId})
+-- KEYS[2]: empty marker key (user:post:empty:{userId})，与列表同 slot，代替单机模式的全局空用户 Set
+-- ARGV[1]: postId
+-- ARGV[2]: empty marker expire time (秒)
+--
+-- 原子性地执行：
+-- 1. 从用户帖子列表中移除该帖子ID
+-- 2. 如果用户帖子列表为空，删除列表key并设置空用户标记
+
+local removedCount = redis.call('LREM', KEYS[1], 0, ARGV[1])
+
+if redis.call('LLEN', KEYS[1]) == 0 then
+    redis.call('DEL', KEYS[1])
+    redis.call('SET', KEYS[2], '1', 'EX', ARGV[2])
+end
+
+return removedCount
@@ -0,0 +1,57 @@
+-- buffer_claim.lua
+-- KEYS[1]: 待刷写key集合 (dirty:due)，score 为到期时间
+-- KEYS[2]: 刷写中key集合 (dirty:inflight)，score 为租约到期时间
+-- KEYS[3...]: 每个候选key两个：待刷写数据 hash (dirty:{cacheKey})、刷写中数据 hash (dirty:inflight:{cacheKey})
+-- ARGV[1]: 当前时间戳（毫秒）
+-- ARGV[2]: 租约到期时间戳（毫秒）
+-- ARGV[3]: 本次认领的租约凭证（全局唯一），新认领的批次同时用作批次号
+-- ARGV[4]: 候选key中租约已过期的数量，排在前面
+-- ARGV[5...]: 候选key，由调用方按 ZRANGEBYSCORE 读取，脚本内重新校验
+--
+-- 原子性地执行：
+-- 1. 接管租约已过期的key（持有节点宕机或刷库失败等待重试）：刷写中数据原样保留（包括批次号），只换租约凭证，
+--    接管节点按批次号在数据库中去重，原持有节点已写库的批次不会再写一次
+-- 2. 认领到期的key：移出待刷写集合，数据 hash 改名为刷写中 hash，写入租约凭证和批次号并登记租约
+-- 3. 返回本次认领到的key列表
+-- 同一个key同一时刻只会被一个节点认领，从而保证每个刷新窗口只有一次数据库写入
+
+local now = tonumber(ARGV[1])
+local expiredCount = tonumber(ARGV[4])
+local claimed = {}
+
+for i = 5, #ARGV do
+    local key = ARGV[i]
+    local dirtyKey = KEYS[(i - 5) * 2 + 3]
+    local inflightKey = KEYS[(i - 5) * 2 + 4]
+    if i - 4 <= expiredCount then
+        -- 1. 接管过期租约
+        local score = redis.call('ZSCORE', KEYS[2], key)
+        if score and tonumber(score) <= now then
+            if redis.call('EXISTS', inflightKey) == 1 then
+                redis.call('HSET', inflightKey, 'l', ARGV[3])
+                redis.call('ZADD', KEYS[2], ARGV[2], key)
+                table.insert(claimed, key)
+            else
+                redis.call('ZREM', KEYS[2], key)
+            end
+        end
+    else
+        -- 2. 认领到期key
+        local score = redis.call('ZSCORE', KEYS[1], key)
+        if score and tonumber(score) <= now then
+            redis.call('ZREM', KEYS[1], key)
+            if redis.call('EXISTS', inflightKey) == 1 then
+                -- 上一批仍在刷写中，顺延到其租约到期后再处理，保证同一key只有一个写者
+                redis.call('ZADD', KEYS[1], ARGV[2], key)
+            elseif redis.call('EXISTS', dirtyKey) == 1 then
+                redis.call('RENAME', dirtyKey, inflightKey)
+                redis.call('HSET', inflightKey, 'l', ARGV[3], 'b', ARGV[3])
+                redis.call('ZADD', KEYS[2], ARGV[2], key)
+                table.insert(claimed, key)
+            end
+        end
+    end
+end
+
+-- 3. 返回认领结果
+return claimed
@@ -0,0 +1,27 @@
+-- buffer_complete.lua
+-- KEYS[1]: 刷写中key集合 (dirty:inflight)
+-- KEYS[2]: 刷写中数据 hash (dirty:inflight:{cacheKey})
+-- ARGV[1]: cacheKey
+-- ARGV[2]: 认领时的租约凭证
+-- ARGV[3]: 重试时间戳（毫秒），0 表示刷库成功
+--
+-- 原子性地执行：
+-- 1. 校验租约仍由当前节点持有（租约过期后可能已被其他节点接管）
+-- 2. 刷库成功：删除刷写中数据和租约
+-- 3. 刷库失败：将租约顺延到重试时间，到期后由认领脚本连同批次号一起交给下一个认领者
+
+-- 1. 校验持有凭证
+if not redis.call('ZSCORE', KEYS[1], ARGV[1]) or redis.call('HGET', KEYS[2], 'l') ~= ARGV[2] then
+    return 0
+end
+
+-- 2. 刷库成功
+if tonumber(ARGV[3]) == 0 then
+    redis.call('ZREM', KEYS[1], ARGV[1])
+    redis.call('DEL', KEYS[2])
+    return 1
+end
+
+-- 3. 刷库失败，等待重试
+redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+return 1
@@ -0,0 +1,34 @@
+-- buffer_write.lua
+-- KEYS[1]: 待刷写数据 hash (dirty:{cacheKey})
+-- KEYS[2]: 待刷写key集合 (dirty:due)，score 为到期时间
+-- ARGV[1]: cacheKey（有序集合成员）
+-- ARGV[2]: 到期时间戳（毫秒）
+-- ARGV[3]: 方法标识 (methodId)
+-- ARGV[4]: 原始参数 JSON（刷库时的参数模板）
+-- ARGV[5...]: 变更三元组 (类型, 参数下标, 值)，类型：i=整数增量, f=浮点增量, s=覆盖值(JSON)
+--
+-- 原子性地执行：
+-- 1. 记录方法标识与原始参数（只在首次写入时记录，与本地缓冲保留第一次调用的语义一致）
+-- 2. 按类型合并变更：整数 HINCRBY，浮点 HINCRBYFLOAT，覆盖 HSET
+-- 3. 将 key 加入待刷写集合，已存在时保留原到期时间（NX），保持固定刷新周期
+
+-- 1. 记录方法标识与参数模板
+redis.call('HSETNX', KEYS[1], 'm', ARGV[3])
+redis.call('HSETNX', KEYS[1], 'a', ARGV[4])
+
+-- 2. 合并变更
+for i = 5, #ARGV, 3 do
+    local kind = ARGV[i]
+    local field = ARGV[i + 1]
+    local value = ARGV[i + 2]
+    if kind == 'i' then
+        redis.call('HINCRBY', KEYS[1], 'i:' .. field, value)
+    elseif kind == 'f' then
+        redis.call('HINCRBYFLOAT', KEYS[1], 'f:' .. field, value)
+    else
+        redis.call('HSET', KEYS[1], 's:' .. field, value)
+    end
+end
+
+-- 3. 登记到期时间，返回1表示本次新登记
+return redis.call('ZADD', KEYS[2], 'NX', ARGV[2], ARGV[1])
@@ -0,0 +1,62 @@
+package com.wait.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * RedisKeyLayout 单元测试：单机/集群两种布局下 key 与 id 互转、hash tag 使同一 id 的 key 落在同一 slot
+ * 连接工厂只用于判断模式，不建立连接
+ */
+public class RedisKeyLayoutTest {
+
+    private static final String FOLLOW = "user:follow:";
+    private static final String FOLLOWER = "user:follower:";
+
+    private final RedisKeyLayout standalone = new RedisKeyLayout(new LettuceConnectionFactory());
+    private final RedisKeyLayout cluster = new RedisKeyLayout(new LettuceConnectionFactory(
+            new RedisClusterConfiguration(Collections.singletonList("127.0.0.1:7000"))));
+
+    @Test
+    void detectsClusterMode() {
+        assertFalse(standalone.isCluster());
+        assertTrue(cluster.isCluster());
+    }
+
+    @Test
+    void standaloneKeepsPlainKeys() {
+        assertEquals("user:follow:42", standalone.key(FOLLOW, 42L));
+        assertEquals("42", standalone.idOf(FOLLOW, "user:follow:42"));
+        assertNull(standalone.idOf(FOLLOWER, "user:follow:42"));
+        assertNull(standalone.idOf(FOLLOW, null));
+    }
+
+    @Test
+    void clusterWrapsIdInHashTag() {
+        assertEquals("user:follow:{42}", cluster.key(FOLLOW, 42L));
+        assertEquals("42", cluster.idOf(FOLLOW, cluster.key(FOLLOW, 42L)));
+        // 集群布局下不带 hash tag 的旧 key 不识别
+        assertNull(cluster.idOf(FOLLOW, "user:follow:42"));
+        assertNull(cluster.idOf(FOLLOW, "user:follow:{42"));
+        assertNull(cluster.idOf(FOLLOW, "user:follow:"));
+    }
+
+    @Test
+    void sameIdKeysShareSlotOnlyInClusterLayout() {
+        assertTrue(RedisKeyLayout.sameSlot(Arrays.asList(cluster.key(FOLLOW, 7), cluster.key(FOLLOWER, 7),
+                cluster.key("post:counter:", 7))));
+        assertEquals(RedisKeyLayout.slot("{7}"), RedisKeyLayout.slot(cluster.key(FOLLOW, 7)));
+        assertFalse(RedisKeyLayout.sameSlot(Arrays.asList(standalone.key(FOLLOW, 7), standalone.key(FOLLOWER, 7))));
+        assertNotEquals(RedisKeyLayout.slot(cluster.key(FOLLOW, 7)), RedisKeyLayout.slot(cluster.key(FOLLOW, 8)));
+        assertTrue(RedisKeyLayout.sameSlot(Collections.emptyList()));
+    }
+}
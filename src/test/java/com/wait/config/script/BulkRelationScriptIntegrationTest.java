@@ -0,0 +1,150 @@
+package com.wait.config.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.wait.service.impl.ShardedRelationSets;
+import com.wait.support.LiveRedis;
+
+/**
+ * bulk_relation.lua 集成测试：一次调用处理多对关系、同批重复操作只生效一次、帖子计数初始化与加减、
+ * 达到阈值时进入分片状态并把新成员写入分片
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class BulkRelationScriptIntegrationTest {
+
+    private final LiveRedis redis = new LiveRedis();
+    private final RelationScripts scripts = new RelationScripts(redis.template());
+
+    @AfterEach
+    void cleanUp() {
+        redis.close();
+    }
+
+    @Test
+    void appliesEachPairOnceWithinBatch() {
+        Batch follow = new Batch();
+        follow.pair(following(1), "2", followers(2), "1");
+        follow.pair(following(1), "3", followers(3), "1");
+        follow.pair(following(1), "2", followers(2), "1");
+
+        assertEquals(Arrays.asList(1L, 1L, 0L), follow.run("add", 0));
+        assertEquals(new HashSet<>(Arrays.asList("2", "3")), redis.template().opsForSet().members(following(1)));
+        assertTrue(redis.template().opsForSet().isMember(followers(2), "1"));
+
+        Batch unfollow = new Batch();
+        unfollow.pair(following(1), "2", followers(2), "1");
+        unfollow.pair(following(1), "4", followers(4), "1");
+        assertEquals(Arrays.asList(1L, 0L), unfollow.run("rem", 0));
+        assertFalse(redis.template().opsForSet().isMember(followers(2), "1"));
+        assertTrue(redis.template().opsForSet().isMember(following(1), "3"));
+    }
+
+    @Test
+    void maintainsPostCounter() {
+        String likes = redis.key("post:like:7");
+        String counter = redis.key("post:counter:7");
+        // 计数字段不存在时按点赞集合当前成员数初始化
+        redis.template().opsForSet().add(likes, "100", "101");
+
+        Batch like = new Batch();
+        like.counted(likes, "1", redis.key("user:like:1"), "7", counter);
+        like.counted(likes, "2", redis.key("user:like:2"), "7", counter);
+        like.counted(likes, "1", redis.key("user:like:1"), "7", counter);
+        assertEquals(Arrays.asList(1L, 1L, 0L), like.runCounted("add", "like", 1));
+        assertEquals("4", redis.template().opsForHash().get(counter, "like"));
+
+        Batch unlike = new Batch();
+        unlike.counted(likes, "1", redis.key("user:like:1"), "7", counter);
+        unlike.counted(likes, "9", redis.key("user:like:9"), "7", counter);
+        assertEquals(Arrays.asList(1L, 0L), unlike.runCounted("rem", "like", 1));
+        assertEquals("3", redis.template().opsForHash().get(counter, "like"));
+    }
+
+    @Test
+    void splitsAtThresholdAndWritesNewMembersToShards() {
+        Batch first = new Batch();
+        first.pair(following(1), "50", followers(50), "1");
+        first.pair(following(2), "50", followers(50), "2");
+        // 第二对使粉丝集合达到阈值
+        assertEquals(Arrays.asList(1L, 1L | 4L), first.run("add", 2));
+        assertEquals("0", redis.template().opsForHash().get(ShardedRelationSets.metaKey(followers(50)), "count"));
+
+        Batch second = new Batch();
+        second.pair(following(1), "60", followers(60), "1");
+        second.pair(following(3), "50", followers(50), "3");
+        // 关注集合达到阈值；已分片的粉丝集合新成员写入分片
+        assertEquals(Arrays.asList(1L | 2L, 1L), second.run("add", 2));
+        String shard = ShardedRelationSets.shardKey(followers(50), ShardedRelationSets.shardOf("3"));
+        assertTrue(redis.template().opsForSet().isMember(shard, "3"));
+        assertEquals(2L, redis.template().opsForSet().size(followers(50)));
+        assertEquals("1", redis.template().opsForHash().get(ShardedRelationSets.metaKey(followers(50)), "count"));
+
+        // 基础集合中的成员在分片状态下仍视为已存在
+        Batch duplicate = new Batch();
+        duplicate.pair(following(4), "50", followers(50), "1");
+        duplicate.pair(following(3), "50", followers(50), "3");
+        assertEquals(Arrays.asList(1L, 0L), duplicate.run("add", 2));
+
+        Batch remove = new Batch();
+        remove.pair(following(3), "50", followers(50), "3");
+        remove.pair(following(2), "50", followers(50), "2");
+        assertEquals(Arrays.asList(1L, 1L), remove.run("rem", 2));
+        assertFalse(redis.template().opsForSet().isMember(shard, "3"));
+        assertEquals("0", redis.template().opsForHash().get(ShardedRelationSets.metaKey(followers(50)), "count"));
+        assertEquals(new HashSet<>(Arrays.asList("1")), redis.template().opsForSet().members(followers(50)));
+    }
+
+    private String following(long userId) {
+        return redis.key("user:follow:" + userId);
+    }
+
+    private String followers(long userId) {
+        return redis.key("user:follower:" + userId);
+    }
+
+    /**
+     * 按脚本约定拼接每对关系的 key 和成员
+     */
+    private final class Batch {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Object> members = new ArrayList<>();
+
+        void pair(String firstBase, String firstMember, String secondBase, String secondMember) {
+            keys.addAll(ShardedRelationSets.keyGroup(firstBase, firstMember));
+            keys.addAll(ShardedRelationSets.keyGroup(secondBase, secondMember));
+            members.add(firstMember);
+            members.add(secondMember);
+        }
+
+        void counted(String firstBase, String firstMember, String secondBase, String secondMember, String counter) {
+            pair(firstBase, firstMember, secondBase, secondMember);
+            keys.add(counter);
+        }
+
+        List<Long> run(String op, long threshold) {
+            return execute(op, 6, threshold, "", 1);
+        }
+
+        List<Long> runCounted(String op, String field, int counterGroup) {
+            return execute(op, 7, 0, field, counterGroup);
+        }
+
+        private List<Long> execute(String op, int stride, long threshold, String field, int counterGroup) {
+            List<Object> args = new ArrayList<>(Arrays.asList(op, stride, threshold, field, counterGroup));
+            args.addAll(members);
+            return scripts.executeScript(RelationScripts.BULK_RELATION, keys, args.toArray());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.wait.config.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.wait.support.LiveRedis;
+
+/**
+ * 分块压缩位图脚本集成测试：两侧原子更新与基数维护、数组容器转换为位图容器、批量检查、
+ * 跨 chunk 按 id 升序分页（位图按高位在前解码）、两种容器组合下的交集
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class RelationBitmapScriptsIntegrationTest {
+
+    private static final long CHUNK = 65536;
+
+    private final LiveRedis redis = new LiveRedis();
+    private final RelationBitmapScripts scripts = new RelationBitmapScripts(redis.template());
+
+    @AfterEach
+    void cleanUp() {
+        redis.close();
+    }
+
+    @Test
+    void updateChangesBothSidesOnce() {
+        String follow = redis.key("rbm:user:follow:1");
+        String follower = redis.key("rbm:user:follower:2");
+
+        assertEquals(Collections.singletonList(1L), update("add", 16, follow, 2L, follower, 1L));
+        assertEquals(Collections.singletonList(0L), update("add", 16, follow, 2L, follower, 1L));
+        assertEquals("1", redis.template().opsForValue().get(follow + ":card"));
+        assertEquals("1", redis.template().opsForValue().get(follower + ":card"));
+        assertEquals(Arrays.asList(1L), check(follow, 2L));
+
+        assertEquals(Collections.singletonList(1L), update("rem", 16, follow, 2L, follower, 1L));
+        assertEquals(Collections.singletonList(0L), update("rem", 16, follow, 2L, follower, 1L));
+        // 清空后容器、chunk 索引和基数都被删除
+        for (String base : Arrays.asList(follow, follower)) {
+            assertFalse(redis.template().hasKey(base + ":card"));
+            assertFalse(redis.template().hasKey(base + ":chunks"));
+            assertFalse(redis.template().hasKey(base + ":c:0"));
+        }
+    }
+
+    @Test
+    void arrayContainerTurnsIntoBitmapPastThreshold() {
+        String base = redis.key("rbm:post:like:1");
+        assertEquals(3L, addAll(base, 4, 0L, 9L, 65535L));
+        assertEquals("set", type(base + ":c:0"));
+
+        assertEquals(2L, addAll(base, 4, 9L, 100L, 7L));
+        assertEquals("string", type(base + ":c:0"));
+        // 位图偏移即 chunk 内低 16 位
+        assertTrue(redis.template().opsForValue().getBit(base + ":c:0", 9));
+        assertTrue(redis.template().opsForValue().getBit(base + ":c:0", 65535));
+        assertEquals("5", redis.template().opsForValue().get(base + ":card"));
+        assertEquals(Arrays.asList(1L, 1L, 1L, 0L, 0L), check(base, 0L, 100L, 65535L, 8L, CHUNK));
+    }
+
+    @Test
+    void bitmapMemberRemovedUntilEmptyDropsChunk() {
+        String base = redis.key("rbm:user:follow:3");
+        String other = redis.key("rbm:user:follower:x");
+        addAll(base, 1, 10L, 11L);
+        assertEquals("string", type(base + ":c:0"));
+
+        update("rem", 1, base, 10L, other, 3L);
+        assertEquals("string", type(base + ":c:0"));
+        update("rem", 1, base, 11L, other, 3L);
+        assertFalse(redis.template().hasKey(base + ":c:0"));
+        assertFalse(redis.template().hasKey(base + ":chunks"));
+        assertFalse(redis.template().hasKey(base + ":card"));
+    }
+
+    @Test
+    void rangePagesInIdOrderAcrossChunksAndContainers() {
+        String base = redis.key("rbm:user:follower:4");
+        // chunk 0 为位图容器，chunk 1 为数组容器，chunk 3 只有一个成员
+        List<Long> ids = Arrays.asList(1L, 2L, 8L, 15L, 16L, 4095L, CHUNK + 10, CHUNK + 3, 3 * CHUNK + 7);
+        addAll(base, 3, 1L, 2L, 8L, 15L, 16L, 4095L);
+        addAll(base, 3, CHUNK + 10, CHUNK + 3, 3 * CHUNK + 7);
+        assertEquals("string", type(base + ":c:0"));
+        assertEquals("set", type(base + ":c:1"));
+
+        List<Long> first = range(base, 0, 4);
+        assertEquals(Arrays.asList(16L, 1L, 2L, 8L, 15L), first);
+
+        List<Long> all = new ArrayList<>();
+        long start = 0;
+        int pages = 0;
+        do {
+            List<Long> page = range(base, start, 4);
+            assertTrue(page.size() - 1 <= 4);
+            all.addAll(page.subList(1, page.size()));
+            start = page.get(0);
+            pages++;
+        } while (start != 0 && pages < 10);
+
+        assertEquals(new ArrayList<>(new TreeSet<>(ids)), all);
+        assertEquals(3, pages);
+        // 起始 id 在 chunk 中间
+        assertEquals(Arrays.asList(0L, CHUNK + 3, CHUNK + 10, 3 * CHUNK + 7), range(base, CHUNK, 10));
+        assertEquals(Arrays.asList(0L, 16L, 4095L, CHUNK + 3), range(base, 16, 10).subList(0, 4));
+    }
+
+    @Test
+    void intersectHandlesEveryContainerPair() {
+        String a = redis.key("rbm:user:follow:5");
+        String b = redis.key("rbm:user:follow:6");
+        // chunk 0：位图 ∩ 数组；chunk 1：位图 ∩ 位图；chunk 2：数组 ∩ 数组；chunk 4 只在一边
+        addAll(a, 2, 1L, 2L, 3L, 4L, 5L);
+        addAll(b, 8, 2L, 4L, 100L);
+        addAll(a, 2, CHUNK + 1, CHUNK + 9, CHUNK + 20);
+        addAll(b, 2, CHUNK + 9, CHUNK + 20, CHUNK + 21);
+        addAll(a, 8, 2 * CHUNK + 5, 2 * CHUNK + 6);
+        addAll(b, 8, 2 * CHUNK + 6);
+        addAll(a, 8, 4 * CHUNK);
+
+        List<Long> common = scripts.executeScript(RelationBitmapScripts.RBM_INTERSECT, Arrays.asList(a, b));
+        List<Long> reversed = scripts.executeScript(RelationBitmapScripts.RBM_INTERSECT, Arrays.asList(b, a));
+
+        List<Long> expected = Arrays.asList(2L, 4L, CHUNK + 9, CHUNK + 20, 2 * CHUNK + 6);
+        assertEquals(new HashSet<>(expected), new HashSet<>(common));
+        assertEquals(expected.size(), common.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(reversed));
+    }
+
+    private List<Long> update(String op, int arrayMax, String firstKey, long firstMember, String secondKey,
+            long secondMember) {
+        return scripts.executeScript(RelationBitmapScripts.RBM_UPDATE, Arrays.asList(firstKey, secondKey), op,
+                arrayMax, 2, firstMember, secondMember);
+    }
+
+    private long addAll(String base, int arrayMax, Long... ids) {
+        Object[] args = new Object[ids.length + 1];
+        args[0] = arrayMax;
+        System.arraycopy(ids, 0, args, 1, ids.length);
+        Long added = scripts.executeScript(RelationBitmapScripts.RBM_ADD_ALL, Collections.singletonList(base), args);
+        return added;
+    }
+
+    private List<Long> check(String base, Long... ids) {
+        return scripts.executeScript(RelationBitmapScripts.RBM_CHECK, Collections.singletonList(base),
+                (Object[]) ids);
+    }
+
+    private List<Long> range(String base, long start, int limit) {
+        return scripts.executeScript(RelationBitmapScripts.RBM_RANGE, Collections.singletonList(base), start, limit);
+    }
+
+    private String type(String key) {
+        return redis.template().type(key).code();
+    }
+}
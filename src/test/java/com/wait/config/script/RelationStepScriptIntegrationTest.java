@@ -0,0 +1,106 @@
+package com.wait.config.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.wait.service.impl.ShardedRelationSets;
+import com.wait.support.LiveRedis;
+
+/**
+ * relation_step.lua 集成测试：单侧步骤以集合自身判断状态，重复执行和按相反操作回滚都幂等，
+ * 计数随同侧步骤维护，达到阈值时进入分片状态
+ * 使用单机 Redis 执行，key 按集群布局带 hash tag
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class RelationStepScriptIntegrationTest {
+
+    private final LiveRedis redis = new LiveRedis();
+    private final RelationScripts scripts = new RelationScripts(redis.template());
+
+    @AfterEach
+    void cleanUp() {
+        redis.close();
+    }
+
+    @Test
+    void repeatedAndReversedStepsAreIdempotent() {
+        String following = redis.key("user:follow:{1}");
+
+        assertEquals(Arrays.asList(1L, 1L, 0L), step("add", 0, following, "2", "3", "2"));
+        assertEquals(Arrays.asList(0L, 0L), step("add", 0, following, "2", "3"));
+        // 回滚：相反操作只撤销确实存在的成员
+        assertEquals(Arrays.asList(1L, 0L), step("rem", 0, following, "2", "4"));
+        assertEquals(Arrays.asList(0L), step("rem", 0, following, "2"));
+        assertFalse(redis.template().opsForSet().isMember(following, "2"));
+        assertTrue(redis.template().opsForSet().isMember(following, "3"));
+    }
+
+    @Test
+    void counterFollowsStepOutcome() {
+        String likes = redis.key("post:like:{7}");
+        String counter = redis.key("post:counter:{7}");
+        redis.template().opsForSet().add(likes, "100");
+
+        assertEquals(Arrays.asList(1L, 1L, 0L), countedStep("add", likes, counter, "1", "2", "1"));
+        // 计数字段不存在时按集合当前成员数初始化，之后加减
+        assertEquals("3", redis.template().opsForHash().get(counter, "like"));
+
+        assertEquals(Arrays.asList(1L, 0L), countedStep("rem", likes, counter, "1", "1"));
+        assertEquals("2", redis.template().opsForHash().get(counter, "like"));
+        assertEquals(Arrays.asList(0L), countedStep("rem", likes, counter, "9"));
+        assertEquals("2", redis.template().opsForHash().get(counter, "like"));
+    }
+
+    @Test
+    void splitsAtThresholdAndUsesShardsAfterwards() {
+        String followers = redis.key("user:follower:{50}");
+        String meta = ShardedRelationSets.metaKey(followers);
+
+        assertEquals(Arrays.asList(1L, 1L | 2L), step("add", 2, followers, "1", "2"));
+        assertEquals("0", redis.template().opsForHash().get(meta, "count"));
+
+        assertEquals(Arrays.asList(1L, 0L), step("add", 2, followers, "3", "1"));
+        String shard = ShardedRelationSets.shardKey(followers, ShardedRelationSets.shardOf("3"));
+        assertTrue(redis.template().opsForSet().isMember(shard, "3"));
+        assertEquals("1", redis.template().opsForHash().get(meta, "count"));
+        assertEquals(2L, redis.template().opsForSet().size(followers));
+
+        assertEquals(Arrays.asList(1L, 1L), step("rem", 2, followers, "3", "1"));
+        assertEquals("0", redis.template().opsForHash().get(meta, "count"));
+        assertFalse(redis.template().opsForSet().isMember(followers, "1"));
+    }
+
+    private List<Long> step(String op, long threshold, String base, String... members) {
+        List<String> keys = new ArrayList<>();
+        for (String member : members) {
+            keys.addAll(ShardedRelationSets.keyGroup(base, member));
+        }
+        return execute(keys, op, 3, threshold, "", members);
+    }
+
+    private List<Long> countedStep(String op, String base, String counter, String... members) {
+        List<String> keys = new ArrayList<>();
+        for (String member : members) {
+            keys.addAll(ShardedRelationSets.keyGroup(base, member));
+            keys.add(counter);
+        }
+        return execute(keys, op, 4, 0, "like", members);
+    }
+
+    private List<Long> execute(List<String> keys, String op, int stride, long threshold, String field,
+            String... members) {
+        List<Object> args = new ArrayList<>(Arrays.asList(op, stride, threshold, field));
+        args.addAll(Arrays.asList(members));
+        return scripts.executeScript(RelationScripts.RELATION_STEP, keys, args.toArray());
+    }
+}
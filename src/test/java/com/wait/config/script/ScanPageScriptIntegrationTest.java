@@ -0,0 +1,79 @@
+package com.wait.config.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.wait.entity.CursorPage;
+import com.wait.support.LiveRedis;
+
+/**
+ * scan_page.lua 集成测试：循环 SSCAN 凑够一页，游标遍历完整个集合，空集合直接结束
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class ScanPageScriptIntegrationTest {
+
+    private final LiveRedis redis = new LiveRedis();
+    private final RelationScripts scripts = new RelationScripts(redis.template());
+
+    @AfterEach
+    void cleanUp() {
+        redis.close();
+    }
+
+    @Test
+    void cursorWalksWholeSet() {
+        String key = redis.key("user:follower:1");
+        int total = 2_500;
+        String[] members = new String[total];
+        for (int i = 0; i < total; i++) {
+            members[i] = String.valueOf(i);
+        }
+        redis.template().opsForSet().add(key, members);
+
+        Set<String> seen = new HashSet<>();
+        String cursor = CursorPage.START;
+        int pages = 0;
+        do {
+            List<String> page = scan(key, cursor, 100, 16);
+            cursor = page.get(0);
+            seen.addAll(page.subList(1, page.size()));
+            pages++;
+        } while (!CursorPage.START.equals(cursor) && pages < total);
+
+        assertEquals(total, seen.size());
+        assertTrue(pages > 1, "pages: " + pages);
+    }
+
+    @Test
+    void smallSetFitsInOnePage() {
+        String key = redis.key("user:follower:2");
+        redis.template().opsForSet().add(key, "1", "2", "3");
+
+        List<String> page = scan(key, CursorPage.START, 100, 16);
+
+        assertEquals(CursorPage.START, page.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), new HashSet<>(page.subList(1, 4)));
+    }
+
+    @Test
+    void missingKeyFinishesImmediately() {
+        List<String> page = scan(redis.key("user:follower:none"), CursorPage.START, 10, 16);
+        assertEquals(Collections.singletonList(CursorPage.START), page);
+    }
+
+    private List<String> scan(String key, String cursor, int count, int maxRounds) {
+        return scripts.executeScript(RelationScripts.SCAN_PAGE, Collections.singletonList(key), cursor, count,
+                maxRounds);
+    }
+}
@@ -0,0 +1,139 @@
+package com.wait.config.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.wait.support.LiveRedis;
+import com.wait.sync.write.buffer.RedisDirtyEntry;
+
+/**
+ * 写回缓冲脚本集成测试：增量合并与到期时间保持、认领改名并分配批次号、上一批刷写中时顺延、
+ * 租约过期接管保留批次号、完成时校验租约凭证、失败后顺延重试
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class WriteBehindScriptsIntegrationTest {
+
+    private static final String KEY = "user:score:1";
+
+    private final LiveRedis redis = new LiveRedis();
+    private final WriteBehindScripts scripts = new WriteBehindScripts(redis.template());
+    private final String due = redis.key("dirty:due");
+    private final String inflight = redis.key("dirty:inflight");
+
+    @AfterEach
+    void cleanUp() {
+        redis.close();
+    }
+
+    @Test
+    void writeMergesChangesAndKeepsFirstDueTime() {
+        assertEquals(1L, write(1_000, "i", 1, "5", "f", 2, "0.5"));
+        assertEquals(0L, write(9_000, "i", 1, "-2", "s", 3, "\"b\""));
+
+        Map<Object, Object> hash = redis.template().opsForHash().entries(dirty());
+        assertEquals("3", hash.get("i:1"));
+        assertEquals("0.5", hash.get("f:2"));
+        assertEquals("\"b\"", hash.get("s:3"));
+        assertEquals("method", hash.get("m"));
+        assertEquals(1_000d, redis.template().opsForZSet().score(due, KEY));
+    }
+
+    @Test
+    void claimMovesDueDataToInflightWithBatchId() {
+        write(1_000, "i", 1, "5");
+        // 未到期不认领
+        assertTrue(claim(500, 30_500, "t1", 0).isEmpty());
+
+        assertEquals(Collections.singletonList(KEY), claim(2_000, 32_000, "t1", 0));
+        assertFalse(redis.template().hasKey(dirty()));
+        assertNull(redis.template().opsForZSet().score(due, KEY));
+        assertEquals(32_000d, redis.template().opsForZSet().score(inflight, KEY));
+        RedisDirtyEntry entry = inflightEntry();
+        assertEquals("t1", entry.getBatchId());
+        assertEquals(5L, entry.getNumericDeltas().get(1));
+
+        // 刷写期间的新写入进入新的 dirty hash，到期时上一批仍在刷写中，顺延到租约到期
+        write(3_000, "i", 1, "7");
+        assertTrue(claim(4_000, 34_000, "t2", 0).isEmpty());
+        assertEquals(34_000d, redis.template().opsForZSet().score(due, KEY));
+        assertTrue(redis.template().hasKey(dirty()));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverWithSameBatchId() {
+        write(1_000, "i", 1, "5");
+        claim(2_000, 32_000, "t1", 0);
+
+        // 租约未过期不能接管
+        assertTrue(claim(10_000, 40_000, "t2", 1).isEmpty());
+        assertEquals(Collections.singletonList(KEY), claim(33_000, 63_000, "t2", 1));
+        assertEquals("t1", inflightEntry().getBatchId());
+        assertEquals("t2", redis.template().opsForHash().get(inflightData(), "l"));
+
+        // 原持有节点的完成请求被拒绝，接管节点完成后清理
+        assertEquals(0L, complete("t1", 0));
+        assertTrue(redis.template().hasKey(inflightData()));
+        assertEquals(1L, complete("t2", 0));
+        assertFalse(redis.template().hasKey(inflightData()));
+        assertNull(redis.template().opsForZSet().score(inflight, KEY));
+    }
+
+    @Test
+    void failedFlushExtendsLeaseToRetryTime() {
+        write(1_000, "i", 1, "5");
+        claim(2_000, 32_000, "t1", 0);
+
+        assertEquals(1L, complete("t1", 7_000));
+        assertEquals(7_000d, redis.template().opsForZSet().score(inflight, KEY));
+        assertTrue(redis.template().hasKey(inflightData()));
+
+        // 到重试时间后作为过期租约被接管
+        assertEquals(Collections.singletonList(KEY), claim(8_000, 38_000, "t2", 1));
+        assertEquals("t1", inflightEntry().getBatchId());
+    }
+
+    private long write(long dueAt, Object... changes) {
+        List<Object> args = new ArrayList<>(Arrays.asList(KEY, dueAt, "method", "[1,0]"));
+        args.addAll(Arrays.asList(changes));
+        Long added = scripts.executeScript(WriteBehindScripts.BUFFER_WRITE, Arrays.asList(dirty(), due),
+                args.toArray());
+        return added;
+    }
+
+    private List<String> claim(long now, long leaseUntil, String token, int expiredCount) {
+        return scripts.executeScript(WriteBehindScripts.BUFFER_CLAIM, Arrays.asList(due, inflight, dirty(),
+                inflightData()), now, leaseUntil, token, expiredCount, KEY);
+    }
+
+    private long complete(String token, long retryAt) {
+        Long completed = scripts.executeScript(WriteBehindScripts.BUFFER_COMPLETE,
+                Arrays.asList(inflight, inflightData()), KEY, token, retryAt);
+        return completed;
+    }
+
+    private RedisDirtyEntry inflightEntry() {
+        Map<String, String> hash = redis.template().<String, String>opsForHash().entries(inflightData());
+        return RedisDirtyEntry.fromHash(hash);
+    }
+
+    private String dirty() {
+        return redis.key("dirty:" + KEY);
+    }
+
+    private String inflightData() {
+        return redis.key("dirty:inflight:" + KEY);
+    }
+}
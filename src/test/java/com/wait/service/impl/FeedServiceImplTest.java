@@ -0,0 +1,202 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.wait.entity.CursorPage;
+import com.wait.entity.domain.Post;
+import com.wait.service.RelationService;
+
+/**
+ * FeedServiceImpl 单元测试：游标解析、收件箱与拉模式发件箱按 id 倒序合并取一页、读取时过滤取消关注和拉黑的作者
+ * Redis 管道按 key 返回预设的 id 列表，关系服务与帖子服务使用 mock
+ */
+public class FeedServiceImplTest {
+
+    private static final Long USER = 1L;
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RelationService relationService = mock(RelationService.class);
+    private final FeedFanoutWorker fanoutWorker = mock(FeedFanoutWorker.class);
+    private final PostServiceImpl postService = mock(PostServiceImpl.class);
+    private final FeedServiceImpl feedService = new FeedServiceImpl(redis, relationService, fanoutWorker, postService);
+
+    /** 每个 key 中的帖子 id（已倒序） */
+    private final Map<String, List<String>> zsets = new HashMap<>();
+    /** 帖子作者 */
+    private final Map<Long, Long> authors = new HashMap<>();
+    private final Set<Long> unfollowed = new HashSet<>();
+    private final Set<Long> blacklisted = new HashSet<>();
+    private final List<String> queriedKeys = new ArrayList<>();
+    private final List<RedisZSetCommands.Range> queriedRanges = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(redis.getStringSerializer()).thenReturn(RedisSerializer.string());
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> pipeline(invocation.getArgument(0)));
+        when(fanoutWorker.inboxKey(anyLong())).thenAnswer(invocation -> "feed:inbox:" + invocation.getArgument(0));
+        when(fanoutWorker.outboxKey(anyLong())).thenAnswer(invocation -> "feed:outbox:" + invocation.getArgument(0));
+        when(fanoutWorker.getPullAuthors()).thenReturn(Collections.emptySet());
+        when(relationService.batchCheckFollowing(eq(USER), anyList())).thenAnswer(invocation -> {
+            Map<Long, Boolean> result = new LinkedHashMap<>();
+            for (Long authorId : invocation.<List<Long>>getArgument(1)) {
+                result.put(authorId, !unfollowed.contains(authorId));
+            }
+            return result;
+        });
+        when(relationService.filterBlacklisted(eq(USER), anyList())).thenAnswer(invocation -> {
+            List<Long> result = new ArrayList<>(invocation.<List<Long>>getArgument(1));
+            result.removeAll(blacklisted);
+            return result;
+        });
+        when(postService.getPostsByIds(anyList())).thenAnswer(invocation -> {
+            List<Post> posts = new ArrayList<>();
+            for (Long postId : invocation.<List<Long>>getArgument(0)) {
+                posts.add(Post.builder().id(postId).userId(authors.get(postId)).build());
+            }
+            return posts;
+        });
+    }
+
+    @Test
+    void rejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> feedService.getFeed(USER, "abc", 10));
+    }
+
+    @Test
+    void nonPositivePageSizeReturnsEmptyPage() {
+        CursorPage<Post> page = feedService.getFeed(USER, CursorPage.START, 0);
+        assertTrue(page.getItems().isEmpty());
+        assertTrue(page.isFinished());
+        assertTrue(queriedKeys.isEmpty());
+    }
+
+    @Test
+    void mergesInboxAndPullOutboxNewestFirst() {
+        when(fanoutWorker.getPullAuthors()).thenReturn(Collections.singleton(9L));
+        when(relationService.getFollowingCount(USER)).thenReturn(5L);
+        zset("feed:inbox:1", 50, 30, 10);
+        zset("feed:outbox:9", 40, 20);
+        post(50, 2L);
+        post(40, 9L);
+        post(30, 3L);
+        post(20, 9L);
+
+        CursorPage<Post> page = feedService.getFeed(USER, CursorPage.START, 4);
+
+        assertEquals(Arrays.asList("feed:inbox:1", "feed:outbox:9"), queriedKeys);
+        assertEquals(Arrays.asList(50L, 40L, 30L, 20L), ids(page));
+        assertEquals("20", page.getNextCursor());
+    }
+
+    @Test
+    void cursorLimitsToOlderPostsAndShortPageFinishes() {
+        zset("feed:inbox:1", 30, 10);
+        post(30, 2L);
+        post(10, 2L);
+
+        CursorPage<Post> page = feedService.getFeed(USER, "50", 5);
+
+        RedisZSetCommands.Range range = queriedRanges.get(0);
+        assertEquals(50L, range.getMax().getValue());
+        assertFalse(range.getMax().isIncluding());
+        assertEquals(Arrays.asList(30L, 10L), ids(page));
+        assertTrue(page.isFinished());
+    }
+
+    @Test
+    void filtersUnfollowedAndBlacklistedAuthors() {
+        zset("feed:inbox:1", 60, 50, 40, 30);
+        post(60, 2L);
+        post(50, 3L);
+        post(40, 4L);
+        post(30, USER);
+        unfollowed.add(3L);
+        blacklisted.add(4L);
+
+        CursorPage<Post> page = feedService.getFeed(USER, CursorPage.START, 4);
+
+        // 自己的帖子始终可见；过滤后该页少于 size 条，游标仍指向合并结果的最后一个 id
+        assertEquals(Arrays.asList(60L, 30L), ids(page));
+        assertEquals("30", page.getNextCursor());
+    }
+
+    @Test
+    void smallFollowingListIsWalkedInsteadOfCheckingSnapshot() {
+        when(fanoutWorker.getPullAuthors()).thenReturn(new LinkedHashSet<>(Arrays.asList(7L, 8L, 9L, USER)));
+        when(relationService.getFollowingCount(USER)).thenReturn(2L);
+        when(relationService.getFollowingPage(eq(USER), eq(CursorPage.START), anyInt()))
+                .thenReturn(new CursorPage<>(Arrays.asList(9L, 100L), CursorPage.START));
+
+        feedService.getFeed(USER, CursorPage.START, 10);
+
+        assertEquals(Arrays.asList("feed:inbox:1", "feed:outbox:1", "feed:outbox:9"), queriedKeys);
+    }
+
+    private Object pipeline(RedisCallback<?> callback) {
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisZSetCommands zSetCommands = mock(RedisZSetCommands.class);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        List<String> before = new ArrayList<>(queriedKeys);
+        when(zSetCommands.zRevRangeByScore(any(byte[].class), any(RedisZSetCommands.Range.class),
+                any(RedisZSetCommands.Limit.class))).thenAnswer(invocation -> {
+                    queriedKeys.add(new String(invocation.<byte[]>getArgument(0)));
+                    queriedRanges.add(invocation.getArgument(1));
+                    return null;
+                });
+        callback.doInRedis(connection);
+        List<Object> results = new ArrayList<>();
+        for (String key : queriedKeys.subList(before.size(), queriedKeys.size())) {
+            results.add(new LinkedHashSet<>(zsets.getOrDefault(key, Collections.emptyList())));
+        }
+        return results;
+    }
+
+    private void zset(String key, long... postIds) {
+        List<String> ids = new ArrayList<>();
+        for (long postId : postIds) {
+            ids.add(String.valueOf(postId));
+        }
+        zsets.put(key, ids);
+    }
+
+    private void post(long postId, Long authorId) {
+        authors.put(postId, authorId);
+    }
+
+    private static List<Long> ids(CursorPage<Post> page) {
+        List<Long> ids = new ArrayList<>();
+        for (Post post : page.getItems()) {
+            ids.add(post.getId());
+        }
+        return ids;
+    }
+}
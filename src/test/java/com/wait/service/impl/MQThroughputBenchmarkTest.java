@@ -0,0 +1,161 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wait.exception.BackpressureException;
+import com.wait.service.MQService;
+import com.wait.util.message.AsyncDataMsg;
+import com.wait.util.queue.WaitStrategy;
+
+/**
+ * 内存MQ吞吐量/延迟基准：LinkedBlockingQueue 实现 vs 环形队列实现
+ * 多个生产者并发发送，消费端记录端到端延迟（发送时刻写入消息 data），输出吞吐量和延迟分位数
+ * 不依赖 Spring 容器，可单独运行：mvn test -Dtest=MQThroughputBenchmarkTest
+ */
+@Tag("benchmark")
+public class MQThroughputBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(MQThroughputBenchmarkTest.class);
+
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 250_000;
+    /** 每隔多少条采样一次延迟 */
+    private static final int LATENCY_SAMPLE_EVERY = 64;
+
+    @Test
+    void compareQueueEngines() throws InterruptedException {
+        MemoryMQServiceImpl memoryMQ = new MemoryMQServiceImpl();
+        Result memory = run("LinkedBlockingQueue", memoryMQ, memoryMQ::setMessageHandler);
+
+        RingBufferMQServiceImpl ringMQ = new RingBufferMQServiceImpl(65536, 4, 256, WaitStrategy.SLEEPING);
+        Result ring = run("RingBuffer(SLEEPING)", ringMQ, ringMQ::setMessageHandler);
+
+        RingBufferMQServiceImpl yieldingMQ = new RingBufferMQServiceImpl(65536, 4, 256, WaitStrategy.YIELDING);
+        Result yielding = run("RingBuffer(YIELDING)", yieldingMQ, yieldingMQ::setMessageHandler);
+
+        log.info("{}", memory);
+        log.info("{}", ring);
+        log.info("{}", yielding);
+        // 环形队列发送方等待上限足够大，不应丢消息
+        assertEquals(ring.sent, ring.received);
+        assertEquals(yielding.sent, yielding.received);
+    }
+
+    private interface HandlerRegistrar {
+        void register(MemoryMQServiceImpl.MessageHandler handler);
+    }
+
+    private Result run(String name, MQService mq, HandlerRegistrar registrar) throws InterruptedException {
+        long total = (long) PRODUCERS * MESSAGES_PER_PRODUCER;
+        AtomicLong received = new AtomicLong();
+        Queue<Long> latencySamples = new ConcurrentLinkedQueue<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        registrar.register((topic, key, message) -> {
+            long count = received.incrementAndGet();
+            if (count % LATENCY_SAMPLE_EVERY == 0) {
+                long sentAt = (Long) ((AsyncDataMsg<?>) message).getData();
+                latencySamples.add(System.nanoTime() - sentAt);
+            }
+            if (count == total) {
+                done.countDown();
+            }
+        });
+        mq.start();
+
+        AtomicLong sent = new AtomicLong();
+        List<Thread> producers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                    AsyncDataMsg<Object> msg = new AsyncDataMsg<>();
+                    msg.setKey("bench:" + i);
+                    msg.setData(System.nanoTime());
+                    try {
+                        mq.sendMessage("Bench_topic", msg.getKey(), msg);
+                        sent.incrementAndGet();
+                    } catch (BackpressureException e) {
+                        // 准入控制拒绝的消息不计入发送数
+                    }
+                }
+            }, name + "-producer-" + p);
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long produceNanos = System.nanoTime() - start;
+        if (sent.get() < total) {
+            // 有消息被准入控制拒绝时，等待已发送的消息消费完
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received.get() < sent.get() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        } else {
+            done.await(30, TimeUnit.SECONDS);
+        }
+        long totalNanos = System.nanoTime() - start;
+        mq.shutdown();
+
+        List<Long> samples = new ArrayList<>(latencySamples);
+        Collections.sort(samples);
+        return new Result(name, sent.get(), received.get(), produceNanos, totalNanos,
+                percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 0.999));
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) (sorted.size() * p)));
+    }
+
+    private static final class Result {
+        final String name;
+        final long sent;
+        final long received;
+        final long produceNanos;
+        final long totalNanos;
+        final long p50;
+        final long p99;
+        final long p999;
+
+        Result(String name, long sent, long received, long produceNanos, long totalNanos, long p50, long p99,
+                long p999) {
+            this.name = name;
+            this.sent = sent;
+            this.received = received;
+            this.produceNanos = produceNanos;
+            this.totalNanos = totalNanos;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s sent=%d received=%d produce=%.0f msg/s end-to-end=%.0f msg/s "
+                    + "latency p50=%dus p99=%dus p99.9=%dus",
+                    name, sent, received,
+                    sent * 1e9 / produceNanos, received * 1e9 / totalNanos,
+                    TimeUnit.NANOSECONDS.toMicros(p50), TimeUnit.NANOSECONDS.toMicros(p99),
+                    TimeUnit.NANOSECONDS.toMicros(p999));
+        }
+    }
+}
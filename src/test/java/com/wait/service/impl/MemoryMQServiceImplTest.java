@@ -0,0 +1,191 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.wait.exception.BackpressureException;
+import com.wait.exception.ResourceNotFoundException;
+import com.wait.util.message.AsyncDataMsg;
+
+/**
+ * MemoryMQServiceImpl 单元测试：同一 key 按发送顺序消费、未运行和积压超限时拒绝发送、
+ * 暂停/恢复只作用于已有 topic 且暂停期间不消费、积压时扩容消费线程且空闲后缩回
+ * 不依赖 Spring 容器，配置项通过反射设置
+ */
+public class MemoryMQServiceImplTest {
+
+    private static final String TOPIC = "test-topic";
+
+    private final MemoryMQServiceImpl mq = new MemoryMQServiceImpl();
+
+    @AfterEach
+    void shutdown() {
+        mq.shutdown();
+    }
+
+    @Test
+    void sameKeyIsConsumedInSendOrder() throws InterruptedException {
+        int keys = 8;
+        int perKey = 200;
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(keys * perKey);
+        mq.setMessageHandler((topic, key, message) -> {
+            received.computeIfAbsent(key, k -> new ArrayList<>()).add((Integer) ((AsyncDataMsg<?>) message).getData());
+            done.countDown();
+        });
+        mq.start();
+
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                mq.sendMessage(TOPIC, "key:" + k, message("key:" + k, i));
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        for (int k = 0; k < keys; k++) {
+            List<Integer> sequence = received.get("key:" + k);
+            assertEquals(perKey, sequence.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, (int) sequence.get(i), "key:" + k);
+            }
+        }
+    }
+
+    @Test
+    void rejectsSendWhenNotRunning() {
+        assertThrows(BackpressureException.class, () -> mq.sendMessage(TOPIC, "k", message("k", 1)));
+        assertEquals(1L, mq.getConsumerMetrics().get("rejected"));
+    }
+
+    @Test
+    void rejectsSendWhenLagExceedsLimit() throws InterruptedException {
+        ReflectionTestUtils.setField(mq, "maxLag", 5);
+        CountDownLatch release = new CountDownLatch(1);
+        mq.setMessageHandler((topic, key, message) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        mq.start();
+
+        int accepted = 0;
+        try {
+            for (int i = 0; i < 20; i++) {
+                mq.sendMessage(TOPIC, "k", message("k", i));
+                accepted++;
+            }
+        } catch (BackpressureException e) {
+            // 预期：积压达到上限
+        } finally {
+            release.countDown();
+        }
+        assertTrue(accepted < 20, "accepted: " + accepted);
+        assertEquals(1L, mq.getConsumerMetrics().get("rejected"));
+    }
+
+    @Test
+    void pauseAndResumeRequireExistingTopic() {
+        mq.start();
+        assertThrows(ResourceNotFoundException.class, () -> mq.pause("missing"));
+        assertThrows(ResourceNotFoundException.class, () -> mq.resume("missing"));
+        // 管理操作不创建 topic
+        assertTrue(mq.getTopicMetrics().isEmpty());
+    }
+
+    @Test
+    void pausedTopicIsNotConsumedUntilResumed() throws InterruptedException {
+        AtomicInteger handled = new AtomicInteger();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch all = new CountDownLatch(11);
+        mq.setMessageHandler((topic, key, message) -> {
+            handled.incrementAndGet();
+            first.countDown();
+            all.countDown();
+        });
+        mq.start();
+        mq.sendMessage(TOPIC, "k", message("k", 0));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        mq.pause(TOPIC);
+        for (int i = 1; i <= 10; i++) {
+            mq.sendMessage(TOPIC, "k" + i, message("k" + i, i));
+        }
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(1, handled.get());
+        assertEquals(10L, topicMetric("lag"));
+
+        mq.resume(TOPIC);
+        assertTrue(all.await(5, TimeUnit.SECONDS));
+        assertEquals(11, handled.get());
+    }
+
+    @Test
+    void workersGrowUnderBacklogAndShrinkWhenIdle() throws InterruptedException {
+        ReflectionTestUtils.setField(mq, "minWorkers", 1);
+        ReflectionTestUtils.setField(mq, "maxWorkers", 4);
+        ReflectionTestUtils.setField(mq, "scaleIntervalMs", 50L);
+        ReflectionTestUtils.setField(mq, "targetDrainMs", 100L);
+        ReflectionTestUtils.setField(mq, "scaleDownTicks", 2);
+        int total = 400;
+        CountDownLatch done = new CountDownLatch(total);
+        mq.setMessageHandler((topic, key, message) -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        mq.start();
+        assertEquals(1, consumerMetric("targetWorkers"));
+
+        for (int i = 0; i < total; i++) {
+            mq.sendMessage(TOPIC, "key:" + (i % 40), message("key:" + (i % 40), i));
+        }
+        int peak = 1;
+        while (!done.await(20, TimeUnit.MILLISECONDS)) {
+            peak = Math.max(peak, consumerMetric("targetWorkers"));
+        }
+        // 积压按单条耗时估算需要的线程数，上限为 min(maxWorkers, 分区数)
+        assertTrue(peak > 1, "peak workers: " + peak);
+        assertTrue(peak <= 4, "peak workers: " + peak);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (consumerMetric("targetWorkers") > 1 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(1, consumerMetric("targetWorkers"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private long topicMetric(String name) {
+        Map<String, Object> topic = (Map<String, Object>) mq.getTopicMetrics().get(TOPIC);
+        return ((Number) topic.get(name)).longValue();
+    }
+
+    private int consumerMetric(String name) {
+        return ((Number) mq.getConsumerMetrics().get(name)).intValue();
+    }
+
+    private static AsyncDataMsg<Integer> message(String key, int value) {
+        AsyncDataMsg<Integer> message = new AsyncDataMsg<>();
+        message.setKey(key);
+        message.setData(value);
+        return message;
+    }
+}
@@ -0,0 +1,184 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.entity.PostCounts;
+import com.wait.entity.domain.Post;
+import com.wait.mapper.PostMapper;
+import com.wait.sync.write.DrainableBuffer;
+
+/**
+ * PostCounters 单元测试：一次管道按请求顺序读取计数、写回点赞数时跳过没有计数的帖子、写回失败放回待写回集合、
+ * 停止接收后同步写回、排空按分块取出
+ * Redis 管道按 key 返回预设的计数字段，帖子表使用 mock 并记录每次批量更新
+ */
+public class PostCountersTest {
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final PostMapper postMapper = mock(PostMapper.class);
+    private final ThreadPoolTaskScheduler scheduler = mock(ThreadPoolTaskScheduler.class);
+    private final PostCounters counters = new PostCounters(redis, new RedisKeyLayout(new LettuceConnectionFactory()),
+            postMapper, scheduler, 30000L);
+
+    /** 计数 hash：key -> {like, favorite} */
+    private final Map<String, List<String>> hashes = new HashMap<>();
+    /** 每次管道读取的 key */
+    private final List<List<String>> pipelines = new ArrayList<>();
+    /** 每次批量更新的 "id=likeCount" */
+    private final List<List<String>> updates = new ArrayList<>();
+    private final AtomicBoolean failUpdates = new AtomicBoolean();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redis.getStringSerializer()).thenReturn(RedisSerializer.string());
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            List<String> keys = new ArrayList<>();
+            RedisHashCommands hashCommands = mock(RedisHashCommands.class);
+            when(hashCommands.hMGet(any(byte[].class), any(byte[].class), any(byte[].class))).thenAnswer(call -> {
+                keys.add(RedisSerializer.string().deserialize(call.getArgument(0)));
+                return null;
+            });
+            RedisConnection connection = mock(RedisConnection.class);
+            when(connection.hashCommands()).thenReturn(hashCommands);
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            pipelines.add(keys);
+            List<Object> results = new ArrayList<>();
+            for (String key : keys) {
+                results.add(hashes.getOrDefault(key, Arrays.asList(null, null)));
+            }
+            return results;
+        });
+        when(postMapper.batchUpdateLikeCount(anyList())).thenAnswer(invocation -> {
+            if (failUpdates.get()) {
+                throw new IllegalStateException("lock wait timeout");
+            }
+            List<String> rows = new ArrayList<>();
+            for (Post post : invocation.<List<Post>>getArgument(0)) {
+                rows.add(post.getId() + "=" + post.getLikeCount());
+            }
+            updates.add(rows);
+            return rows.size();
+        });
+    }
+
+    @Test
+    void getCountsReadsAllPostsInOnePipeline() {
+        counter(1L, "5", "2");
+        counter(3L, "7", null);
+
+        Map<Long, PostCounts> counts = counters.getCounts(Arrays.asList(3L, null, 1L, 2L, 3L));
+
+        assertEquals(Arrays.asList(3L, 1L, 2L), new ArrayList<>(counts.keySet()));
+        assertEquals(new PostCounts(7L, null), counts.get(3L));
+        assertEquals(new PostCounts(5L, 2L), counts.get(1L));
+        // Redis 中还没有计数
+        assertNull(counts.get(2L).getLikeCount());
+        assertEquals(1, pipelines.size());
+        assertEquals(Arrays.asList("post:counter:3", "post:counter:1", "post:counter:2"), pipelines.get(0));
+    }
+
+    @Test
+    void flushWritesLikeCountsOfDirtyPosts() {
+        counter(1L, "5", "0");
+        counter(2L, "-1", "0");
+        counters.markDirty(1L);
+        counters.markDirty(2L);
+        counters.markDirty(9L);
+        counters.markDirty(1L);
+
+        // 没有计数的帖子 9 跳过，负数按 0 写回
+        assertEquals(2, counters.flush());
+        assertEquals(new HashSet<>(Arrays.asList("1=5", "2=0")), new HashSet<>(updates.get(0)));
+        assertTrue(counters.pendingKeys().isEmpty());
+        assertEquals(0, counters.flush());
+        assertEquals(1, updates.size());
+    }
+
+    @Test
+    void failedFlushKeepsPostsPending() {
+        counter(1L, "5", "0");
+        counters.markDirty(1L);
+        failUpdates.set(true);
+
+        assertThrows(IllegalStateException.class, counters::flush);
+        assertEquals(Arrays.asList("post:counter:1"), new ArrayList<>(counters.pendingKeys()));
+
+        failUpdates.set(false);
+        assertEquals(1, counters.flush());
+        assertTrue(counters.pendingKeys().isEmpty());
+    }
+
+    @Test
+    void markDirtyWritesDirectlyAfterStopAccepting() {
+        counter(4L, "3", "1");
+        counters.stopAccepting();
+
+        counters.markDirty(4L);
+
+        assertEquals(Arrays.asList(Arrays.asList("4=3")), updates);
+        assertTrue(counters.pendingKeys().isEmpty());
+    }
+
+    @Test
+    void drainTasksTakeChunksAndStopTheFlushLoop() throws Exception {
+        ScheduledFuture<?> loop = mock(ScheduledFuture.class);
+        doReturn(loop).when(scheduler).scheduleWithFixedDelay(any(Runnable.class), anyLong());
+        counters.init();
+        for (long id = 1; id <= 1200; id++) {
+            counter(id, String.valueOf(id), "0");
+            counters.markDirty(id);
+        }
+
+        List<DrainableBuffer.DrainTask> tasks = counters.drainTasks();
+
+        verify(loop, times(1)).cancel(false);
+        assertEquals(3, tasks.size());
+        Set<String> written = new HashSet<>();
+        for (DrainableBuffer.DrainTask task : tasks) {
+            task.getAction().call();
+        }
+        for (List<String> update : updates) {
+            assertTrue(update.size() <= 500, "chunk size: " + update.size());
+            written.addAll(update);
+        }
+        assertEquals(1200, written.size());
+        assertTrue(counters.pendingKeys().isEmpty());
+    }
+
+    private void counter(Long postId, String like, String favorite) {
+        hashes.put("post:counter:" + postId, Arrays.asList(like, favorite));
+    }
+}
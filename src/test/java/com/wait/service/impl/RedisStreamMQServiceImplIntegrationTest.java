@@ -0,0 +1,182 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wait.config.script.StreamScripts;
+import com.wait.service.MQService;
+import com.wait.support.LiveRedis;
+import com.wait.util.message.AsyncDataMsg;
+import com.wait.util.message.CompensationMsg;
+
+/**
+ * RedisStreamMQServiceImpl 集成测试：消息处理后才 ACK、处理失败写入死信流并交给死信处理器、
+ * 批量发送交给批量处理器、其他消费者长时间未确认的消息被认领处理
+ * topic 和消费组带本次测试前缀，结束时删除自己的流、消费组和死信
+ * 需要可访问的 Redis：mvn test -Pintegration
+ */
+@Tag("integration")
+public class RedisStreamMQServiceImplIntegrationTest {
+
+    private static final String DL_STREAM = RedisStreamMQServiceImpl.STREAM_PREFIX + MQService.DL_TOPIC;
+
+    private final LiveRedis redis = new LiveRedis();
+    private final String topic = redis.key("orders");
+    private final String stream = RedisStreamMQServiceImpl.STREAM_PREFIX + topic;
+    private final String group = redis.key("group");
+    private final RedisStreamMQServiceImpl mq = new RedisStreamMQServiceImpl(redis.template(),
+            new StreamScripts(redis.template()), new ObjectMapper());
+
+    RedisStreamMQServiceImplIntegrationTest() {
+        ReflectionTestUtils.setField(mq, "group", group);
+        ReflectionTestUtils.setField(mq, "maxLen", 1000L);
+        ReflectionTestUtils.setField(mq, "batchSize", 50);
+        ReflectionTestUtils.setField(mq, "blockMs", 200L);
+        ReflectionTestUtils.setField(mq, "claimIdleMs", 500L);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        try {
+            mq.shutdown();
+            redis.template().opsForSet().remove(RedisStreamMQServiceImpl.TOPICS_KEY, topic);
+            redis.template().delete(stream);
+            // 死信流是共享的，只删除本次测试写入的死信和消费组
+            for (MapRecord<String, Object, Object> record : redis.template().opsForStream().range(DL_STREAM,
+                    Range.unbounded())) {
+                Object key = record.getValue().get("key");
+                if (key != null && key.toString().startsWith(redis.prefix())) {
+                    redis.template().opsForStream().delete(DL_STREAM, record.getId());
+                }
+            }
+            if (Boolean.TRUE.equals(redis.template().hasKey(DL_STREAM))) {
+                redis.template().opsForStream().destroyGroup(DL_STREAM, group);
+            }
+        } finally {
+            redis.close();
+        }
+    }
+
+    @Test
+    void handledMessageIsAcknowledged() throws InterruptedException {
+        BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        mq.setMessageHandler((t, key, message) -> received.add(message));
+        mq.sendMessage(topic, redis.key("k1"), message("k1", "v1"));
+        mq.start();
+
+        AsyncDataMsg<?> message = (AsyncDataMsg<?>) received.poll(5, TimeUnit.SECONDS);
+        assertEquals(redis.key("k1"), message.getKey());
+        assertEquals("v1", message.getData());
+        // 组在流已有消息之后创建，仍从起点消费
+        awaitTrue(() -> pending(stream) == 0);
+        assertEquals(1L, redis.template().opsForStream().size(stream));
+    }
+
+    @Test
+    void failedMessageGoesToDeadLetterHandler() throws InterruptedException {
+        BlockingQueue<CompensationMsg<?>> deadLetters = new LinkedBlockingQueue<>();
+        mq.setMessageHandler((t, key, message) -> {
+            throw new IllegalStateException("db down");
+        });
+        mq.setDeadLetterHandler((key, message) -> {
+            if (key.startsWith(redis.prefix())) {
+                deadLetters.add(message);
+            }
+        });
+        mq.start();
+        mq.sendMessage(topic, redis.key("k2"), message("k2", "v2"));
+
+        CompensationMsg<?> deadLetter = deadLetters.poll(5, TimeUnit.SECONDS);
+        assertEquals(redis.key("k2"), deadLetter.getOriginalParam().getKey());
+        assertEquals("db down", deadLetter.getFailReason());
+        // 原消息写入死信流后确认，死信交给处理器后确认
+        awaitTrue(() -> pending(stream) == 0);
+        awaitTrue(() -> pending(DL_STREAM) == 0);
+    }
+
+    @Test
+    void batchIsDeliveredToBatchHandler() throws InterruptedException {
+        List<AsyncDataMsg<?>> received = new CopyOnWriteArrayList<>();
+        mq.setBatchMessageHandler((t, messages) -> received.addAll(messages));
+        mq.start();
+
+        List<AsyncDataMsg<?>> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(message("b" + i, "v" + i));
+        }
+        assertTrue(mq.sendBatch(topic, batch).isEmpty());
+
+        awaitTrue(() -> received.size() == 20);
+        awaitTrue(() -> pending(stream) == 0);
+    }
+
+    @Test
+    void stuckMessageIsClaimedFromAnotherConsumer() throws InterruptedException {
+        BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        mq.setMessageHandler((t, key, message) -> received.add(message));
+        // 先建组，由另一个消费者读走但不确认，模拟消费者宕机
+        mq.sendMessage(topic, redis.key("k3"), message("k3", "v3"));
+        redis.template().opsForStream().createGroup(stream, ReadOffset.from("0"), group);
+        List<MapRecord<String, Object, Object>> taken = redis.template().opsForStream().read(
+                Consumer.from(group, "crashed"), StreamOffset.create(stream, ReadOffset.lastConsumed()));
+        assertEquals(1, taken.size());
+
+        mq.start();
+
+        AsyncDataMsg<?> message = (AsyncDataMsg<?>) received.poll(10, TimeUnit.SECONDS);
+        assertEquals(redis.key("k3"), message.getKey());
+        awaitTrue(() -> pending(stream) == 0);
+    }
+
+    @Test
+    void sendFailureIsThrown() {
+        redis.template().opsForValue().set(stream, "not a stream");
+        assertThrows(RuntimeException.class, () -> mq.sendMessage(topic, redis.key("k4"), message("k4", "v4")));
+
+        List<AsyncDataMsg<?>> batch = Arrays.asList(message("k5", "v5"), message("k6", "v6"));
+        assertEquals(batch, mq.sendBatch(topic, batch));
+    }
+
+    private AsyncDataMsg<String> message(String key, String data) {
+        AsyncDataMsg<String> message = new AsyncDataMsg<>();
+        message.setKey(redis.key(key));
+        message.setData(data);
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+
+    private long pending(String key) {
+        PendingMessagesSummary summary = redis.template().opsForStream().pending(key, group);
+        return summary != null ? summary.getTotalPendingMessages() : 0;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RelationBatchTask 单元测试：操作表去重与容量、双缓冲切换、失败放回后的合并与分块取出
+ */
+public class RelationBatchTaskTest {
+
+    @Test
+    void samePairKeepsLatestState() {
+        RelationBatchTask task = new RelationBatchTask(16);
+        assertTrue(task.addLikeOperation(1, 2, true));
+        assertTrue(task.addLikeOperation(1, 2, false));
+        assertTrue(task.addLikeOperation(1, 3, true));
+        assertTrue(task.addFavoriteOperation(2, 1, true));
+        assertEquals(2, task.getLikeOperationCount());
+        assertEquals(1, task.getFavoriteOperationCount());
+
+        RelationBatchTask.Batch batch = task.swap();
+        Map<String, Boolean> likes = toMap(batch.getLikes());
+        assertEquals(2, likes.size());
+        assertFalse(likes.get("1:2"));
+        assertTrue(likes.get("1:3"));
+        assertTrue(toMap(batch.getFavorites()).get("2:1"));
+    }
+
+    @Test
+    void fullTableRejectsNewPairsButAcceptsUpdates() {
+        RelationBatchTask task = new RelationBatchTask(2);
+        assertTrue(task.addLikeOperation(1, 1, true));
+        assertTrue(task.addLikeOperation(1, 2, true));
+        assertFalse(task.addLikeOperation(1, 3, true));
+        // 已存在的 id 对只更新状态，不占用新槽位
+        assertTrue(task.addLikeOperation(1, 2, false));
+        // 点赞、收藏容量相互独立
+        assertTrue(task.addFavoriteOperation(1, 3, true));
+
+        task.swap();
+        assertTrue(task.addLikeOperation(1, 3, true));
+    }
+
+    @Test
+    void swapDrainsBufferAndReusesSpare() {
+        RelationBatchTask task = new RelationBatchTask(16);
+        task.addLikeOperation(1, 2, true);
+        assertEquals(1, task.swap().size());
+        assertFalse(task.hasPendingOperations());
+
+        task.addLikeOperation(3, 4, true);
+        RelationBatchTask.Batch second = task.swap();
+        // 复用的备用缓冲已清空，不带上一批的操作
+        assertEquals(1, second.size());
+        assertTrue(toMap(second.getLikes()).containsKey("3:4"));
+        assertTrue(task.swap().isEmpty());
+    }
+
+    @Test
+    void retainedBatchIsOverriddenByNewerOperations() {
+        RelationBatchTask task = new RelationBatchTask(16);
+        task.addLikeOperation(1, 2, true);
+        task.addLikeOperation(1, 3, true);
+        RelationBatchTask.Batch failed = task.swap();
+
+        // 刷库失败期间同一对 id 又有新操作
+        task.addLikeOperation(1, 2, false);
+        task.retain(failed);
+        assertEquals(3, task.getLikeOperationCount());
+        Map<String, Boolean> snapshot = toMap(task.snapshot().getLikes());
+        assertFalse(snapshot.get("1:2"));
+        assertTrue(snapshot.get("1:3"));
+
+        RelationBatchTask.Batch merged = task.swap();
+        Map<String, Boolean> likes = toMap(merged.getLikes());
+        assertEquals(2, likes.size());
+        assertFalse(likes.get("1:2"));
+        assertTrue(likes.get("1:3"));
+        assertFalse(task.hasPendingOperations());
+    }
+
+    @Test
+    void retainingTwiceKeepsLaterBatch() {
+        RelationBatchTask task = new RelationBatchTask(16);
+        task.addLikeOperation(1, 2, true);
+        RelationBatchTask.Batch older = task.swap();
+        task.addLikeOperation(1, 2, false);
+        RelationBatchTask.Batch newer = task.swap();
+
+        task.retain(newer);
+        task.retain(older);
+        assertFalse(toMap(task.swap().getLikes()).get("1:2"));
+    }
+
+    @Test
+    void pollRetainedTakesChunksInOrder() {
+        RelationBatchTask task = new RelationBatchTask(16);
+        task.addLikeOperation(1, 1, true);
+        task.addLikeOperation(1, 2, true);
+        task.addLikeOperation(1, 3, true);
+        task.addFavoriteOperation(2, 1, true);
+        task.addFavoriteOperation(2, 2, true);
+        task.retain(task.swap());
+
+        RelationBatchTask.Batch first = task.pollRetained(2);
+        assertEquals(2, first.getLikes().size());
+        assertEquals(0, first.getFavorites().size());
+        // 未取出的操作仍可见
+        assertEquals(3, task.snapshot().size());
+
+        RelationBatchTask.Batch second = task.pollRetained(2);
+        assertEquals(1, second.getLikes().size());
+        assertEquals(1, second.getFavorites().size());
+
+        RelationBatchTask.Batch third = task.pollRetained(2);
+        assertEquals(0, third.getLikes().size());
+        assertEquals(1, third.getFavorites().size());
+        assertTrue(task.pollRetained(2).isEmpty());
+
+        Map<String, Boolean> all = new HashMap<>();
+        for (RelationBatchTask.Batch batch : new RelationBatchTask.Batch[] { first, second, third }) {
+            all.putAll(toMap(batch.getLikes()));
+        }
+        assertEquals(3, all.size());
+        assertFalse(task.hasPendingOperations());
+    }
+
+    @Test
+    void concurrentWritersLoseNothingAcrossSwaps() throws InterruptedException {
+        int writers = 4;
+        int perWriter = 5_000;
+        RelationBatchTask task = new RelationBatchTask(writers * perWriter);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long writer = w;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    if (!task.addLikeOperation(writer, i, true)) {
+                        throw new IllegalStateException("buffer full");
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        Map<String, Boolean> drained = new HashMap<>();
+        int swaps = 0;
+        Thread joiner = new Thread(() -> {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            writing.set(false);
+        });
+        joiner.start();
+        while (writing.get()) {
+            RelationBatchTask.Batch batch = task.swap();
+            for (String pair : toMap(batch.getLikes()).keySet()) {
+                assertNull(drained.put(pair, true), "drained twice: " + pair);
+            }
+            swaps++;
+        }
+        joiner.join();
+        drained.putAll(toMap(task.swap().getLikes()));
+
+        assertTrue(swaps > 0);
+        assertEquals(writers * perWriter, drained.size());
+    }
+
+    private static Map<String, Boolean> toMap(RelationBatchTask.Operations operations) {
+        Map<String, Boolean> map = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            map.put(operations.first(i) + ":" + operations.second(i), operations.value(i));
+        }
+        return map;
+    }
+}
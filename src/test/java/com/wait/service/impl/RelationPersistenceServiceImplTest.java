@@ -0,0 +1,194 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wait.entity.domain.PostFavorite;
+import com.wait.entity.domain.PostLike;
+import com.wait.mapper.FollowMapper;
+import com.wait.mapper.PostFavoriteMapper;
+import com.wait.mapper.PostLikeMapper;
+import com.wait.sync.write.DrainableBuffer;
+import com.wait.util.AsyncSQLWrapper;
+
+/**
+ * RelationPersistenceServiceImpl 批量刷库单元测试：点赞/取消点赞分成多行 INSERT 和多行 DELETE、
+ * 每条语句的行数受行数上限和 max_allowed_packet 限制、刷库失败的操作留在缓冲中由排空任务写入
+ * 异步执行和事务模板都直接在当前线程执行，mapper 使用 mock 并记录每条语句的行
+ */
+public class RelationPersistenceServiceImplTest {
+
+    private final PostLikeMapper likeMapper = mock(PostLikeMapper.class);
+    private final PostFavoriteMapper favoriteMapper = mock(PostFavoriteMapper.class);
+    private final AsyncSQLWrapper asyncSQLWrapper = mock(AsyncSQLWrapper.class);
+
+    private final List<List<String>> likeInserts = new ArrayList<>();
+    private final List<List<String>> likeDeletes = new ArrayList<>();
+    private final List<List<String>> favoriteInserts = new ArrayList<>();
+    private final AtomicBoolean failLikeInserts = new AtomicBoolean();
+
+    RelationPersistenceServiceImplTest() throws Exception {
+        when(asyncSQLWrapper.executeAsyncVoid(any())).thenAnswer(invocation -> {
+            try {
+                ((Runnable) invocation.getArgument(0)).run();
+            } catch (RuntimeException e) {
+                // 与异步执行一致，失败不抛给调用方
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        when(asyncSQLWrapper.executeSync(any())).thenAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call());
+        when(likeMapper.batchInsertIgnoreDuplicates(anyList())).thenAnswer(invocation -> {
+            if (failLikeInserts.get()) {
+                throw new IllegalStateException("deadlock");
+            }
+            likeInserts.add(likeRows(invocation.getArgument(0)));
+            return 0;
+        });
+        when(likeMapper.batchDelete(anyList())).thenAnswer(invocation -> {
+            likeDeletes.add(likeRows(invocation.getArgument(0)));
+            return 0;
+        });
+        when(favoriteMapper.batchInsertIgnoreDuplicates(anyList())).thenAnswer(invocation -> {
+            List<String> rows = new ArrayList<>();
+            for (PostFavorite favorite : invocation.<List<PostFavorite>>getArgument(0)) {
+                rows.add(favorite.getUserId() + ":" + favorite.getPostId());
+            }
+            favoriteInserts.add(rows);
+            return 0;
+        });
+    }
+
+    @Test
+    void likesSplitIntoInsertAndDeleteStatementsByRowLimit() {
+        RelationPersistenceServiceImpl service = service(4194304L, 2);
+
+        service.persistLike(10L, 1L, true);
+        service.persistLike(11L, 1L, true);
+        service.persistLike(12L, 1L, false);
+        service.persistLike(13L, 1L, true);
+        // 第五条达到定量阈值触发刷库
+        service.persistLike(14L, 1L, false);
+
+        assertEquals(2, likeInserts.size());
+        assertEquals(Arrays.asList(2, 1), Arrays.asList(likeInserts.get(0).size(), likeInserts.get(1).size()));
+        assertEquals(new HashSet<>(Arrays.asList("1:10", "1:11", "1:13")), flatten(likeInserts));
+        assertEquals(1, likeDeletes.size());
+        assertEquals(new HashSet<>(Arrays.asList("1:12", "1:14")), flatten(likeDeletes));
+        assertTrue(service.pendingKeys().isEmpty());
+    }
+
+    @Test
+    void rowsPerStatementFollowMaxAllowedPacket() {
+        // 每行按 2 * (20 + 1) + 3 = 45 字节估算，SQL 文本不超过一半的包大小：200 / 2 / 45 = 2 行
+        RelationPersistenceServiceImpl service = service(200L, 5000);
+
+        for (long userId = 1; userId <= 5; userId++) {
+            service.persistLike(userId, 7L, true);
+        }
+
+        assertEquals(3, likeInserts.size());
+        for (List<String> statement : likeInserts) {
+            assertTrue(statement.size() <= 2, "rows: " + statement);
+        }
+        assertEquals(5, flatten(likeInserts).size());
+    }
+
+    @Test
+    void failedFlushStaysPendingUntilDrained() throws Exception {
+        RelationPersistenceServiceImpl service = service(4194304L, 5000);
+        failLikeInserts.set(true);
+        for (long userId = 1; userId <= 5; userId++) {
+            service.persistLike(userId, 7L, true);
+        }
+        assertTrue(likeInserts.isEmpty());
+        assertEquals(5, service.pendingKeys().size());
+        assertTrue(service.pendingKeys().contains("like:7:3"));
+
+        failLikeInserts.set(false);
+        service.stopAccepting();
+        List<DrainableBuffer.DrainTask> tasks = service.drainTasks();
+        assertEquals(1, tasks.size());
+        tasks.get(0).getAction().call();
+
+        assertEquals(new HashSet<>(Arrays.asList("7:1", "7:2", "7:3", "7:4", "7:5")), flatten(likeInserts));
+        assertTrue(service.pendingKeys().isEmpty());
+    }
+
+    @Test
+    void failedDrainChunkIsKeptForReporting() {
+        RelationPersistenceServiceImpl service = service(4194304L, 5000);
+        service.persistLike(1L, 7L, true);
+        service.stopAccepting();
+        List<DrainableBuffer.DrainTask> tasks = service.drainTasks();
+        failLikeInserts.set(true);
+
+        assertThrows(IllegalStateException.class, () -> tasks.get(0).getAction().call());
+        Collection<String> pending = service.pendingKeys();
+        assertEquals(Arrays.asList("like:7:1"), new ArrayList<>(pending));
+    }
+
+    @Test
+    void favoritesAreWrittenDirectlyAfterStopAccepting() {
+        RelationPersistenceServiceImpl service = service(4194304L, 5000);
+        service.stopAccepting();
+
+        service.persistFavorite(3L, 9L, true);
+
+        assertEquals(Arrays.asList(Arrays.asList("3:9")), favoriteInserts);
+        assertTrue(service.pendingKeys().isEmpty());
+    }
+
+    private RelationPersistenceServiceImpl service(long maxAllowedPacket, int maxStatementRows) {
+        return new RelationPersistenceServiceImpl(mock(FollowMapper.class), likeMapper, favoriteMapper,
+                asyncSQLWrapper, mock(RelationReconciler.class), new DirectTransactionTemplate(),
+                mock(ThreadPoolTaskScheduler.class), maxAllowedPacket, maxStatementRows);
+    }
+
+    private static List<String> likeRows(List<PostLike> likes) {
+        List<String> rows = new ArrayList<>();
+        for (PostLike like : likes) {
+            rows.add(like.getPostId() + ":" + like.getUserId());
+        }
+        return rows;
+    }
+
+    private static Set<String> flatten(List<List<String>> statements) {
+        Set<String> rows = new HashSet<>();
+        for (List<String> statement : statements) {
+            rows.addAll(statement);
+        }
+        return rows;
+    }
+
+    /**
+     * 直接执行回调的事务模板，回调抛出的异常原样抛出
+     */
+    private static final class DirectTransactionTemplate extends TransactionTemplate {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RelationReconciler 成员归并单元测试：Redis 成员与分页读取的数据库成员归并出两侧差异
+ * 只测试归并本身，不依赖 Redis 和数据库
+ */
+public class RelationReconcilerTest {
+
+    @Test
+    void findsMissingAndStaleAcrossPages() {
+        RelationReconciler.MemberDiff diff = new RelationReconciler.MemberDiff(new long[] { 1, 3, 5, 7, 9 });
+        diff.accept(Arrays.asList(2L, 3L));
+        diff.accept(Arrays.asList(5L, 6L));
+        diff.accept(Collections.singletonList(8L));
+        diff.finish();
+
+        assertArrayEquals(new long[] { 1, 7, 9 }, toArray(diff.getMissing()));
+        assertArrayEquals(new long[] { 2, 6, 8 }, toArray(diff.getStale()));
+    }
+
+    @Test
+    void identicalSidesHaveNoDifference() {
+        RelationReconciler.MemberDiff diff = new RelationReconciler.MemberDiff(new long[] { 1, 2, 3 });
+        diff.accept(Arrays.asList(1L, 2L));
+        diff.accept(Collections.singletonList(3L));
+        diff.finish();
+
+        assertArrayEquals(new long[0], toArray(diff.getMissing()));
+        assertArrayEquals(new long[0], toArray(diff.getStale()));
+    }
+
+    @Test
+    void emptyRedisMarksAllDbRowsStale() {
+        RelationReconciler.MemberDiff diff = new RelationReconciler.MemberDiff(new long[0]);
+        diff.accept(Arrays.asList(4L, 5L));
+        diff.finish();
+
+        assertArrayEquals(new long[0], toArray(diff.getMissing()));
+        assertArrayEquals(new long[] { 4, 5 }, toArray(diff.getStale()));
+    }
+
+    @Test
+    void emptyDbMarksAllRedisMembersMissing() {
+        RelationReconciler.MemberDiff diff = new RelationReconciler.MemberDiff(new long[] { -3, 0, 10 });
+        diff.accept(Collections.emptyList());
+        diff.finish();
+
+        assertArrayEquals(new long[] { -3, 0, 10 }, toArray(diff.getMissing()));
+        assertArrayEquals(new long[0], toArray(diff.getStale()));
+    }
+
+    private static long[] toArray(RelationReconciler.LongArray values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
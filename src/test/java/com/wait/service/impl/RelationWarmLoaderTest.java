@@ -0,0 +1,326 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wait.config.RedisKeyLayout;
+import com.wait.config.script.RelationScripts;
+import com.wait.entity.RelationPair;
+import com.wait.entity.domain.UserFollow;
+import com.wait.mapper.FollowMapper;
+import com.wait.mapper.PostFavoriteMapper;
+import com.wait.mapper.PostLikeMapper;
+import com.wait.service.impl.RelationReconciler.RelationType;
+import com.wait.util.BulkSQLExecutor;
+
+/**
+ * RelationWarmLoader 单元测试：按 owner 范围切分 worker 并写入关系两侧、从检查点继续、
+ * 失败的 worker 保留检查点且再次执行只重跑未完成的部分、跳过带删除标记的关系并补删写入期间新标记的关系
+ * 检查点 hash 和删除标记 set 用内存 map 模拟，关注表按 (follower_id, followed_id) 排序的内存列表模拟，
+ * relation_step 脚本调用只记录每侧写入的成员
+ */
+public class RelationWarmLoaderTest {
+
+    private static final String CHECKPOINT = "relation:warm:follow";
+    private static final String REMOVED = "relation:warm:follow:removed";
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RelationScripts scripts = mock(RelationScripts.class);
+    private final FollowMapper followMapper = mock(FollowMapper.class);
+    private final ShardedRelationSets shardedSets = mock(ShardedRelationSets.class);
+    private ExecutorService pool;
+
+    /** 检查点 hash：key -> (field -> value) */
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+    /** 删除标记 */
+    private final Set<Object> removed = ConcurrentHashMap.newKeySet();
+    /** 关注表：{followerId, followedId}，已排序 */
+    private final List<long[]> follows = new ArrayList<>();
+    /** 每次脚本调用写入的 "op base member" */
+    private final List<String> steps = new CopyOnWriteArrayList<>();
+    /** 写入一页时标记删除的关系 */
+    private volatile String removeWhileWriting;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redis.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(hashOps.get(anyString(), any())).thenAnswer(invocation -> hashes
+                .getOrDefault(invocation.<String>getArgument(0), Collections.emptyMap()).get(invocation.getArgument(1)));
+        doAnswer(invocation -> {
+            hashes.computeIfAbsent(invocation.getArgument(0), k -> new ConcurrentHashMap<>())
+                    .put(invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(hashOps).put(anyString(), any(), any());
+
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(redis.opsForSet()).thenReturn(setOps);
+        when(setOps.add(eq(REMOVED), ArgumentMatchers.<String[]>any())).thenAnswer(invocation -> {
+            removed.addAll(varargs(invocation.getArguments()));
+            return 1L;
+        });
+        when(setOps.isMember(eq(REMOVED), ArgumentMatchers.<Object[]>any())).thenAnswer(invocation -> {
+            Map<Object, Boolean> marked = new HashMap<>();
+            for (Object member : varargs(invocation.getArguments())) {
+                marked.put(member, removed.contains(member));
+            }
+            return marked;
+        });
+
+        when(redis.hasKey(anyString())).thenAnswer(invocation -> hashes.containsKey(invocation.<String>getArgument(0)));
+        when(redis.delete(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            if (REMOVED.equals(key)) {
+                removed.clear();
+            }
+            return hashes.remove(key) != null;
+        });
+        when(redis.delete(anyCollection())).thenAnswer(invocation -> {
+            for (Object key : invocation.<Collection<Object>>getArgument(0)) {
+                hashes.remove(key);
+                if (REMOVED.equals(key)) {
+                    removed.clear();
+                }
+            }
+            return 0L;
+        });
+
+        when(followMapper.selectFollowerIdsAfter(anyLong(), anyInt())).thenAnswer(invocation -> follows.isEmpty()
+                ? Collections.emptyList() : Collections.singletonList(follows.get(0)[0]));
+        when(followMapper.selectMaxFollowerId()).thenAnswer(invocation -> follows.isEmpty() ? null
+                : follows.get(follows.size() - 1)[0]);
+        when(followMapper.selectFollowsAfter(anyLong(), anyLong(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long afterOwner = invocation.getArgument(0);
+            long afterMember = invocation.getArgument(1);
+            long end = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            List<UserFollow> page = new ArrayList<>();
+            for (long[] row : follows) {
+                boolean after = row[0] > afterOwner || (row[0] == afterOwner && row[1] > afterMember);
+                if (after && row[0] < end && page.size() < limit) {
+                    page.add(UserFollow.builder().followerId(row[0]).followedId(row[1]).build());
+                }
+            }
+            return page;
+        });
+
+        when(scripts.executeBySlot(eq(RelationScripts.RELATION_STEP), anyList(), anyInt(), anyList(), anyList(),
+                eq(1))).thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(1);
+                    int stride = invocation.getArgument(2);
+                    String op = (String) invocation.<List<Object>>getArgument(3).get(0);
+                    List<Object> members = invocation.getArgument(4);
+                    List<Object> flags = new ArrayList<>();
+                    for (int i = 0; i < members.size(); i++) {
+                        steps.add(op + " " + keys.get(i * stride) + " " + members.get(i));
+                        flags.add(1L);
+                    }
+                    if (removeWhileWriting != null && RelationServiceImpl.OP_ADD.equals(op)) {
+                        removed.add(removeWhileWriting);
+                    }
+                    return flags;
+                });
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void freshLoadSplitsOwnersAndWritesBothSides() {
+        for (long follower = 1; follower <= 9; follower++) {
+            follows(follower, 100 + follower, 200 + follower);
+        }
+        RelationWarmLoader loader = loader("set");
+
+        Map<String, Object> report = loader.load(RelationType.FOLLOW, options(3, 2));
+
+        assertEquals("DONE", report.get("state"));
+        assertEquals(false, report.get("resumed"));
+        assertEquals(3, report.get("workers"));
+        assertEquals(18L, report.get("rows"));
+        assertEquals(36L, report.get("addedMembers"));
+        for (long follower = 1; follower <= 9; follower++) {
+            assertTrue(steps.contains("add user:follow:" + follower + " " + (100 + follower)));
+            assertTrue(steps.contains("add user:follower:" + (200 + follower) + " " + follower));
+        }
+        assertEquals(36, steps.size());
+        // 完成后删除检查点
+        assertFalse(hashes.containsKey(CHECKPOINT));
+    }
+
+    @Test
+    void resumesFromCheckpoint() {
+        follows(1, 10, 11);
+        follows(5, 50, 51, 52);
+        follows(7, 70);
+        checkpoint("ranges", "1:5,5:" + Long.MAX_VALUE);
+        checkpoint("w0", "done");
+        checkpoint("w1", "5:50");
+
+        Map<String, Object> report = loader("set").load(RelationType.FOLLOW, options(0, 10));
+
+        assertEquals(true, report.get("resumed"));
+        assertEquals(3L, report.get("rows"));
+        assertEquals(new HashSet<>(Arrays.asList("user:follow:5 51", "user:follow:5 52", "user:follow:7 70")),
+                addedTo("user:follow:"));
+        assertFalse(hashes.containsKey(CHECKPOINT));
+    }
+
+    @Test
+    void failedWorkerKeepsCheckpointAndRerunsOnlyItsRest() {
+        follows(1, 10, 11);
+        follows(5, 50, 51, 52);
+        checkpoint("ranges", "1:5,5:" + Long.MAX_VALUE);
+        // 第二个 worker 读完第一页后失败
+        doThrow(new IllegalStateException("connection lost"))
+                .when(followMapper).selectFollowsAfter(eq(5L), eq(51L), anyLong(), anyInt());
+        RelationWarmLoader loader = loader("set");
+
+        Map<String, Object> failed = loader.load(RelationType.FOLLOW, options(0, 2));
+
+        assertEquals("FAILED", failed.get("state"));
+        assertEquals(1, failed.get("failedWorkers"));
+        assertEquals("done", hashes.get(CHECKPOINT).get("w0"));
+        assertEquals("5:51", hashes.get(CHECKPOINT).get("w1"));
+        assertTrue(loader.isLoading(RelationType.FOLLOW));
+
+        steps.clear();
+        doReturn(Collections.singletonList(UserFollow.builder().followerId(5L).followedId(52L).build()))
+                .when(followMapper).selectFollowsAfter(eq(5L), eq(51L), anyLong(), anyInt());
+        Map<String, Object> rerun = loader.load(RelationType.FOLLOW, options(0, 2));
+
+        assertEquals("DONE", rerun.get("state"));
+        assertEquals(Collections.singleton("user:follow:5 52"), addedTo("user:follow:"));
+    }
+
+    @Test
+    void removedPairsAreSkippedAndRemovedAgainIfMarkedDuringWrite() {
+        follows(1, 10, 11, 12);
+        checkpoint("ranges", "1:" + Long.MAX_VALUE);
+        RelationWarmLoader loader = loader("set");
+        loader.markRemoved(RelationType.FOLLOW, Collections.singletonList(new RelationPair(1L, 10L)));
+        removeWhileWriting = "1:12";
+
+        loader.load(RelationType.FOLLOW, options(0, 10));
+
+        assertEquals(new HashSet<>(Arrays.asList("user:follow:1 11", "user:follow:1 12")), addedTo("user:follow:"));
+        assertTrue(steps.contains("rem user:follow:1 12"));
+        assertTrue(steps.contains("rem user:follower:12 1"));
+        assertFalse(steps.contains("rem user:follow:1 11"));
+        // 完成后删除标记一并清除
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    void loadingFlagIsCachedBriefly() {
+        RelationWarmLoader loader = loader("set");
+        checkpoint("ranges", "1:" + Long.MAX_VALUE);
+
+        assertTrue(loader.isLoading(RelationType.FOLLOW));
+        assertTrue(loader.isLoading(RelationType.FOLLOW));
+        verify(redis, times(1)).hasKey(CHECKPOINT);
+    }
+
+    @Test
+    void startRejectsBitmapLayoutAndParsesTypes() {
+        assertThrows(IllegalStateException.class,
+                () -> loader("bitmap").start(Collections.singletonList(RelationType.FOLLOW), options(0, 0)));
+        assertEquals(Arrays.asList(RelationType.values()), RelationWarmLoader.typesOf("ALL"));
+        assertEquals(Collections.singletonList(RelationType.LIKE), RelationWarmLoader.typesOf("like"));
+    }
+
+    private RelationWarmLoader loader(String storage) {
+        pool = Executors.newFixedThreadPool(4);
+        BulkSQLExecutor bulkSQLExecutor = new BulkSQLExecutor(null, new DirectTransactionTemplate(), pool, 4, 200);
+        return new RelationWarmLoader(redis, scripts, new RedisKeyLayout(new LettuceConnectionFactory()),
+                shardedSets, followMapper, mock(PostLikeMapper.class), mock(PostFavoriteMapper.class),
+                bulkSQLExecutor, mock(ThreadPoolTaskExecutor.class), storage, 4, 2000, 0);
+    }
+
+    private static RelationWarmLoader.Options options(int workers, int pageSize) {
+        return RelationWarmLoader.Options.builder().workers(workers).pageSize(pageSize).build();
+    }
+
+    private void follows(long follower, long... followed) {
+        for (long id : followed) {
+            follows.add(new long[] { follower, id });
+        }
+    }
+
+    private void checkpoint(String field, String value) {
+        hashes.computeIfAbsent(CHECKPOINT, k -> new ConcurrentHashMap<>()).put(field, value);
+    }
+
+    private static List<Object> varargs(Object[] arguments) {
+        return Arrays.asList(arguments).subList(1, arguments.length);
+    }
+
+    private Set<String> addedTo(String prefix) {
+        Set<String> added = new HashSet<>();
+        for (String step : steps) {
+            if (step.startsWith("add " + prefix)) {
+                added.add(step.substring("add ".length()));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 直接执行回调的事务模板
+     */
+    private static final class DirectTransactionTemplate extends TransactionTemplate {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
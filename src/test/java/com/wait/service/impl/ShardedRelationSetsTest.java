@@ -0,0 +1,115 @@
+package com.wait.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.wait.config.script.RelationScripts;
+import com.wait.entity.CursorPage;
+
+/**
+ * ShardedRelationSets 单元测试：成员分片计算、key 互转、分页游标解析与基础集合到各分片的阶段切换
+ * 脚本和 Redis 客户端使用 mock，未设置的 SSCAN 调用视为集合为空
+ */
+public class ShardedRelationSetsTest {
+
+    private static final String BASE = "post:like:1";
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RelationScripts scripts = mock(RelationScripts.class);
+    private final ShardedRelationSets sets = new ShardedRelationSets(redis, scripts, null, 100);
+
+    @Test
+    void shardOfMatchesDecimalModulo() {
+        assertEquals(130 % 64, ShardedRelationSets.shardOf("130"));
+        assertEquals(0, ShardedRelationSets.shardOf("0"));
+        String huge = "123456789012345678901234567890";
+        assertEquals(new BigInteger(huge).mod(BigInteger.valueOf(64)).intValue(), ShardedRelationSets.shardOf(huge));
+        // 非数字字符不参与计算
+        assertEquals(5, ShardedRelationSets.shardOf("-5"));
+    }
+
+    @Test
+    void keysMapBackToBaseKey() {
+        assertEquals(Arrays.asList(BASE, BASE + ":s:2", BASE + ":meta"), ShardedRelationSets.keyGroup(BASE, 130L));
+        assertEquals(BASE, ShardedRelationSets.baseKeyOf(ShardedRelationSets.shardKey(BASE, 63)));
+        assertEquals(BASE, ShardedRelationSets.baseKeyOf(ShardedRelationSets.metaKey(BASE)));
+        assertEquals(BASE, ShardedRelationSets.baseKeyOf(BASE));
+        assertTrue(ShardedRelationSets.isMetaKey(BASE + ":meta"));
+        assertFalse(ShardedRelationSets.isMetaKey(BASE));
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        for (String cursor : new String[] { "abc", "s64:0", "s1:x", "s:1", "-1" }) {
+            assertThrows(IllegalArgumentException.class, () -> sets.scanPage(BASE, cursor, 10), cursor);
+        }
+    }
+
+    @Test
+    void unshardedSetUsesPlainScanCursor() {
+        stubScan(BASE, "0", "17", "a", "b");
+        stubScan(BASE, "17", "0", "c");
+
+        CursorPage<String> first = sets.scanPage(BASE, null, 10);
+        assertEquals(Arrays.asList("a", "b"), first.getItems());
+        assertEquals("17", first.getNextCursor());
+
+        CursorPage<String> second = sets.scanPage(BASE, first.getNextCursor(), 10);
+        assertEquals(Collections.singletonList("c"), second.getItems());
+        assertTrue(second.isFinished());
+    }
+
+    @Test
+    void shardedSetContinuesIntoShards() {
+        when(redis.hasKey(BASE + ":meta")).thenReturn(true);
+        stubScan(BASE, "0", "0", "a");
+        stubScan(ShardedRelationSets.shardKey(BASE, 0), "0", "5", "b");
+        stubScan(ShardedRelationSets.shardKey(BASE, 0), "5", "0", "c");
+        stubScan(ShardedRelationSets.shardKey(BASE, 40), "0", "0", "d");
+
+        // 基础集合遍历完后同一页继续读取分片 0
+        CursorPage<String> first = sets.scanPage(BASE, CursorPage.START, 10);
+        assertEquals(Arrays.asList("a", "b"), first.getItems());
+        assertEquals("s0:5", first.getNextCursor());
+
+        // 一页跨越多个分片，直到最后一个分片结束
+        CursorPage<String> second = sets.scanPage(BASE, first.getNextCursor(), 10);
+        assertEquals(Arrays.asList("c", "d"), second.getItems());
+        assertTrue(second.isFinished());
+    }
+
+    @Test
+    void fullPageAtStageBoundaryPointsToNextShard() {
+        when(redis.hasKey(BASE + ":meta")).thenReturn(true);
+        stubScan(BASE, "0", "0", "a");
+        stubScan(ShardedRelationSets.shardKey(BASE, 63), "0", "0", "z");
+
+        CursorPage<String> page = sets.scanPage(BASE, CursorPage.START, 1);
+        assertEquals(Collections.singletonList("a"), page.getItems());
+        assertEquals("s0:0", page.getNextCursor());
+
+        CursorPage<String> last = sets.scanPage(BASE, "s63:0", 1);
+        assertEquals(Collections.singletonList("z"), last.getItems());
+        assertTrue(last.isFinished());
+    }
+
+    private void stubScan(String key, String cursor, String... result) {
+        List<String> page = Arrays.asList(result);
+        when(scripts.<List<String>>executeScript(eq(RelationScripts.SCAN_PAGE), eq(Collections.singletonList(key)),
+                eq(cursor), anyInt(), anyInt())).thenReturn(page);
+    }
+}
@@ -0,0 +1,57 @@
+package com.wait.support;
+
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 集成测试使用的 Redis 连接，不启动 Spring 容器
+ * 默认连接 localhost:6379 的 15 号库，可用 -Dtest.redis.host、-Dtest.redis.port、-Dtest.redis.database 覆盖
+ * 每个测试使用独立的 key 前缀，结束时只删除该前缀下的 key
+ */
+public final class LiveRedis implements AutoCloseable {
+
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate template;
+    private final String prefix = "it:" + UUID.randomUUID().toString().substring(0, 8) + ":";
+
+    public LiveRedis() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("test.redis.host", "localhost"),
+                Integer.getInteger("test.redis.port", 6379));
+        configuration.setDatabase(Integer.getInteger("test.redis.database", 15));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        template = new StringRedisTemplate(connectionFactory);
+    }
+
+    public StringRedisTemplate template() {
+        return template;
+    }
+
+    /**
+     * 本次测试的 key，例如 key("user:follow:1") 得到 it:xxxx:user:follow:1
+     */
+    public String key(String name) {
+        return prefix + name;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    @Override
+    public void close() {
+        try {
+            Set<String> keys = template.keys(prefix + "*");
+            if (keys != null && !keys.isEmpty()) {
+                template.delete(keys);
+            }
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.wait.sync.compensation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * CompensationEngine 退避时间单元测试：按次数指数增长、抖动在 ±20% 内、不低于基础延迟、不超过最大延迟
+ */
+public class CompensationEngineTest {
+
+    private static final long BASE = 1_000;
+    private static final long MAX = 60_000;
+
+    @Test
+    void delayGrowsExponentiallyWithinJitter() {
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            long expected = BASE << (attempt - 1);
+            for (int i = 0; i < 200; i++) {
+                long delay = CompensationEngine.backoff(attempt, BASE, MAX);
+                assertTrue(delay >= Math.max(BASE, expected - expected / 5) && delay <= expected + expected / 5,
+                        "attempt " + attempt + " delay " + delay);
+            }
+        }
+    }
+
+    @Test
+    void delayIsCappedAtMaxDelay() {
+        for (int attempt : new int[] { 7, 20, 31, 100, Integer.MAX_VALUE }) {
+            for (int i = 0; i < 200; i++) {
+                long delay = CompensationEngine.backoff(attempt, BASE, MAX);
+                assertTrue(delay >= MAX - MAX / 5 && delay <= MAX + MAX / 5, "attempt " + attempt + " delay " + delay);
+            }
+        }
+    }
+
+    @Test
+    void delayNeverDropsBelowBaseDelay() {
+        for (int attempt : new int[] { -1, 0, 1 }) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(CompensationEngine.backoff(attempt, BASE, MAX) >= BASE);
+            }
+        }
+        // 延迟过小时没有抖动
+        assertEquals(4, CompensationEngine.backoff(1, 4, 4));
+    }
+}
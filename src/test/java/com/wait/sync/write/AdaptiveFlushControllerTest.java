@@ -0,0 +1,88 @@
+package com.wait.sync.write;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AdaptiveFlushController 单元测试：缓冲压力缩短刷库延迟、超过阈值提前刷库、数据库延迟升高时拉长延迟、
+ * 提前刷库互斥、字节数估算
+ */
+public class AdaptiveFlushControllerTest {
+
+    private final AdaptiveFlushController controller =
+            new AdaptiveFlushController("test", 1_000, 2_000, 100, 10_000, 50);
+
+    @Test
+    void bufferPressureShortensDelay() {
+        assertEquals(1_000, controller.nextFlushDelayMs(0));
+        assertEquals(500, controller.nextFlushDelayMs(50));
+        // 最多缩短到基础延迟的 10%
+        assertEquals(100, controller.nextFlushDelayMs(100));
+        assertEquals(100, controller.nextFlushDelayMs(500));
+
+        // 字节数与 key 数量取压力较大者
+        controller.adjustBufferedBytes(7_500);
+        assertEquals(250, controller.nextFlushDelayMs(10));
+    }
+
+    @Test
+    void flushesEarlyPastKeyOrByteLimit() {
+        assertFalse(controller.shouldFlushEarly(99));
+        assertTrue(controller.shouldFlushEarly(100));
+
+        controller.adjustBufferedBytes(9_999);
+        assertFalse(controller.shouldFlushEarly(0));
+        controller.adjustBufferedBytes(1);
+        assertTrue(controller.shouldFlushEarly(0));
+        controller.adjustBufferedBytes(-10_000);
+        assertFalse(controller.shouldFlushEarly(0));
+    }
+
+    @Test
+    void slowDatabaseStretchesDelays() {
+        controller.recordFlush(100, true);
+        assertEquals(2_000, controller.nextFlushDelayMs(0));
+        assertEquals(4_000, controller.nextRetryDelayMs());
+
+        // 放大倍数有上限
+        controller.recordFlush(10_000, false);
+        assertEquals(4_000, controller.nextFlushDelayMs(0));
+        assertEquals(8_000, controller.nextRetryDelayMs());
+
+        // 延迟回落到阈值以下后恢复基础延迟
+        for (int i = 0; i < 50; i++) {
+            controller.recordFlush(0, true);
+        }
+        assertEquals(1_000, controller.nextFlushDelayMs(0));
+        assertEquals(2_000, controller.nextRetryDelayMs());
+
+        Map<String, Object> metrics = controller.metrics(0, 0);
+        assertEquals(51L, metrics.get("flushedTotal"));
+        assertEquals(1L, metrics.get("failedTotal"));
+    }
+
+    @Test
+    void onlyOneEarlyFlushAtATime() {
+        assertTrue(controller.tryBeginEarlyFlush());
+        assertFalse(controller.tryBeginEarlyFlush());
+        controller.endEarlyFlush();
+        assertTrue(controller.tryBeginEarlyFlush());
+        assertEquals(2L, controller.metrics(0, 0).get("earlyFlushTotal"));
+    }
+
+    @Test
+    void estimatesValueSize() {
+        assertEquals(8, AdaptiveFlushController.estimateBytes(null));
+        assertEquals(16, AdaptiveFlushController.estimateBytes(5L));
+        assertEquals(44, AdaptiveFlushController.estimateBytes("ab"));
+        assertEquals(40 + 8 + 44, AdaptiveFlushController.estimateBytes(Collections.singletonList("ab")));
+        assertEquals(48 + 32 + 42 + 16, AdaptiveFlushController.estimateBytes(Collections.singletonMap("a", 1)));
+        assertEquals(256, AdaptiveFlushController.estimateBytes(new Object()));
+    }
+}
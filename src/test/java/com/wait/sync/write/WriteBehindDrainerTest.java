@@ -0,0 +1,124 @@
+package com.wait.sync.write;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * WriteBehindDrainer 单元测试：先让所有缓冲停止接收再取任务、跨缓冲分批执行全部任务、单个任务失败不影响其他任务、
+ * 只在运行状态下停止时排空一次
+ */
+public class WriteBehindDrainerTest {
+
+    @Test
+    void stopsAllBuffersBeforeDrainingAndRunsEveryTask() {
+        List<String> events = new ArrayList<>();
+        FakeBuffer counters = new FakeBuffer("counters", 250, -1, events);
+        FakeBuffer snapshots = new FakeBuffer("snapshots", 3, 1, events);
+        WriteBehindDrainer drainer = new WriteBehindDrainer(Arrays.asList(counters, snapshots));
+
+        drainer.drainAll();
+
+        // 两个缓冲都先停止接收，之后才取出任务
+        assertEquals(Arrays.asList("stop:counters", "stop:snapshots", "drain:counters", "drain:snapshots"),
+                events.subList(0, 4));
+        assertEquals(250, counters.flushed.size());
+        assertEquals(2, snapshots.flushed.size());
+        assertEquals(1, snapshots.attempts.get() - snapshots.flushed.size());
+        assertTrue(snapshots.pendingQueried);
+    }
+
+    @Test
+    void drainsOnceWhenStoppedWhileRunning() {
+        FakeBuffer buffer = new FakeBuffer("likes", 5, -1, new ArrayList<>());
+        WriteBehindDrainer drainer = new WriteBehindDrainer(Arrays.asList(buffer));
+
+        // 未启动时停止不排空
+        drainer.stop();
+        assertEquals(0, buffer.attempts.get());
+
+        drainer.start();
+        assertTrue(drainer.isRunning());
+        drainer.stop();
+        assertFalse(drainer.isRunning());
+        drainer.stop();
+        assertEquals(5, buffer.attempts.get());
+        assertTrue(drainer.getPhase() < SmartLifecycle.DEFAULT_PHASE);
+    }
+
+    @Test
+    void emptyBuffersFinishImmediately() {
+        FakeBuffer buffer = new FakeBuffer("empty", 0, -1, new ArrayList<>());
+        new WriteBehindDrainer(Arrays.asList(buffer)).drainAll();
+        assertTrue(buffer.stopped);
+        assertFalse(buffer.pendingQueried);
+    }
+
+    /**
+     * 固定数量任务的缓冲，failIndex 指定的任务抛出异常
+     */
+    private static final class FakeBuffer implements DrainableBuffer {
+        final String name;
+        final int taskCount;
+        final int failIndex;
+        final List<String> events;
+        final Set<String> flushed = ConcurrentHashMap.newKeySet();
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile boolean stopped;
+        volatile boolean pendingQueried;
+
+        FakeBuffer(String name, int taskCount, int failIndex, List<String> events) {
+            this.name = name;
+            this.taskCount = taskCount;
+            this.failIndex = failIndex;
+            this.events = events;
+        }
+
+        @Override
+        public String getBufferName() {
+            return name;
+        }
+
+        @Override
+        public void stopAccepting() {
+            stopped = true;
+            events.add("stop:" + name);
+        }
+
+        @Override
+        public List<DrainTask> drainTasks() {
+            events.add("drain:" + name);
+            List<DrainTask> tasks = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                String key = name + ":" + i;
+                boolean fail = i == failIndex;
+                tasks.add(new DrainTask(key, () -> {
+                    attempts.incrementAndGet();
+                    if (fail) {
+                        throw new IllegalStateException("db down");
+                    }
+                    flushed.add(key);
+                    return null;
+                }));
+            }
+            return tasks;
+        }
+
+        @Override
+        public Collection<String> pendingKeys() {
+            pendingQueried = true;
+            return new ArrayList<>();
+        }
+    }
+}
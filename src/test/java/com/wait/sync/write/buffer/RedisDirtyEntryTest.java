@@ -0,0 +1,54 @@
+package com.wait.sync.write.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RedisDirtyEntry 单元测试：按字段前缀解析 dirty hash，整数和浮点增量保留各自类型，租约凭证等未知字段忽略
+ */
+public class RedisDirtyEntryTest {
+
+    @Test
+    void parsesEveryFieldKind() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("m", "com.wait.Service#addScore(java.lang.Long,int,double,java.lang.String)");
+        hash.put("a", "[1,0,0.0,\"x\"]");
+        hash.put("b", "batch-1");
+        hash.put("l", "lease-1");
+        hash.put("i:1", "-3");
+        hash.put("f:2", "1.25");
+        hash.put("s:3", "\"latest\"");
+
+        RedisDirtyEntry entry = RedisDirtyEntry.fromHash(hash);
+
+        assertEquals("com.wait.Service#addScore(java.lang.Long,int,double,java.lang.String)", entry.getMethodId());
+        assertEquals("[1,0,0.0,\"x\"]", entry.getArgsJson());
+        assertEquals("batch-1", entry.getBatchId());
+        assertEquals(-3L, entry.getNumericDeltas().get(1));
+        assertEquals(1.25d, entry.getNumericDeltas().get(2));
+        assertEquals("\"latest\"", entry.getLatestValueJson().get(3));
+        assertEquals(2, entry.getNumericDeltas().size());
+        assertFalse(entry.isEmpty());
+    }
+
+    @Test
+    void hashWithoutChangesIsEmpty() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("m", "method");
+        hash.put("a", "[]");
+
+        RedisDirtyEntry entry = RedisDirtyEntry.fromHash(hash);
+
+        assertTrue(entry.isEmpty());
+        assertNull(entry.getBatchId());
+        assertTrue(RedisDirtyEntry.fromHash(Collections.emptyMap()).isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+package com.wait.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * BoundUtil 批量成员判断单元测试：SMISMEMBER 一次调用且结果按参数顺序、服务端不支持时退化为管道 SISMEMBER 且只探测一次、
+ * 其他错误原样抛出、管道判断的 key 与值一一对应
+ * RedisTemplate 使用 mock，回调直接在 mock 连接上执行
+ */
+public class BoundUtilTest {
+
+    private static final String KEY = "user:like:1";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final BoundUtil boundUtil = new BoundUtil(redisTemplate, null, null, null, null, null);
+
+    @BeforeEach
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    void setUp() {
+        when(redisTemplate.getKeySerializer()).thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.getValueSerializer()).thenReturn((RedisSerializer) new GenericToStringSerializer<>(Object.class));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return Arrays.asList(true, false, true);
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sMIsMemberUsesOneCommandInArgumentOrder() {
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        List<Object> arguments = new ArrayList<>();
+        when(connection.sMIsMember(eq(bytes(KEY)), ArgumentMatchers.<byte[]>any())).thenAnswer(invocation -> {
+            arguments.addAll(Arrays.asList(invocation.getArguments()));
+            return Arrays.asList(false, true, true);
+        });
+
+        assertEquals(Arrays.asList(false, true, true), boundUtil.sMIsMember(KEY, Arrays.asList(3L, 1L, 2L)));
+
+        // 值按参数顺序一次发送
+        assertEquals(4, arguments.size());
+        assertArrayEquals(bytes("3"), (byte[]) arguments.get(1));
+        assertArrayEquals(bytes("1"), (byte[]) arguments.get(2));
+        assertArrayEquals(bytes("2"), (byte[]) arguments.get(3));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void unknownCommandFallsBackToPipelineOnce() {
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new InvalidDataAccessApiUsageException("ERR unknown command 'SMISMEMBER'"));
+
+        assertEquals(Arrays.asList(true, false, true), boundUtil.sMIsMember(KEY, Arrays.asList(1L, 2L, 3L)));
+        assertEquals(Arrays.asList(true, false, true), boundUtil.sMIsMember(KEY, Arrays.asList(4L, 5L, 6L)));
+
+        // 第一次失败后不再尝试 SMISMEMBER
+        verify(redisTemplate, times(1)).execute(any(RedisCallback.class));
+        verify(connection).sIsMember(bytes(KEY), bytes("1"));
+        verify(connection).sIsMember(bytes(KEY), bytes("6"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void otherErrorsArePropagated() {
+        when(redisTemplate.execute(any(RedisCallback.class))).thenThrow(new RedisSystemException("connection reset",
+                new IllegalStateException("connection reset")));
+
+        assertThrows(RedisSystemException.class, () -> boundUtil.sMIsMember(KEY, Arrays.asList(1L, 2L)));
+        assertThrows(RedisSystemException.class, () -> boundUtil.sMIsMember(KEY, Arrays.asList(1L, 2L)));
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void pipelinedChecksPairKeysWithValues() {
+        List<Boolean> flags = boundUtil.sIsMemberPipelined(Arrays.asList("a", "b", "c"), Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(Arrays.asList(true, false, true), flags);
+        verify(connection).sIsMember(bytes("a"), bytes("1"));
+        verify(connection).sIsMember(bytes("b"), bytes("2"));
+        verify(connection).sIsMember(bytes("c"), bytes("3"));
+        assertThrows(IllegalArgumentException.class,
+                () -> boundUtil.sIsMemberPipelined(Arrays.asList("a", "b"), Collections.singletonList(1L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyValuesSkipRedis() {
+        assertTrue(boundUtil.sMIsMember(KEY, Collections.<Long>emptyList()).isEmpty());
+        assertTrue(boundUtil.sIsMemberPipelined(Collections.<String>emptyList(), Collections.<Long>emptyList())
+                .isEmpty());
+        verify(redisTemplate, never()).execute(any(RedisCallback.class));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
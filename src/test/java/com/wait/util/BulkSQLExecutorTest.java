@@ -0,0 +1,180 @@
+package com.wait.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wait.entity.BulkItemResult;
+
+/**
+ * BulkSQLExecutor 单元测试：分块与下标对应、在途分块数上限、流式失败计数、事务分块失败后逐条重试、线程池拒绝
+ * 事务模板直接执行回调，不依赖数据库
+ */
+public class BulkSQLExecutorTest {
+
+    private ExecutorService pool;
+
+    @AfterEach
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void resultsKeepInputOrderAcrossChunks() {
+        BulkSQLExecutor executor = executor(4);
+        List<Callable<Integer>> operations = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            int value = i;
+            operations.add(() -> value * 10);
+        }
+
+        List<BulkItemResult<Integer>> results = executor.execute(operations,
+                BulkSQLExecutor.Options.builder().chunkSize(7).maxInFlight(2).build());
+
+        assertEquals(25, results.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertTrue(results.get(i).isSuccess());
+            assertEquals(i * 10, (int) results.get(i).getValue());
+        }
+    }
+
+    @Test
+    void inFlightChunksNeverExceedLimit() {
+        BulkSQLExecutor executor = executor(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Callable<Integer>> operations = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            operations.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                TimeUnit.MILLISECONDS.sleep(20);
+                running.decrementAndGet();
+                return 1;
+            });
+        }
+
+        executor.execute(operations, BulkSQLExecutor.Options.builder().chunkSize(1).maxInFlight(3).build());
+
+        assertTrue(peak.get() <= 3, "peak in-flight chunks: " + peak.get());
+    }
+
+    @Test
+    void streamingReportsEveryItemAndFailedCount() {
+        BulkSQLExecutor executor = executor(4);
+        List<Callable<Integer>> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            operations.add(() -> {
+                if (value % 3 == 0) {
+                    throw new IllegalStateException("item " + value);
+                }
+                return value;
+            });
+        }
+        Map<Integer, BulkItemResult<Integer>> seen = new ConcurrentHashMap<>();
+
+        int failed = executor.executeStreaming(operations,
+                BulkSQLExecutor.Options.builder().chunkSize(4).build(), r -> seen.put(r.getIndex(), r));
+
+        // 0, 3, 6, 9 失败
+        assertEquals(4, failed);
+        assertEquals(10, seen.size());
+        assertFalse(seen.get(6).isSuccess());
+        assertInstanceOf(IllegalStateException.class, seen.get(6).getError());
+        assertEquals(5, (int) seen.get(5).getValue());
+    }
+
+    @Test
+    void failedTransactionalChunkRetriesItemsOneByOne() {
+        BulkSQLExecutor executor = executor(2);
+        AtomicInteger calls = new AtomicInteger();
+        List<Callable<String>> operations = new ArrayList<>();
+        operations.add(() -> {
+            calls.incrementAndGet();
+            return "a";
+        });
+        operations.add(() -> {
+            throw new IllegalArgumentException("bad row");
+        });
+        operations.add(() -> {
+            calls.incrementAndGet();
+            return "c";
+        });
+
+        List<BulkItemResult<String>> results = executor.execute(operations,
+                BulkSQLExecutor.Options.builder().chunkSize(3).transactional(true).build());
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("a", results.get(0).getValue());
+        assertFalse(results.get(1).isSuccess());
+        assertInstanceOf(IllegalArgumentException.class, results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals("c", results.get(2).getValue());
+        // 整块事务执行到第二条失败，之后三条各自重试一次
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void rejectedChunkFailsAllItsItems() {
+        pool = Executors.newSingleThreadExecutor();
+        pool.shutdown();
+        BulkSQLExecutor executor = new BulkSQLExecutor(null, new DirectTransactionTemplate(), pool, 2, 10);
+        List<Callable<Integer>> operations = Collections.nCopies(3, () -> 1);
+
+        List<BulkItemResult<Integer>> results = executor.execute(operations, executor.defaultOptions());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertInstanceOf(RejectedExecutionException.class, results.get(i).getError());
+        }
+    }
+
+    @Test
+    void emptyInputRunsNothing() {
+        BulkSQLExecutor executor = executor(1);
+        assertEquals(0, executor.executeStreaming(Collections.<Callable<Integer>>emptyList(),
+                executor.defaultOptions(), r -> {
+                    throw new AssertionError("unexpected result");
+                }));
+        assertTrue(executor.execute(Collections.<Callable<Integer>>emptyList(), executor.defaultOptions())
+                .isEmpty());
+    }
+
+    private BulkSQLExecutor executor(int threads) {
+        pool = Executors.newFixedThreadPool(threads);
+        return new BulkSQLExecutor(null, new DirectTransactionTemplate(), pool, 4, 200);
+    }
+
+    /**
+     * 直接执行回调的事务模板，回调抛出的异常原样抛出
+     */
+    private static final class DirectTransactionTemplate extends TransactionTemplate {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
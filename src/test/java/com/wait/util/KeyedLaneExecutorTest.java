@@ -0,0 +1,153 @@
+package com.wait.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.wait.exception.BackpressureException;
+
+/**
+ * KeyedLaneExecutor 单元测试：同一 key 保序、合并未开始的任务、队列满拒绝、关闭后拒绝
+ */
+public class KeyedLaneExecutorTest {
+
+    private KeyedLaneExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown(1000);
+        }
+    }
+
+    @Test
+    void sameKeyRunsInSubmitOrder() throws Exception {
+        executor = new KeyedLaneExecutor("test", 4, 1000);
+        List<Integer> executed = new ArrayList<>();
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            last = executor.submit("user:1", () -> {
+                executed.add(value);
+                return value;
+            });
+        }
+        assertEquals(499, (int) last.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+    }
+
+    @Test
+    void laneOfIsStableAndInRange() {
+        executor = new KeyedLaneExecutor("test", 3, 10);
+        for (int i = 0; i < 100; i++) {
+            String key = "key:" + i;
+            int lane = executor.laneOf(key);
+            assertTrue(lane >= 0 && lane < 3);
+            assertEquals(lane, executor.laneOf(key));
+        }
+        assertEquals(executor.laneOf(null), executor.laneOf(null));
+    }
+
+    @Test
+    void coalescesPendingTaskWithSameCoalesceKey() throws Exception {
+        executor = new KeyedLaneExecutor("test", 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("blocker", () -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger invocations = new AtomicInteger();
+        CompletableFuture<Integer> first = executor.submit("user:1", "page:1", () -> {
+            invocations.incrementAndGet();
+            return 1;
+        });
+        CompletableFuture<Integer> second = executor.submit("user:1", "page:1", () -> {
+            invocations.incrementAndGet();
+            return 2;
+        });
+        release.countDown();
+
+        // 两次提交都以后一次的结果完成，只执行一次
+        assertEquals(2, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, (int) second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, invocations.get());
+        assertEquals(1L, laneMetric(executor.metrics(), "coalesced"));
+    }
+
+    @Test
+    void rejectsWhenLaneQueueIsFull() throws Exception {
+        executor = new KeyedLaneExecutor("test", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("blocker", () -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> queued = executor.submit("a", "a", () -> 1);
+        assertThrows(BackpressureException.class, () -> executor.submit("b", () -> 2));
+        // 合并到已排队的任务不占用队列容量
+        CompletableFuture<Integer> coalesced = executor.submit("a", "a", () -> 3);
+        release.countDown();
+
+        assertEquals(3, (int) queued.get(5, TimeUnit.SECONDS));
+        assertEquals(3, (int) coalesced.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, laneMetric(executor.metrics(), "rejected"));
+    }
+
+    @Test
+    void failedTaskCompletesFutureExceptionally() {
+        executor = new KeyedLaneExecutor("test", 1, 10);
+        CompletableFuture<Object> future = executor.submit("a", () -> {
+            throw new IllegalStateException("boom");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void shutdownRunsQueuedTasksAndRejectsNewOnes() throws Exception {
+        executor = new KeyedLaneExecutor("test", 2, 100);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int value = i;
+            futures.add(executor.submit("key:" + i, () -> value));
+        }
+        executor.shutdown(5000);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(futures.get(i).isDone());
+            assertEquals(i, (int) futures.get(i).get());
+        }
+        assertThrows(BackpressureException.class, () -> executor.submit("a", () -> 1));
+        executor = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long laneMetric(Map<String, Object> metrics, String name) {
+        long total = 0;
+        for (Map<String, Object> lane : (List<Map<String, Object>>) metrics.get("lanes")) {
+            total += (Long) lane.get(name);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,205 @@
+package com.wait.util.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.wait.exception.BackpressureException;
+import com.wait.service.MQService;
+
+/**
+ * BatchingMQProducer 单元测试：攒满即发、等待超时即发、被拒绝消息的 future 失败、整批失败、未发送消息数上限
+ */
+public class BatchingMQProducerTest {
+
+    private BatchingMQProducer producer;
+
+    @AfterEach
+    void close() {
+        if (producer != null) {
+            producer.close();
+        }
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForLinger() throws Exception {
+        RecordingMQService mq = new RecordingMQService(batch -> Collections.emptyList());
+        producer = new BatchingMQProducer("test", mq, 3, 60_000, 10);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(producer.send("user", "k" + i, message("k" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, mq.batches.size());
+        assertEquals(3, mq.batches.get(0).size());
+        assertEquals("k0", mq.batches.get(0).get(0).getKey());
+        assertEquals("k2", mq.batches.get(0).get(2).getKey());
+    }
+
+    @Test
+    void partialBatchIsSentAfterLinger() throws Exception {
+        RecordingMQService mq = new RecordingMQService(batch -> Collections.emptyList());
+        producer = new BatchingMQProducer("test", mq, 100, 20, 100);
+
+        producer.send("user", "k1", message("k1")).get(5, TimeUnit.SECONDS);
+        producer.send("order", "k2", message("k2")).get(5, TimeUnit.SECONDS);
+
+        // 不同 topic 分别成批
+        assertEquals(Arrays.asList("user", "order"), mq.topics);
+        assertEquals(1, mq.batches.get(0).size());
+    }
+
+    @Test
+    void rejectedMessageFailsOnlyItsFuture() throws Exception {
+        RecordingMQService mq = new RecordingMQService(batch -> {
+            List<AsyncDataMsg<?>> rejected = new ArrayList<>();
+            for (AsyncDataMsg<?> message : batch) {
+                if ("bad".equals(message.getKey())) {
+                    rejected.add(message);
+                }
+            }
+            return rejected;
+        });
+        producer = new BatchingMQProducer("test", mq, 2, 60_000, 10);
+
+        CompletableFuture<Void> good = producer.send("user", "good", message("good"));
+        CompletableFuture<Void> bad = producer.send("user", "bad", message("bad"));
+
+        good.get(5, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(1L, producer.getMetrics().get("failedMessages"));
+        assertEquals(1L, producer.getMetrics().get("sentMessages"));
+    }
+
+    @Test
+    void failedBatchFailsEveryFuture() {
+        IllegalStateException failure = new IllegalStateException("mq down");
+        RecordingMQService mq = new RecordingMQService(batch -> {
+            throw failure;
+        });
+        producer = new BatchingMQProducer("test", mq, 2, 60_000, 10);
+
+        CompletableFuture<Void> first = producer.send("user", "k1", message("k1"));
+        CompletableFuture<Void> second = producer.send("user", "k2", message("k2"));
+
+        for (CompletableFuture<Void> future : Arrays.asList(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(2L, producer.getMetrics().get("failedMessages"));
+    }
+
+    @Test
+    void rejectsWhenPendingLimitIsReached() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingMQService mq = new RecordingMQService(batch -> {
+            sending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.emptyList();
+        });
+        producer = new BatchingMQProducer("test", mq, 1, 20, 1);
+
+        CompletableFuture<Void> first = producer.send("user", "k1", message("k1"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        assertThrows(BackpressureException.class, () -> producer.send("user", "k2", message("k2")));
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        // 发送完成后释放名额
+        producer.send("user", "k3", message("k3")).get(5, TimeUnit.SECONDS);
+        assertEquals(1L, producer.getMetrics().get("rejectedMessages"));
+    }
+
+    @Test
+    void closeSendsRemainingMessages() throws Exception {
+        RecordingMQService mq = new RecordingMQService(batch -> Collections.emptyList());
+        producer = new BatchingMQProducer("test", mq, 100, 60_000, 100);
+
+        CompletableFuture<Void> future = producer.send("user", "k1", message("k1"));
+        producer.close();
+
+        assertTrue(future.isDone());
+        future.get();
+        assertThrows(IllegalStateException.class, () -> producer.send("user", "k2", message("k2")));
+        producer = null;
+    }
+
+    private static AsyncDataMsg<String> message(String key) {
+        AsyncDataMsg<String> message = new AsyncDataMsg<>();
+        message.setKey(key);
+        message.setData("v-" + key);
+        return message;
+    }
+
+    /**
+     * 记录每次批量发送，返回值由测试决定
+     */
+    private static final class RecordingMQService implements MQService {
+        final List<String> topics = new CopyOnWriteArrayList<>();
+        final List<List<AsyncDataMsg<?>>> batches = new CopyOnWriteArrayList<>();
+        private final Function<List<AsyncDataMsg<?>>, List<AsyncDataMsg<?>>> onBatch;
+
+        RecordingMQService(Function<List<AsyncDataMsg<?>>, List<AsyncDataMsg<?>>> onBatch) {
+            this.onBatch = onBatch;
+        }
+
+        @Override
+        public List<AsyncDataMsg<?>> sendBatch(String topic, List<AsyncDataMsg<?>> messages) {
+            topics.add(topic);
+            batches.add(new ArrayList<>(messages));
+            return onBatch.apply(messages);
+        }
+
+        @Override
+        public void sendMessage(String topic, String key, AsyncDataMsg message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendDLMessage(String key, CompensationMsg message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public int getQueueSize() {
+            return 0;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+    }
+}
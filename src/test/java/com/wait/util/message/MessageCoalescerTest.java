@@ -0,0 +1,79 @@
+package com.wait.util.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * MessageCoalescer 单元测试：按 topic 分组，同一 key 保留最后一条，按最后出现的位置排序
+ */
+public class MessageCoalescerTest {
+
+    @Test
+    void keepsLastMessagePerKeyWithinTopic() {
+        List<String> topics = new ArrayList<>();
+        List<AsyncDataMsg<?>> messages = new ArrayList<>();
+        add(topics, messages, "user", "k1", "v1");
+        add(topics, messages, "user", "k2", "v2");
+        add(topics, messages, "order", "k1", "v3");
+        add(topics, messages, "user", "k1", "v4");
+        add(topics, messages, "user", "k3", "v5");
+
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(topics, messages);
+
+        assertEquals(Arrays.asList("user", "order"), new ArrayList<>(result.getByTopic().keySet()));
+        // k1 移到最后一次出现的位置，且只保留 v4
+        assertEquals(Arrays.asList("k2:v2", "k1:v4", "k3:v5"), describe(result.getByTopic().get("user")));
+        // 不同 topic 的同名 key 互不影响
+        assertEquals(Collections.singletonList("k1:v3"), describe(result.getByTopic().get("order")));
+        assertEquals(5, result.getInputCount());
+        assertEquals(4, result.getOutputCount());
+        assertEquals(1, result.getCoalescedCount());
+    }
+
+    @Test
+    void distinctKeysAreKeptInOrder() {
+        List<String> topics = new ArrayList<>();
+        List<AsyncDataMsg<?>> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            add(topics, messages, "user", "k" + i, "v" + i);
+        }
+
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(topics, messages);
+
+        assertEquals(Arrays.asList("k0:v0", "k1:v1", "k2:v2", "k3:v3", "k4:v4"),
+                describe(result.getByTopic().get("user")));
+        assertEquals(0, result.getCoalescedCount());
+    }
+
+    @Test
+    void emptyInput() {
+        MessageCoalescer.Result result = MessageCoalescer.coalesce(Collections.emptyList(), Collections.emptyList());
+        assertTrue(result.getByTopic().isEmpty());
+        assertEquals(0, result.getInputCount());
+        assertEquals(0, result.getOutputCount());
+    }
+
+    private static void add(List<String> topics, List<AsyncDataMsg<?>> messages, String topic, String key,
+            String data) {
+        AsyncDataMsg<String> message = new AsyncDataMsg<>();
+        message.setKey(key);
+        message.setData(data);
+        topics.add(topic);
+        messages.add(message);
+    }
+
+    private static List<String> describe(List<AsyncDataMsg<?>> messages) {
+        List<String> result = new ArrayList<>(messages.size());
+        for (AsyncDataMsg<?> message : messages) {
+            result.add(message.getKey() + ":" + message.getData());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.wait.util.queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PendingOffsets 单元测试：低水位取最小未释放位置，且不超过调用方读取的追加位置
+ */
+public class PendingOffsetsTest {
+
+    @Test
+    void lowWatermarkIsEndOffsetWhenNothingPending() {
+        PendingOffsets pending = new PendingOffsets();
+        assertEquals(100, pending.lowWatermark(100));
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void lowWatermarkFollowsSmallestUnreleasedOffset() {
+        PendingOffsets pending = new PendingOffsets();
+        PendingOffsets.Mark first = pending.acquire(10);
+        PendingOffsets.Mark second = pending.acquire(20);
+        PendingOffsets.Mark third = pending.acquire(30);
+        assertEquals(10, pending.lowWatermark(100));
+
+        // 乱序完成：释放中间的位置不推进低水位
+        pending.release(second);
+        assertEquals(10, pending.lowWatermark(100));
+        pending.release(first);
+        assertEquals(30, pending.lowWatermark(100));
+        pending.release(third);
+        assertEquals(100, pending.lowWatermark(100));
+    }
+
+    @Test
+    void marksWithSameOffsetAreReleasedIndependently() {
+        PendingOffsets pending = new PendingOffsets();
+        PendingOffsets.Mark first = pending.acquire(5);
+        PendingOffsets.Mark second = pending.acquire(5);
+        assertEquals(2, pending.size());
+
+        pending.release(first);
+        assertEquals(5, pending.lowWatermark(100));
+        pending.release(second);
+        assertEquals(100, pending.lowWatermark(100));
+
+        // 重复释放和释放 null 都是空操作
+        pending.release(second);
+        pending.release(null);
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void lowWatermarkNeverExceedsEndOffset() {
+        PendingOffsets pending = new PendingOffsets();
+        pending.acquire(50);
+        assertEquals(30, pending.lowWatermark(30));
+    }
+}
@@ -0,0 +1,111 @@
+package com.wait.util.queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RingBuffer 单元测试：容量取整、队列满时发布失败、单工作线程保序、多生产者多工作线程每条消息只处理一次
+ */
+public class RingBufferTest {
+
+    private static final long PUBLISH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new RingBuffer<>("test", 5, Slot::new, WaitStrategy.SLEEPING, 1).capacity());
+        assertEquals(8, new RingBuffer<>("test", 8, Slot::new, WaitStrategy.SLEEPING, 1).capacity());
+        assertEquals(2, new RingBuffer<>("test", 1, Slot::new, WaitStrategy.SLEEPING, 1).capacity());
+    }
+
+    @Test
+    void publishFailsWhenFullAndNoConsumer() {
+        RingBuffer<Slot> ring = new RingBuffer<>("test", 4, Slot::new, WaitStrategy.SLEEPING, 4);
+        for (int i = 0; i < 4; i++) {
+            long value = i;
+            assertTrue(ring.publish(slot -> slot.value = value, 0));
+        }
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.remainingCapacity());
+        assertFalse(ring.publish(slot -> slot.value = 4, 0));
+        assertFalse(ring.publish(slot -> slot.value = 4, TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    void singleWorkerPreservesPublishOrder() throws InterruptedException {
+        int count = 10_000;
+        // 容量远小于消息数，覆盖多次绕圈
+        RingBuffer<Slot> ring = new RingBuffer<>("test", 64, Slot::new, WaitStrategy.SLEEPING, 16);
+        List<Long> received = new ArrayList<>(count);
+        CountDownLatch done = new CountDownLatch(count);
+        ring.start(1, events -> {
+            for (Slot slot : events) {
+                received.add(slot.value);
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            long value = i;
+            assertTrue(ring.publish(slot -> slot.value = value, PUBLISH_TIMEOUT_NANOS));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        ring.shutdown(1000);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (long) received.get(i));
+        }
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void multipleWorkersHandleEachMessageOnce() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 5_000;
+        int total = producers * perProducer;
+        RingBuffer<Slot> ring = new RingBuffer<>("test", 128, Slot::new, WaitStrategy.BLOCKING, 8);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        CountDownLatch done = new CountDownLatch(total);
+        ring.start(3, events -> {
+            for (Slot slot : events) {
+                seen.incrementAndGet((int) slot.value);
+                done.countDown();
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long value = base + i;
+                    if (!ring.publish(slot -> slot.value = value, PUBLISH_TIMEOUT_NANOS)) {
+                        throw new IllegalStateException("publish timed out: " + value);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        ring.shutdown(1000);
+
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, seen.get(i), "message " + i);
+        }
+    }
+
+    private static final class Slot {
+        long value;
+    }
+}
@@ -0,0 +1,211 @@
+package com.wait.util.queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SegmentLog 单元测试：回放、CRC 校验、末尾残缺记录截断、段滚动与删除、检查点
+ * 段文件写在临时目录中，不依赖 Spring 容器和外部服务
+ */
+public class SegmentLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int MAGIC = 0x4D514C47;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedRecordsInOrder() {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        long first = log.append(bytes("msg-0"));
+        long second = log.append(bytes("msg-1"));
+        long third = log.append(bytes("msg-2"));
+        assertEquals(0, first);
+        // 12 字节头 + 5 字节内容，按 8 字节对齐为 24
+        assertEquals(24, second);
+        assertEquals(48, third);
+        assertEquals(72, log.endOffset());
+        log.close();
+
+        List<String> replayed = new ArrayList<>();
+        SegmentLog reopened = open(dir, SEGMENT_SIZE, 0, replayed);
+        assertEquals(Arrays.asList("0:msg-0", "24:msg-1", "48:msg-2"), replayed);
+        // 继续在最后一个段的有效数据之后追加
+        assertEquals(72, reopened.append(bytes("msg-3")));
+        reopened.close();
+    }
+
+    @Test
+    void skipsRecordWithCrcMismatch() throws IOException {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        log.append(bytes("msg-0"));
+        long corrupted = log.append(bytes("msg-1"));
+        log.append(bytes("msg-2"));
+        log.close();
+
+        // 改写第二条记录内容的一个字节，头部的 CRC 不再匹配
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(dir, 0).toFile(), "rw")) {
+            file.seek(corrupted + 12);
+            file.write('X');
+        }
+
+        List<String> replayed = new ArrayList<>();
+        open(dir, SEGMENT_SIZE, 0, replayed).close();
+        assertEquals(Arrays.asList("0:msg-0", "48:msg-2"), replayed);
+    }
+
+    @Test
+    void truncatesTornRecordAtTail() throws IOException {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        log.append(bytes("msg-0"));
+        log.append(bytes("msg-1"));
+        long tail = log.endOffset();
+        log.close();
+
+        // 模拟写入中途崩溃：头部已写入，内容只写了一部分
+        byte[] payload = bytes("torn-payload");
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(MAGIC).putInt(payload.length).putInt(crc(payload));
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(dir, 0).toFile(), "rw")) {
+            file.seek(tail);
+            file.write(header.array());
+            file.write(payload, 0, 4);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        SegmentLog reopened = open(dir, SEGMENT_SIZE, 0, replayed);
+        assertEquals(Arrays.asList("0:msg-0", "24:msg-1"), replayed);
+        // 残缺记录被截断，新记录覆盖它的位置
+        assertEquals(tail, reopened.endOffset());
+        assertEquals(tail, reopened.append(bytes("msg-2")));
+        reopened.close();
+
+        replayed.clear();
+        open(dir, SEGMENT_SIZE, 0, replayed).close();
+        assertEquals(Arrays.asList("0:msg-0", "24:msg-1", tail + ":msg-2"), replayed);
+    }
+
+    @Test
+    void rollsSegmentsAndDeletesBeforeOffset() {
+        // 64 字节的段放两条 24 字节的记录
+        SegmentLog log = open(dir, 64, 0, new ArrayList<>());
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            offsets.add(log.append(bytes("payload-" + i + "...")));
+        }
+        assertEquals(Arrays.asList(0L, 24L, 64L, 88L, 128L), offsets);
+        assertEquals(3, log.segmentCount());
+
+        log.deleteBefore(128);
+        assertEquals(1, log.segmentCount());
+        assertFalse(Files.exists(segmentFile(dir, 0)));
+        assertFalse(Files.exists(segmentFile(dir, 64)));
+        log.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(dir, 64, 0, replayed).close();
+        assertEquals(Arrays.asList("128:payload-4..."), replayed);
+    }
+
+    @Test
+    void replaysFromCheckpoint() {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        log.append(bytes("msg-0"));
+        long second = log.append(bytes("msg-1"));
+        log.append(bytes("msg-2"));
+        log.writeCheckpoint(second);
+        log.close();
+
+        SegmentLog reopened = new SegmentLog(dir, SEGMENT_SIZE);
+        assertEquals(second, reopened.readCheckpoint());
+        List<String> replayed = new ArrayList<>();
+        assertEquals(2, reopened.open(reopened.readCheckpoint(), collect(replayed)));
+        assertEquals(Arrays.asList("24:msg-1", "48:msg-2"), replayed);
+        reopened.close();
+    }
+
+    @Test
+    void corruptedCheckpointReplaysFromBeginning() throws IOException {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        assertEquals(0, log.readCheckpoint());
+        log.writeCheckpoint(4096);
+        assertEquals(4096, log.readCheckpoint());
+
+        Path checkpoint = dir.resolve("consumer.checkpoint");
+        byte[] content = Files.readAllBytes(checkpoint);
+        content[3] ^= 0x01;
+        Files.write(checkpoint, content);
+        assertEquals(0, log.readCheckpoint());
+
+        Files.write(checkpoint, new byte[] { 1, 2, 3 });
+        assertEquals(0, log.readCheckpoint());
+        log.close();
+    }
+
+    @Test
+    void checkpointsLowWatermarkOfPendingRecords() {
+        SegmentLog log = open(dir, SEGMENT_SIZE, 0, new ArrayList<>());
+        PendingOffsets pending = new PendingOffsets();
+        List<PendingOffsets.Mark> marks = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // 与生产者相同：先以 endOffset 登记，再追加
+            marks.add(pending.acquire(log.endOffset()));
+            offsets.add(log.append(bytes("msg-" + i)));
+        }
+
+        // 第一条和第三条已消费，第二条仍在处理中
+        pending.release(marks.get(0));
+        pending.release(marks.get(2));
+        long checkpoint = pending.lowWatermark(log.endOffset());
+        assertEquals((long) offsets.get(1), checkpoint);
+        log.writeCheckpoint(checkpoint);
+        log.close();
+
+        SegmentLog reopened = new SegmentLog(dir, SEGMENT_SIZE);
+        List<String> replayed = new ArrayList<>();
+        reopened.open(reopened.readCheckpoint(), collect(replayed));
+        // 至少一次：未完成的第二条及其之后的记录都会重新回放
+        assertEquals(Arrays.asList("24:msg-1", "48:msg-2"), replayed);
+        reopened.close();
+    }
+
+    private static SegmentLog open(Path dir, int segmentSize, long fromOffset, List<String> replayed) {
+        SegmentLog log = new SegmentLog(dir, segmentSize);
+        log.open(fromOffset, collect(replayed));
+        return log;
+    }
+
+    private static SegmentLog.RecordVisitor collect(List<String> replayed) {
+        return (offset, payload) -> replayed.add(offset + ":" + new String(payload, StandardCharsets.UTF_8));
+    }
+
+    private static Path segmentFile(Path dir, long base) {
+        return dir.resolve(String.format("%020d.log", base));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return (int) crc32.getValue();
+    }
+}